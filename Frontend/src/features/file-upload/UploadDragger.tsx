@@ -15,7 +15,7 @@ const UploadDragger = () => {
   const props: UploadProps = {
     name: 'file',
     multiple: true,
-    accept: '.json,application/json',
+    accept: '.json,.log,.txt,.gz,.zst,.zip,.tar,.tgz,application/json',
     disabled: uploading,
     customRequest: async ({ file, onSuccess, onError }) => {
       if (!(file instanceof File)) {
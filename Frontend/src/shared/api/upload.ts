@@ -12,15 +12,6 @@ export interface UploadResult {
   failed: number;
 }
 
-const arrayBufferToBase64 = (buffer: ArrayBuffer) => {
-  const bytes = new Uint8Array(buffer);
-  let binary = '';
-  bytes.forEach((b) => {
-    binary += String.fromCharCode(b);
-  });
-  return btoa(binary);
-};
-
 export const uploadFile = async (file: File): Promise<UploadResult> => {
   if (ingestMode === 'grpc') {
     const buffer = await file.arrayBuffer();
@@ -37,27 +28,8 @@ export const uploadFile = async (file: File): Promise<UploadResult> => {
     };
   }
 
+  // rest и gateway принимают один и тот же multipart: шлюз пересылает файл в gRPC кусками
   const base = restBase;
-  if (ingestMode === 'gateway') {
-    const buffer = await file.arrayBuffer();
-    const payload = {
-      fileName: file.name,
-      contentBase64: arrayBufferToBase64(buffer),
-    };
-    const response = await fetch(`${base}/api/imports/upload`, {
-      method: 'POST',
-      headers: {
-        'Content-Type': 'application/json',
-      },
-      body: JSON.stringify(payload),
-    });
-    if (!response.ok) {
-      const text = await response.text();
-      throw new Error(text || response.statusText);
-    }
-    return (await response.json()) as UploadResult;
-  }
-
   const formData = new FormData();
   formData.append('file', file);
 
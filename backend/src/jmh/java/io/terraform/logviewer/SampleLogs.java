@@ -0,0 +1,93 @@
+package io.terraform.logviewer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Sample tflog files for the benchmarks: {@code -Dsamples.dir=...}, by default the
+ * {@code Terraform Logs} directory next to the backend.
+ */
+public final class SampleLogs {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private SampleLogs() {
+    }
+
+    public static Path directory() {
+        return Path.of(System.getProperty("samples.dir", "../Terraform Logs"));
+    }
+
+    /**
+     * Sample files in name order.
+     */
+    public static List<Path> files() {
+        try (Stream<Path> files = Files.list(directory())) {
+            return files.filter(file -> file.toString().endsWith(".json")).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Non-blank lines of one sample file, by file name.
+     */
+    public static List<String> lines(String fileName) {
+        return lines(directory().resolve(fileName));
+    }
+
+    /**
+     * Non-blank lines of every sample file.
+     */
+    public static List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        files().forEach(file -> lines.addAll(lines(file)));
+        return lines;
+    }
+
+    /**
+     * The same record as a plain-text line: {@code <timestamp> [LEVEL] <message> key=value...}.
+     */
+    public static String toPlain(String jsonLine) {
+        JsonNode root = readTree(jsonLine);
+        StringBuilder line = new StringBuilder()
+                .append(root.path("@timestamp").asText(""))
+                .append(" [").append(root.path("@level").asText("info").toUpperCase(Locale.ROOT)).append("] ")
+                .append(root.path("@message").asText(""));
+        for (Iterator<Map.Entry<String, JsonNode>> fields = root.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getKey().startsWith("@") || !field.getValue().isValueNode()) continue;
+            line.append(' ').append(field.getKey()).append('=').append(field.getValue().asText());
+        }
+        return line.toString();
+    }
+
+    public static JsonNode readTree(String jsonLine) {
+        try {
+            return MAPPER.readTree(jsonLine);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> lines(Path file) {
+        try {
+            return Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.isBlank())
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
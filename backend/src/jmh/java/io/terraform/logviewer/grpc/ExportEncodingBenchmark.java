@@ -0,0 +1,100 @@
+package io.terraform.logviewer.grpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.SampleLogs;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.parser.ParsedLogRecord;
+import io.terraform.logviewer.parser.TerraformLogParser;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Read side of stored entries: entity to {@link LogRecord}, and a record to a CSV or JSON report
+ * row. One operation covers every entry of the sample logs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportEncodingBenchmark {
+
+    private List<LogEntryEntity> entities;
+    private List<LogRecord> records;
+    private GrpcMapper mapper;
+    private ReportGrpcService reports;
+
+    @Setup
+    public void load() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        TerraformLogParser parser = new TerraformLogParser(objectMapper);
+        TerraformLogParser.ImportContext context = new TerraformLogParser.ImportContext(null, null);
+        mapper = new GrpcMapper();
+        // only the row encoders are used, they need neither the query side nor a request mapper
+        reports = new ReportGrpcService(null, mapper, null, objectMapper);
+
+        entities = new ArrayList<>();
+        long id = 0;
+        for (String line : SampleLogs.lines()) {
+            entities.add(toEntity(parser.parse(line, context), ++id));
+        }
+        records = entities.stream().map(mapper::toLogRecord).toList();
+    }
+
+    @Benchmark
+    public void toLogRecord(Blackhole blackhole) {
+        for (LogEntryEntity entity : entities) {
+            blackhole.consume(mapper.toLogRecord(entity));
+        }
+    }
+
+    @Benchmark
+    public void csvRow(Blackhole blackhole) {
+        for (LogRecord record : records) {
+            blackhole.consume(reports.recordToCsv(record));
+        }
+    }
+
+    @Benchmark
+    public void jsonRow(Blackhole blackhole) throws IOException {
+        for (LogRecord record : records) {
+            blackhole.consume(reports.recordToJson(record));
+        }
+    }
+
+    private static LogEntryEntity toEntity(ParsedLogRecord record, long id) {
+        LogEntryEntity entity = new LogEntryEntity();
+        entity.setId(id);
+        entity.setTimestamp(record.timestamp());
+        entity.setLevel(record.level());
+        entity.setSection(record.section());
+        entity.setModule(record.module());
+        entity.setMessage(record.message());
+        entity.setReqId(record.reqId());
+        entity.setTransactionId(record.transactionId());
+        entity.setRpc(record.rpc());
+        entity.setResourceType(record.resourceType());
+        entity.setDataSourceType(record.dataSourceType());
+        entity.setHttpOperationType(record.httpOperationType());
+        entity.setStatusCode(record.statusCode());
+        entity.setFileName("sample.json");
+        entity.setImportId("benchmark");
+        entity.setRawJson(record.rawJson());
+        entity.setUnread(true);
+        return entity;
+    }
+}
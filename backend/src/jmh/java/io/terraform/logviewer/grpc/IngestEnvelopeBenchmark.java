@@ -0,0 +1,120 @@
+package io.terraform.logviewer.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.terraform.logviewer.SampleLogs;
+import io.terraform.logviewer.service.LineSplitter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Ingest envelope variants on every line of the sample logs per operation: one line per message,
+ * batches of {@link #BATCH_LINES} lines and raw blocks of about {@link #BLOCK_BYTES}. {@code encode}
+ * is the client building and serializing the messages, {@code decode} is the server parsing them
+ * back into lines. Transport and storage are the same for all variants and are left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestEnvelopeBenchmark {
+
+    private static final int BATCH_LINES = 500;
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    @Param({"line", "batch", "block"})
+    public String mode;
+
+    private List<String> lines;
+    private List<byte[]> messages;
+
+    @Setup
+    public void load() {
+        lines = SampleLogs.lines();
+        messages = envelopes().stream().map(ImportEnvelope::toByteArray).toList();
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        for (ImportEnvelope envelope : envelopes()) {
+            blackhole.consume(envelope.toByteArray());
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) throws InvalidProtocolBufferException {
+        for (byte[] message : messages) {
+            ImportEnvelope envelope = ImportEnvelope.parseFrom(message);
+            switch (envelope.getPayloadCase()) {
+                case LINE -> blackhole.consume(envelope.getLine().getRawJson());
+                case BATCH -> envelope.getBatch().getRawJsonList().forEach(blackhole::consume);
+                case BLOCK -> {
+                    LineSplitter splitter = new LineSplitter(blackhole::consume);
+                    splitter.accept(envelope.getBlock());
+                    splitter.finish();
+                }
+                default -> throw new IllegalStateException("Unexpected payload " + envelope.getPayloadCase());
+            }
+        }
+    }
+
+    private List<ImportEnvelope> envelopes() {
+        return switch (mode) {
+            case "line" -> lines.stream()
+                    .map(line -> ImportEnvelope.newBuilder().setLine(LogLine.newBuilder().setRawJson(line)).build())
+                    .toList();
+            case "batch" -> batches();
+            case "block" -> blocks();
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        };
+    }
+
+    private List<ImportEnvelope> batches() {
+        List<ImportEnvelope> envelopes = new ArrayList<>();
+        for (int from = 0; from < lines.size(); from += BATCH_LINES) {
+            envelopes.add(ImportEnvelope.newBuilder()
+                    .setBatch(LogLineBatch.newBuilder()
+                            .addAllRawJson(lines.subList(from, Math.min(from + BATCH_LINES, lines.size()))))
+                    .build());
+        }
+        return envelopes;
+    }
+
+    private List<ImportEnvelope> blocks() {
+        List<ImportEnvelope> envelopes = new ArrayList<>();
+        StringBuilder block = new StringBuilder(BLOCK_BYTES + 1024);
+        for (String line : lines) {
+            block.append(line).append('\n');
+            if (block.length() >= BLOCK_BYTES) {
+                envelopes.add(block(block));
+                block.setLength(0);
+            }
+        }
+        if (!block.isEmpty()) {
+            envelopes.add(block(block));
+        }
+        return envelopes;
+    }
+
+    private static ImportEnvelope block(CharSequence lines) {
+        return ImportEnvelope.newBuilder()
+                .setBlock(ByteString.copyFrom(lines.toString(), StandardCharsets.UTF_8))
+                .build();
+    }
+}
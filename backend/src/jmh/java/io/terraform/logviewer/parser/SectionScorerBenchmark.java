@@ -0,0 +1,66 @@
+package io.terraform.logviewer.parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.terraform.logviewer.SampleLogs;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Section heuristics on the messages of the sample logs: one automaton pass against every
+ * pattern run on its own, as scoring did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SectionScorerBenchmark {
+
+    private List<String> messages;
+
+    @Setup
+    public void load() {
+        messages = SampleLogs.lines().stream()
+                .map(line -> {
+                    JsonNode message = SampleLogs.readTree(line).path("@message");
+                    return (message.isTextual() ? message.asText() : line).toLowerCase(Locale.ROOT);
+                })
+                .toList();
+    }
+
+    @Benchmark
+    public void automaton(Blackhole blackhole) {
+        for (String message : messages) {
+            blackhole.consume(SectionScorer.MATCHER.match(message));
+        }
+    }
+
+    @Benchmark
+    public void eachPattern(Blackhole blackhole) {
+        for (String message : messages) {
+            blackhole.consume(SectionScorer.MATCHER.matchEach(message));
+        }
+    }
+
+    @Benchmark
+    public void score(Blackhole blackhole) {
+        for (String message : messages) {
+            SectionScorer.Score score = new SectionScorer.Score();
+            SectionScorer.score(message, score, 3);
+            blackhole.consume(score.resolve());
+        }
+    }
+}
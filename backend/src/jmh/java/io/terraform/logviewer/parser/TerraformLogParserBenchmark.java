@@ -0,0 +1,70 @@
+package io.terraform.logviewer.parser;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.SampleLogs;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * One import of a sample file per operation, as JSON lines and as the same records in plain
+ * text. {@code prepare} is the part that runs on the parse workers, {@code parse} adds the
+ * ordered stage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TerraformLogParserBenchmark {
+
+    @Param({
+            "1. plan_test-k801vip_tflog.json",
+            "2. apply_test-k801vip_tflog.json",
+            "3. apply_tflog.json",
+            "4. tflog.json",
+            "5. tflog.json"
+    })
+    public String file;
+
+    @Param({"json", "plain"})
+    public String format;
+
+    private List<String> lines;
+    private TerraformLogParser parser;
+
+    @Setup
+    public void load() {
+        List<String> json = SampleLogs.lines(file);
+        lines = "plain".equals(format) ? json.stream().map(SampleLogs::toPlain).toList() : json;
+        parser = new TerraformLogParser(new ObjectMapper());
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        TerraformLogParser.ImportContext context = new TerraformLogParser.ImportContext(null, null);
+        for (String line : lines) {
+            blackhole.consume(parser.parse(line, context));
+        }
+    }
+
+    @Benchmark
+    public void prepare(Blackhole blackhole) {
+        TerraformLogParser.ImportContext context = new TerraformLogParser.ImportContext(null, null);
+        for (String line : lines) {
+            blackhole.consume(parser.prepare(line, context));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.terraform.logviewer.parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.terraform.logviewer.SampleLogs;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Timestamps of the sample logs: the hand-written ISO path against the formatter chain the
+ * parser used before, plus the plain-text prefix on {@code <timestamp> [LEVEL] message} lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimestampParserBenchmark {
+
+    private List<String> timestamps;
+    private List<String> plainLines;
+    private TimestampParser parser;
+
+    @Setup
+    public void load() {
+        timestamps = new ArrayList<>();
+        plainLines = new ArrayList<>();
+        for (String line : SampleLogs.lines()) {
+            JsonNode timestamp = SampleLogs.readTree(line).path("@timestamp");
+            if (!timestamp.isTextual()) continue;
+            timestamps.add(timestamp.asText());
+            plainLines.add(SampleLogs.toPlain(line));
+        }
+        parser = new TimestampParser();
+    }
+
+    @Benchmark
+    public void fastPath(Blackhole blackhole) {
+        for (String timestamp : timestamps) {
+            blackhole.consume(parser.parse(timestamp));
+        }
+    }
+
+    @Benchmark
+    public void formatters(Blackhole blackhole) {
+        for (String timestamp : timestamps) {
+            blackhole.consume(TimestampParser.parseEach(timestamp));
+        }
+    }
+
+    @Benchmark
+    public void plainPrefix(Blackhole blackhole) {
+        for (String line : plainLines) {
+            blackhole.consume(TimestampParser.parsePrefix(line));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.SampleLogs;
+import io.terraform.logviewer.TerraformLogViewerApplication;
+import io.terraform.logviewer.service.LogImportService.ImportSession;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * One import of a sample file per operation through {@link LogImportService} into PostgreSQL:
+ * row by row ({@code mode=row}), batched INSERTs ({@code batch}) and COPY ({@code copy}).
+ * Needs the database of the pg profile. Every import is discarded after the operation
+ * (rows, spans and its {@code tf_imports} record), so runs do not see each other as duplicates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ImportThroughputBenchmark {
+
+    @Param({
+            "1. plan_test-k801vip_tflog.json",
+            "2. apply_test-k801vip_tflog.json",
+            "3. apply_tflog.json",
+            "4. tflog.json",
+            "5. tflog.json"
+    })
+    public String file;
+
+    @Param({"row", "batch", "copy"})
+    public String mode;
+
+    private List<String> lines;
+    private ConfigurableApplicationContext context;
+    private LogImportService importService;
+    private ImportSession session;
+
+    @Setup
+    public void start() {
+        lines = SampleLogs.lines(file);
+        context = new SpringApplicationBuilder(TerraformLogViewerApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("pg")
+                .properties(
+                        "app.plugins.enabled=false",
+                        "app.clickhouse.enabled=false",
+                        "grpc.server.port=-1",
+                        "app.ingest.bulk.enabled=true",
+                        "row".equals(mode) ? "app.ingest.batch-size=1" : "app.ingest.batch-size=500")
+                .run();
+        importService = context.getBean(LogImportService.class);
+    }
+
+    @Benchmark
+    public long importFile() {
+        session = importService.startSession(file, -1, "copy".equals(mode));
+        for (String line : lines) {
+            importService.ingestLine(session, line);
+        }
+        importService.completeSession(session);
+        return session.getSaved();
+    }
+
+    @TearDown(Level.Invocation)
+    public void discard() {
+        // an import takes well over a millisecond, so a per-invocation teardown does not skew it
+        if (session.getSaved() != lines.size()) {
+            throw new IllegalStateException("Saved " + session.getSaved() + " of " + lines.size() + " lines");
+        }
+        importService.discardSession(session);
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+}
@@ -0,0 +1,80 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.repository.LogEntryCountRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * The {@code q} filter of Search on PostgreSQL: one operation is the first page (50 rows, newest
+ * first) plus its exact total, with the field-by-field LIKE ({@code indexed=false}) or through the
+ * pg_trgm and tsvector indexes. The SQL is {@link LogEntrySqlFilter}, which selects the same rows as
+ * the Search query. Needs the database of the pg profile, or {@code -Dbenchmark.db.url},
+ * {@code -Dbenchmark.db.user} and {@code -Dbenchmark.db.password} passed with {@code -jvmArgsAppend}.
+ * The synthetic import ({@code -p rows=...}) is seeded once and kept for later runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextSearchBenchmark {
+
+    private static final String IMPORT_ID = "text-search-benchmark";
+
+    @Param({"1000000"})
+    public long rows;
+
+    @Param({"bucket", "Error creating", "failed to create", "\"status\": 503", " \"id\": 42,", "s3_b\\_cket",
+            "ab", "no such text anywhere"})
+    public String q;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private JdbcTemplate jdbc;
+    private String pageSql;
+    private String countSql;
+    private Object[] args;
+
+    @Setup
+    public void seed() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getProperty("benchmark.db.url", "jdbc:postgresql://localhost:5433/tf_logs"),
+                System.getProperty("benchmark.db.user", "tf"),
+                System.getProperty("benchmark.db.password", "tfpwd"));
+        jdbc = new JdbcTemplate(dataSource);
+        TextSearchSamples.seed(jdbc, IMPORT_ID, rows);
+
+        QueryParameters parameters = new QueryParameters(0, 50, Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty(), false, Optional.of(q), Map.of("import_id", IMPORT_ID),
+                Optional.empty(), false, false, Optional.empty());
+        LogEntryCountRepository.Filter filter = LogEntrySqlFilter.of(parameters, indexed);
+        pageSql = "select id from tf_log_entries where " + filter.where() + " order by ts desc, id desc limit 50";
+        countSql = "select count(*) from tf_log_entries where " + filter.where();
+        args = filter.args().toArray();
+    }
+
+    @Benchmark
+    public long pageAndTotal() {
+        List<Long> page = jdbc.queryForList(pageSql, Long.class, args);
+        Long total = jdbc.queryForObject(countSql, Long.class, args);
+        return page.size() + (total != null ? total : 0);
+    }
+}
@@ -0,0 +1,251 @@
+package io.terraform.logviewer.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Настройки конвейера импорта логов (app.ingest.*).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.ingest")
+public class IngestProperties {
+
+    /**
+     * Сколько разобранных строк копится перед записью одной транзакцией.
+     * Значение 1 и меньше включает построчную запись через JPA.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Сколько потоков разбирают строки одного импорта параллельно.
+     * Значение 1 и меньше — разбор в потоке, который читает строки.
+     */
+    private int parseWorkers = 1;
+
+    /**
+     * Сколько строк импорта может ждать упорядоченной записи после разбора.
+     */
+    private int parseWindow = 1024;
+
+    /**
+     * Загрузка через PostgreSQL COPY.
+     */
+    private Bulk bulk = new Bulk();
+
+    /**
+     * Асинхронное аннотирование записей плагинами после коммита.
+     */
+    private Annotation annotation = new Annotation();
+
+    /**
+     * Приём клиентских стримов LogIngest с ручным flow control.
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * Фоновые задания импорта.
+     */
+    private Jobs jobs = new Jobs();
+
+    /**
+     * Повторные загрузки того же файла.
+     */
+    private Dedup dedup = new Dedup();
+
+    /**
+     * Загрузки-архивы (zip, tar).
+     */
+    private Archive archive = new Archive();
+
+    /**
+     * Чтение растущих логов из каталога по мере записи.
+     */
+    private Tail tail = new Tail();
+
+    /**
+     * Живые подписки на записываемые строки (LogQuery.Subscribe).
+     */
+    private Live live = new Live();
+
+    @Getter
+    @Setter
+    public static class Bulk {
+
+        /**
+         * Разрешить COPY-загрузку (по запросу клиента или по размеру файла).
+         */
+        private boolean enabled = false;
+
+        /**
+         * Файлы не меньше этого размера загружаются через COPY автоматически.
+         */
+        private DataSize threshold = DataSize.ofMegabytes(32);
+
+        /**
+         * Сколько строк передаётся в одном COPY (и одной транзакции).
+         */
+        private int batchSize = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Annotation {
+
+        /**
+         * Вызывать плагины после коммита в фоне. При false аннотации пишутся в той же транзакции.
+         */
+        private boolean async = true;
+
+        /**
+         * Сколько потоков прогоняют записи через плагины.
+         */
+        private int workers = 2;
+
+        /**
+         * Сколько пачек сверх занятых воркерами держится в памяти; остальные ждут в очереди БД
+         * и дочитываются оттуда, импорт их не ждёт.
+         */
+        private int queueCapacity = 256;
+
+        /**
+         * Сколько записей уходит плагинам и в UPDATE одной пачкой.
+         */
+        private int batchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Stream {
+
+        /**
+         * Сколько сообщений Ingest может ждать обработки; дальше клиент ждёт flow control.
+         */
+        private int window = 256;
+
+        /**
+         * То же для IngestChunks: чанки крупные, поэтому окно меньше.
+         */
+        private int chunkWindow = 8;
+
+        /**
+         * Сколько стримов импорта обрабатываются одновременно; остальные ждут свободный поток.
+         */
+        private int workers = 8;
+    }
+
+    @Getter
+    @Setter
+    public static class Jobs {
+
+        /**
+         * Сколько импортов выполняются одновременно; остальные ждут в очереди.
+         */
+        private int workers = 2;
+
+        /**
+         * Как часто подписчикам отправляется прогресс.
+         */
+        private Duration progressInterval = Duration.ofMillis(500);
+
+        /**
+         * Сколько последних заданий помнить для запросов прогресса.
+         */
+        private int retained = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Dedup {
+
+        /**
+         * Вести реестр импортов и узнавать уже загруженные файлы по SHA-256 содержимого.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Хранить хэш каждой строки, чтобы недогруженный импорт продолжался с недостающих строк.
+         */
+        private boolean lineHashes = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Archive {
+
+        /**
+         * Сколько файлов одного архива разбираются параллельно.
+         */
+        private int workers = 4;
+
+        /**
+         * Сколько всего байтов может дать распаковка одной загрузки (всех файлов архива вместе).
+         * Сжатие логов бывает стократным, но не тысячекратным — больше похоже на zip-бомбу.
+         */
+        private DataSize maxTotalSize = DataSize.ofGigabytes(20);
+
+        /**
+         * Сколько байтов может дать распаковка одного файла архива или одиночного сжатого лога.
+         */
+        private DataSize maxEntrySize = DataSize.ofGigabytes(4);
+
+        /**
+         * Сколько файлов может быть в одном архиве.
+         */
+        private int maxEntries = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Tail {
+
+        /**
+         * Следить за каталогом и импортировать файлы по мере роста.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Каталог, куда пишут логи (TF_LOG_PATH запусков Terraform).
+         */
+        private String directory;
+
+        /**
+         * Какие файлы каталога читать (glob по имени).
+         */
+        private String glob = "*.{log,json}";
+
+        /**
+         * Как часто проверять рост файлов, если ФС не прислала событие раньше.
+         */
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * Файл, который столько не растёт, считается дописанным: импорт завершается.
+         * Если файл снова вырастет, импорт продолжится под тем же import_id.
+         */
+        private Duration idleTimeout = Duration.ofMinutes(10);
+
+        /**
+         * Размер буфера одного чтения из файла.
+         */
+        private DataSize readBuffer = DataSize.ofMegabytes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Live {
+
+        /**
+         * Сколько записей ждут отправки одному подписчику; дальше новые пропускаются.
+         */
+        private int bufferSize = 1024;
+
+        /**
+         * Сколько потоков отправляют записи подписчикам.
+         */
+        private int workers = 2;
+    }
+}
@@ -22,6 +22,26 @@ public class PluginProperties {
      */
     private Duration deadline = Duration.ofSeconds(5);
 
+    /**
+     * Сколько событий может ждать ответа в стриме одного плагина.
+     */
+    private int maxInFlight = 256;
+
+    /**
+     * Пауза перед повторным открытием оборванного стрима к плагину.
+     */
+    private Duration reconnectBackoff = Duration.ofSeconds(1);
+
+    /**
+     * Circuit breaker на каждый плагин.
+     */
+    private Breaker breaker = new Breaker();
+
+    /**
+     * Дедлайн по наблюдаемым задержкам плагина (не больше {@link #deadline}).
+     */
+    private AdaptiveDeadline adaptiveDeadline = new AdaptiveDeadline();
+
     /**
      * Список плагинов.
      */
@@ -43,6 +63,38 @@ public class PluginProperties {
         this.deadline = deadline;
     }
 
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Duration getReconnectBackoff() {
+        return reconnectBackoff;
+    }
+
+    public void setReconnectBackoff(Duration reconnectBackoff) {
+        this.reconnectBackoff = reconnectBackoff;
+    }
+
+    public Breaker getBreaker() {
+        return breaker;
+    }
+
+    public void setBreaker(Breaker breaker) {
+        this.breaker = breaker;
+    }
+
+    public AdaptiveDeadline getAdaptiveDeadline() {
+        return adaptiveDeadline;
+    }
+
+    public void setAdaptiveDeadline(AdaptiveDeadline adaptiveDeadline) {
+        this.adaptiveDeadline = adaptiveDeadline;
+    }
+
     public List<PluginConfig> getPlugins() {
         return plugins;
     }
@@ -51,6 +103,91 @@ public class PluginProperties {
         this.plugins = plugins;
     }
 
+    /**
+     * Настройки circuit breaker.
+     */
+    public static class Breaker {
+        /**
+         * Сколько ошибок или таймаутов подряд размыкают цепь.
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * Сколько цепь остаётся разомкнутой до пробного вызова.
+         */
+        private Duration openDuration = Duration.ofSeconds(10);
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+    }
+
+    /**
+     * Настройки адаптивного дедлайна.
+     */
+    public static class AdaptiveDeadline {
+        private boolean enabled = true;
+
+        /**
+         * Перцентиль задержки, от которого считается дедлайн.
+         */
+        private double percentile = 0.99;
+
+        /**
+         * Запас поверх перцентиля.
+         */
+        private double multiplier = 3.0;
+
+        /**
+         * Нижняя граница дедлайна.
+         */
+        private Duration min = Duration.ofMillis(100);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public double getMultiplier() {
+            return multiplier;
+        }
+
+        public void setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        public Duration getMin() {
+            return min;
+        }
+
+        public void setMin(Duration min) {
+            this.min = min;
+        }
+    }
+
     /**
      * Конфигурация одного плагина.
      */
@@ -0,0 +1,127 @@
+package io.terraform.logviewer.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Настройки чтения логов (app.query.*).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.query")
+public class QueryProperties {
+
+    /**
+     * Подсчёт total в Search и total_groups в SearchGroups.
+     */
+    private Count count = new Count();
+
+    /**
+     * Фильтр q.
+     */
+    private TextSearch textSearch = new TextSearch();
+
+    /**
+     * Индекс импортов в файлах-сегментах: Search по одному импорту без запроса к БД.
+     */
+    private Segments segments = new Segments();
+
+    public enum CountStrategy {
+        /**
+         * count(*) по фильтру.
+         */
+        EXACT,
+        /**
+         * Оценка строк планировщиком PostgreSQL (EXPLAIN); малые оценки пересчитываются точно.
+         */
+        ESTIMATE
+    }
+
+    public enum GroupCountStrategy {
+        /**
+         * count(distinct req_id) по фильтру.
+         */
+        EXACT,
+        /**
+         * HyperLogLog по хешам req_id, погрешность около 2%.
+         */
+        APPROXIMATE
+    }
+
+    @Getter
+    @Setter
+    public static class Count {
+
+        /**
+         * Как считать записи Search. Оценки работают только на PostgreSQL, на других БД — точный подсчёт.
+         */
+        private CountStrategy strategy = CountStrategy.EXACT;
+
+        /**
+         * Как считать группы SearchGroups. Приближённый подсчёт — только на PostgreSQL.
+         */
+        private GroupCountStrategy groups = GroupCountStrategy.EXACT;
+
+        /**
+         * Оценка планировщика меньше порога пересчитывается точно: такой count(*) дёшев,
+         * а оценки малых выборок неточны.
+         */
+        private long estimateThreshold = 100_000;
+
+        /**
+         * Сколько живёт подсчёт для одного и того же фильтра. 0 — не кешировать.
+         */
+        private Duration cacheTtl = Duration.ZERO;
+
+        /**
+         * Сколько фильтров держит кеш подсчётов.
+         */
+        private int cacheSize = 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class TextSearch {
+
+        /**
+         * Искать через индексы pg_trgm и tsvector (миграция db/vendor/postgresql/V7). Только PostgreSQL;
+         * на других БД и при false — сравнение LIKE по каждому полю.
+         */
+        private boolean indexed = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Segments {
+
+        /**
+         * Строить сегмент каждого нового импорта и отвечать по нему на Search с фильтром import_id.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Каталог файлов сегментов.
+         */
+        private String directory = "data/segments";
+
+        /**
+         * Сколько байт сегментов держать отображёнными в память; сверх — закрываются давно не нужные.
+         */
+        private DataSize maxMapped = DataSize.ofGigabytes(1);
+
+        /**
+         * Импорт больше этого числа строк сегмент не получает: списки документов копятся
+         * в памяти до конца импорта.
+         */
+        private int maxEntries = 250_000;
+
+        /**
+         * Сколько памяти в куче могут вместе занять сегменты импортов, которые сейчас идут;
+         * импорт, которому не хватило, остаётся без сегмента.
+         */
+        private DataSize maxBuffered = DataSize.ofMegabytes(256);
+    }
+}
@@ -62,15 +62,20 @@ public class LogEntryEntity {
     @Column(name = "unread", nullable = false)
     private boolean unread = true;
 
-    @Lob
+    // text, а не @Lob: драйвер PostgreSQL читает @Lob как ссылку на large object (oid)
     @Column(name = "raw_json", columnDefinition = "text")
     private String rawJson;
 
-    @Lob
     @Column(name = "attrs_json", columnDefinition = "text")
     private String attrsJson;
 
-    @Lob
     @Column(name = "annotations_json", columnDefinition = "text")
     private String annotationsJson;
+
+    /**
+     * Номер строки в файле (старшие 32 бита) и хэш её текста: по нему дозагрузка
+     * того же файла пропускает уже сохранённые строки.
+     */
+    @Column(name = "line_hash")
+    private Long lineHash;
 }
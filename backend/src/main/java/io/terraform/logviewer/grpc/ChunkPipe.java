@@ -0,0 +1,117 @@
+package io.terraform.logviewer.grpc;
+
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченная труба между стримом чанков и читателем-распаковщиком: стрим кладёт чанки,
+ * читатель в другом потоке видит их как один {@link InputStream}. Если очередь полна,
+ * писатель ждёт — а вместе с ним и flow control стрима. Ожидание прерывают закрытие трубы
+ * читателем и {@link #fail(Throwable)} из любого потока (отмена стрима клиентом).
+ */
+final class ChunkPipe extends InputStream {
+
+    private static final ByteString END = ByteString.copyFromUtf8("\u0000end");
+    // ждущий писатель раз в этот срок проверяет, не закрыта ли труба: место, освобождённое
+    // fail(), может сразу занять END, и одного пробуждения тогда не хватит
+    private static final long WAKE_UP_MILLIS = 50;
+
+    private final BlockingQueue<ByteString> chunks;
+    private InputStream current = InputStream.nullInputStream();
+    private boolean ended;
+    private volatile boolean readerClosed;
+    private volatile Throwable failure;
+
+    ChunkPipe(int capacity) {
+        this.chunks = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+    }
+
+    /**
+     * Передать чанк читателю. Если читатель уже закрыл трубу (ошибка распаковки) или
+     * загрузка оборвана, чанк отбрасывается — результат импорта всё равно сообщит об ошибке.
+     */
+    void write(ByteString chunk) {
+        if (chunk.isEmpty()) return;
+        put(chunk);
+    }
+
+    void finish() {
+        put(END);
+    }
+
+    /**
+     * Оборвать загрузку: читатель получит {@link IOException}, а ждущий писатель — свободное место.
+     */
+    void fail(Throwable t) {
+        failure = t;
+        // если место займёт чанк писателя, а не END, читатель всё равно увидит failure на нём
+        chunks.clear();
+        chunks.offer(END);
+    }
+
+    private void put(ByteString chunk) {
+        if (readerClosed || failure != null) return;
+        try {
+            while (!chunks.offer(chunk, WAKE_UP_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (readerClosed || failure != null) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (readerClosed || failure != null) {
+            // труба закрылась, пока писатель ждал: чанк никто не прочтёт
+            chunks.clear();
+            if (failure != null) chunks.offer(END);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int read = read(one, 0, 1);
+        return read == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (true) {
+            int read = current.read(b, off, len);
+            if (read > 0) return read;
+            if (ended || !next()) return -1;
+        }
+    }
+
+    private boolean next() throws IOException {
+        ByteString chunk;
+        try {
+            chunk = chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrupted");
+        }
+        Throwable failed = failure;
+        if (failed != null) {
+            ended = true;
+            throw new IOException("Upload aborted: " + failed.getMessage(), failed);
+        }
+        if (chunk == END) {
+            ended = true;
+            return false;
+        }
+        current = chunk.newInput();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        readerClosed = true;
+        chunks.clear();
+    }
+}
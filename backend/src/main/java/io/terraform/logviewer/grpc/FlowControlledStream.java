@@ -0,0 +1,166 @@
+package io.terraform.logviewer.grpc;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Приёмник клиентского стрима с ручным flow control. Транспорт доставляет не больше
+ * {@code window} необработанных сообщений: они ждут в ограниченной очереди, а обрабатываются
+ * в пуле {@code executor} строго по одному на стрим. Следующее сообщение запрашивается
+ * только после обработки предыдущего, поэтому медленная БД притормаживает клиента,
+ * а не копит сообщения в куче, и транспортный поток не блокируется записью.
+ * Если стрим кончился не ответом (ошибка или отмена клиента, сбой обработки), вызывается
+ * {@link #abort(Throwable)}: там освобождается всё, что открыл стрим.
+ */
+@Slf4j
+abstract class FlowControlledStream<T> implements StreamObserver<T> {
+
+    private final StreamObserver<?> responseObserver;
+    private final ServerCallStreamObserver<?> call;
+    private final Executor executor;
+    private final BlockingQueue<T> queue;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean completed;
+    private volatile Throwable cancelled;
+    private volatile boolean finished;
+
+    FlowControlledStream(StreamObserver<?> responseObserver, Executor executor, int window) {
+        int size = Math.max(window, 1);
+        this.responseObserver = responseObserver;
+        this.queue = new ArrayBlockingQueue<>(size);
+        if (responseObserver instanceof ServerCallStreamObserver<?> serverCall) {
+            this.call = serverCall;
+            this.executor = executor;
+            serverCall.disableAutoRequest();
+            serverCall.request(size);
+            // отмена после onCompleted клиента не доходит до onError
+            serverCall.setOnCancelHandler(() -> onError(Status.CANCELLED.asRuntimeException()));
+        } else {
+            // вне сервера gRPC (тесты) — обрабатываем синхронно в onNext
+            this.call = null;
+            this.executor = Runnable::run;
+        }
+    }
+
+    /**
+     * Обработать очередное сообщение. Вызывается последовательно, не в транспортном потоке.
+     */
+    protected abstract void handle(T value);
+
+    /**
+     * Клиент закрыл стрим, все сообщения обработаны: отправить ответ.
+     */
+    protected abstract void complete();
+
+    /**
+     * Стрим оборван клиентом или упал при обработке; необработанные сообщения отброшены.
+     * Вызывается один раз и не вызывается после {@link #complete()}, завершившегося успешно.
+     */
+    protected void abort(Throwable t) {
+        log.warn("Import stream error: {}", t.getMessage());
+    }
+
+    /**
+     * Клиент оборвал стрим. Вызывается сразу, в транспортном потоке, пока {@link #handle} может
+     * ещё ждать в другом: здесь будят такое ожидание. Освобождать ресурсы — в {@link #abort}.
+     */
+    protected void cancelled(Throwable t) {
+    }
+
+    @Override
+    public final void onNext(T value) {
+        if (!queue.offer(value)) {
+            // при ручном flow control транспорт не отдаёт больше запрошенного
+            throw new IllegalStateException("Flow control window exceeded");
+        }
+        schedule();
+    }
+
+    @Override
+    public final void onError(Throwable t) {
+        cancelled = t;
+        cancelled(t);
+        schedule();
+    }
+
+    @Override
+    public final void onCompleted() {
+        completed = true;
+        schedule();
+    }
+
+    private void schedule() {
+        if (!draining.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            finish();
+            StatusRuntimeException error = Status.UNAVAILABLE.withDescription("Import workers are shutting down")
+                    .asRuntimeException();
+            responseObserver.onError(error);
+            abort(error);
+        }
+    }
+
+    private void drain() {
+        do {
+            T value;
+            while (!finished && (value = queue.poll()) != null) {
+                process(value);
+            }
+            if (!finished && cancelled != null) {
+                finish();
+                abort(cancelled);
+            } else if (!finished && completed && queue.isEmpty()) {
+                finish();
+                try {
+                    complete();
+                } catch (RuntimeException e) {
+                    fail(e);
+                    abort(e);
+                }
+            }
+            draining.set(false);
+        } while (hasWork() && draining.compareAndSet(false, true));
+    }
+
+    private void process(T value) {
+        try {
+            handle(value);
+        } catch (RuntimeException e) {
+            finish();
+            fail(e);
+            abort(e);
+            return;
+        }
+        if (call != null) {
+            call.request(1);
+        }
+    }
+
+    private boolean hasWork() {
+        return !finished && (!queue.isEmpty() || completed || cancelled != null);
+    }
+
+    private void finish() {
+        finished = true;
+        queue.clear();
+    }
+
+    private void fail(RuntimeException e) {
+        log.warn("Import stream failed: {}", e.getMessage());
+        // статус, выбранный обработчиком (например, INVALID_ARGUMENT для негодной загрузки), уходит как есть
+        responseObserver.onError(e instanceof StatusRuntimeException status
+                ? status
+                : Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+    }
+}
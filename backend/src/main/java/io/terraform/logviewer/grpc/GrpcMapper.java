@@ -7,6 +7,7 @@ import io.terraform.logviewer.grpc.LogRecord;
 import io.terraform.logviewer.grpc.TimelineItem;
 import io.terraform.logviewer.entity.LogBodyEntity;
 import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.repository.SectionSpanRepository;
 import io.terraform.logviewer.service.dto.LogGroupResult;
 import io.terraform.logviewer.service.dto.TimelinePoint;
 import java.time.format.DateTimeFormatter;
@@ -76,6 +77,24 @@ public class GrpcMapper {
         return builder.build();
     }
 
+    public SectionSpanItem toSectionSpanItem(SectionSpanRepository.Span span) {
+        SectionSpanItem.Builder builder = SectionSpanItem.newBuilder()
+                .setSpanNo(span.number())
+                .setSection(Optional.ofNullable(span.section()).orElse("unknown"))
+                .setStartLine(span.startLine())
+                .setEndLine(span.endLine())
+                .setStartEntryId(Optional.ofNullable(span.startEntryId()).orElse(0L))
+                .setEndEntryId(Optional.ofNullable(span.endEntryId()).orElse(0L))
+                .setClosed(span.closed());
+        if (span.startTs() != null) {
+            builder.setStartTs(ISO.format(span.startTs()));
+        }
+        if (span.endTs() != null) {
+            builder.setEndTs(ISO.format(span.endTs()));
+        }
+        return builder.build();
+    }
+
     public LogGroupItems toLogGroupItems(LogGroupResult result) {
         LogGroupItems.Builder builder = LogGroupItems.newBuilder()
                 .setReqId(Optional.ofNullable(result.reqId()).orElse(""));
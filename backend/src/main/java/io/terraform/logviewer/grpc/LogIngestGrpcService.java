@@ -1,14 +1,36 @@
 package io.terraform.logviewer.grpc;
 
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.service.ContentHasher;
+import io.terraform.logviewer.service.ImportJobService;
+import io.terraform.logviewer.service.LineSplitter;
+import io.terraform.logviewer.service.LogContentDecoder;
 import io.terraform.logviewer.service.LogImportService;
 import io.terraform.logviewer.service.LogImportService.ImportSession;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import io.terraform.logviewer.service.PluginAnnotationService;
+import io.terraform.logviewer.service.UploadImportService;
+import io.terraform.logviewer.service.UploadImportService.UploadResult;
+import io.terraform.logviewer.service.dto.ImportJobProgress;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Objects;
-import lombok.RequiredArgsConstructor;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.springframework.util.StringUtils;
@@ -18,43 +40,89 @@ import org.springframework.util.StringUtils;
  */
 @Slf4j
 @GrpcService
-@RequiredArgsConstructor
 public class LogIngestGrpcService extends LogIngestGrpc.LogIngestImplBase {
 
+    // сигнатуры gzip/zstd/zip видны по первым байтам, tar — по заголовку в 512 байт
+    private static final int FORMAT_PROBE_SIZE = 512;
+
     private final LogImportService importService;
+    private final PluginAnnotationService annotationService;
+    private final ImportJobService jobService;
+    private final UploadImportService uploadService;
+    private final IngestProperties.Stream streamProperties;
+    private final ExecutorService streamExecutor;
+
+    public LogIngestGrpcService(LogImportService importService,
+                                PluginAnnotationService annotationService,
+                                ImportJobService jobService,
+                                UploadImportService uploadService,
+                                IngestProperties properties) {
+        this.importService = importService;
+        this.annotationService = annotationService;
+        this.jobService = jobService;
+        this.uploadService = uploadService;
+        this.streamProperties = properties.getStream();
+        this.streamExecutor = Executors.newFixedThreadPool(Math.max(streamProperties.getWorkers(), 1),
+                Thread.ofPlatform().name("log-ingest-", 0).daemon(true).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        streamExecutor.shutdownNow();
+    }
 
     @Override
     public StreamObserver<ImportEnvelope> ingest(StreamObserver<ImportResult> responseObserver) {
-        return new StreamObserver<>() {
+        return new FlowControlledStream<>(responseObserver, streamExecutor, streamProperties.getWindow()) {
             private ImportSession session;
 
             @Override
-            public void onNext(ImportEnvelope value) {
+            protected void handle(ImportEnvelope value) {
                 if (value.hasMeta()) {
-                    session = importService.startSession(value.getMeta().getFileName());
+                    if (session != null) {
+                        // второй импорт в том же стриме оставил бы первый открытым; abort() его закроет
+                        throw Status.INVALID_ARGUMENT
+                                .withDescription("meta must be the first and only meta message of the stream")
+                                .asRuntimeException();
+                    }
+                    ImportMeta meta = value.getMeta();
+                    session = startSession(meta, meta.getFileName());
                     return;
                 }
-                if (value.hasLine()) {
-                    ensureSession();
-                    String raw = value.getLine().getRawJson();
-                    if (StringUtils.hasText(raw)) {
-                        importService.ingestLine(session, raw);
+                switch (value.getPayloadCase()) {
+                    case LINE -> ingestRaw(value.getLine().getRawJson());
+                    case BATCH -> value.getBatch().getRawJsonList().forEach(this::ingestRaw);
+                    case BLOCK -> {
+                        ensureSession();
+                        LineSplitter splitter = new LineSplitter(line -> importService.ingestFileLine(session, line));
+                        splitter.accept(value.getBlock());
+                        splitter.finish();
+                    }
+                    default -> {
                     }
                 }
             }
 
-            @Override
-            public void onError(Throwable t) {
-                log.warn("Import stream error: {}", t.getMessage());
+            private void ingestRaw(String raw) {
+                ensureSession();
+                // как строки блока: пробелы по краям срезаются, пустые пропускаются
+                importService.ingestFileLine(session, raw);
             }
 
             @Override
-            public void onCompleted() {
+            protected void complete() {
                 ensureSession();
+                importService.completeSession(session);
                 responseObserver.onNext(toResult(session));
                 responseObserver.onCompleted();
             }
 
+            @Override
+            protected void abort(Throwable t) {
+                super.abort(t);
+                if (session != null) importService.abandonSession(session);
+            }
+
             private void ensureSession() {
                 if (session == null) {
                     session = importService.startSession("grpc");
@@ -66,24 +134,367 @@ public class LogIngestGrpcService extends LogIngestGrpc.LogIngestImplBase {
     @Override
     public void ingestFile(ImportFile request, StreamObserver<ImportResult> responseObserver) {
         String fileName = StringUtils.hasText(request.getFileName()) ? request.getFileName() : "upload.json";
-        ImportSession session = importService.startSession(fileName);
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                new ByteArrayInputStream(request.getContent().toByteArray()),
-                StandardCharsets.UTF_8
-        ))) {
-            reader.lines()
-                    .map(String::trim)
-                    .filter(StringUtils::hasText)
-                    .forEach(line -> importService.ingestLine(session, line));
-        } catch (Exception e) {
+        UploadResult result;
+        try {
+            // ByteString читается потоком без копии в byte[]; сжатое распаковывается на лету
+            result = uploadService.importUpload(fileName, request.getContent().size(),
+                    request.hasBulkLoad() ? request.getBulkLoad() : null,
+                    ContentHasher.hash(request.getContent()), request.getContent().newInput());
+        } catch (IOException e) {
+            log.warn("Failed to read file {}: {}", fileName, e.getMessage());
+            responseObserver.onError(invalidUpload(fileName, e));
+            return;
+        } catch (RuntimeException e) {
             log.warn("Failed to ingest file {}: {}", fileName, e.getMessage());
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("Failed to import " + fileName + ": " + e.getMessage())
+                    .withCause(e)
+                    .asRuntimeException());
+            return;
         }
 
-        responseObserver.onNext(toResult(session));
+        responseObserver.onNext(toResult(result));
         responseObserver.onCompleted();
     }
 
+    @Override
+    public StreamObserver<FileChunk> ingestChunks(StreamObserver<ImportResult> responseObserver) {
+        return new FlowControlledStream<>(responseObserver, streamExecutor, streamProperties.getChunkWindow()) {
+            private ImportMeta meta = ImportMeta.getDefaultInstance();
+            // первые байты копятся, пока по сигнатуре не станет ясно, сжата ли загрузка
+            private ByteString head = ByteString.EMPTY;
+            // обычный текст режется на строки прямо здесь
+            private ImportSession session;
+            private LineSplitter splitter;
+            // сжатое или архив распаковывается в другом потоке
+            private volatile ChunkPipe pipe;
+            private CompletableFuture<UploadResult> decoded;
+            private final ContentHasher hasher = new ContentHasher();
+
+            @Override
+            protected void handle(FileChunk value) {
+                if (value.hasMeta()) {
+                    meta = value.getMeta();
+                    return;
+                }
+                if (!value.hasData()) return;
+                // дубликат не пишется, но отпечаток считается до конца: заявленный клиентом проверяется
+                hasher.update(value.getData());
+                if (session != null && session.isDuplicate()) return;
+                if (session == null && pipe == null) {
+                    head = head.concat(value.getData());
+                    if (head.size() >= FORMAT_PROBE_SIZE) {
+                        start();
+                    }
+                    return;
+                }
+                feed(value.getData());
+            }
+
+            private void start() {
+                byte[] probe = head.substring(0, Math.min(head.size(), FORMAT_PROBE_SIZE)).toByteArray();
+                ByteString first = head;
+                head = ByteString.EMPTY;
+                if (LogContentDecoder.detect(probe, probe.length) == LogContentDecoder.Format.PLAIN) {
+                    session = startSession(meta, fileName());
+                    splitter = new LineSplitter(line -> importService.ingestFileLine(session, line));
+                } else {
+                    pipe = new ChunkPipe(streamProperties.getChunkWindow());
+                    decoded = uploadService.importUploadAsync(fileName(),
+                            meta.hasSizeBytes() ? meta.getSizeBytes() : -1,
+                            meta.hasBulkLoad() ? meta.getBulkLoad() : null,
+                            meta.hasContentSha256() ? meta.getContentSha256() : null,
+                            pipe);
+                }
+                feed(first);
+            }
+
+            private void feed(ByteString data) {
+                if (pipe != null) {
+                    pipe.write(data);
+                } else if (!session.isDuplicate()) {
+                    splitter.accept(data);
+                }
+            }
+
+            private String fileName() {
+                return StringUtils.hasText(meta.getFileName()) ? meta.getFileName() : "upload.json";
+            }
+
+            @Override
+            protected void cancelled(Throwable t) {
+                // писатель может ждать места в трубе — будим его, не дожидаясь abort
+                ChunkPipe current = pipe;
+                if (current != null) current.fail(t);
+            }
+
+            @Override
+            protected void abort(Throwable t) {
+                log.warn("Chunked import stream error: {}", t.getMessage());
+                if (pipe != null) pipe.fail(t);
+                if (session != null) importService.abandonSession(session);
+            }
+
+            @Override
+            protected void complete() {
+                if (session == null && pipe == null) {
+                    start();
+                }
+                String contentHash = hasher.hex();
+                if (pipe != null) {
+                    pipe.finish();
+                    UploadResult result = joinUpload(decoded, fileName());
+                    if (!declaredHashMatches(contentHash)) {
+                        result.sessions().forEach(importService::discardSession);
+                        throw contentHashMismatch(fileName());
+                    }
+                    if (result.archive()) {
+                        responseObserver.onNext(toResult(result));
+                    } else {
+                        responseObserver.onNext(toResult(
+                                importService.recordContentHash(result.sessions().get(0), contentHash)));
+                    }
+                    responseObserver.onCompleted();
+                    return;
+                }
+                if (!session.isDuplicate()) {
+                    splitter.finish();
+                }
+                if (!declaredHashMatches(contentHash)) {
+                    // строки под чужим отпечатком не остаются; abort() закрывать уже нечего
+                    ImportSession rejected = session;
+                    session = null;
+                    importService.discardSession(rejected);
+                    throw contentHashMismatch(fileName());
+                }
+                if (!session.isDuplicate()) {
+                    importService.completeSession(session);
+                    // отпечаток по фактическим байтам: следующая загрузка этого файла станет дубликатом,
+                    // а если файл уже загружен другим импортом, ответом будет тот импорт
+                    session = importService.recordContentHash(session, contentHash);
+                }
+                responseObserver.onNext(toResult(session));
+                responseObserver.onCompleted();
+            }
+
+            private boolean declaredHashMatches(String contentHash) {
+                return !meta.hasContentSha256() || meta.getContentSha256().equalsIgnoreCase(contentHash);
+            }
+        };
+    }
+
+    private static UploadResult joinUpload(CompletableFuture<UploadResult> upload, String fileName) {
+        try {
+            return upload.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException io) throw invalidUpload(fileName, io);
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException("Failed to import " + fileName + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * {@code ImportMeta.content_sha256} не совпал с отпечатком полученных байтов.
+     */
+    private static StatusRuntimeException contentHashMismatch(String fileName) {
+        return Status.INVALID_ARGUMENT
+                .withDescription("content_sha256 of " + fileName + " does not match the uploaded content")
+                .asRuntimeException();
+    }
+
+    /**
+     * Загрузку нельзя прочитать: испорчено сжатие или превышены пределы распаковки.
+     */
+    private static StatusRuntimeException invalidUpload(String fileName, IOException e) {
+        return Status.INVALID_ARGUMENT
+                .withDescription("Failed to read " + fileName + ": " + e.getMessage())
+                .asRuntimeException();
+    }
+
+    @Override
+    public void getAnnotationStatus(AnnotationStatusRequest request, StreamObserver<AnnotationStatus> responseObserver) {
+        annotationService.progress(request.getImportId()).ifPresentOrElse(progress -> {
+            responseObserver.onNext(AnnotationStatus.newBuilder()
+                    .setImportId(progress.importId())
+                    .setSubmitted(progress.submitted())
+                    .setAnnotated(progress.annotated())
+                    .setUpdated(progress.updated())
+                    .setSkipped(progress.skipped())
+                    .setFailed(progress.failed())
+                    .setDone(progress.done())
+                    .build());
+            responseObserver.onCompleted();
+        }, () -> responseObserver.onError(
+                Status.NOT_FOUND.withDescription("No annotation progress for import").asRuntimeException()
+        ));
+    }
+
+    @Override
+    public void startImport(ImportFile request, StreamObserver<ImportJob> responseObserver) {
+        String fileName = StringUtils.hasText(request.getFileName()) ? request.getFileName() : "upload.json";
+        String importId = jobService.submit(fileName, request.getContent().size(),
+                request.hasBulkLoad() ? request.getBulkLoad() : null, ContentHasher.hash(request.getContent()),
+                request.getContent()::newInput);
+        responseObserver.onNext(ImportJob.newBuilder().setImportId(importId).setFileName(fileName).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Фоновый импорт потоком чанков: байты пишутся во временный файл, и задание ставится
+     * в очередь, только когда клиент закрыл стрим. Размер файла не ограничен размером сообщения.
+     */
+    @Override
+    public StreamObserver<FileChunk> startImportChunks(StreamObserver<ImportJob> responseObserver) {
+        return new FlowControlledStream<>(responseObserver, streamExecutor, streamProperties.getChunkWindow()) {
+            private ImportMeta meta = ImportMeta.getDefaultInstance();
+            private final ContentHasher hasher = new ContentHasher();
+            private Path spooled;
+            private OutputStream out;
+            private long size;
+
+            @Override
+            protected void handle(FileChunk value) {
+                if (value.hasMeta()) {
+                    meta = value.getMeta();
+                    return;
+                }
+                if (!value.hasData()) return;
+                try {
+                    ensureFile();
+                    value.getData().writeTo(out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to spool upload", e);
+                }
+                hasher.update(value.getData());
+                size += value.getData().size();
+            }
+
+            @Override
+            protected void complete() {
+                try {
+                    ensureFile();
+                    out.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to spool upload", e);
+                }
+                String fileName = StringUtils.hasText(meta.getFileName()) ? meta.getFileName() : "upload.json";
+                String importId = jobService.submit(fileName, size, meta.hasBulkLoad() ? meta.getBulkLoad() : null,
+                        hasher.hex(), ImportJobService.Content.temporaryFile(spooled));
+                responseObserver.onNext(ImportJob.newBuilder().setImportId(importId).setFileName(fileName).build());
+                responseObserver.onCompleted();
+            }
+
+            @Override
+            protected void abort(Throwable t) {
+                super.abort(t);
+                if (spooled == null) return;
+                try {
+                    out.close();
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    log.warn("Failed to delete {}: {}", spooled, e.getMessage());
+                }
+            }
+
+            private void ensureFile() throws IOException {
+                if (spooled == null) {
+                    spooled = Files.createTempFile("logviewer-import-", ".log");
+                    out = new BufferedOutputStream(Files.newOutputStream(spooled));
+                }
+            }
+        };
+    }
+
+    @Override
+    public void watchImport(ImportJobRequest request, StreamObserver<ImportProgress> responseObserver) {
+        AtomicReference<ScheduledFuture<?>> subscription = new AtomicReference<>();
+        if (responseObserver instanceof ServerCallStreamObserver<ImportProgress> call) {
+            // обработчик ставится до подписки: первый прогресс уходит из другого потока сразу
+            call.setOnCancelHandler(() -> {
+                ScheduledFuture<?> current = subscription.get();
+                if (current != null) current.cancel(false);
+            });
+        }
+        jobService.watch(request.getImportId(), progress -> {
+            responseObserver.onNext(toProgress(progress));
+            if (progress.state().isTerminal()) {
+                responseObserver.onCompleted();
+            }
+        }).ifPresentOrElse(subscription::set, () -> responseObserver.onError(jobNotFound()));
+    }
+
+    @Override
+    public void getImportProgress(ImportJobRequest request, StreamObserver<ImportProgress> responseObserver) {
+        reply(jobService.progress(request.getImportId()), responseObserver);
+    }
+
+    @Override
+    public void cancelImport(ImportJobRequest request, StreamObserver<ImportProgress> responseObserver) {
+        reply(jobService.cancel(request.getImportId()), responseObserver);
+    }
+
+    private static void reply(Optional<ImportJobProgress> progress, StreamObserver<ImportProgress> responseObserver) {
+        progress.ifPresentOrElse(value -> {
+            responseObserver.onNext(toProgress(value));
+            responseObserver.onCompleted();
+        }, () -> responseObserver.onError(jobNotFound()));
+    }
+
+    private static RuntimeException jobNotFound() {
+        return Status.NOT_FOUND.withDescription("No import job with this id").asRuntimeException();
+    }
+
+    private static ImportProgress toProgress(ImportJobProgress progress) {
+        ImportProgress.Builder builder = ImportProgress.newBuilder()
+                .setImportId(progress.importId())
+                .setFileName(Objects.toString(progress.fileName(), ""))
+                .setState(switch (progress.state()) {
+                    case QUEUED -> ImportState.IMPORT_STATE_QUEUED;
+                    case RUNNING -> ImportState.IMPORT_STATE_RUNNING;
+                    case COMPLETED -> ImportState.IMPORT_STATE_COMPLETED;
+                    case FAILED -> ImportState.IMPORT_STATE_FAILED;
+                    case CANCELLED -> ImportState.IMPORT_STATE_CANCELLED;
+                })
+                .setLinesRead(progress.linesRead())
+                .setParsed(progress.parsed())
+                .setSaved(progress.saved())
+                .setFailed(progress.failed())
+                .setBytesRead(progress.bytesRead())
+                .setTotalBytes(progress.totalBytes())
+                .setBytesPerSecond(progress.bytesPerSecond())
+                .setEtaSeconds(progress.etaSeconds());
+        if (progress.error() != null) {
+            builder.setError(progress.error());
+        }
+        return builder.build();
+    }
+
+    private ImportSession startSession(ImportMeta meta, String fileName) {
+        return importService.startSession(fileName,
+                meta.hasSizeBytes() ? meta.getSizeBytes() : -1,
+                meta.hasBulkLoad() ? meta.getBulkLoad() : null,
+                meta.hasContentSha256() ? meta.getContentSha256() : null);
+    }
+
+    private ImportResult toResult(UploadResult result) {
+        if (!result.archive()) {
+            return toResult(result.sessions().get(0));
+        }
+        // архив: сводные счётчики, import_id первого файла и по результату на файл
+        ImportResult.Builder builder = ImportResult.newBuilder()
+                .setImportId(result.importId())
+                .setFileName(result.fileName())
+                .setTotal(result.total())
+                .setSaved(result.saved())
+                .setFailed(result.failed())
+                .setDuplicate(result.duplicate());
+        result.entries().forEach(entry -> builder.addEntries(entry.isFailed()
+                ? ImportResult.newBuilder().setFileName(entry.fileName()).setError(entry.error()).build()
+                : toResult(entry.session())));
+        return builder.build();
+    }
+
     private ImportResult toResult(ImportSession session) {
         Objects.requireNonNull(session, "Import session must not be null");
         return ImportResult.newBuilder()
@@ -92,6 +503,7 @@ public class LogIngestGrpcService extends LogIngestGrpc.LogIngestImplBase {
                 .setTotal(session.getTotal())
                 .setSaved(session.getSaved())
                 .setFailed(session.getFailed())
+                .setDuplicate(session.isDuplicate())
                 .build();
     }
 }
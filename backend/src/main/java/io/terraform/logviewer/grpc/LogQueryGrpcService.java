@@ -1,12 +1,16 @@
 package io.terraform.logviewer.grpc;
 
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import io.terraform.logviewer.entity.LogBodyEntity;
 import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.service.LiveTailService;
 import io.terraform.logviewer.service.LogQueryService;
+import io.terraform.logviewer.service.dto.CursorPage;
 import io.terraform.logviewer.service.dto.GroupQueryResult;
 import io.terraform.logviewer.service.dto.QueryParameters;
+import io.terraform.logviewer.service.dto.SearchPage;
 import io.terraform.logviewer.service.dto.TimelinePoint;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeParseException;
@@ -29,17 +33,23 @@ public class LogQueryGrpcService extends LogQueryGrpc.LogQueryImplBase {
     private final LogQueryService queryService;
     private final GrpcMapper mapper;
     private final QueryRequestMapper requestMapper;
-
+    private final LiveTailService liveTail;
 
 
     @Override
     @Transactional(readOnly = true)
     public void search(QueryRequest request, StreamObserver<QueryResponse> responseObserver) {
         QueryParameters parameters = requestMapper.toParameters(request);
-        Page<LogEntryEntity> page = queryService.search(parameters);
+        if (parameters.cursor().isPresent()) {
+            searchAfter(parameters, responseObserver);
+            return;
+        }
+        SearchPage result = queryService.search(parameters);
+        Page<LogEntryEntity> page = result.page();
 
         QueryResponse.Builder builder = QueryResponse.newBuilder()
                 .setTotal(page.getTotalElements())
+                .setTotalExact(result.totalExact())
                 .setPage(page.getNumber())
                 .setSize(page.getSize());
 
@@ -52,6 +62,31 @@ public class LogQueryGrpcService extends LogQueryGrpc.LogQueryImplBase {
         responseObserver.onCompleted();
     }
 
+    /**
+     * Режим курсора: total не считается (-1, total_exact = false), page всегда 0, продолжение — в next_cursor.
+     */
+    private void searchAfter(QueryParameters parameters, StreamObserver<QueryResponse> responseObserver) {
+        CursorPage page;
+        try {
+            page = queryService.searchAfter(parameters);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        QueryResponse.Builder builder = QueryResponse.newBuilder()
+                .setTotal(-1)
+                .setPage(0)
+                .setSize(parameters.size());
+        page.nextCursor().ifPresent(builder::setNextCursor);
+        page.items().stream()
+                .map(mapper::toLogRecord)
+                .forEach(builder::addItems);
+
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public void searchGroups(GroupQueryRequest request, StreamObserver<GroupQueryResponse> responseObserver) {
@@ -61,6 +96,7 @@ public class LogQueryGrpcService extends LogQueryGrpc.LogQueryImplBase {
 
         GroupQueryResponse.Builder builder = GroupQueryResponse.newBuilder()
                 .setTotalGroups(result.totalGroups())
+                .setTotalGroupsExact(result.totalExact())
                 .setPage(parameters.page())
                 .setSize(parameters.size());
 
@@ -141,6 +177,49 @@ public class LogQueryGrpcService extends LogQueryGrpc.LogQueryImplBase {
         responseObserver.onCompleted();
     }
 
+    @Override
+    public void sectionSpans(SectionSpansRequest request, StreamObserver<SectionSpanItem> responseObserver) {
+        if (!StringUtils.hasText(request.getImportId())) {
+            responseObserver.onError(
+                    Status.INVALID_ARGUMENT.withDescription("import_id is required").asRuntimeException()
+            );
+            return;
+        }
+        queryService.sectionSpans(request.getImportId()).stream()
+                .map(mapper::toSectionSpanItem)
+                .forEach(responseObserver::onNext);
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Без транзакции: записи приходят из импорта уже закоммиченными, стрим живёт до отмены клиентом.
+     */
+    @Override
+    public void subscribe(QueryRequest request, StreamObserver<SubscriptionEvent> responseObserver) {
+        ServerCallStreamObserver<SubscriptionEvent> call = (ServerCallStreamObserver<SubscriptionEvent>) responseObserver;
+        LiveTailService.Subscription subscription = liveTail.subscribe(requestMapper.toParameters(request),
+                new LiveTailService.Sink() {
+                    @Override
+                    public boolean isReady() {
+                        return call.isReady() && !call.isCancelled();
+                    }
+
+                    @Override
+                    public void onEntry(LogEntryEntity entry) {
+                        call.onNext(SubscriptionEvent.newBuilder().setRecord(mapper.toLogRecord(entry)).build());
+                    }
+
+                    @Override
+                    public void onLag(long dropped, long droppedTotal) {
+                        call.onNext(SubscriptionEvent.newBuilder()
+                                .setLag(SubscriptionLag.newBuilder().setDropped(dropped).setDroppedTotal(droppedTotal))
+                                .build());
+                    }
+                });
+        call.setOnCancelHandler(subscription::cancel);
+        call.setOnReadyHandler(subscription::drain);
+    }
+
     private Optional<OffsetDateTime> parseTimestamp(String value) {
         if (!StringUtils.hasText(value)) return Optional.empty();
         try {
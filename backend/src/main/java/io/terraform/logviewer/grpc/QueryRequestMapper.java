@@ -31,6 +31,8 @@ public class QueryRequestMapper {
                 .filter(StringUtils::hasText);
         boolean sortDesc = request.hasSortDesc() && request.getSortDesc();
         boolean groupByReqId = request.hasGroupByReqId() && request.getGroupByReqId();
+        // пустой cursor — первая страница в режиме курсора, отсутствующий — обычная пагинация
+        Optional<String> cursor = request.hasCursor() ? Optional.of(request.getCursor()) : Optional.empty();
 
         return new QueryParameters(
                 page,
@@ -44,7 +46,8 @@ public class QueryRequestMapper {
                 filters,
                 sortBy,
                 sortDesc,
-                groupByReqId
+                groupByReqId,
+                cursor
         );
     }
 
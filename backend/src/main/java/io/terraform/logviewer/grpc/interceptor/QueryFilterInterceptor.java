@@ -41,6 +41,7 @@ public class QueryFilterInterceptor implements ServerInterceptor {
         boolean supported = LogQueryGrpc.getSearchMethod().getFullMethodName().equals(methodName)
                 || LogQueryGrpc.getExportMethod().getFullMethodName().equals(methodName)
                 || LogQueryGrpc.getSearchGroupsMethod().getFullMethodName().equals(methodName)
+                || LogQueryGrpc.getSubscribeMethod().getFullMethodName().equals(methodName)
                 || ReportServiceGrpc.getExportMethod().getFullMethodName().equals(methodName);
 
         if (!supported) {
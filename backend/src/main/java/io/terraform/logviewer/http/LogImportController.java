@@ -1,23 +1,34 @@
 package io.terraform.logviewer.http;
 
-import io.terraform.logviewer.service.LogImportService;
+import io.terraform.logviewer.service.ContentHasher;
+import io.terraform.logviewer.service.ImportJobService;
 import io.terraform.logviewer.service.LogQueryService;
+import io.terraform.logviewer.service.PluginAnnotationService;
+import io.terraform.logviewer.service.UploadImportService;
+import io.terraform.logviewer.service.UploadImportService.UploadResult;
+import io.terraform.logviewer.service.dto.AnnotationProgress;
+import io.terraform.logviewer.service.dto.ImportJobProgress;
 import io.terraform.logviewer.service.dto.ImportSummary;
 import io.terraform.logviewer.service.LogImportService.ImportSession;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/imports")
@@ -25,25 +36,67 @@ import org.springframework.web.multipart.MultipartFile;
 @ConditionalOnProperty(name = "logviewer.ingest.http-mode", havingValue = "rest", matchIfMissing = true)
 public class LogImportController {
 
-    private final LogImportService importService;
     private final LogQueryService queryService;
+    private final PluginAnnotationService annotationService;
+    private final ImportJobService jobService;
+    private final UploadImportService uploadService;
 
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ImportResponse upload(@RequestPart("file") MultipartFile file) throws Exception {
+    public ImportResponse upload(@RequestPart("file") MultipartFile file,
+                                 @RequestParam(value = "bulk", required = false) Boolean bulk) throws Exception {
         String fileName = StringUtils.hasText(file.getOriginalFilename())
                 ? file.getOriginalFilename()
                 : "upload.json";
-        ImportSession session = importService.startSession(fileName);
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                file.getInputStream(),
-                StandardCharsets.UTF_8
-        ))) {
-            reader.lines()
-                    .map(String::trim)
-                    .filter(StringUtils::hasText)
-                    .forEach(line -> importService.ingestLine(session, line));
+        String contentHash;
+        try (InputStream content = file.getInputStream()) {
+            contentHash = ContentHasher.hash(content);
         }
-        return ImportResponse.fromSession(session);
+        // gzip/zstd распаковываются потоком, файлы zip/tar становятся отдельными импортами
+        try (InputStream content = file.getInputStream()) {
+            return ImportResponse.fromUpload(uploadService.importUpload(fileName, file.getSize(), bulk, contentHash, content));
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Failed to read " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Фоновый импорт: файл сохраняется во временный и разбирается после ответа.
+     */
+    @PostMapping(value = "/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportJobResponse startJob(@RequestPart("file") MultipartFile file,
+                                      @RequestParam(value = "bulk", required = false) Boolean bulk) throws Exception {
+        String fileName = StringUtils.hasText(file.getOriginalFilename())
+                ? file.getOriginalFilename()
+                : "upload.json";
+        Path stored = Files.createTempFile("logviewer-import-", ".log");
+        try {
+            file.transferTo(stored);
+        } catch (Exception e) {
+            Files.deleteIfExists(stored);
+            throw e;
+        }
+        String contentHash;
+        try (InputStream content = Files.newInputStream(stored)) {
+            contentHash = ContentHasher.hash(content);
+        } catch (Exception e) {
+            Files.deleteIfExists(stored);
+            throw e;
+        }
+        String importId = jobService.submit(fileName, file.getSize(), bulk, contentHash,
+                ImportJobService.Content.temporaryFile(stored));
+        return new ImportJobResponse(importId, fileName);
+    }
+
+    @GetMapping("/{importId}/progress")
+    public ImportJobProgress jobProgress(@PathVariable String importId) {
+        return jobService.progress(importId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    @PostMapping("/{importId}/cancel")
+    public ImportJobProgress cancelJob(@PathVariable String importId) {
+        return jobService.cancel(importId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
     @GetMapping
@@ -53,16 +106,52 @@ public class LogImportController {
                 .toList();
     }
 
-    public record ImportResponse(String importId, String fileName, long total, long saved, long failed) {
+    @GetMapping("/{importId}/annotations")
+    public AnnotationProgress annotationProgress(@PathVariable String importId) {
+        return annotationService.progress(importId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    public record ImportResponse(String importId, String fileName, long total, long saved, long failed,
+                                 boolean duplicate, List<ImportResponse> entries, String error) {
         static ImportResponse fromSession(ImportSession session) {
             return new ImportResponse(
                     session.getImportId(),
                     session.getFileName(),
                     session.getTotal(),
                     session.getSaved(),
-                    session.getFailed()
+                    session.getFailed(),
+                    session.isDuplicate(),
+                    null,
+                    null
             );
         }
+
+        static ImportResponse fromEntry(UploadImportService.EntryResult entry) {
+            if (!entry.isFailed()) {
+                return fromSession(entry.session());
+            }
+            return new ImportResponse(null, entry.fileName(), 0, 0, 0, false, null, entry.error());
+        }
+
+        static ImportResponse fromUpload(UploadResult result) {
+            if (!result.archive()) {
+                return fromSession(result.sessions().get(0));
+            }
+            return new ImportResponse(
+                    result.importId(),
+                    result.fileName(),
+                    result.total(),
+                    result.saved(),
+                    result.failed(),
+                    result.duplicate(),
+                    result.entries().stream().map(ImportResponse::fromEntry).toList(),
+                    null
+            );
+        }
+    }
+
+    public record ImportJobResponse(String importId, String fileName) {
     }
 
     public record ImportSummaryResponse(
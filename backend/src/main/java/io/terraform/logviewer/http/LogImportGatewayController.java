@@ -1,23 +1,59 @@
 package io.terraform.logviewer.http;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.protobuf.ByteString;
-import io.terraform.logviewer.grpc.ImportFile;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import io.terraform.logviewer.grpc.AnnotationStatus;
+import io.terraform.logviewer.grpc.AnnotationStatusRequest;
+import io.terraform.logviewer.grpc.FileChunk;
+import io.terraform.logviewer.grpc.ImportJob;
+import io.terraform.logviewer.grpc.ImportJobRequest;
+import io.terraform.logviewer.grpc.ImportMeta;
+import io.terraform.logviewer.grpc.ImportProgress;
 import io.terraform.logviewer.grpc.ImportResult;
 import io.terraform.logviewer.grpc.LogIngestGrpc;
+import io.terraform.logviewer.service.ContentHasher;
 import io.terraform.logviewer.service.LogQueryService;
+import io.terraform.logviewer.service.dto.AnnotationProgress;
+import io.terraform.logviewer.service.dto.ImportJobProgress;
 import io.terraform.logviewer.service.dto.ImportSummary;
-import java.util.Base64;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/imports")
@@ -25,27 +61,238 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class LogImportGatewayController {
 
+    private static final int CHUNK_SIZE = 256 * 1024;
+
     @GrpcClient("logviewer")
     private LogIngestGrpc.LogIngestBlockingStub ingestStub;
 
+    @GrpcClient("logviewer")
+    private LogIngestGrpc.LogIngestStub ingestAsyncStub;
+
     private final LogQueryService queryService;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * JSON-загрузка {@code {"fileName", "contentBase64", "bulkLoad"}}. Тело читается потоковым
+     * парсером, base64 декодируется кусками во временный файл, поэтому ни строка base64,
+     * ни файл целиком в памяти не держатся, а поля могут идти в любом порядке.
+     */
     @PostMapping(value = "/upload", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ImportResponse upload(@RequestBody GatewayRequest request) {
-        String fileName = StringUtils.hasText(request.fileName()) ? request.fileName() : "upload.json";
-        byte[] payload = request.decode();
-
-        ImportResult result = ingestStub.ingestFile(ImportFile.newBuilder()
-                .setFileName(fileName)
-                .setContent(ByteString.copyFrom(payload))
-                .build());
-
-        return new ImportResponse(
-                result.getImportId(),
-                result.getFileName(),
-                result.getTotal(),
-                result.getSaved(),
-                result.getFailed()
+    public ImportResponse upload(InputStream body) throws IOException {
+        Path spooled = Files.createTempFile("logviewer-upload-", ".log");
+        try {
+            JsonUpload request = readJsonUpload(objectMapper, body, spooled);
+            try (InputStream content = Files.newInputStream(spooled)) {
+                return forward(request.fileName(), Files.size(spooled), request.bulkLoad(), request.contentHash(),
+                        content);
+            }
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    static JsonUpload readJsonUpload(ObjectMapper objectMapper, InputStream body, Path target) throws IOException {
+        String fileName = null;
+        Boolean bulkLoad = null;
+        ContentHasher hasher = new ContentHasher();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) continue;
+                switch (field) {
+                    case "fileName" -> fileName = parser.getValueAsString();
+                    case "bulkLoad" -> bulkLoad = parser.getValueAsBoolean();
+                    case "contentBase64" -> {
+                        try (OutputStream out = new FilterOutputStream(Files.newOutputStream(target)) {
+                            @Override
+                            public void write(byte[] b, int off, int len) throws IOException {
+                                hasher.update(b, off, len);
+                                out.write(b, off, len);
+                            }
+                        }) {
+                            parser.readBinaryValue(out);
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed upload: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            // так Jackson сообщает о неверном base64
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed upload: " + e.getMessage());
+        }
+        return new JsonUpload(fileName, bulkLoad, hasher.hex());
+    }
+
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportResponse uploadMultipart(@RequestPart("file") MultipartFile file,
+                                          @RequestParam(value = "bulk", required = false) Boolean bulk) throws IOException {
+        // файл уже на диске — отпечаток позволяет серверу узнать дубликат до пересылки
+        String contentHash;
+        try (InputStream content = file.getInputStream()) {
+            contentHash = ContentHasher.hash(content);
+        }
+        try (InputStream content = file.getInputStream()) {
+            return forward(file.getOriginalFilename(), file.getSize(), bulk, contentHash, content);
+        }
+    }
+
+    @PostMapping(value = "/upload", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ImportResponse uploadStream(@RequestParam(value = "fileName", required = false) String fileName,
+                                       @RequestParam(value = "bulk", required = false) Boolean bulk,
+                                       @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long length,
+                                       InputStream content) throws IOException {
+        return forward(fileName, length != null ? length : -1, bulk, null, content);
+    }
+
+    private ImportResponse forward(String fileName, long size, Boolean bulk, String contentHash,
+                                   InputStream content) throws IOException {
+        ImportResult imported = sendChunks(meta(fileName, size, bulk, contentHash), content,
+                ingestAsyncStub::ingestChunks);
+        return ImportResponse.fromResult(imported);
+    }
+
+    private static ImportMeta meta(String fileName, long size, Boolean bulk, String contentHash) {
+        ImportMeta.Builder meta = ImportMeta.newBuilder()
+                .setFileName(StringUtils.hasText(fileName) ? fileName : "upload.json");
+        if (size >= 0) {
+            meta.setSizeBytes(size);
+        }
+        if (bulk != null) {
+            meta.setBulkLoad(bulk);
+        }
+        if (contentHash != null) {
+            meta.setContentSha256(contentHash);
+        }
+        return meta.build();
+    }
+
+    /**
+     * Пересылает файл в клиентский стрим {@code FileChunk} кусками по {@link #CHUNK_SIZE}.
+     * Следующий кусок читается, только когда gRPC-стрим готов его принять, поэтому в памяти
+     * держится не больше пары чанков, каким бы большим ни был файл.
+     */
+    private static <R> R sendChunks(ImportMeta meta, InputStream content,
+                                    Function<StreamObserver<R>, StreamObserver<FileChunk>> call) throws IOException {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Semaphore ready = new Semaphore(0);
+        ClientCallStreamObserver<FileChunk> requests = (ClientCallStreamObserver<FileChunk>) call.apply(
+                new ClientResponseObserver<FileChunk, R>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<FileChunk> requestStream) {
+                        requestStream.setOnReadyHandler(ready::release);
+                    }
+
+                    @Override
+                    public void onNext(R value) {
+                        result.complete(value);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        result.completeExceptionally(t);
+                        ready.release();
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+
+        try {
+            requests.onNext(FileChunk.newBuilder().setMeta(meta).build());
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            while (!result.isDone() && (read = content.readNBytes(buffer, 0, buffer.length)) > 0) {
+                while (!requests.isReady() && !result.isDone()) {
+                    ready.tryAcquire(100, TimeUnit.MILLISECONDS);
+                }
+                requests.onNext(FileChunk.newBuilder().setData(ByteString.copyFrom(buffer, 0, read)).build());
+            }
+            requests.onCompleted();
+        } catch (IOException | RuntimeException e) {
+            requests.onError(Status.CANCELLED.withDescription("Upload aborted").withCause(e).asRuntimeException());
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requests.onError(Status.CANCELLED.withDescription("Upload interrupted").asRuntimeException());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Фоновый импорт через LogIngest.StartImportChunks: файл уходит кусками, как и при
+     * синхронной загрузке, так что его размер не упирается в {@code max-inbound-message-size}.
+     */
+    @PostMapping(value = "/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportJobResponse startJob(@RequestPart("file") MultipartFile file,
+                                      @RequestParam(value = "bulk", required = false) Boolean bulk) throws IOException {
+        ImportJob job;
+        try (InputStream content = file.getInputStream()) {
+            job = sendChunks(meta(file.getOriginalFilename(), file.getSize(), bulk, null), content,
+                    ingestAsyncStub::startImportChunks);
+        }
+        return new ImportJobResponse(job.getImportId(), job.getFileName());
+    }
+
+    @GetMapping("/{importId}/progress")
+    public ImportJobProgress jobProgress(@PathVariable String importId) {
+        return toJobProgress(callJob(() -> ingestStub.getImportProgress(jobRequest(importId))));
+    }
+
+    @PostMapping("/{importId}/cancel")
+    public ImportJobProgress cancelJob(@PathVariable String importId) {
+        return toJobProgress(callJob(() -> ingestStub.cancelImport(jobRequest(importId))));
+    }
+
+    private static ImportJobRequest jobRequest(String importId) {
+        return ImportJobRequest.newBuilder().setImportId(importId).build();
+    }
+
+    private static ImportProgress callJob(Supplier<ImportProgress> call) {
+        try {
+            return call.get();
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+            throw e;
+        }
+    }
+
+    private static ImportJobProgress toJobProgress(ImportProgress progress) {
+        ImportJobProgress.State state = switch (progress.getState()) {
+            case IMPORT_STATE_RUNNING -> ImportJobProgress.State.RUNNING;
+            case IMPORT_STATE_COMPLETED -> ImportJobProgress.State.COMPLETED;
+            case IMPORT_STATE_FAILED -> ImportJobProgress.State.FAILED;
+            case IMPORT_STATE_CANCELLED -> ImportJobProgress.State.CANCELLED;
+            default -> ImportJobProgress.State.QUEUED;
+        };
+        return new ImportJobProgress(
+                progress.getImportId(),
+                progress.getFileName(),
+                state,
+                progress.getLinesRead(),
+                progress.getParsed(),
+                progress.getSaved(),
+                progress.getFailed(),
+                progress.getBytesRead(),
+                progress.getTotalBytes(),
+                progress.getBytesPerSecond(),
+                progress.getEtaSeconds(),
+                StringUtils.hasText(progress.getError()) ? progress.getError() : null
         );
     }
 
@@ -56,16 +303,52 @@ public class LogImportGatewayController {
                 .toList();
     }
 
-    public record GatewayRequest(String fileName, String contentBase64) {
-        byte[] decode() {
-            if (!StringUtils.hasText(contentBase64)) {
-                return new byte[0];
+    @GetMapping("/{importId}/annotations")
+    public AnnotationProgress annotationProgress(@PathVariable String importId) {
+        AnnotationStatus status;
+        try {
+            status = ingestStub.getAnnotationStatus(AnnotationStatusRequest.newBuilder()
+                    .setImportId(importId)
+                    .build());
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
             }
-            return Base64.getDecoder().decode(contentBase64);
+            throw e;
+        }
+        return new AnnotationProgress(
+                status.getImportId(),
+                status.getSubmitted(),
+                status.getAnnotated(),
+                status.getUpdated(),
+                status.getSkipped(),
+                status.getFailed(),
+                status.getDone()
+        );
+    }
+
+    record JsonUpload(String fileName, Boolean bulkLoad, String contentHash) {
+    }
+
+    public record ImportResponse(String importId, String fileName, long total, long saved, long failed,
+                                 boolean duplicate, List<ImportResponse> entries, String error) {
+        static ImportResponse fromResult(ImportResult result) {
+            return new ImportResponse(
+                    StringUtils.hasText(result.getImportId()) ? result.getImportId() : null,
+                    result.getFileName(),
+                    result.getTotal(),
+                    result.getSaved(),
+                    result.getFailed(),
+                    result.getDuplicate(),
+                    result.getEntriesCount() > 0
+                            ? result.getEntriesList().stream().map(ImportResponse::fromResult).toList()
+                            : null,
+                    StringUtils.hasText(result.getError()) ? result.getError() : null
+            );
         }
     }
 
-    public record ImportResponse(String importId, String fileName, long total, long saved, long failed) {
+    public record ImportJobResponse(String importId, String fileName) {
     }
 
     public record ImportSummaryResponse(
@@ -0,0 +1,226 @@
+package io.terraform.logviewer.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сегмент импорта, отображённый в память только для чтения. Документы пронумерованы
+ * по возрастанию (ts, id), поэтому диапазон времени — отрезок номеров, а совпадения
+ * в порядке номеров уже отсортированы по времени.
+ *
+ * <p>Формат (big-endian): заголовок {@code MAGIC, VERSION, docs, trigrams, terms}, затем
+ * {@code long id[docs]}, {@code long ts[docs]} (микросекунды), {@code long text[3 * docs + 1]}
+ * (смещения message, module и raw_json каждого документа), {@code long trigram[trigrams]}
+ * (по возрастанию), {@code long postings[trigrams + terms + 1]}, {@code int term[terms + 1]}
+ * и байты термов, затем списки документов ({@link Postings}) и текст полей в нижнем регистре (UTF-8).
+ *
+ * <p>Чтение — только абсолютными get, поэтому сегмент можно искать из нескольких потоков.
+ */
+public final class LogSegment {
+
+    static final int MAGIC = 0x54464C53; // "TFLS"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 20;
+
+    private final ByteBuffer buffer;
+    private final int docs;
+    private final int trigrams;
+    private final int idsPosition;
+    private final int microsPosition;
+    private final int textOffsetsPosition;
+    private final int trigramKeysPosition;
+    private final int postingOffsetsPosition;
+    private final int postingsPosition;
+    private final int textPosition;
+    private final Map<String, Integer> terms;
+
+    private LogSegment(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a log segment of version " + VERSION);
+        }
+        docs = buffer.getInt(8);
+        trigrams = buffer.getInt(12);
+        int termCount = buffer.getInt(16);
+
+        idsPosition = HEADER_SIZE;
+        microsPosition = idsPosition + 8 * docs;
+        textOffsetsPosition = microsPosition + 8 * docs;
+        trigramKeysPosition = textOffsetsPosition + 8 * (3 * docs + 1);
+        postingOffsetsPosition = trigramKeysPosition + 8 * trigrams;
+        int termOffsetsPosition = postingOffsetsPosition + 8 * (trigrams + termCount + 1);
+        int termBytesPosition = termOffsetsPosition + 4 * (termCount + 1);
+        postingsPosition = termBytesPosition + buffer.getInt(termOffsetsPosition + 4 * termCount);
+        textPosition = postingsPosition + (int) postingOffset(trigrams + termCount);
+        if (textPosition + textOffset(3 * docs) != buffer.capacity()) {
+            throw new IOException("Truncated log segment");
+        }
+
+        terms = new HashMap<>(termCount * 2);
+        byte[] bytes = new byte[0];
+        for (int i = 0; i < termCount; i++) {
+            int start = buffer.getInt(termOffsetsPosition + 4 * i);
+            int end = buffer.getInt(termOffsetsPosition + 4 * (i + 1));
+            if (bytes.length < end - start) bytes = new byte[end - start];
+            buffer.get(termBytesPosition + start, bytes, 0, end - start);
+            terms.put(new String(bytes, 0, end - start, StandardCharsets.UTF_8), trigrams + i);
+        }
+    }
+
+    public static LogSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Log segment is too large: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new LogSegment(buffer);
+        }
+    }
+
+    public int size() {
+        return docs;
+    }
+
+    public long bytes() {
+        return buffer.capacity();
+    }
+
+    public long id(int doc) {
+        return buffer.getLong(idsPosition + 8 * doc);
+    }
+
+    public long micros(int doc) {
+        return buffer.getLong(microsPosition + 8 * doc);
+    }
+
+    /**
+     * Документы, подходящие под запрос, по возрастанию номера (ts, id). Кандидатов дают списки
+     * термов и триграмм шаблона; текст проверяется у каждого кандидата.
+     */
+    public int[] search(SegmentQuery query) {
+        int from = firstAtOrAfter(query.fromMicros());
+        int to = query.toMicros() == Long.MAX_VALUE ? docs : firstAtOrAfter(query.toMicros() + 1);
+        if (from >= to) return Postings.EMPTY;
+
+        List<int[]> lists = new ArrayList<>();
+        for (String term : query.terms()) {
+            Integer index = terms.get(term);
+            if (index == null) return Postings.EMPTY;
+            lists.add(postings(index));
+        }
+        String pattern = query.textPattern();
+        byte[] literal = null;
+        if (pattern != null) {
+            for (long key : Trigrams.ofPattern(pattern)) {
+                int index = findTrigram(key);
+                if (index < 0) return Postings.EMPTY;
+                lists.add(postings(index));
+            }
+            String inner = Trigrams.literal(pattern);
+            literal = inner != null ? inner.getBytes(StandardCharsets.UTF_8) : null;
+        }
+
+        int[] candidates = lists.isEmpty() ? null : Postings.intersect(lists, from, to);
+        if (pattern == null) {
+            return candidates != null ? candidates : range(from, to);
+        }
+        int count = candidates != null ? candidates.length : to - from;
+        int[] matched = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int doc = candidates != null ? candidates[i] : from + i;
+            if (literal != null ? containsLiteral(doc, literal) : matchesPattern(doc, query)) {
+                matched[size++] = doc;
+            }
+        }
+        return size == count ? matched : Arrays.copyOf(matched, size);
+    }
+
+    private boolean containsLiteral(int doc, byte[] needle) {
+        for (int f = 0; f < 3; f++) {
+            int start = textPosition + (int) textOffset(3 * doc + f);
+            int end = textPosition + (int) textOffset(3 * doc + f + 1);
+            if (indexOf(start, end, needle)) return true;
+        }
+        return false;
+    }
+
+    private boolean matchesPattern(int doc, SegmentQuery query) {
+        for (int f = 0; f < 3; f++) {
+            int start = (int) textOffset(3 * doc + f);
+            int end = (int) textOffset(3 * doc + f + 1);
+            byte[] bytes = new byte[end - start];
+            buffer.get(textPosition + start, bytes);
+            if (query.textMatch().test(new String(bytes, StandardCharsets.UTF_8))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Поиск байтов подстроки: в UTF-8 совпадение байтов — это совпадение символов.
+     */
+    private boolean indexOf(int start, int end, byte[] needle) {
+        if (needle.length == 0) return true;
+        byte first = needle[0];
+        for (int i = start, last = end - needle.length; i <= last; i++) {
+            if (buffer.get(i) != first) continue;
+            int j = 1;
+            while (j < needle.length && buffer.get(i + j) == needle[j]) j++;
+            if (j == needle.length) return true;
+        }
+        return false;
+    }
+
+    private int firstAtOrAfter(long micros) {
+        int low = 0;
+        int high = docs;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (micros(middle) < micros) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private int findTrigram(long key) {
+        int low = 0;
+        int high = trigrams - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = buffer.getLong(trigramKeysPosition + 8 * middle);
+            if (value < key) low = middle + 1;
+            else if (value > key) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    private int[] postings(int index) {
+        return Postings.decode(buffer, postingsPosition + (int) postingOffset(index));
+    }
+
+    private long postingOffset(int index) {
+        return buffer.getLong(postingOffsetsPosition + 8 * index);
+    }
+
+    private long textOffset(int index) {
+        return buffer.getLong(textOffsetsPosition + 8 * index);
+    }
+
+    private static int[] range(int from, int to) {
+        int[] docs = new int[to - from];
+        for (int i = 0; i < docs.length; i++) docs[i] = from + i;
+        return docs;
+    }
+}
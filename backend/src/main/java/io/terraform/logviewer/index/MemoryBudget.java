@@ -0,0 +1,37 @@
+package io.terraform.logviewer.index;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий на процесс предел памяти собираемых сегментов (app.query.segments.max-buffered).
+ * Импорты пишутся параллельно, поэтому предел — один на все {@link SegmentWriter}.
+ */
+final class MemoryBudget {
+
+    private final long limit;
+    private final AtomicLong used = new AtomicLong();
+
+    MemoryBudget(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Занимает {@code bytes}, если они помещаются в предел.
+     */
+    boolean reserve(long bytes) {
+        long current;
+        do {
+            current = used.get();
+            if (current + bytes > limit) return false;
+        } while (!used.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    long used() {
+        return used.get();
+    }
+}
@@ -0,0 +1,171 @@
+package io.terraform.logviewer.index;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Списки документов сегмента: число документов и разности соседних номеров в varint
+ * (7 бит на байт, старший бит — продолжение). Номера возрастают, поэтому у частых термов
+ * разности малы и документ обычно занимает один байт.
+ */
+final class Postings {
+
+    static final int[] EMPTY = new int[0];
+
+    private Postings() {
+    }
+
+    /**
+     * Растущий список: документы добавляются по возрастанию.
+     */
+    static final class Buffer {
+
+        private byte[] bytes = new byte[8];
+        private int length;
+        private int count;
+        private int last;
+
+        /**
+         * Добавляет документ.
+         *
+         * @return на сколько байт вырос массив списка (для учёта памяти сегмента)
+         */
+        int add(int doc) {
+            if (count > 0 && doc == last) return 0;
+            int grown = ensure(5);
+            length = putVarint(bytes, length, doc - last);
+            last = doc;
+            count++;
+            return grown;
+        }
+
+        int count() {
+            return count;
+        }
+
+        int[] decode() {
+            int[] docs = new int[count];
+            int position = 0;
+            int doc = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += delta;
+                docs[i] = doc;
+            }
+            return docs;
+        }
+
+        private int ensure(int extra) {
+            if (length + extra <= bytes.length) return 0;
+            int capacity = bytes.length;
+            bytes = Arrays.copyOf(bytes, Math.max(capacity * 2, length + extra));
+            return bytes.length - capacity;
+        }
+    }
+
+    /**
+     * Возрастающие номера в формате сегмента.
+     */
+    static byte[] encode(int[] docs) {
+        byte[] bytes = new byte[5 * (docs.length + 1)];
+        int length = putVarint(bytes, 0, docs.length);
+        int previous = 0;
+        for (int doc : docs) {
+            length = putVarint(bytes, length, doc - previous);
+            previous = doc;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    static int[] decode(ByteBuffer buffer, int position) {
+        int[] header = readVarint(buffer, position);
+        int count = header[0];
+        position = header[1];
+        int[] docs = new int[count];
+        int doc = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+            docs[i] = doc;
+        }
+        return docs;
+    }
+
+    /**
+     * Пересечение возрастающих списков в диапазоне {@code [from, to)}. Начинает с самого
+     * короткого: дальше в каждом списке ищется только то, что осталось.
+     */
+    static int[] intersect(List<int[]> lists, int from, int to) {
+        int[][] sorted = lists.toArray(int[][]::new);
+        Arrays.sort(sorted, Comparator.comparingInt(list -> list.length));
+
+        int[] first = sorted[0];
+        int start = lowerBound(first, from);
+        int end = lowerBound(first, to);
+        int[] result = Arrays.copyOfRange(first, start, end);
+        int size = result.length;
+        for (int l = 1; l < sorted.length && size > 0; l++) {
+            int[] other = sorted[l];
+            int kept = 0;
+            int j = lowerBound(other, result[0]);
+            for (int i = 0; i < size && j < other.length; i++) {
+                int doc = result[i];
+                while (j < other.length && other[j] < doc) j++;
+                if (j < other.length && other[j] == doc) {
+                    result[kept++] = doc;
+                    j++;
+                }
+            }
+            size = kept;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private static int lowerBound(int[] docs, int value) {
+        int low = 0;
+        int high = docs.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (docs[middle] < value) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private static int putVarint(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static int[] readVarint(ByteBuffer buffer, int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return new int[] {value, position};
+    }
+}
@@ -0,0 +1,25 @@
+package io.terraform.logviewer.index;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Условия поиска по сегменту одного импорта.
+ *
+ * @param fromMicros  нижняя граница ts включительно, микросекунды от эпохи ({@link Long#MIN_VALUE} — без границы)
+ * @param toMicros    верхняя граница ts включительно ({@link Long#MAX_VALUE} — без границы)
+ * @param terms       термы полей ({@link SegmentWriter#term}), которые должны быть у документа все
+ * @param textPattern шаблон LIKE в нижнем регистре для message, module и raw_json или {@code null}
+ * @param textMatch   проверка одного поля по {@code textPattern} с семантикой LIKE; не нужна, если
+ *                    шаблон — {@code %подстрока%} без символов шаблона
+ */
+public record SegmentQuery(long fromMicros,
+                           long toMicros,
+                           List<String> terms,
+                           String textPattern,
+                           Predicate<String> textMatch) {
+
+    public SegmentQuery {
+        terms = List.copyOf(terms);
+    }
+}
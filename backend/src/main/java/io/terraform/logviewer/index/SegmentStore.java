@@ -0,0 +1,180 @@
+package io.terraform.logviewer.index;
+
+import io.terraform.logviewer.config.QueryProperties;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Файлы сегментов импортов в каталоге app.query.segments.directory: {@code <import_id>.seg}.
+ * Открытые сегменты отображены в память; когда их суммарный размер превышает max-mapped,
+ * закрываются давно не использованные. Отображение освобождает сборщик мусора, поэтому
+ * удалённый или вытесненный файл дочитывают поиски, которые его уже взяли. Сегменты, которые
+ * ещё собираются, вместе занимают в куче не больше max-buffered.
+ */
+@Slf4j
+@Component
+public class SegmentStore {
+
+    // import_id — UUID; из имени файла не должно получиться пути
+    private static final Pattern IMPORT_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+    private static final String EXTENSION = ".seg";
+
+    private final QueryProperties.Segments properties;
+    private final Path directory;
+    private final MemoryBudget buffered;
+    private final LinkedHashMap<String, LogSegment> open = new LinkedHashMap<>(16, 0.75f, true);
+    private long openBytes;
+
+    public SegmentStore(QueryProperties queryProperties) {
+        this.properties = queryProperties.getSegments();
+        this.directory = Path.of(properties.getDirectory());
+        this.buffered = new MemoryBudget(properties.getMaxBuffered().toBytes());
+        if (properties.isEnabled()) {
+            prepareDirectory();
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Новый сегмент импорта или {@code null}, если сегменты выключены.
+     */
+    public SegmentWriter newWriter(String importId) {
+        if (!isEnabled() || !isValid(importId)) return null;
+        return new SegmentWriter(directory.resolve(importId + ".spool"), properties.getMaxEntries(), buffered);
+    }
+
+    /**
+     * Записывает собранный сегмент завершённого импорта. Сбой записи не роняет импорт:
+     * без сегмента поиск идёт через БД.
+     */
+    public void commit(String importId, SegmentWriter writer) {
+        try (writer) {
+            if (writer.isAbandoned()) {
+                log.info("Segment of import {} is not built: more than {} entries, over {} of buffered segments,"
+                        + " too large or with text lower() folds into ASCII", importId, properties.getMaxEntries(),
+                        properties.getMaxBuffered());
+                return;
+            }
+            if (!writer.write(directory.resolve(importId + EXTENSION))) {
+                log.info("Segment of import {} is not built: it does not fit a single mapping", importId);
+            }
+            synchronized (this) {
+                // прежний сегмент импорта могли открыть до замены файла
+                forget(importId);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write segment of import {}: {}", importId, e.getMessage());
+        }
+    }
+
+    /**
+     * Отбрасывает собранное без записи.
+     */
+    public void discard(SegmentWriter writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to remove segment spool: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Сегмент импорта, если он есть.
+     */
+    public synchronized Optional<LogSegment> find(String importId) {
+        if (!isEnabled() || !isValid(importId)) return Optional.empty();
+        LogSegment segment = open.get(importId);
+        if (segment != null) return Optional.of(segment);
+
+        Path file = directory.resolve(importId + EXTENSION);
+        if (!Files.isRegularFile(file)) return Optional.empty();
+        try {
+            segment = LogSegment.open(file);
+        } catch (IOException e) {
+            log.warn("Dropping unreadable segment of import {}: {}", importId, e.getMessage());
+            deleteFile(file);
+            return Optional.empty();
+        }
+        open.put(importId, segment);
+        openBytes += segment.bytes();
+        evict(importId);
+        return Optional.of(segment);
+    }
+
+    /**
+     * Удаляет сегмент: строки импорта изменились (дозагрузка, удаление) или разошлись с ним.
+     */
+    public void delete(String importId) {
+        if (!isEnabled() || !isValid(importId)) return;
+        synchronized (this) {
+            forget(importId);
+        }
+        deleteFile(directory.resolve(importId + EXTENSION));
+    }
+
+    private void forget(String importId) {
+        LogSegment removed = open.remove(importId);
+        if (removed != null) {
+            openBytes -= removed.bytes();
+        }
+    }
+
+    private void evict(String keep) {
+        long budget = properties.getMaxMapped().toBytes();
+        Iterator<Map.Entry<String, LogSegment>> eldest = open.entrySet().iterator();
+        while (openBytes > budget && eldest.hasNext()) {
+            Map.Entry<String, LogSegment> entry = eldest.next();
+            if (entry.getKey().equals(keep)) continue;
+            openBytes -= entry.getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    private void prepareDirectory() {
+        try {
+            Files.createDirectories(directory);
+            // недописанные файлы прошлого запуска
+            try (Stream<Path> listing = Files.list(directory)) {
+                listing.filter(path -> isLeftover(path.getFileName().toString())).forEach(this::deleteFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare segment directory " + directory, e);
+        }
+    }
+
+    private void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Память, которую сейчас занимают собираемые сегменты.
+     */
+    long bufferedBytes() {
+        return buffered.used();
+    }
+
+    private static boolean isLeftover(String name) {
+        return name.endsWith(".spool") || name.endsWith(EXTENSION + ".tmp") || name.endsWith(EXTENSION + ".postings");
+    }
+
+    private static boolean isValid(String importId) {
+        return importId != null && IMPORT_ID.matcher(importId).matches();
+    }
+}
@@ -0,0 +1,467 @@
+package io.terraform.logviewer.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Собирает сегмент импорта по мере записи строк. В памяти — id, ts и сжатые списки документов
+ * по триграммам и термам полей; текст полей в нижнем регистре сразу уходит во временный файл
+ * рядом с сегментом. {@link #write} переупорядочивает документы по (ts, id) и пишет файл
+ * в формате {@link LogSegment}. Не потокобезопасен: пишет поток импорта.
+ *
+ * <p>Память в куче занимается из общего {@link MemoryBudget}; не хватило — сегмент бросается,
+ * и поиск по импорту идёт через БД.
+ */
+public final class SegmentWriter implements Closeable {
+
+    // MappedByteBuffer адресуется int: больше сегмент не отобразить одним куском
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+    // память занимается из общего предела кусками, а не на каждую строку
+    private static final long RESERVE_STEP = 1 << 20;
+    // заголовки объекта и массива пустого списка документов
+    private static final int BUFFER_OVERHEAD = 56;
+    // узел HashMap и строка терма без её байтов
+    private static final int TERM_OVERHEAD = 96;
+    // id, ts и смещение текста (long) и три длины полей (int) на документ
+    private static final int BYTES_PER_DOC = 3 * 8 + 3 * 4;
+
+    private final Path spoolFile;
+    private final int maxEntries;
+    private final MemoryBudget budget;
+    private long reserved;
+    private long allocated;
+    private OutputStream spool;
+    private long spoolSize;
+    private boolean abandoned;
+
+    private int count;
+    private long[] ids = new long[1024];
+    private long[] micros = new long[1024];
+    private long[] textStarts = new long[1024];
+    private int[] textLengths = new int[3 * 1024];
+
+    private final TrigramPostings trigramPostings = new TrigramPostings();
+    private final Map<String, Postings.Buffer> termPostings = new HashMap<>();
+    private final Trigrams trigrams = new Trigrams();
+
+    SegmentWriter(Path spoolFile, int maxEntries, MemoryBudget budget) {
+        this.spoolFile = spoolFile;
+        this.maxEntries = maxEntries;
+        this.budget = budget;
+        this.allocated = (long) BYTES_PER_DOC * ids.length;
+    }
+
+    /**
+     * Терм поля для {@link SegmentQuery#terms()}: имя поля и значение, как его сравнивает фильтр.
+     */
+    public static String term(String field, String value) {
+        return field + '\u0000' + value;
+    }
+
+    /**
+     * Нижний регистр только для ASCII: {@code A-Z} становятся {@code a-z}, остальное не меняется.
+     * Так {@code lower()} PostgreSQL сворачивает ASCII при любой локали. За пределами ASCII правила
+     * Java и базы расходятся, поэтому сегмент отвечает только на значения в ASCII ({@link #isAscii}).
+     */
+    public static String fold(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                char[] chars = value.toCharArray();
+                for (int j = i; j < chars.length; j++) {
+                    if (chars[j] >= 'A' && chars[j] <= 'Z') chars[j] += 'a' - 'A';
+                }
+                return new String(chars);
+            }
+        }
+        return value;
+    }
+
+    public static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    public static long micros(OffsetDateTime timestamp) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, timestamp.toInstant());
+    }
+
+    /**
+     * Сегмент больше не собирается (превышен размер, предел памяти, в тексте символ, который
+     * {@code lower()} сворачивает в ASCII, или сбой записи): {@link #write} ничего не создаст.
+     */
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    public void add(long id, OffsetDateTime timestamp, String message, String module, String rawJson,
+                    List<String> terms) {
+        if (abandoned) return;
+        if (count >= maxEntries) {
+            abandon();
+            return;
+        }
+        try {
+            if (spool == null) {
+                spool = new BufferedOutputStream(Files.newOutputStream(spoolFile), 1 << 16);
+            }
+            grow();
+            int doc = count;
+            ids[doc] = id;
+            micros[doc] = micros(timestamp);
+            textStarts[doc] = spoolSize;
+
+            trigrams.clear();
+            String[] fields = {foldText(message), foldText(module), foldText(rawJson)};
+            for (String field : fields) {
+                if (foldsIntoAscii(field)) {
+                    abandon();
+                    return;
+                }
+            }
+            for (int f = 0; f < fields.length; f++) {
+                byte[] bytes = fields[f].getBytes(StandardCharsets.UTF_8);
+                spool.write(bytes);
+                spoolSize += bytes.length;
+                textLengths[3 * doc + f] = bytes.length;
+                trigrams.add(fields[f]);
+            }
+            if (spoolSize > MAX_FILE_SIZE) {
+                abandon();
+                return;
+            }
+            long[] keys = trigrams.keys();
+            for (int i = 0, n = trigrams.distinct(); i < n; i++) {
+                allocated += trigramPostings.get(keys[i]).add(doc);
+            }
+            for (String term : terms) {
+                if (foldsIntoAscii(term)) {
+                    abandon();
+                    return;
+                }
+                Postings.Buffer buffer = termPostings.get(term);
+                if (buffer == null) {
+                    buffer = new Postings.Buffer();
+                    termPostings.put(term, buffer);
+                    allocated += BUFFER_OVERHEAD + TERM_OVERHEAD + term.length();
+                }
+                allocated += buffer.add(doc);
+            }
+            count++;
+            if (!reserve()) {
+                abandon();
+            }
+        } catch (IOException e) {
+            abandon();
+        }
+    }
+
+    /**
+     * Пишет сегмент в {@code target} (через временный файл и переименование).
+     *
+     * @return {@code false}, если сегмент не собран: брошен или не помещается в формат
+     */
+    public boolean write(Path target) throws IOException {
+        if (abandoned) return false;
+        if (spool != null) {
+            spool.close();
+            spool = null;
+        }
+
+        int[] order = orderByTime();
+        int[] rankOf = new int[count];
+        for (int rank = 0; rank < count; rank++) {
+            rankOf[order[rank]] = rank;
+        }
+
+        long[] trigramKeys = trigramPostings.sortedKeys();
+        String[] terms = termPostings.keySet().toArray(String[]::new);
+        Arrays.sort(terms);
+        byte[][] termBytes = new byte[terms.length][];
+        long termBytesSize = 0;
+        for (int i = 0; i < terms.length; i++) {
+            termBytes[i] = terms[i].getBytes(StandardCharsets.UTF_8);
+            termBytesSize += termBytes[i].length;
+        }
+
+        Path postingsFile = target.resolveSibling(target.getFileName() + ".postings");
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            long[] postingOffsets = new long[trigramKeys.length + terms.length + 1];
+            try (DataOutputStream postings = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(postingsFile), 1 << 16))) {
+                long offset = 0;
+                for (int i = 0; i < trigramKeys.length; i++) {
+                    postingOffsets[i] = offset;
+                    offset += writeRanked(postings, trigramPostings.get(trigramKeys[i]), rankOf);
+                }
+                for (int i = 0; i < terms.length; i++) {
+                    postingOffsets[trigramKeys.length + i] = offset;
+                    offset += writeRanked(postings, termPostings.get(terms[i]), rankOf);
+                }
+                postingOffsets[postingOffsets.length - 1] = offset;
+            }
+
+            long size = LogSegment.HEADER_SIZE
+                    + 8L * count * 2
+                    + 8L * (3L * count + 1)
+                    + 8L * trigramKeys.length
+                    + 8L * postingOffsets.length
+                    + 4L * (terms.length + 1)
+                    + termBytesSize
+                    + postingOffsets[postingOffsets.length - 1]
+                    + spoolSize;
+            if (size > MAX_FILE_SIZE) {
+                return false;
+            }
+
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                out.writeInt(LogSegment.MAGIC);
+                out.writeInt(LogSegment.VERSION);
+                out.writeInt(count);
+                out.writeInt(trigramKeys.length);
+                out.writeInt(terms.length);
+
+                for (int rank = 0; rank < count; rank++) out.writeLong(ids[order[rank]]);
+                for (int rank = 0; rank < count; rank++) out.writeLong(micros[order[rank]]);
+                long textOffset = 0;
+                for (int rank = 0; rank < count; rank++) {
+                    int doc = order[rank];
+                    for (int f = 0; f < 3; f++) {
+                        out.writeLong(textOffset);
+                        textOffset += textLengths[3 * doc + f];
+                    }
+                }
+                out.writeLong(textOffset);
+
+                for (long key : trigramKeys) out.writeLong(key);
+                for (long offset : postingOffsets) out.writeLong(offset);
+                int termOffset = 0;
+                for (byte[] bytes : termBytes) {
+                    out.writeInt(termOffset);
+                    termOffset += bytes.length;
+                }
+                out.writeInt(termOffset);
+                for (byte[] bytes : termBytes) out.write(bytes);
+
+                Files.copy(postingsFile, out);
+                copyText(out, order);
+                out.flush();
+                channel.force(false);
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            Files.deleteIfExists(postingsFile);
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Удаляет временный файл текста. Вызывается и после {@link #write}, и вместо него.
+     */
+    @Override
+    public void close() throws IOException {
+        budget.release(reserved);
+        reserved = 0;
+        if (spool != null) {
+            spool.close();
+            spool = null;
+        }
+        Files.deleteIfExists(spoolFile);
+    }
+
+    /**
+     * Досыпает в {@link #reserved} память, которую заняли строки сверх уже взятой.
+     */
+    private boolean reserve() {
+        long needed = allocated + trigramPostings.bytes() - reserved;
+        if (needed <= 0) return true;
+        long step = Math.max(needed, RESERVE_STEP);
+        if (!budget.reserve(step)) return false;
+        reserved += step;
+        return true;
+    }
+
+    private void abandon() {
+        abandoned = true;
+        ids = micros = textStarts = null;
+        textLengths = null;
+        trigramPostings.clear();
+        termPostings.clear();
+        try {
+            close();
+        } catch (IOException ignored) {
+            // временный файл удалится при следующем запуске
+        }
+    }
+
+    private int[] orderByTime() {
+        Integer[] boxed = new Integer[count];
+        for (int i = 0; i < count; i++) boxed[i] = i;
+        Arrays.sort(boxed, (a, b) -> micros[a] != micros[b]
+                ? Long.compare(micros[a], micros[b])
+                : Long.compare(ids[a], ids[b]));
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = boxed[i];
+        return order;
+    }
+
+    private static int writeRanked(DataOutputStream out, Postings.Buffer buffer, int[] rankOf) throws IOException {
+        int[] docs = buffer.decode();
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = rankOf[docs[i]];
+        }
+        Arrays.sort(docs);
+        byte[] bytes = Postings.encode(docs);
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    private void copyText(OutputStream out, int[] order) throws IOException {
+        if (spoolSize == 0) return;
+        try (FileChannel channel = FileChannel.open(spoolFile, StandardOpenOption.READ)) {
+            MappedByteBuffer text = channel.map(FileChannel.MapMode.READ_ONLY, 0, spoolSize);
+            byte[] chunk = new byte[1 << 16];
+            for (int doc : order) {
+                int start = (int) textStarts[doc];
+                int length = textLengths[3 * doc] + textLengths[3 * doc + 1] + textLengths[3 * doc + 2];
+                for (int copied = 0; copied < length; ) {
+                    int n = Math.min(chunk.length, length - copied);
+                    text.get(start + copied, chunk, 0, n);
+                    out.write(chunk, 0, n);
+                    copied += n;
+                }
+            }
+        }
+    }
+
+    private void grow() {
+        if (count < ids.length) return;
+        int capacity = ids.length * 2;
+        allocated += (long) BYTES_PER_DOC * (capacity - ids.length);
+        ids = Arrays.copyOf(ids, capacity);
+        micros = Arrays.copyOf(micros, capacity);
+        textStarts = Arrays.copyOf(textStarts, capacity);
+        textLengths = Arrays.copyOf(textLengths, 3 * capacity);
+    }
+
+    /**
+     * {@code lower(coalesce(value, ''))}, как в фильтре q, для ASCII.
+     */
+    private static String foldText(String value) {
+        return value != null ? fold(value) : "";
+    }
+
+    /**
+     * Есть символ вне ASCII, который {@code lower()} сворачивает в ASCII (İ, знак кельвина):
+     * ASCII-запрос находит такую строку в базе, а в сегменте — нет.
+     */
+    private static boolean foldsIntoAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80 && Character.toLowerCase(c) < 0x80) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Списки по триграммам: открытая адресация по long без упаковки ключей — на каждую строку
+     * приходятся сотни обращений.
+     */
+    private static final class TrigramPostings {
+
+        // ключ long и ссылка на список
+        private static final int BYTES_PER_SLOT = 8 + 4;
+
+        private long[] keys = new long[1 << 12];
+        private Postings.Buffer[] values = new Postings.Buffer[1 << 12];
+        private int size;
+        private long bytes = (long) BYTES_PER_SLOT * keys.length;
+
+        Postings.Buffer get(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) return values[slot];
+                slot = (slot + 1) & mask;
+            }
+            Postings.Buffer buffer = new Postings.Buffer();
+            keys[slot] = key;
+            values[slot] = buffer;
+            bytes += BUFFER_OVERHEAD;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+            return buffer;
+        }
+
+        /**
+         * Оценка занятой памяти: таблица и списки без их роста (его считает {@link Postings.Buffer#add}).
+         */
+        long bytes() {
+            return bytes;
+        }
+
+        long[] sortedKeys() {
+            long[] sorted = new long[size];
+            int i = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (values[slot] != null) sorted[i++] = keys[slot];
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        void clear() {
+            keys = new long[16];
+            values = new Postings.Buffer[16];
+            size = 0;
+            bytes = (long) BYTES_PER_SLOT * keys.length;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            Postings.Buffer[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings.Buffer[oldKeys.length * 2];
+            bytes += (long) BYTES_PER_SLOT * oldKeys.length;
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] == null) continue;
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != null) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
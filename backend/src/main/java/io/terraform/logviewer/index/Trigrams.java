@@ -0,0 +1,84 @@
+package io.terraform.logviewer.index;
+
+import java.util.Arrays;
+
+/**
+ * Триграммы текста — тройки соседних символов, упакованные в long по 16 бит на символ.
+ * Любая подстрока из трёх и более символов состоит из триграмм текста, в котором она встречается,
+ * поэтому пересечение их списков — надмножество совпадений.
+ */
+final class Trigrams {
+
+    private long[] keys = new long[256];
+    private int size;
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(String text) {
+        for (int i = 0; i + 2 < text.length(); i++) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            keys[size++] = key(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+        }
+    }
+
+    /**
+     * Сортирует собранные триграммы и убирает повторы; возвращает их число — они лежат
+     * в начале {@link #keys()}.
+     */
+    int distinct() {
+        Arrays.sort(keys, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || keys[unique - 1] != keys[i]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        size = unique;
+        return unique;
+    }
+
+    long[] keys() {
+        return keys;
+    }
+
+    static long key(char first, char second, char third) {
+        return (long) first << 32 | (long) second << 16 | third;
+    }
+
+    /**
+     * Триграммы, которые есть в любой строке, подходящей под шаблон LIKE: берутся из участков
+     * без {@code %} и {@code _}, экранированный обратной косой чертой символ — обычный.
+     * Без повторов, по возрастанию.
+     */
+    static long[] ofPattern(String pattern) {
+        Trigrams trigrams = new Trigrams();
+        StringBuilder run = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                run.append(pattern.charAt(++i));
+            } else if (c == '%' || c == '_') {
+                trigrams.add(run.toString());
+                run.setLength(0);
+            } else {
+                run.append(c);
+            }
+        }
+        trigrams.add(run.toString());
+        return Arrays.copyOf(trigrams.keys, trigrams.distinct());
+    }
+
+    /**
+     * Подстрока, если шаблон — {@code %подстрока%} без символов шаблона внутри, иначе {@code null}.
+     */
+    static String literal(String pattern) {
+        if (pattern.length() < 2 || !pattern.startsWith("%") || !pattern.endsWith("%")) return null;
+        String inner = pattern.substring(1, pattern.length() - 1);
+        if (inner.indexOf('%') >= 0 || inner.indexOf('_') >= 0 || inner.indexOf('\\') >= 0) return null;
+        return inner;
+    }
+}
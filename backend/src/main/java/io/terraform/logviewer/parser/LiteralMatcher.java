@@ -0,0 +1,150 @@
+package io.terraform.logviewer.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Several regexes checked in one pass over the text. Every rule names an ASCII literal that any
+ * match of its pattern must contain. An Aho-Corasick automaton over all literals finds which of
+ * them occur, and only those rules run their pattern. The result is the same as calling
+ * {@code find()} on every pattern.
+ */
+final class LiteralMatcher {
+
+    private static final int ALPHABET = 128;
+
+    /**
+     * @param literal substring every match of {@code pattern} contains
+     * @param pattern the rule itself; {@code null} if the literal alone is the rule
+     */
+    record Rule(String literal, Pattern pattern) {
+
+        static Rule literal(String literal) {
+            return new Rule(literal, null);
+        }
+
+        boolean find(String text) {
+            return pattern != null ? pattern.matcher(text).find() : text.contains(literal);
+        }
+    }
+
+    private final List<Rule> rules;
+    // state × ASCII char -> next state, failure transitions already folded in
+    private final int[][] next;
+    // state -> rules whose literal ends in this state
+    private final long[] output;
+
+    LiteralMatcher(List<Rule> rules) {
+        if (rules.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " rules are supported");
+        }
+        this.rules = List.copyOf(rules);
+
+        List<int[]> trie = new ArrayList<>();
+        List<Long> ends = new ArrayList<>();
+        trie.add(emptyRow());
+        ends.add(0L);
+        for (int i = 0; i < this.rules.size(); i++) {
+            String literal = this.rules.get(i).literal();
+            if (literal == null || literal.isEmpty()) {
+                throw new IllegalArgumentException("Rule " + i + " has no literal");
+            }
+            int state = 0;
+            for (int j = 0; j < literal.length(); j++) {
+                char c = literal.charAt(j);
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Literal is not ASCII: " + literal);
+                }
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(emptyRow());
+                    ends.add(0L);
+                }
+                state = trie.get(state)[c];
+            }
+            ends.set(state, ends.get(state) | 1L << i);
+        }
+
+        int[][] next = trie.toArray(new int[0][]);
+        long[] output = new long[next.length];
+        int[] fail = new int[next.length];
+        for (int s = 0; s < next.length; s++) {
+            output[s] = ends.get(s);
+        }
+
+        // breadth first: the failure state of a node is shallower, so its row is already complete
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            if (next[0][c] < 0) {
+                next[0][c] = 0;
+            } else {
+                queue.add(next[0][c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            output[state] |= output[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = next[state][c];
+                if (child < 0) {
+                    next[state][c] = next[fail[state]][c];
+                } else {
+                    fail[child] = next[fail[state]][c];
+                    queue.add(child);
+                }
+            }
+        }
+        this.next = next;
+        this.output = output;
+    }
+
+    List<Rule> rules() {
+        return rules;
+    }
+
+    /**
+     * Rules matching {@code text}, as a bit mask by rule index.
+     */
+    long match(String text) {
+        long seen = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // literals are ASCII, so no literal continues across any other char
+            state = c < ALPHABET ? next[state][c] : 0;
+            seen |= output[state];
+        }
+
+        long hits = seen;
+        for (long pending = seen; pending != 0; pending &= pending - 1) {
+            int index = Long.numberOfTrailingZeros(pending);
+            Pattern pattern = rules.get(index).pattern();
+            if (pattern != null && !pattern.matcher(text).find()) {
+                hits &= ~(1L << index);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * The same mask as {@link #match}, from every rule checked on its own. Reference for tests
+     * and benchmarks.
+     */
+    long matchEach(String text) {
+        long hits = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i).find(text)) hits |= 1L << i;
+        }
+        return hits;
+    }
+
+    private static int[] emptyRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
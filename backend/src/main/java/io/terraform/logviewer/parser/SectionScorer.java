@@ -0,0 +1,236 @@
+package io.terraform.logviewer.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import org.springframework.util.StringUtils;
+
+/**
+ * Plan/apply heuristics of {@link TerraformLogParser}. All patterns are compiled into one
+ * {@link LiteralMatcher}, so a text fragment is scanned once and only the patterns whose
+ * literal occurs in it are run.
+ */
+final class SectionScorer {
+
+    // CLI args lines (Terraform tflog)
+    private static final Pattern CLI_APPLY = Pattern.compile("\\bcli\\s+(?:command\\s+)?args?[^\\n]*\\bapply\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern CLI_PLAN = Pattern.compile("\\bcli\\s+(?:command\\s+)?args?[^\\n]*\\bplan\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    // Backend messages
+    private static final Pattern STARTING_APPLY_OP = Pattern.compile("\\bbackend/local:\\s*starting\\s*apply\\s*operation\\b");
+    private static final Pattern STARTING_PLAN_OP  = Pattern.compile("\\bbackend/local:\\s*starting\\s*plan\\s*operation\\b");
+    private static final Pattern APPLY_OP_COMPLETED = Pattern.compile("\\bapply\\s*operation\\s*completed\\b");
+    private static final Pattern PLAN_OP_COMPLETED  = Pattern.compile("\\bplan\\s*operation\\s*completed\\b");
+
+    // Other strong apply hints present in real logs
+    private static final Pattern APPLY_CALLING_APPLY = Pattern.compile("\\bapply\\s+calling\\s+apply\\b");
+    private static final Pattern APPLY_WALK_GRAPH    = Pattern.compile("\\bbuilding\\s+and\\s+walking\\s+apply\\s+graph\\b");
+
+    // Noise tokens that should NOT bias plan/apply classification by substring alone
+    private static final List<LiteralMatcher.Rule> NEUTRAL_NOISE = List.of(
+            LiteralMatcher.Rule.literal("planresourcechange"),            // tf_rpc value
+            LiteralMatcher.Rule.literal("getproviderschema"),
+            LiteralMatcher.Rule.literal("validateresourceconfig"),
+            LiteralMatcher.Rule.literal("validatedataresourceconfig"),
+            LiteralMatcher.Rule.literal("upgraderesourcestate"),
+            new LiteralMatcher.Rule("vertex", Pattern.compile("vertex\\s+\\\"")),
+            new LiteralMatcher.Rule("schema", Pattern.compile("schema\\s+for\\s+provider")),
+            LiteralMatcher.Rule.literal("statemgr.filesystem"),
+            LiteralMatcher.Rule.literal("sdk.proto"),
+            LiteralMatcher.Rule.literal("fwserver/server.go"),
+            LiteralMatcher.Rule.literal("tf_proto_version"),
+            LiteralMatcher.Rule.literal("tf_provider_addr"),
+            LiteralMatcher.Rule.literal("tf_rpc"),
+            LiteralMatcher.Rule.literal("tf_resource_type"),
+            LiteralMatcher.Rule.literal("tf_data_source_type")
+    );
+
+    // Heuristics tuned for your tflogs (order doesn't matter).
+    private static final List<SectionHeuristic> PLAN_HEURISTICS = List.of(
+            // hard, explicit
+            new SectionHeuristic("backend/local", STARTING_PLAN_OP, 8, true),
+            new SectionHeuristic("completed", PLAN_OP_COMPLETED, 7, true, true),
+            new SectionHeuristic("arg", CLI_PLAN, 7, true),
+
+            // soft, contextual
+            new SectionHeuristic("terraform", Pattern.compile("\\bterraform(?:\\s|-|:)plan\\b"), 6),
+            new SectionHeuristic("phase", Pattern.compile("\\bplan\\s+phase\\b"), 4),
+            new SectionHeuristic("starting", Pattern.compile("\\bstarting\\s+plan\\b"), 4),
+            new SectionHeuristic("generating", Pattern.compile("\\bgenerating\\s+plan\\b"), 4),
+            new SectionHeuristic("refresh", Pattern.compile("\\brefresh(?:ing)?\\s+state\\b"), 2),
+            new SectionHeuristic("dry", Pattern.compile("\\bdry\\s*-?run\\b"), 3),
+            new SectionHeuristic("speculative", Pattern.compile("\\bspeculative\\s+run\\b"), 3),
+            new SectionHeuristic("summary", Pattern.compile("\\bplan\\s+summary\\b"), 3),
+            new SectionHeuristic("output", Pattern.compile("\\bplan\\s+output\\b"), 2),
+            new SectionHeuristic("planned", Pattern.compile("\\bplanned\\s+actions\\b"), 2)
+    );
+
+    private static final List<SectionHeuristic> APPLY_HEURISTICS = List.of(
+            // hard, explicit
+            new SectionHeuristic("backend/local", STARTING_APPLY_OP, 8, true),
+            new SectionHeuristic("completed", APPLY_OP_COMPLETED, 7, true, true),
+            new SectionHeuristic("arg", CLI_APPLY, 7, true),
+            new SectionHeuristic("calling", APPLY_CALLING_APPLY, 7, true),
+            new SectionHeuristic("walking", APPLY_WALK_GRAPH, 6, true),
+
+            // soft, contextual
+            new SectionHeuristic("terraform", Pattern.compile("\\bterraform(?:\\s|-|:)apply\\b"), 6),
+            new SectionHeuristic("phase", Pattern.compile("\\bapply\\s+phase\\b"), 4),
+            new SectionHeuristic("start", Pattern.compile("\\bapply\\s+start(?:ed|ing)?\\b"), 4),
+            new SectionHeuristic("complete", Pattern.compile("\\bapply\\s+complete\\b"), 5),
+            new SectionHeuristic("failed", Pattern.compile("\\bapply\\s+failed\\b"), 5),
+            new SectionHeuristic("creation", Pattern.compile("\\bcreation\\s+complete\\b"), 3),
+            new SectionHeuristic("creating...", Pattern.compile("\\bcreating\\.{3}"), 2),
+            new SectionHeuristic("modifying...", Pattern.compile("\\bmodifying\\.{3}"), 2),
+            new SectionHeuristic("updating...", Pattern.compile("\\bupdating\\.{3}"), 2)
+    );
+
+    // Small generic boost ONLY for whole words "plan"/"apply"
+    private static final LiteralMatcher.Rule PLAN_WORD = new LiteralMatcher.Rule("plan", Pattern.compile("\\bplan\\b"));
+    private static final LiteralMatcher.Rule APPLY_WORD = new LiteralMatcher.Rule("apply", Pattern.compile("\\bapply\\b"));
+
+    // rule order in MATCHER: noise, plan heuristics, apply heuristics, the two words
+    private static final int PLAN_OFFSET = NEUTRAL_NOISE.size();
+    private static final int APPLY_OFFSET = PLAN_OFFSET + PLAN_HEURISTICS.size();
+    private static final int PLAN_WORD_INDEX = APPLY_OFFSET + APPLY_HEURISTICS.size();
+    private static final int APPLY_WORD_INDEX = PLAN_WORD_INDEX + 1;
+    private static final long NOISE_MASK = (1L << PLAN_OFFSET) - 1;
+
+    static final LiteralMatcher MATCHER = new LiteralMatcher(rules());
+
+    private SectionScorer() {
+    }
+
+    /**
+     * Phase boundary marked by a hard signal in a lower-cased message: a hard apply hint wins
+     * over a hard plan hint. {@code null} if there is neither.
+     */
+    static Boundary boundary(String lower) {
+        long hits = MATCHER.match(lower);
+        Boundary apply = boundary(hits, APPLY_HEURISTICS, APPLY_OFFSET, Boundary.APPLY_START, Boundary.APPLY_END);
+        return apply != null ? apply : boundary(hits, PLAN_HEURISTICS, PLAN_OFFSET, Boundary.PLAN_START, Boundary.PLAN_END);
+    }
+
+    static void score(String text, Score score, int multiplier) {
+        if (!StringUtils.hasText(text)) return;
+
+        long hits = MATCHER.match(text.toLowerCase(Locale.ROOT));
+
+        // Ignore framework noise which used to bias towards "plan" (PlanResourceChange etc.)
+        if ((hits & NOISE_MASK) != 0) return;
+
+        // Weighted heuristics; hard ones also set the hard signal
+        for (int i = 0; i < PLAN_HEURISTICS.size(); i++) {
+            if (hit(hits, PLAN_OFFSET + i)) {
+                SectionHeuristic h = PLAN_HEURISTICS.get(i);
+                score.plan += h.weight() * multiplier;
+                if (h.hard()) score.hardPlan = true;
+            }
+        }
+        for (int i = 0; i < APPLY_HEURISTICS.size(); i++) {
+            if (hit(hits, APPLY_OFFSET + i)) {
+                SectionHeuristic h = APPLY_HEURISTICS.get(i);
+                score.apply += h.weight() * multiplier;
+                if (h.hard()) score.hardApply = true;
+            }
+        }
+
+        boolean planWord = hit(hits, PLAN_WORD_INDEX);
+        boolean applyWord = hit(hits, APPLY_WORD_INDEX);
+        if (planWord && !applyWord) {
+            score.plan += multiplier;
+        } else if (applyWord && !planWord) {
+            score.apply += multiplier;
+        }
+    }
+
+    private static Boundary boundary(long hits, List<SectionHeuristic> heuristics, int offset,
+                                     Boundary start, Boundary end) {
+        boolean hard = false;
+        boolean opens = false;
+        for (int i = 0; i < heuristics.size(); i++) {
+            SectionHeuristic h = heuristics.get(i);
+            if (h.hard() && hit(hits, offset + i)) {
+                hard = true;
+                opens |= !h.closes();
+            }
+        }
+        if (!hard) return null;
+        return opens ? start : end;
+    }
+
+    private static boolean hit(long hits, int index) {
+        return (hits & 1L << index) != 0;
+    }
+
+    private static List<LiteralMatcher.Rule> rules() {
+        List<LiteralMatcher.Rule> rules = new ArrayList<>(NEUTRAL_NOISE);
+        PLAN_HEURISTICS.forEach(h -> rules.add(h.rule()));
+        APPLY_HEURISTICS.forEach(h -> rules.add(h.rule()));
+        rules.add(PLAN_WORD);
+        rules.add(APPLY_WORD);
+        return rules;
+    }
+
+    /**
+     * Hard signals of a phase: {@code START} opens it (CLI args, backend/local start, apply walk),
+     * {@code END} is the "operation completed" line that closes it.
+     */
+    enum Boundary {
+        PLAN_START("plan", false),
+        PLAN_END("plan", true),
+        APPLY_START("apply", false),
+        APPLY_END("apply", true);
+
+        private final String section;
+        private final boolean closes;
+
+        Boundary(String section, boolean closes) {
+            this.section = section;
+            this.closes = closes;
+        }
+
+        String section() {
+            return section;
+        }
+
+        boolean closes() {
+            return closes;
+        }
+    }
+
+    /**
+     * @param closes the signal marks the end of the phase rather than its start
+     */
+    private record SectionHeuristic(String literal, Pattern pattern, int weight, boolean hard, boolean closes) {
+        SectionHeuristic(String literal, Pattern pattern, int weight) { this(literal, pattern, weight, false, false); }
+        SectionHeuristic(String literal, Pattern pattern, int weight, boolean hard) { this(literal, pattern, weight, hard, false); }
+
+        LiteralMatcher.Rule rule() {
+            return new LiteralMatcher.Rule(literal, pattern);
+        }
+    }
+
+    static final class Score {
+        int plan;
+        int apply;
+        boolean hardPlan;
+        boolean hardApply;
+
+        String resolve() {
+            // Hard signals decide first
+            if (hardApply ^ hardPlan) return hardApply ? "apply" : "plan";
+            if (hardApply && hardPlan) return null; // contradictory -> unknown
+
+            // Otherwise require a clear gap and sufficient strength
+            if (apply >= plan + 3 && apply >= 6) return "apply";
+            if (plan  >= apply + 3 && plan  >= 6) return "plan";
+
+            // If weak/ambiguous → unknown
+            return null;
+        }
+    }
+}
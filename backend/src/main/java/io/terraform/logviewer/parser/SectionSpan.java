@@ -0,0 +1,10 @@
+package io.terraform.logviewer.parser;
+
+/**
+ * A run of consecutive lines of one import that belong to the same plan or apply operation.
+ *
+ * @param number  sequence number of the span within the import, starting at 1
+ * @param section {@code plan} or {@code apply}
+ */
+public record SectionSpan(int number, String section) {
+}
@@ -0,0 +1,36 @@
+package io.terraform.logviewer.parser;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of the short values that repeat over an import: levels, modules, RPC names,
+ * resource and data source types, HTTP methods. An import has a few dozen of each, so every record
+ * points at the dictionary's instance and the per-line copies die young. Bounded: once full, or
+ * for a value longer than the limit, the value is returned as it is. Safe to share between parse
+ * threads.
+ */
+final class StringDictionary {
+
+    private final int capacity;
+    private final int maxLength;
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+
+    StringDictionary(int capacity, int maxLength) {
+        this.capacity = capacity;
+        this.maxLength = maxLength;
+    }
+
+    String canonical(String value) {
+        if (value == null || value.length() > maxLength) return value;
+        String known = values.get(value);
+        if (known != null) return known;
+        // size() is approximate under contention; overshooting the bound by a few entries is fine
+        if (values.size() >= capacity) return value;
+        known = values.putIfAbsent(value, value);
+        return known != null ? known : value;
+    }
+
+    int size() {
+        return values.size();
+    }
+}
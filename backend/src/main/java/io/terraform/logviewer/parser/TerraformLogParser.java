@@ -1,43 +1,69 @@
 package io.terraform.logviewer.parser;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Component
-@RequiredArgsConstructor
 public class TerraformLogParser {
 
     // --- Field name dictionaries ---------------------------------------------------------------
 
-    private static final Set<String> TIMESTAMP_FIELDS = Set.of(
+    // candidates are tried in list order, so the first one present wins; tflog's own @-fields go first
+    private static final List<String> TIMESTAMP_FIELDS = List.of(
             "@timestamp", "timestamp", "ts", "time", "datetime", "logged_at", "created_at");
 
-    private static final Set<String> LEVEL_FIELDS = Set.of(
-            "level", "lvl", "severity", "log_level", "@level", "priority");
+    private static final List<String> LEVEL_FIELDS = List.of(
+            "@level", "level", "lvl", "severity", "log_level", "priority");
 
     // IMPORTANT: include @message because tflog uses it
-    private static final Set<String> MESSAGE_FIELDS = Set.of(
+    private static final List<String> MESSAGE_FIELDS = List.of(
             "@message", "message", "msg", "event", "log", "body");
 
-    // --- Regexes -----------------------------------------------------------------------------
+    private static final List<String> REQ_ID_FIELDS = List.of("req_id", "request_id", "tf_req_id", "requestId");
+    private static final List<String> TRANS_ID_FIELDS = List.of("trans_id", "transaction_id", "trace_id", "tf_trans_id");
+    private static final List<String> RPC_FIELDS = List.of("rpc", "rpc_method", "rpc_name", "rpc_call", "operation", "tf_rpc");
+    private static final List<String> RESOURCE_TYPE_FIELDS = List.of("tf_resource_type", "resource_type");
+    private static final List<String> DATA_SOURCE_TYPE_FIELDS = List.of("data_source_type", "tf_data_source_type");
+    private static final List<String> HTTP_METHOD_FIELDS = List.of("http_op_type", "method", "http_method", "http_verb", "verb");
+    private static final List<String> STATUS_FIELDS = List.of("status_code", "http_status", "status", "statusCode");
+    private static final List<String> MODULE_FIELDS = List.of("@module", "module", "module_path", "module_addr",
+            "module_name", "module_address", "moduleId", "moduleID", "moduleKey", "moduleDisplayName", "component", "logger",
+            "source");
+    private static final List<String> SECTION_FIELDS = List.of("section", "phase", "stage", "operation", "command",
+            "action", "step", "terraform_phase", "terraform_operation", "event_section", "phase_type");
+    private static final List<String> COMMAND_FIELDS = List.of("command", "cli_command", "terraform_command", "operation");
+
+    // top-level payload fields, in the order they are collected, and their kind
+    private static final List<Map.Entry<String, String>> BODY_FIELDS = List.of(
+            Map.entry("http_request", "request"),
+            Map.entry("http_response", "response"),
+            Map.entry("request_body", "request"),
+            Map.entry("response_body", "response"),
+            Map.entry("request", "request"),
+            Map.entry("response", "response"));
 
-    // ISO-8601 at the start of the line (with Z or offset)
-    private static final Pattern ISO_PREFIX = Pattern.compile(
-            "^(\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}:\\d{2}(?:[.\\d]*)(?:Z|[+-]\\d{2}:?\\d{2}))");
+    // --- Regexes -----------------------------------------------------------------------------
 
     private static final Pattern LEVEL_PREFIX = Pattern.compile(
             "^(?:\\[|)(TRACE|DEBUG|INFO|WARN|ERROR|FATAL)(?:\\]|:|\\s)", Pattern.CASE_INSENSITIVE);
@@ -48,108 +74,307 @@ public class TerraformLogParser {
     // module.name tokens
     private static final Pattern MODULE_PATTERN = Pattern.compile("\\bmodule\\.[A-Za-z0-9_.-]+(?:\\.[A-Za-z0-9_.-]+)?");
 
-    // CLI args lines (Terraform tflog)
-    private static final Pattern CLI_APPLY = Pattern.compile("\\bcli\\s+(?:command\\s+)?args?[^\\n]*\\bapply\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    private static final Pattern CLI_PLAN = Pattern.compile("\\bcli\\s+(?:command\\s+)?args?[^\\n]*\\bplan\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-
-    // Backend messages
-    private static final Pattern STARTING_APPLY_OP = Pattern.compile("\\bbackend/local:\\s*starting\\s*apply\\s*operation\\b");
-    private static final Pattern STARTING_PLAN_OP  = Pattern.compile("\\bbackend/local:\\s*starting\\s*plan\\s*operation\\b");
-    private static final Pattern APPLY_OP_COMPLETED = Pattern.compile("\\bapply\\s*operation\\s*completed\\b");
-    private static final Pattern PLAN_OP_COMPLETED  = Pattern.compile("\\bplan\\s*operation\\s*completed\\b");
-
-    // Other strong apply hints present in real logs
-    private static final Pattern APPLY_CALLING_APPLY = Pattern.compile("\\bapply\\s+calling\\s+apply\\b");
-    private static final Pattern APPLY_WALK_GRAPH    = Pattern.compile("\\bbuilding\\s+and\\s+walking\\s+apply\\s+graph\\b");
-
-    // Noise tokens that should NOT bias plan/apply classification by substring alone
-    private static final List<Pattern> NEUTRAL_NOISE = List.of(
-            Pattern.compile("planresourcechange"),            // tf_rpc value
-            Pattern.compile("getproviderschema"),
-            Pattern.compile("validateresourceconfig"),
-            Pattern.compile("validatedataresourceconfig"),
-            Pattern.compile("upgraderesourcestate"),
-            Pattern.compile("vertex\\s+\\\""),
-            Pattern.compile("schema\\s+for\\s+provider"),
-            Pattern.compile("statemgr\\.filesystem"),
-            Pattern.compile("sdk\\.proto"),
-            Pattern.compile("fwserver\\/server\\.go"),
-            Pattern.compile("tf_proto_version"),
-            Pattern.compile("tf_provider_addr"),
-            Pattern.compile("tf_rpc"),
-            Pattern.compile("tf_resource_type"),
-            Pattern.compile("tf_data_source_type")
-    );
-
-    // Heuristics tuned for your tflogs (order doesn't matter).
-    private static final List<SectionHeuristic> PLAN_HEURISTICS = List.of(
-            // hard, explicit
-            new SectionHeuristic(STARTING_PLAN_OP, 8, true),
-            new SectionHeuristic(PLAN_OP_COMPLETED, 7, true),
-            new SectionHeuristic(CLI_PLAN, 7, true),
-
-            // soft, contextual
-            new SectionHeuristic(Pattern.compile("\\bterraform(?:\\s|-|:)plan\\b"), 6),
-            new SectionHeuristic(Pattern.compile("\\bplan\\s+phase\\b"), 4),
-            new SectionHeuristic(Pattern.compile("\\bstarting\\s+plan\\b"), 4),
-            new SectionHeuristic(Pattern.compile("\\bgenerating\\s+plan\\b"), 4),
-            new SectionHeuristic(Pattern.compile("\\brefresh(?:ing)?\\s+state\\b"), 2),
-            new SectionHeuristic(Pattern.compile("\\bdry\\s*-?run\\b"), 3),
-            new SectionHeuristic(Pattern.compile("\\bspeculative\\s+run\\b"), 3),
-            new SectionHeuristic(Pattern.compile("\\bplan\\s+summary\\b"), 3),
-            new SectionHeuristic(Pattern.compile("\\bplan\\s+output\\b"), 2),
-            new SectionHeuristic(Pattern.compile("\\bplanned\\s+actions\\b"), 2)
-    );
-
-    private static final List<SectionHeuristic> APPLY_HEURISTICS = List.of(
-            // hard, explicit
-            new SectionHeuristic(STARTING_APPLY_OP, 8, true),
-            new SectionHeuristic(APPLY_OP_COMPLETED, 7, true),
-            new SectionHeuristic(CLI_APPLY, 7, true),
-            new SectionHeuristic(APPLY_CALLING_APPLY, 7, true),
-            new SectionHeuristic(APPLY_WALK_GRAPH, 6, true),
-
-            // soft, contextual
-            new SectionHeuristic(Pattern.compile("\\bterraform(?:\\s|-|:)apply\\b"), 6),
-            new SectionHeuristic(Pattern.compile("\\bapply\\s+phase\\b"), 4),
-            new SectionHeuristic(Pattern.compile("\\bapply\\s+start(?:ed|ing)?\\b"), 4),
-            new SectionHeuristic(Pattern.compile("\\bapply\\s+complete\\b"), 5),
-            new SectionHeuristic(Pattern.compile("\\bapply\\s+failed\\b"), 5),
-            new SectionHeuristic(Pattern.compile("\\bcreation\\s+complete\\b"), 3),
-            new SectionHeuristic(Pattern.compile("\\bcreating\\.{3}"), 2),
-            new SectionHeuristic(Pattern.compile("\\bmodifying\\.{3}"), 2),
-            new SectionHeuristic(Pattern.compile("\\bupdating\\.{3}"), 2)
-    );
-
-    private static final DateTimeFormatter[] TIMESTAMP_FORMATTERS = new DateTimeFormatter[]{
-            DateTimeFormatter.ISO_OFFSET_DATE_TIME,
-            DateTimeFormatter.ISO_INSTANT,
-            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSS][XXX]").withZone(ZoneOffset.UTC),
-            DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss[.SSS][XXX]").withZone(ZoneOffset.UTC)
-    };
+    // canonical field values kept per import; longer values (messages, ids) are never repeated
+    private static final int DICTIONARY_CAPACITY = 4096;
+    private static final int DICTIONARY_MAX_LENGTH = 128;
 
     private final ObjectMapper objectMapper;
+    private final boolean streamingFields;
+
+    @Autowired
+    public TerraformLogParser(ObjectMapper objectMapper) {
+        this(objectMapper, true);
+    }
+
+    /**
+     * @param streamingFields read flat JSON lines in one streaming pass instead of building a tree;
+     *                        ignored when the mapper is configured to build number nodes differently
+     */
+    TerraformLogParser(ObjectMapper objectMapper, boolean streamingFields) {
+        this.objectMapper = objectMapper;
+        DeserializationConfig config = objectMapper.getDeserializationConfig();
+        this.streamingFields = streamingFields
+                && !config.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                && !config.isEnabled(DeserializationFeature.USE_BIG_INTEGER_FOR_INTS)
+                && !config.isEnabled(DeserializationFeature.USE_LONG_FOR_INTS)
+                && !config.isEnabled(DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+                && config.isEnabled(JsonNodeFeature.READ_NULL_PROPERTIES);
+    }
 
     // --- Public API ---------------------------------------------------------------------------
 
     public ParsedLogRecord parse(String raw, ImportContext context) {
+        return complete(prepare(raw, context), context);
+    }
+
+    /**
+     * Context-free part of {@link #parse}: everything that does not depend on previous lines.
+     * Of the context only its thread-safe caches are used (the timestamp format and the canonical
+     * field values), so this may run ahead of {@link #complete} on any thread; the result must be
+     * passed to {@link #complete} in line order.
+     */
+    public PreparedLine prepare(String raw, ImportContext context) {
+        return prepare(raw, context.caches);
+    }
+
+    private PreparedLine prepare(String raw, ImportCaches caches) {
         if (!StringUtils.hasText(raw)) {
-            return context.withDefaults(ParsedLogRecordBuilder.empty(context.getLastTimestamp(), context.getLastLevel()));
+            return new PreparedLine(PreparedLine.Kind.EMPTY, raw, null, null, null, null, null);
+        }
+
+        if (streamingFields) {
+            PreparedLine streamed = prepareStreaming(raw, caches);
+            if (streamed != null) return streamed;
         }
 
         JsonNode root = tryParseJson(raw).orElse(null);
         if (root instanceof ObjectNode objectNode) {
-            return parseJson(objectNode, raw, context);
+            return prepareJson(treeFields(objectNode, caches.timestamps()), raw, caches.strings());
+        }
+        return preparePlain(raw, caches.strings());
+    }
+
+    /**
+     * Applies the import context (last timestamp/level fallbacks) to a prepared line and
+     * advances the context. Must be called sequentially, in line order.
+     */
+    public ParsedLogRecord complete(PreparedLine line, ImportContext context) {
+        if (line.kind == PreparedLine.Kind.EMPTY) {
+            return context.withDefaults(ParsedLogRecordBuilder.empty(context.getLastTimestamp(), context.getLastLevel()));
+        }
+        if (line.kind == PreparedLine.Kind.JSON) {
+            return completeJson(line, context);
         }
-        return parsePlain(raw, context);
+        return completePlain(line, context);
     }
 
     // --- JSON path ----------------------------------------------------------------------------
 
-    private ParsedLogRecord parseJson(ObjectNode node, String raw, ImportContext context) {
-        OffsetDateTime ts = findTimestamp(node).orElse(null);
+    private PreparedLine prepareJson(JsonFields fields, String raw, StringDictionary strings) {
+        String message = fields.message();
+        Map<String, String> kvTokens = parseKeyValueTokens(message);
+
+        String module = findModule(fields.module(), message, kvTokens);
+        String reqId = Optional.ofNullable(fields.reqId())
+                .orElseGet(() -> findFirstStringInTokens(kvTokens, List.of("req_id", "request_id", "tf_req_id")));
+        String transactionId = Optional.ofNullable(fields.transactionId())
+                .orElseGet(() -> findFirstStringInTokens(kvTokens, List.of("trans_id", "transaction_id", "trace_id", "tf_trans_id")));
+        String rpc = Optional.ofNullable(fields.rpc())
+                .orElseGet(() -> findFirstStringInTokens(kvTokens, List.of("rpc", "rpc_method", "rpc_name")));
+        String resourceType = Optional.ofNullable(fields.resourceType())
+                .orElseGet(() -> findFirstStringInTokens(kvTokens, List.of("tf_resource_type", "resource_type")));
+        String dataSourceType = Optional.ofNullable(fields.dataSourceType())
+                .orElseGet(() -> findFirstStringInTokens(kvTokens, List.of("data_source_type", "tf_data_source_type")));
+        String httpOperationType = normalizeHttpMethod(Optional.ofNullable(fields.httpMethod())
+                .orElseGet(() -> findFirstStringInTokens(kvTokens, List.of("http_op_type", "method", "http_method", "http_verb", "verb"))));
+        Integer statusCode = fields.statusCode();
+        if (statusCode == null) {
+            statusCode = parseInteger(findFirstStringInTokens(kvTokens, List.of("status_code", "http_status", "status", "statusCode")));
+        }
+
+        String section = strings.canonical(explicitSection(fields, kvTokens));
+        SectionScorer.Boundary boundary = boundary(message);
+        ParsedLogRecordBuilder builder = ParsedLogRecordBuilder.empty(null, null)
+                .section(section)
+                .module(strings.canonical(module))
+                .message(message)
+                .reqId(reqId)
+                .transactionId(transactionId)
+                .rpc(strings.canonical(rpc))
+                .resourceType(strings.canonical(resourceType))
+                .dataSourceType(strings.canonical(dataSourceType))
+                .httpOperationType(strings.canonical(httpOperationType))
+                .statusCode(statusCode)
+                .attributes(fields.attributes())
+                .bodies(fields.bodies())
+                .rawJson(raw);
+
+        return new PreparedLine(PreparedLine.Kind.JSON, raw, fields.timestamp(), strings.canonical(fields.level()), builder,
+                boundary, scoredSection(section, boundary, () -> scoreSection(fields, message, kvTokens)));
+    }
+
+    /**
+     * Known fields of a JSON line, looked up the same way for a tree and for a streamed flat object.
+     *
+     * @param commands     values of {@link #COMMAND_FIELDS}, in that order ({@code null} if absent)
+     * @param terraform    nested {@code terraform} object, if any
+     * @param messageTexts textual {@code @message} and {@code message}, for section scoring
+     */
+    private record JsonFields(
+            OffsetDateTime timestamp,
+            String level,
+            String message,
+            String reqId,
+            String transactionId,
+            String rpc,
+            String resourceType,
+            String dataSourceType,
+            String httpMethod,
+            Integer statusCode,
+            String module,
+            String section,
+            List<String> commands,
+            ObjectNode terraform,
+            List<String> messageTexts,
+            Map<String, Object> attributes,
+            List<ParsedLogRecord.ParsedPayload> bodies) {
+    }
+
+    private JsonFields treeFields(ObjectNode node, TimestampParser timestamps) {
+        List<ParsedLogRecord.ParsedPayload> bodies = new ArrayList<>();
+        for (Map.Entry<String, String> field : BODY_FIELDS) {
+            addIfPresent(node.get(field.getKey()), bodies, field.getValue());
+        }
+        collectNestedBodies(node, bodies);
+
+        List<String> commands = new ArrayList<>(COMMAND_FIELDS.size());
+        for (String field : COMMAND_FIELDS) {
+            commands.add(findFirstStringDeep(node, List.of(field)).orElse(null));
+        }
+
+        return new JsonFields(
+                findTimestamp(node::get, timestamps).orElse(null),
+                findLevel(node::get).orElse(null),
+                findFirstString(node::get, MESSAGE_FIELDS).orElseGet(node::toString),
+                findFirstStringDeep(node, REQ_ID_FIELDS).orElse(null),
+                findFirstStringDeep(node, TRANS_ID_FIELDS).orElse(null),
+                findFirstStringDeep(node, RPC_FIELDS).orElse(null),
+                findFirstStringDeep(node, RESOURCE_TYPE_FIELDS).orElse(null),
+                findFirstStringDeep(node, DATA_SOURCE_TYPE_FIELDS).orElse(null),
+                findFirstStringDeep(node, HTTP_METHOD_FIELDS).orElse(null),
+                findFirstIntDeep(node, STATUS_FIELDS),
+                findFirstStringDeep(node, MODULE_FIELDS).orElse(null),
+                findFirstStringDeep(node, SECTION_FIELDS).orElse(null),
+                commands,
+                node.get("terraform") instanceof ObjectNode terraform ? terraform : null,
+                messageTexts(node::get),
+                extractAttributes(node),
+                bodies);
+    }
+
+    // --- JSON fast path -----------------------------------------------------------------------
+
+    /**
+     * Reads a JSON line in one pass of a streaming parser, without building a tree. Almost every
+     * tflog line is a flat object of scalars: then the deep lookups of {@link #treeFields}
+     * reduce to one map lookup per candidate field and give the same result.
+     *
+     * @return the prepared line, or {@code null} if the line has an unusual shape (nested objects
+     * or arrays, repeated keys) and must go through the tree
+     */
+    private PreparedLine prepareStreaming(String raw, ImportCaches caches) {
+        Map<String, JsonNode> fields = new LinkedHashMap<>();
+        try (JsonParser parser = objectMapper.createParser(raw)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                // a scalar or an array is not a JSON record, broken JSON neither
+                return preparePlain(raw, caches.strings());
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonNode value = scalarNode(parser, parser.nextToken());
+                if (value == null || fields.containsKey(name)) {
+                    return null;
+                }
+                fields.put(name, value);
+            }
+            if (token != JsonToken.END_OBJECT) {
+                return preparePlain(raw, caches.strings());
+            }
+        } catch (IOException e) {
+            return preparePlain(raw, caches.strings());
+        }
+
+        String message = findFirstString(fields::get, MESSAGE_FIELDS).orElseGet(() -> serialize(fields));
+        return prepareJson(flatFields(fields, message, caches.timestamps()), raw, caches.strings());
+    }
+
+    /**
+     * Without a message field the whole record is the message, serialized as {@code readTree} would.
+     */
+    private String serialize(Map<String, JsonNode> fields) {
+        ObjectNode node = objectMapper.getNodeFactory().objectNode();
+        fields.forEach(node::set);
+        return node.toString();
+    }
+
+    /**
+     * Value node for a scalar token, built the way {@code readTree} builds it; {@code null} for containers.
+     */
+    private JsonNode scalarNode(JsonParser parser, JsonToken token) throws IOException {
+        JsonNodeFactory nodes = objectMapper.getNodeFactory();
+        if (token == null) return null;
+        return switch (token) {
+            case VALUE_STRING -> nodes.textNode(parser.getText());
+            case VALUE_NUMBER_INT -> switch (parser.getNumberType()) {
+                case INT -> nodes.numberNode(parser.getIntValue());
+                case LONG -> nodes.numberNode(parser.getLongValue());
+                default -> nodes.numberNode(parser.getBigIntegerValue());
+            };
+            case VALUE_NUMBER_FLOAT -> switch (parser.getNumberType()) {
+                case BIG_DECIMAL -> nodes.numberNode(parser.getDecimalValue());
+                case FLOAT -> nodes.numberNode(parser.getFloatValue());
+                default -> nodes.numberNode(parser.getDoubleValue());
+            };
+            case VALUE_TRUE -> nodes.booleanNode(true);
+            case VALUE_FALSE -> nodes.booleanNode(false);
+            case VALUE_NULL -> nodes.nullNode();
+            default -> null;
+        };
+    }
+
+    private JsonFields flatFields(Map<String, JsonNode> fields, String message, TimestampParser timestamps) {
+        Function<String, JsonNode> get = fields::get;
+
+        List<ParsedLogRecord.ParsedPayload> bodies = new ArrayList<>();
+        for (Map.Entry<String, String> field : BODY_FIELDS) {
+            addIfPresent(get.apply(field.getKey()), bodies, field.getValue());
+        }
+        Set<String> seen = seenPayloads(bodies);
+        Map<String, Object> attrs = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonNode> field : fields.entrySet()) {
+            attrs.put(field.getKey(), simplify(field.getValue()));
+            if (isBodyCandidate(field.getKey(), field.getValue())) {
+                addPayload(field.getValue(), field.getKey(), bodies, seen);
+            }
+        }
+
+        List<String> commands = new ArrayList<>(COMMAND_FIELDS.size());
+        for (String field : COMMAND_FIELDS) {
+            commands.add(findFirstString(get, List.of(field)).orElse(null));
+        }
+
+        return new JsonFields(
+                findTimestamp(get, timestamps).orElse(null),
+                findLevel(get).orElse(null),
+                message,
+                findFirstString(get, REQ_ID_FIELDS).orElse(null),
+                findFirstString(get, TRANS_ID_FIELDS).orElse(null),
+                findFirstString(get, RPC_FIELDS).orElse(null),
+                findFirstString(get, RESOURCE_TYPE_FIELDS).orElse(null),
+                findFirstString(get, DATA_SOURCE_TYPE_FIELDS).orElse(null),
+                findFirstString(get, HTTP_METHOD_FIELDS).orElse(null),
+                findFirstInt(get, STATUS_FIELDS),
+                findFirstString(get, MODULE_FIELDS).orElse(null),
+                findFirstString(get, SECTION_FIELDS).orElse(null),
+                commands,
+                null,
+                messageTexts(get),
+                attrs,
+                bodies);
+    }
+
+    private List<String> messageTexts(Function<String, JsonNode> fields) {
+        List<String> texts = new ArrayList<>(2);
+        for (String f : List.of("@message", "message")) {
+            JsonNode v = fields.apply(f);
+            if (v != null && v.isTextual()) texts.add(v.asText());
+        }
+        return texts;
+    }
+
+    private ParsedLogRecord completeJson(PreparedLine line, ImportContext context) {
+        OffsetDateTime ts = line.timestamp;
         boolean tsGuessed = ts == null;
         if (ts == null) ts = context.getLastTimestamp();
         if (ts == null) {
@@ -157,7 +382,7 @@ public class TerraformLogParser {
             tsGuessed = true;
         }
 
-        String level = findLevel(node).orElse(null);
+        String level = line.level;
         boolean levelGuessed = level == null;
         if (level == null) level = context.getLastLevel();
         if (level == null) {
@@ -165,97 +390,65 @@ public class TerraformLogParser {
             levelGuessed = true;
         }
 
-        String message = findFirstString(node, MESSAGE_FIELDS).orElseGet(node::toString);
+        return context.withDefaults(line.builder
+                .section(context.trackSection(line))
+                .timestamp(ts)
+                .timestampGuessed(tsGuessed)
+                .level(level)
+                .levelGuessed(levelGuessed));
+    }
 
-        Map<String, Object> attrs = extractAttributes(node);
-        Map<String, String> kvTokens = parseKeyValueTokens(message);
+    // --- Plain text path ----------------------------------------------------------------------
 
-        List<ParsedLogRecord.ParsedPayload> bodies = new ArrayList<>();
-        addIfPresent(node, bodies, "http_request", "request");
-        addIfPresent(node, bodies, "http_response", "response");
-        addIfPresent(node, bodies, "request_body", "request");
-        addIfPresent(node, bodies, "response_body", "response");
-        addIfPresent(node, bodies, "request", "request");
-        addIfPresent(node, bodies, "response", "response");
-        collectNestedBodies(node, bodies);
+    private PreparedLine preparePlain(String raw, StringDictionary strings) {
+        OffsetDateTime ts = TimestampParser.parsePrefix(raw).orElse(null);
+        String level = strings.canonical(extractLevelFromText(raw).orElse(null));
 
-        String section = resolveSection(node, message, kvTokens);
-        String module = findModule(node, message, kvTokens);
-        String reqId = findFirstStringDeep(node, Set.of("req_id", "request_id", "tf_req_id", "requestId"))
-                .orElseGet(() -> findFirstStringInTokens(kvTokens, Set.of("req_id", "request_id", "tf_req_id")));
-        String transactionId = findFirstStringDeep(node, Set.of("trans_id", "transaction_id", "trace_id", "tf_trans_id"))
-                .orElseGet(() -> findFirstStringInTokens(kvTokens, Set.of("trans_id", "transaction_id", "trace_id", "tf_trans_id")));
-        String rpc = findFirstStringDeep(node, Set.of("rpc", "rpc_method", "rpc_name", "rpc_call", "operation", "tf_rpc"))
-                .orElseGet(() -> findFirstStringInTokens(kvTokens, Set.of("rpc", "rpc_method", "rpc_name")));
-        String resourceType = findFirstStringDeep(node, Set.of("tf_resource_type", "resource_type"))
-                .orElseGet(() -> findFirstStringInTokens(kvTokens, Set.of("tf_resource_type", "resource_type")));
-        String dataSourceType = findFirstStringDeep(node, Set.of("data_source_type", "tf_data_source_type"))
-                .orElseGet(() -> findFirstStringInTokens(kvTokens, Set.of("data_source_type", "tf_data_source_type")));
-        String httpOperationType = normalizeHttpMethod(findFirstStringDeep(node,
-                Set.of("http_op_type", "method", "http_method", "http_verb", "verb"))
-                .orElseGet(() -> findFirstStringInTokens(kvTokens, Set.of("http_op_type", "method", "http_method", "http_verb", "verb"))));
-        Integer statusCode = findFirstIntDeep(node, Set.of("status_code", "http_status", "status", "statusCode"));
-        if (statusCode == null) {
-            statusCode = parseInteger(findFirstStringInTokens(kvTokens, Set.of("status_code", "http_status", "status", "statusCode")));
-        }
+        Map<String, String> kvTokens = parseKeyValueTokens(raw);
 
-        ParsedLogRecordBuilder builder = ParsedLogRecordBuilder.empty(ts, level)
-                .timestampGuessed(tsGuessed)
-                .levelGuessed(levelGuessed)
+        String section = strings.canonical(explicitSection(null, kvTokens));
+        SectionScorer.Boundary boundary = boundary(raw);
+        ParsedLogRecordBuilder builder = ParsedLogRecordBuilder.empty(null, null)
                 .section(section)
-                .module(module)
-                .message(message)
-                .reqId(reqId)
-                .transactionId(transactionId)
-                .rpc(rpc)
-                .resourceType(resourceType)
-                .dataSourceType(dataSourceType)
-                .httpOperationType(httpOperationType)
-                .statusCode(statusCode)
-                .attributes(attrs)
-                .bodies(bodies)
-                .rawJson(raw);
+                .module(strings.canonical(findModule(null, raw, kvTokens)))
+                .message(raw)
+                .reqId(findFirstStringInTokens(kvTokens, List.of("req_id", "request_id", "tf_req_id")))
+                .transactionId(findFirstStringInTokens(kvTokens, List.of("trans_id", "transaction_id", "trace_id", "tf_trans_id")))
+                .rpc(strings.canonical(findFirstStringInTokens(kvTokens, List.of("rpc", "rpc_method", "rpc_name"))))
+                .resourceType(strings.canonical(findFirstStringInTokens(kvTokens, List.of("tf_resource_type", "resource_type"))))
+                .dataSourceType(strings.canonical(findFirstStringInTokens(kvTokens, List.of("data_source_type", "tf_data_source_type"))))
+                .httpOperationType(strings.canonical(normalizeHttpMethod(findFirstStringInTokens(kvTokens, List.of("http_op_type", "method", "http_method", "http_verb", "verb")))))
+                .statusCode(parseInteger(findFirstStringInTokens(kvTokens, List.of("status_code", "http_status", "status", "statusCode"))))
+                .attributes(Map.of())
+                .bodies(List.of());
 
-        return context.withDefaults(builder);
+        return new PreparedLine(PreparedLine.Kind.PLAIN, raw, ts, level, builder,
+                boundary, scoredSection(section, boundary, () -> scoreSection(null, raw, kvTokens)));
     }
 
-    // --- Plain text path ----------------------------------------------------------------------
-
-    private ParsedLogRecord parsePlain(String raw, ImportContext context) {
-        OffsetDateTime ts = extractTimestampFromText(raw).orElse(context.getLastTimestamp());
+    private ParsedLogRecord completePlain(PreparedLine line, ImportContext context) {
+        OffsetDateTime ts = line.timestamp != null ? line.timestamp : context.getLastTimestamp();
         boolean tsGuessed = ts == null;
         if (ts == null) {
             ts = OffsetDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
             tsGuessed = true;
         }
 
-        String level = extractLevelFromText(raw).orElse(context.getLastLevel());
+        String level = line.level != null ? line.level : context.getLastLevel();
         boolean levelGuessed = level == null;
         if (level == null) {
             level = "INFO";
             levelGuessed = true;
         }
 
-        Map<String, String> kvTokens = parseKeyValueTokens(raw);
-
-        ParsedLogRecordBuilder builder = ParsedLogRecordBuilder.empty(ts, level)
+        // raw_json of a plain line embeds the resolved timestamp/level, so it is built here
+        return context.withDefaults(line.builder
+                .section(context.trackSection(line))
+                .timestamp(ts)
                 .timestampGuessed(tsGuessed)
+                .level(level)
                 .levelGuessed(levelGuessed)
-                .section(resolveSection(null, raw, kvTokens))
-                .module(findModule(null, raw, kvTokens))
-                .message(raw)
-                .reqId(findFirstStringInTokens(kvTokens, Set.of("req_id", "request_id", "tf_req_id")))
-                .transactionId(findFirstStringInTokens(kvTokens, Set.of("trans_id", "transaction_id", "trace_id", "tf_trans_id")))
-                .rpc(findFirstStringInTokens(kvTokens, Set.of("rpc", "rpc_method", "rpc_name")))
-                .resourceType(findFirstStringInTokens(kvTokens, Set.of("tf_resource_type", "resource_type")))
-                .dataSourceType(findFirstStringInTokens(kvTokens, Set.of("data_source_type", "tf_data_source_type")))
-                .httpOperationType(normalizeHttpMethod(findFirstStringInTokens(kvTokens, Set.of("http_op_type", "method", "http_method", "http_verb", "verb"))))
-                .statusCode(parseInteger(findFirstStringInTokens(kvTokens, Set.of("status_code", "http_status", "status", "statusCode"))))
-                .attributes(Map.of())
-                .bodies(List.of())
-                .rawJson(buildPlainJson(raw, ts, level));
-
-        return context.withDefaults(builder);
+                .rawJson(buildPlainJson(line.raw, ts, level)));
     }
 
     // --- Helpers: JSON/fields -----------------------------------------------------------------
@@ -268,18 +461,18 @@ public class TerraformLogParser {
         }
     }
 
-    private Optional<OffsetDateTime> findTimestamp(ObjectNode node) {
+    private Optional<OffsetDateTime> findTimestamp(Function<String, JsonNode> fields, TimestampParser timestamps) {
         for (String field : TIMESTAMP_FIELDS) {
-            JsonNode value = node.get(field);
+            JsonNode value = fields.apply(field);
             if (value != null && value.isValueNode()) {
-                Optional<OffsetDateTime> parsed = parseTimestampNode(value);
+                Optional<OffsetDateTime> parsed = parseTimestampNode(value, timestamps);
                 if (parsed.isPresent()) return parsed;
             }
         }
         return Optional.empty();
     }
 
-    private Optional<OffsetDateTime> parseTimestampNode(JsonNode node) {
+    private Optional<OffsetDateTime> parseTimestampNode(JsonNode node, TimestampParser timestamps) {
         if (node.isNumber()) {
             long epochMillis = node.asLong();
             if (String.valueOf(epochMillis).length() <= 10) {
@@ -288,37 +481,14 @@ public class TerraformLogParser {
             return Optional.of(OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC));
         }
         if (node.isTextual()) {
-            String text = node.asText();
-            for (DateTimeFormatter formatter : TIMESTAMP_FORMATTERS) {
-                try {
-                    return Optional.of(OffsetDateTime.parse(text, formatter));
-                } catch (DateTimeParseException ignored) {
-                }
-                try {
-                    Instant instant = formatter.parse(text, Instant::from);
-                    return Optional.of(OffsetDateTime.ofInstant(instant, ZoneOffset.UTC));
-                } catch (DateTimeParseException ignored) {
-                }
-            }
-            return extractTimestampFromText(text);
+            return timestamps.parse(node.asText());
         }
         return Optional.empty();
     }
 
-    private Optional<OffsetDateTime> extractTimestampFromText(String raw) {
-        Matcher matcher = ISO_PREFIX.matcher(raw);
-        if (matcher.find()) {
-            String iso = matcher.group(1);
-            try {
-                return Optional.of(OffsetDateTime.parse(iso));
-            } catch (DateTimeParseException ignored) { }
-        }
-        return Optional.empty();
-    }
-
-    private Optional<String> findLevel(ObjectNode node) {
+    private Optional<String> findLevel(Function<String, JsonNode> fields) {
         for (String field : LEVEL_FIELDS) {
-            JsonNode value = node.get(field);
+            JsonNode value = fields.apply(field);
             if (value != null && value.isValueNode()) {
                 String text = value.asText(null);
                 if (StringUtils.hasText(text)) {
@@ -344,9 +514,9 @@ public class TerraformLogParser {
         return Optional.empty();
     }
 
-    private Optional<String> findFirstString(ObjectNode node, Set<String> candidates) {
+    private Optional<String> findFirstString(Function<String, JsonNode> fields, List<String> candidates) {
         for (String field : candidates) {
-            JsonNode value = node.get(field);
+            JsonNode value = fields.apply(field);
             if (value != null && value.isValueNode()) {
                 String text = value.asText(null);
                 if (StringUtils.hasText(text)) return Optional.of(text);
@@ -355,11 +525,11 @@ public class TerraformLogParser {
         return Optional.empty();
     }
 
-    private Optional<String> findFirstStringDeep(JsonNode node, Set<String> candidates) {
+    private Optional<String> findFirstStringDeep(JsonNode node, List<String> candidates) {
         return findFirstStringDeep(node, candidates, 3);
     }
 
-    private Optional<String> findFirstStringDeep(JsonNode node, Set<String> candidates, int depth) {
+    private Optional<String> findFirstStringDeep(JsonNode node, List<String> candidates, int depth) {
         if (node == null || depth < 0 || candidates.isEmpty()) return Optional.empty();
         if (node.isObject()) {
             ObjectNode objectNode = (ObjectNode) node;
@@ -391,11 +561,19 @@ public class TerraformLogParser {
         return Optional.empty();
     }
 
-    private Integer findFirstIntDeep(JsonNode node, Set<String> candidates) {
+    private Integer findFirstInt(Function<String, JsonNode> fields, List<String> candidates) {
+        for (String field : candidates) {
+            Integer parsed = parseIntegerNode(fields.apply(field));
+            if (parsed != null) return parsed;
+        }
+        return null;
+    }
+
+    private Integer findFirstIntDeep(JsonNode node, List<String> candidates) {
         return findFirstIntDeep(node, candidates, 3);
     }
 
-    private Integer findFirstIntDeep(JsonNode node, Set<String> candidates, int depth) {
+    private Integer findFirstIntDeep(JsonNode node, List<String> candidates, int depth) {
         if (node == null || depth < 0 || candidates.isEmpty()) return null;
         if (node.isObject()) {
             ObjectNode objectNode = (ObjectNode) node;
@@ -432,14 +610,11 @@ public class TerraformLogParser {
 
     // --- Feature extraction (module, attrs, payloads) -----------------------------------------
 
-    private String findModule(ObjectNode node, String message, Map<String, String> tokens) {
-        Optional<String> direct = findFirstStringDeep(node,
-                Set.of("module", "module_path", "module_addr", "module_name", "module_address", "moduleId",
-                        "moduleID", "moduleKey", "moduleDisplayName", "component", "logger", "source", "@module"));
-        if (direct.isPresent()) return direct.get();
+    private String findModule(String direct, String message, Map<String, String> tokens) {
+        if (direct != null) return direct;
 
         String fromTokens = findFirstStringInTokens(tokens,
-                Set.of("module", "module_path", "module_addr", "module_name", "component", "logger", "@module"));
+                List.of("@module", "module", "module_path", "module_addr", "module_name", "component", "logger"));
         if (StringUtils.hasText(fromTokens)) return fromTokens;
 
         String fromMessage = extractModuleFromMessage(message);
@@ -472,8 +647,7 @@ public class TerraformLogParser {
         }
     }
 
-    private void addIfPresent(ObjectNode node, List<ParsedLogRecord.ParsedPayload> bodies, String field, String kind) {
-        JsonNode value = node.get(field);
+    private void addIfPresent(JsonNode value, List<ParsedLogRecord.ParsedPayload> bodies, String kind) {
         if (value == null || value.isNull()) return;
 
         String json = toJsonString(value);
@@ -484,11 +658,15 @@ public class TerraformLogParser {
 
     private void collectNestedBodies(ObjectNode node, List<ParsedLogRecord.ParsedPayload> bodies) {
         if (node == null) return;
+        collectNestedBodies(node, bodies, seenPayloads(bodies), 0, null);
+    }
+
+    private Set<String> seenPayloads(List<ParsedLogRecord.ParsedPayload> bodies) {
         Set<String> seen = new HashSet<>();
         for (ParsedLogRecord.ParsedPayload payload : bodies) {
             seen.add(payload.kind() + ":" + payload.json());
         }
-        collectNestedBodies(node, bodies, seen, 0, null);
+        return seen;
     }
 
     private void collectNestedBodies(JsonNode node,
@@ -601,31 +779,40 @@ public class TerraformLogParser {
 
     // --- Section classification ---------------------------------------------------------------
 
-    private String resolveSection(ObjectNode node, String message, Map<String, String> tokens) {
-        // 1) Explicit fields, if integrators pass them
-        Optional<String> explicitField = findFirstStringDeep(node,
-                Set.of("section", "phase", "stage", "operation", "command", "action", "step", "terraform_phase",
-                        "terraform_operation", "event_section", "phase_type"));
-        String normalized = explicitField.map(this::normalizeSectionValue)
+    /**
+     * Section named by the line itself (explicit fields, then key=value tokens); {@code null} if none.
+     */
+    private String explicitSection(JsonFields fields, Map<String, String> tokens) {
+        Optional<String> explicitField = Optional.ofNullable(fields != null ? fields.section() : null);
+        return explicitField.map(this::normalizeSectionValue)
                 .orElseGet(() -> normalizeSectionValue(findFirstStringInTokens(tokens,
-                        Set.of("section", "phase", "stage", "operation", "command", "action", "step"))));
-        if (normalized != null) return normalized;
+                        List.of("section", "phase", "stage", "operation", "command", "action", "step"))));
+    }
 
-        // 2) Strong signals in message (CLI args and backend/local)
-        String m = Optional.ofNullable(message).orElse("");
-        String lower = m.toLowerCase(Locale.ROOT);
+    /**
+     * Strong signals in the message (CLI args and backend/local) that open or close a phase.
+     */
+    private SectionScorer.Boundary boundary(String message) {
+        return StringUtils.hasText(message) ? SectionScorer.boundary(message.toLowerCase(Locale.ROOT)) : null;
+    }
 
-        if (CLI_APPLY.matcher(lower).find() || STARTING_APPLY_OP.matcher(lower).find()
-                || APPLY_CALLING_APPLY.matcher(lower).find() || APPLY_WALK_GRAPH.matcher(lower).find()
-                || APPLY_OP_COMPLETED.matcher(lower).find()) {
-            return "apply";
-        }
-        if (CLI_PLAN.matcher(lower).find() || STARTING_PLAN_OP.matcher(lower).find()
-                || PLAN_OP_COMPLETED.matcher(lower).find()) {
-            return "plan";
-        }
+    /**
+     * Scores the section in {@link #prepare}, on the parse thread, so that {@link #complete} only
+     * does the span bookkeeping. An explicit section or a phase boundary always wins over the
+     * score, so such lines are not scored; a line inside a span is, since spans are only known
+     * in {@link #complete}.
+     */
+    private static String scoredSection(String explicit, SectionScorer.Boundary boundary, Supplier<String> score) {
+        return explicit == null && boundary == null ? score.get() : null;
+    }
+
+    /**
+     * Section of a line outside any known plan/apply span, from its own text only.
+     */
+    private String scoreSection(JsonFields fields, String message, Map<String, String> tokens) {
+        String m = Optional.ofNullable(message).orElse("");
 
-        // 3) Token sweep (still allow hints in tokens)
+        // Token sweep (still allow hints in tokens)
         String fromTokens = tokens.values().stream()
                 .map(this::normalizeSectionValue)
                 .filter(StringUtils::hasText)
@@ -633,31 +820,30 @@ public class TerraformLogParser {
                 .orElse(null);
         if (StringUtils.hasText(fromTokens)) return fromTokens;
 
-        // 4) Scoring over fields, tokens, and message with tuned heuristics
-        SectionScore score = new SectionScore();
-        if (node != null) {
-            scorePotentialCommandFields(node, score);
+        // Scoring over fields, tokens, and message with tuned heuristics
+        SectionScorer.Score score = new SectionScorer.Score();
+        if (fields != null) {
+            scorePotentialCommandFields(fields, score);
         }
         tokens.forEach((key, value) -> {
-            scoreText(key, score, 1);
-            scoreText(value, score, 2);
+            SectionScorer.score(key, score, 1);
+            SectionScorer.score(value, score, 2);
         });
-        scoreText(m, score, 3);
+        SectionScorer.score(m, score, 3);
 
         String resolved = score.resolve();
         if (resolved != null) return resolved;
 
-        // 5) Conservative fallback (keep "unknown" if we only saw framework noise)
+        // Conservative fallback (keep "unknown" if we only saw framework noise)
         return "unknown";
     }
 
-    private void scorePotentialCommandFields(ObjectNode node, SectionScore score) {
-        for (String field : List.of("command", "cli_command", "terraform_command", "operation")) {
-            findFirstStringDeep(node, Set.of(field))
-                    .ifPresent(value -> scoreText(value, score, 4));
+    private void scorePotentialCommandFields(JsonFields fields, SectionScorer.Score score) {
+        for (String value : fields.commands()) {
+            if (value != null) SectionScorer.score(value, score, 4);
         }
-        JsonNode terraformNode = node.get("terraform");
-        if (terraformNode instanceof ObjectNode terraformObject) {
+        ObjectNode terraformObject = fields.terraform();
+        if (terraformObject != null) {
             scoreNode(terraformObject.get("command"), score, 5);
             scoreNode(terraformObject.get("cli_command"), score, 5);
             scoreNode(terraformObject.get("operation"), score, 4);
@@ -674,20 +860,19 @@ public class TerraformLogParser {
             scoreNode(terraformObject.get("arguments"), score, 3);
         }
         // tflog specific keys occasionally surface operation hint
-        for (String f : List.of("@message", "message")) {
-            JsonNode v = node.get(f);
-            if (v != null && v.isTextual()) scoreText(v.asText(), score, 4);
+        for (String text : fields.messageTexts()) {
+            SectionScorer.score(text, score, 4);
         }
     }
 
-    private void scoreNode(JsonNode node, SectionScore score, int multiplier) {
+    private void scoreNode(JsonNode node, SectionScorer.Score score, int multiplier) {
         if (node == null || node.isNull()) return;
         if (node.isTextual()) {
-            scoreText(node.asText(), score, multiplier);
+            SectionScorer.score(node.asText(), score, multiplier);
         } else if (node.isArray()) {
             for (JsonNode element : node) {
                 if (element != null && element.isTextual()) {
-                    scoreText(element.asText(), score, multiplier);
+                    SectionScorer.score(element.asText(), score, multiplier);
                 }
             }
         }
@@ -711,77 +896,6 @@ public class TerraformLogParser {
         return false;
     }
 
-    private void scoreText(String text, SectionScore score, int multiplier) {
-        if (!StringUtils.hasText(text)) return;
-
-        String normalized = text.toLowerCase(Locale.ROOT);
-
-        // Ignore framework noise which used to bias towards "plan" (PlanResourceChange etc.)
-        for (Pattern p : NEUTRAL_NOISE) {
-            if (p.matcher(normalized).find()) return;
-        }
-
-        // Hard signals
-        boolean hardApply = STARTING_APPLY_OP.matcher(normalized).find()
-                || APPLY_OP_COMPLETED.matcher(normalized).find()
-                || APPLY_CALLING_APPLY.matcher(normalized).find()
-                || APPLY_WALK_GRAPH.matcher(normalized).find()
-                || CLI_APPLY.matcher(normalized).find();
-        boolean hardPlan = STARTING_PLAN_OP.matcher(normalized).find()
-                || PLAN_OP_COMPLETED.matcher(normalized).find()
-                || CLI_PLAN.matcher(normalized).find();
-
-        if (hardApply) score.hardApply = true;
-        if (hardPlan) score.hardPlan = true;
-
-        // Weighted heuristics
-        for (SectionHeuristic h : PLAN_HEURISTICS) {
-            if (h.pattern().matcher(normalized).find()) {
-                score.plan += h.weight() * multiplier;
-                if (h.hard()) score.hardPlan = true;
-            }
-        }
-        for (SectionHeuristic h : APPLY_HEURISTICS) {
-            if (h.pattern().matcher(normalized).find()) {
-                score.apply += h.weight() * multiplier;
-                if (h.hard()) score.hardApply = true;
-            }
-        }
-
-        // Small generic boost ONLY for whole words "plan"/"apply"
-        if (Pattern.compile("\\bplan\\b").matcher(normalized).find()
-                && !Pattern.compile("\\bapply\\b").matcher(normalized).find()) {
-            score.plan += 1 * multiplier;
-        } else if (Pattern.compile("\\bapply\\b").matcher(normalized).find()
-                && !Pattern.compile("\\bplan\\b").matcher(normalized).find()) {
-            score.apply += 1 * multiplier;
-        }
-    }
-
-    private record SectionHeuristic(Pattern pattern, int weight, boolean hard) {
-        SectionHeuristic(Pattern pattern, int weight) { this(pattern, weight, false); }
-    }
-
-    private static class SectionScore {
-        private int plan;
-        private int apply;
-        private boolean hardPlan;
-        private boolean hardApply;
-
-        private String resolve() {
-            // Hard signals decide first
-            if (hardApply ^ hardPlan) return hardApply ? "apply" : "plan";
-            if (hardApply && hardPlan) return null; // contradictory -> unknown
-
-            // Otherwise require a clear gap and sufficient strength
-            if (apply >= plan + 3 && apply >= 6) return "apply";
-            if (plan  >= apply + 3 && plan  >= 6) return "plan";
-
-            // If weak/ambiguous → unknown
-            return null;
-        }
-    }
-
     // --- JSON builder for plain line ----------------------------------------------------------
 
     private String buildPlainJson(String message, OffsetDateTime ts, String level) {
@@ -801,6 +915,12 @@ public class TerraformLogParser {
     public static class ImportContext {
         private OffsetDateTime lastTimestamp;
         private String lastLevel;
+        // plan/apply phase state: the span that is open now and the one the last line belongs to
+        private SectionSpan openSpan;
+        private SectionSpan lineSpan;
+        private int spanCount;
+        // read by prepare() on the parse threads
+        private final ImportCaches caches = ImportCaches.create();
 
         public ImportContext(OffsetDateTime lastTimestamp, String lastLevel) {
             this.lastTimestamp = lastTimestamp;
@@ -810,6 +930,52 @@ public class TerraformLogParser {
         public OffsetDateTime getLastTimestamp() { return lastTimestamp; }
         public String getLastLevel() { return lastLevel; }
 
+        /**
+         * Span the last completed line belongs to, {@code null} if it is outside any span.
+         */
+        public SectionSpan getLineSpan() { return lineSpan; }
+
+        /**
+         * Span that continues with the next line, {@code null} after an "operation completed" line.
+         */
+        public SectionSpan getOpenSpan() { return openSpan; }
+
+        /**
+         * Continues the spans of an earlier attempt of the same import.
+         *
+         * @param spanCount how many spans the import already has
+         * @param open      its last span, if that span was not closed
+         */
+        public void resumeSpans(int spanCount, SectionSpan open) {
+            this.spanCount = spanCount;
+            this.openSpan = open;
+        }
+
+        /**
+         * Phase state machine: a start signal opens a span, and every following line gets its
+         * section without scoring until the matching "operation completed" line or the next
+         * start signal. Lines outside spans are scored on their own. A section the line names
+         * explicitly always wins, but does not move the state.
+         */
+        private String trackSection(PreparedLine line) {
+            SectionScorer.Boundary boundary = line.boundary;
+            if (boundary != null && !boundary.closes()
+                    && (openSpan == null || !openSpan.section().equals(boundary.section()))) {
+                openSpan = new SectionSpan(++spanCount, boundary.section());
+            }
+            lineSpan = openSpan;
+            if (boundary != null && boundary.closes()
+                    && openSpan != null && openSpan.section().equals(boundary.section())) {
+                openSpan = null;
+            }
+
+            String explicit = line.builder.section();
+            if (explicit != null) return explicit;
+            if (boundary != null) return boundary.section();
+            if (lineSpan != null) return lineSpan.section();
+            return line.scoredSection;
+        }
+
         public ParsedLogRecord withDefaults(ParsedLogRecordBuilder builder) {
             ParsedLogRecord record = builder.build();
             this.lastTimestamp = record.timestamp();
@@ -818,6 +984,49 @@ public class TerraformLogParser {
         }
     }
 
+    /**
+     * Per-import state that {@link #prepare} may use from any parse thread.
+     */
+    private record ImportCaches(TimestampParser timestamps, StringDictionary strings) {
+
+        static ImportCaches create() {
+            return new ImportCaches(new TimestampParser(),
+                    new StringDictionary(DICTIONARY_CAPACITY, DICTIONARY_MAX_LENGTH));
+        }
+    }
+
+    // --- Prepared line -----------------------------------------------------------------------
+
+    /**
+     * Result of {@link #prepare}: a parsed line whose timestamp/level fallbacks are not applied yet.
+     */
+    public static final class PreparedLine {
+
+        private enum Kind { EMPTY, JSON, PLAIN }
+
+        private final Kind kind;
+        private final String raw;
+        private final OffsetDateTime timestamp;
+        private final String level;
+        private final ParsedLogRecordBuilder builder;
+        private final SectionScorer.Boundary boundary;
+        // heuristic section, used only outside a known plan/apply span; null if the line names
+        // its section or a boundary
+        private final String scoredSection;
+
+        private PreparedLine(Kind kind, String raw, OffsetDateTime timestamp, String level,
+                             ParsedLogRecordBuilder builder, SectionScorer.Boundary boundary,
+                             String scoredSection) {
+            this.kind = kind;
+            this.raw = raw;
+            this.timestamp = timestamp;
+            this.level = level;
+            this.builder = builder;
+            this.boundary = boundary;
+            this.scoredSection = scoredSection;
+        }
+    }
+
     // --- Tokenization & small utils -----------------------------------------------------------
 
     private Map<String, String> parseKeyValueTokens(String message) {
@@ -846,7 +1055,7 @@ public class TerraformLogParser {
         return trimmed;
     }
 
-    private String findFirstStringInTokens(Map<String, String> tokens, Set<String> candidates) {
+    private String findFirstStringInTokens(Map<String, String> tokens, List<String> candidates) {
         for (String candidate : candidates) {
             String value = tokens.get(candidate);
             if (StringUtils.hasText(value)) return value;
@@ -921,6 +1130,18 @@ public class TerraformLogParser {
                     null, null, null, null, null, null, null, Map.of(), List.of(), "{}");
         }
 
+        private ParsedLogRecordBuilder timestamp(OffsetDateTime value) {
+            return new ParsedLogRecordBuilder(value, timestampGuessed, level, levelGuessed, section,
+                    module, message, reqId, transactionId, rpc, resourceType, dataSourceType,
+                    httpOperationType, statusCode, attributes, bodies, rawJson);
+        }
+
+        private ParsedLogRecordBuilder level(String value) {
+            return new ParsedLogRecordBuilder(timestamp, timestampGuessed, value, levelGuessed, section,
+                    module, message, reqId, transactionId, rpc, resourceType, dataSourceType,
+                    httpOperationType, statusCode, attributes, bodies, rawJson);
+        }
+
         private ParsedLogRecordBuilder timestampGuessed(boolean value) {
             return new ParsedLogRecordBuilder(timestamp, value, level, levelGuessed, section,
                     module, message, reqId, transactionId, rpc, resourceType, dataSourceType,
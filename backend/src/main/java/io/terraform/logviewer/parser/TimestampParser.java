@@ -0,0 +1,220 @@
+package io.terraform.logviewer.parser;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.Month;
+import java.time.OffsetDateTime;
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Timestamps of log lines. Nearly every tflog line has the {@code 2025-09-09T10:55:44.205291+03:00}
+ * shape, which is read by hand without exceptions or allocations beyond the result. Any other
+ * text goes through the formatters, and the formatter that matched is remembered, so the next
+ * lines of the same import try it first. The result is always the same as {@link #parseEach}.
+ *
+ * <p>One instance per import. It is shared by the parse threads; the remembered formatter is
+ * only a hint, so a stale read costs a retry and nothing else.
+ */
+final class TimestampParser {
+
+    // ISO-8601 at the start of the line (with Z or offset)
+    private static final Pattern ISO_PREFIX = Pattern.compile(
+            "^(\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}:\\d{2}(?:[.\\d]*)(?:Z|[+-]\\d{2}:?\\d{2}))");
+
+    private static final DateTimeFormatter[] FORMATTERS = new DateTimeFormatter[]{
+            DateTimeFormatter.ISO_OFFSET_DATE_TIME,
+            DateTimeFormatter.ISO_INSTANT,
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSS][XXX]").withZone(ZoneOffset.UTC),
+            DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss[.SSS][XXX]").withZone(ZoneOffset.UTC)
+    };
+
+    // A formatter may be tried out of order only if no formatter before it accepts the same text.
+    // The date separators ('T', ' ', '/') keep 0, 2 and 3 apart; ISO_INSTANT overlaps ISO_OFFSET_DATE_TIME.
+    private static final boolean[] REMEMBERED = {true, false, true, true};
+
+    // shortest text of the fast path: yyyy-MM-ddTHH:mm:ssZ
+    private static final int MIN_ISO_LENGTH = 20;
+
+    private volatile int preferred = -1;
+
+    /**
+     * Timestamp in a field that holds nothing else.
+     */
+    Optional<OffsetDateTime> parse(String text) {
+        OffsetDateTime fast = parseIso(text, false);
+        if (fast != null) return Optional.of(fast);
+
+        int first = preferred;
+        if (first >= 0) {
+            OffsetDateTime parsed = parseWith(FORMATTERS[first], text);
+            if (parsed != null) return Optional.of(parsed);
+        }
+        for (int i = 0; i < FORMATTERS.length; i++) {
+            if (i == first) continue;
+            OffsetDateTime parsed = parseWith(FORMATTERS[i], text);
+            if (parsed != null) {
+                if (REMEMBERED[i]) preferred = i;
+                return Optional.of(parsed);
+            }
+        }
+        return parsePrefix(text);
+    }
+
+    /**
+     * ISO-8601 timestamp at the start of a line of text.
+     */
+    static Optional<OffsetDateTime> parsePrefix(String raw) {
+        OffsetDateTime fast = parseIso(raw, true);
+        if (fast != null) return Optional.of(fast);
+
+        Matcher matcher = ISO_PREFIX.matcher(raw);
+        if (matcher.find()) {
+            try {
+                return Optional.of(OffsetDateTime.parse(matcher.group(1)));
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Every formatter in turn, then the text prefix, without the fast path and the remembered
+     * formatter. Reference for tests and benchmarks.
+     */
+    static Optional<OffsetDateTime> parseEach(String text) {
+        for (DateTimeFormatter formatter : FORMATTERS) {
+            try {
+                return Optional.of(OffsetDateTime.parse(text, formatter));
+            } catch (DateTimeParseException ignored) {
+            }
+            try {
+                Instant instant = formatter.parse(text, Instant::from);
+                return Optional.of(OffsetDateTime.ofInstant(instant, ZoneOffset.UTC));
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+        Matcher matcher = ISO_PREFIX.matcher(text);
+        if (matcher.find()) {
+            try {
+                return Optional.of(OffsetDateTime.parse(matcher.group(1)));
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * {@code yyyy-MM-ddTHH:mm:ss[.fraction](Z|±HH:MM)} with 1 to 9 fraction digits. Anything else,
+     * including out-of-range fields, gives {@code null} and is left to the formatters: the fast
+     * path only ever accepts text that {@code ISO_OFFSET_DATE_TIME} (or, for a prefix,
+     * {@code ISO_PREFIX}) reads to the same value.
+     *
+     * @param prefix the timestamp may be followed by other text
+     */
+    static OffsetDateTime parseIso(String s, boolean prefix) {
+        int length = s.length();
+        if (length < MIN_ISO_LENGTH) return null;
+        if (s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T'
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) return null;
+
+        int pos = 19;
+        int nanos = 0;
+        if (s.charAt(pos) == '.') {
+            int start = ++pos;
+            while (pos < length && pos - start < 9 && isDigit(s.charAt(pos))) {
+                nanos = nanos * 10 + (s.charAt(pos) - '0');
+                pos++;
+            }
+            int width = pos - start;
+            if (width == 0 || pos < length && isDigit(s.charAt(pos))) return null;
+            for (int i = width; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+
+        if (pos >= length) return null;
+        int offsetSeconds;
+        char sign = s.charAt(pos);
+        if (sign == 'Z') {
+            offsetSeconds = 0;
+            pos++;
+        } else if (sign == '+' || sign == '-') {
+            if (pos + 6 > length || s.charAt(pos + 3) != ':') return null;
+            int offsetHours = digits(s, pos + 1, 2);
+            int offsetMinutes = digits(s, pos + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59
+                    || offsetHours > 18 || offsetHours == 18 && offsetMinutes > 0) {
+                return null;
+            }
+            offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (sign == '-' ? -1 : 1);
+            pos += 6;
+        } else {
+            return null;
+        }
+        if (!prefix && pos != length) return null;
+
+        if (month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        return OffsetDateTime.of(year, month, day, hour, minute, second, nanos,
+                ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+
+    /**
+     * Tries one formatter, first keeping the offset and then as an instant in UTC. A text that does
+     * not even fit the formatter's pattern is rejected without parsing it twice and throwing.
+     */
+    private static OffsetDateTime parseWith(DateTimeFormatter formatter, String text) {
+        ParsePosition position = new ParsePosition(0);
+        try {
+            if (formatter.parseUnresolved(text, position) == null
+                    || position.getErrorIndex() >= 0 || position.getIndex() != text.length()) {
+                return null;
+            }
+        } catch (DateTimeException e) {
+            // an offset out of range is rejected while reading it; parse() would wrap it the same way
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(text, formatter);
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            Instant instant = formatter.parse(text, Instant::from);
+            return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+        } catch (DateTimeParseException ignored) {
+        }
+        return null;
+    }
+
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
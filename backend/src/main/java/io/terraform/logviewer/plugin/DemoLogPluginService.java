@@ -16,7 +16,7 @@ public class DemoLogPluginService extends LogPluginGrpc.LogPluginImplBase {
         return new StreamObserver<>() {
             @Override
             public void onNext(PluginEvent value) {
-                PluginResult.Builder result = PluginResult.newBuilder();
+                PluginResult.Builder result = PluginResult.newBuilder().setId(value.getId());
                 String level = value.getLevel().toUpperCase(Locale.ROOT);
                 if ("ERROR".equals(level) || "WARN".equals(level)) {
                     result.putAnnotations("severity", level);
@@ -2,7 +2,6 @@ package io.terraform.logviewer.plugin;
 
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
-import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import io.terraform.logviewer.config.PluginProperties;
 import io.terraform.logviewer.entity.LogEntryEntity;
@@ -10,52 +9,95 @@ import io.terraform.logviewer.grpc.LogPluginGrpc;
 import io.terraform.logviewer.grpc.PluginEvent;
 import io.terraform.logviewer.grpc.PluginResult;
 import io.terraform.logviewer.parser.ParsedLogRecord;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class LogPluginGateway {
 
     private final PluginProperties properties;
+    private final PluginTransport transport;
     private final List<ClientHolder> clients = new ArrayList<>();
 
-    public LogPluginGateway init() {
+    @Autowired
+    public LogPluginGateway(PluginProperties properties) {
+        this(properties, null);
+    }
+
+    /**
+     * @param transport открывает стрим {@code Process} вместо gRPC-канала (для тестов), или null
+     */
+    LogPluginGateway(PluginProperties properties, PluginTransport transport) {
+        this.properties = properties;
+        this.transport = transport;
+    }
+
+    @PostConstruct
+    public void init() {
         if (properties.isEnabled() && !CollectionUtils.isEmpty(properties.getPlugins())) {
             for (PluginProperties.PluginConfig plugin : properties.getPlugins()) {
-                clients.add(new ClientHolder(plugin));
+                clients.add(new ClientHolder(plugin, properties, transport));
             }
         }
-        return this;
+    }
+
+    public boolean isActive() {
+        return properties.isEnabled() && !clients.isEmpty();
     }
 
     public Map<String, String> process(ParsedLogRecord record, LogEntryEntity entity) {
-        if (!properties.isEnabled() || clients.isEmpty()) {
-            return Map.of();
+        return processAsync(record, entity).join();
+    }
+
+    /**
+     * Отправляет запись всем плагинам сразу, не дожидаясь ответа; результаты сливаются в порядке
+     * плагинов из конфигурации. Будущее всегда завершается успешно: ошибки и таймауты плагинов
+     * логируются и дают пустой набор аннотаций, плагин с разомкнутой цепью просто пропускается.
+     * Вызывающий может отправить целый пакет записей и только потом ждать результаты —
+     * тогда импорт платит примерно один RTT на окно, а не на строку.
+     */
+    public CompletableFuture<Map<String, String>> processAsync(ParsedLogRecord record, LogEntryEntity entity) {
+        if (!isActive()) {
+            return CompletableFuture.completedFuture(Map.of());
         }
-        Map<String, String> aggregated = new ConcurrentHashMap<>();
+        PluginEvent event = toEvent(record, entity);
+        List<CompletableFuture<Map<String, String>>> results = new ArrayList<>(clients.size());
         for (ClientHolder holder : clients) {
-            try {
-                Map<String, String> result = holder.invoke(record, entity, properties.getDeadline());
-                aggregated.putAll(result);
-            } catch (Exception e) {
-                log.warn("Plugin {} invocation failed: {}", holder.plugin.getId(), e.getMessage());
-            }
+            results.add(holder.submit(event, properties.getDeadline())
+                    .exceptionally(e -> {
+                        if (!(unwrap(e) instanceof CircuitOpenException)) {
+                            log.warn("Plugin {} invocation failed: {}", holder.plugin.getId(), describe(e));
+                        }
+                        return Map.of();
+                    }));
         }
-        return aggregated;
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> {
+                    Map<String, String> aggregated = new ConcurrentHashMap<>();
+                    results.forEach(result -> aggregated.putAll(result.join()));
+                    return aggregated;
+                });
     }
 
     @PreDestroy
@@ -66,12 +108,67 @@ public class LogPluginGateway {
         clients.clear();
     }
 
+    private static PluginEvent toEvent(ParsedLogRecord record, LogEntryEntity entity) {
+        PluginEvent.Builder builder = PluginEvent.newBuilder()
+                .setId(entity.getId() != null ? entity.getId().toString() : "")
+                .setTs(Objects.toString(entity.getTimestamp(), ""))
+                .setLevel(Objects.toString(entity.getLevel(), ""))
+                .setSection(Objects.toString(entity.getSection(), ""))
+                .setMessage(Objects.toString(entity.getMessage(), ""));
+        record.attributes().forEach((k, v) -> builder.putAttrs(k, Objects.toString(v, "")));
+        return builder.build();
+    }
+
+    private static String describe(Throwable e) {
+        Throwable cause = unwrap(e);
+        return cause instanceof TimeoutException ? "timed out" : cause.getMessage();
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Открывает стрим {@code Process} к плагину: результаты идут в {@code results},
+     * события — в возвращённый наблюдатель.
+     */
+    @FunctionalInterface
+    interface PluginTransport {
+        StreamObserver<PluginEvent> process(PluginProperties.PluginConfig plugin, StreamObserver<PluginResult> results);
+    }
+
+    private static final class CircuitOpenException extends RuntimeException {
+        CircuitOpenException() {
+            super("circuit is open", null, false, false);
+        }
+    }
+
+    /**
+     * Канал к одному плагину. Держит один долгоживущий bidi-стрим {@code Process}, через который
+     * события идут конвейером; ответы сопоставляются по {@code PluginEvent.id}. Число событий
+     * без ответа ограничено окном {@code max-in-flight}; события сверх окна ждут в очереди плагина,
+     * а не в потоке, который их отправил, и уходят по мере ответов. Оборванный стрим переоткрывается
+     * при следующем событии, но не чаще, чем раз в {@code reconnect-backoff}. Ошибки и таймауты
+     * питают circuit breaker, а задержки ответов и таймауты — адаптивный дедлайн. Размыкание цепи
+     * сбрасывает замеры задержек: пробный вызов и следующие за ним идут с полным дедлайном,
+     * иначе замедлившийся плагин не уложился бы в дедлайн, посчитанный по старым ответам.
+     */
     private static final class ClientHolder {
         private final PluginProperties.PluginConfig plugin;
         private final ManagedChannel channel;
-        private final LogPluginGrpc.LogPluginStub stub;
+        private final PluginTransport transport;
+        private final Semaphore window;
+        private final Queue<Waiting> waiting = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger drainRequests = new AtomicInteger();
+        private final Duration reconnectBackoff;
+        private final PluginCircuitBreaker breaker;
+        private final PluginLatencyTracker latency;
+
+        private PluginStream stream;
+        private long lastFailureNanos;
+        private boolean failedBefore;
 
-        ClientHolder(PluginProperties.PluginConfig plugin) {
+        ClientHolder(PluginProperties.PluginConfig plugin, PluginProperties properties, PluginTransport transport) {
             this.plugin = plugin;
             ManagedChannelBuilder<?> builder = ManagedChannelBuilder
                     .forAddress(plugin.getHost(), plugin.getPort());
@@ -79,64 +176,128 @@ public class LogPluginGateway {
                 builder.usePlaintext();
             }
             this.channel = builder.build();
-            this.stub = LogPluginGrpc.newStub(channel);
+            LogPluginGrpc.LogPluginStub stub = LogPluginGrpc.newStub(channel);
+            this.transport = transport != null ? transport : (config, results) -> stub.process(results);
+            this.window = new Semaphore(Math.max(properties.getMaxInFlight(), 1));
+            this.reconnectBackoff = properties.getReconnectBackoff();
+            this.breaker = new PluginCircuitBreaker(plugin.getId(),
+                    properties.getBreaker().getFailureThreshold(), properties.getBreaker().getOpenDuration());
+            PluginProperties.AdaptiveDeadline adaptive = properties.getAdaptiveDeadline();
+            this.latency = adaptive.isEnabled()
+                    ? new PluginLatencyTracker(adaptive.getPercentile(), adaptive.getMultiplier(), adaptive.getMin())
+                    : null;
         }
 
-        Map<String, String> invoke(ParsedLogRecord record, LogEntryEntity entity, Duration deadline)
-                throws InterruptedException {
-            CountDownLatch latch = new CountDownLatch(1);
-            Map<String, String> annotations = new ConcurrentHashMap<>();
-
-            StreamObserver<PluginResult> responseObserver = new StreamObserver<>() {
-                @Override
-                public void onNext(PluginResult value) {
-                    if (value != null && !value.getAnnotationsMap().isEmpty()) {
-                        annotations.putAll(value.getAnnotationsMap());
-                    }
+        CompletableFuture<Map<String, String>> submit(PluginEvent event, Duration maxDeadline) {
+            long ticket = breaker.tryAcquire();
+            if (ticket < 0) {
+                return CompletableFuture.failedFuture(new CircuitOpenException());
+            }
+            Duration deadline = latency != null ? latency.deadline(maxDeadline) : maxDeadline;
+            long started = System.nanoTime();
+            CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+            result.whenComplete((value, error) -> {
+                if (error == null) {
+                    if (latency != null) latency.record(System.nanoTime() - started);
+                    breaker.onSuccess(ticket);
+                    return;
                 }
-
-                @Override
-                public void onError(Throwable t) {
-                    latch.countDown();
+                if (latency != null && error instanceof TimeoutException) {
+                    // цензурированный замер: ответ не пришёл за дедлайн, значит задержка не меньше него
+                    latency.record(deadline.toNanos());
                 }
+                if (breaker.onFailure(ticket) && latency != null) {
+                    latency.reset();
+                }
+            });
+            // дедлайн считается с постановки в очередь: ожидание окна в него входит
+            result.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+            if (window.tryAcquire()) {
+                dispatch(event, result);
+            } else {
+                waiting.add(new Waiting(event, result));
+                drain();
+            }
+            return result;
+        }
+
+        /**
+         * Отправляет событие, под которое уже взято место в окне; место освобождается с ответом.
+         */
+        private void dispatch(PluginEvent event, CompletableFuture<Map<String, String>> result) {
+            result.whenComplete((value, error) -> {
+                window.release();
+                drain();
+            });
+            PluginStream current = currentStream();
+            if (current == null) {
+                result.completeExceptionally(new IllegalStateException("stream is reconnecting"));
+                return;
+            }
+            current.send(event, result);
+        }
 
-                @Override
-                public void onCompleted() {
-                    latch.countDown();
+        /**
+         * Отдаёт освободившиеся места окна ожидающим событиям. Вызовы не вкладываются друг в друга:
+         * ответ, пришедший прямо при отправке, только просит ещё один проход.
+         */
+        private void drain() {
+            if (drainRequests.getAndIncrement() != 0) return;
+            int missed = 1;
+            do {
+                while (!waiting.isEmpty() && window.tryAcquire()) {
+                    Waiting next = waiting.poll();
+                    if (next == null || next.result().isDone()) {
+                        // очередь разобрал другой поток, или событие не дождалось окна
+                        window.release();
+                        continue;
+                    }
+                    dispatch(next.event(), next.result());
                 }
-            };
+                missed = drainRequests.addAndGet(-missed);
+            } while (missed != 0);
+        }
 
-            StreamObserver<PluginEvent> requestObserver;
+        private synchronized PluginStream currentStream() {
+            if (stream != null) return stream;
+            if (failedBefore && System.nanoTime() - lastFailureNanos < reconnectBackoff.toNanos()) {
+                return null;
+            }
+            PluginStream opened = new PluginStream();
             try {
-                requestObserver = stub.withDeadlineAfter(deadline.toMillis(), TimeUnit.MILLISECONDS)
-                        .process(responseObserver);
-            } catch (StatusRuntimeException e) {
+                opened.requests = transport.process(plugin, opened);
+            } catch (RuntimeException e) {
                 log.warn("Plugin {} connection failed: {}", plugin.getId(), e.getMessage());
-                return Collections.emptyMap();
+                markFailed();
+                return null;
             }
+            stream = opened;
+            return opened;
+        }
 
-            requestObserver.onNext(toEvent(record, entity));
-            requestObserver.onCompleted();
-
-            if (!latch.await(deadline.toMillis(), TimeUnit.MILLISECONDS)) {
-                log.warn("Plugin {} timed out", plugin.getId());
-                return Collections.emptyMap();
+        private synchronized void closed(PluginStream closed, boolean failure) {
+            if (stream == closed) {
+                stream = null;
+            }
+            if (failure) {
+                markFailed();
             }
-            return annotations;
         }
 
-        private PluginEvent toEvent(ParsedLogRecord record, LogEntryEntity entity) {
-            PluginEvent.Builder builder = PluginEvent.newBuilder()
-                    .setId(entity.getId() != null ? entity.getId().toString() : "")
-                    .setTs(Objects.toString(entity.getTimestamp(), ""))
-                    .setLevel(Objects.toString(entity.getLevel(), ""))
-                    .setSection(Objects.toString(entity.getSection(), ""))
-                    .setMessage(Objects.toString(entity.getMessage(), ""));
-            record.attributes().forEach((k, v) -> builder.putAttrs(k, Objects.toString(v, "")));
-            return builder.build();
+        private void markFailed() {
+            failedBefore = true;
+            lastFailureNanos = System.nanoTime();
         }
 
         void shutdown() {
+            PluginStream current;
+            synchronized (this) {
+                current = stream;
+                stream = null;
+            }
+            if (current != null) {
+                current.complete();
+            }
             try {
                 channel.shutdown();
                 if (!channel.awaitTermination(500, TimeUnit.MILLISECONDS)) {
@@ -147,5 +308,88 @@ public class LogPluginGateway {
                 channel.shutdownNow();
             }
         }
+
+        private record Waiting(PluginEvent event, CompletableFuture<Map<String, String>> result) {
+        }
+
+        private final class PluginStream implements StreamObserver<PluginResult> {
+            private final Map<String, CompletableFuture<Map<String, String>>> pending = new ConcurrentHashMap<>();
+            // порядок отправки — для плагинов, которые не возвращают id в ответе
+            private final Deque<String> order = new ConcurrentLinkedDeque<>();
+            private StreamObserver<PluginEvent> requests;
+            private volatile boolean open = true;
+            // событие ушло из order без ответа (таймаут): ответы без id больше не сопоставить по порядку
+            private volatile boolean orderLost;
+
+            void send(PluginEvent event, CompletableFuture<Map<String, String>> result) {
+                String id = event.getId();
+                if (pending.putIfAbsent(id, result) != null) {
+                    result.completeExceptionally(new IllegalStateException("duplicate event id " + id));
+                    return;
+                }
+                order.add(id);
+                result.whenComplete((value, error) -> {
+                    pending.remove(id, result);
+                    // ответ убирает событие из order сам, до завершения
+                    if (order.remove(id)) {
+                        orderLost = true;
+                    }
+                });
+                try {
+                    // StreamObserver не потокобезопасен, а события идут из нескольких импортов
+                    synchronized (this) {
+                        requests.onNext(event);
+                    }
+                } catch (RuntimeException e) {
+                    onError(e);
+                }
+            }
+
+            @Override
+            public void onNext(PluginResult value) {
+                String id = value.getId();
+                if (id.isEmpty()) {
+                    if (orderLost) {
+                        // ответ мог опоздать на событие, которое уже завершилось по таймауту
+                        log.debug("Plugin {} answered without an id after a timeout, dropping the answer",
+                                plugin.getId());
+                        return;
+                    }
+                    id = order.pollFirst();
+                } else {
+                    order.remove(id);
+                }
+                CompletableFuture<Map<String, String>> result = id != null ? pending.get(id) : null;
+                if (result != null) {
+                    result.complete(value.getAnnotationsMap());
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (!open) return;
+                open = false;
+                log.warn("Plugin {} stream failed: {}", plugin.getId(), t.getMessage());
+                closed(this, true);
+                pending.values().forEach(result -> result.completeExceptionally(t));
+            }
+
+            @Override
+            public void onCompleted() {
+                if (!open) return;
+                open = false;
+                closed(this, false);
+                IllegalStateException closedByPlugin = new IllegalStateException("stream closed by plugin");
+                pending.values().forEach(result -> result.completeExceptionally(closedByPlugin));
+            }
+
+            void complete() {
+                open = false;
+                synchronized (this) {
+                    requests.onCompleted();
+                }
+                pending.values().forEach(result -> result.complete(Collections.emptyMap()));
+            }
+        }
     }
 }
@@ -0,0 +1,88 @@
+package io.terraform.logviewer.plugin;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Автомат «закрыт → открыт → пробный вызов» для одного плагина. После {@code failureThreshold}
+ * ошибок или таймаутов подряд вызовы перестают уходить в плагин; через {@code openDuration}
+ * пропускается один пробный вызов, и по его результату автомат закрывается или снова открывается.
+ * Каждый вызов помнит поколение автомата, при котором он начался: исход вызова, начатого
+ * до последней смены состояния (например, поздний ответ после размыкания), не учитывается.
+ */
+@Slf4j
+final class PluginCircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String pluginId;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    PluginCircuitBreaker(String pluginId, int failureThreshold, Duration openDuration) {
+        this(pluginId, failureThreshold, openDuration, System::nanoTime);
+    }
+
+    PluginCircuitBreaker(String pluginId, int failureThreshold, Duration openDuration, LongSupplier clock) {
+        this.pluginId = pluginId;
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.openNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Разрешение на вызов: поколение автомата, которое передаётся в {@link #onSuccess(long)}
+     * и {@link #onFailure(long)}, или -1, если цепь разомкнута.
+     */
+    synchronized long tryAcquire() {
+        if (state == State.CLOSED) return generation;
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            transition(State.HALF_OPEN);
+            return generation;
+        }
+        return -1;
+    }
+
+    synchronized void onSuccess(long ticket) {
+        if (ticket != generation) return;
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            log.info("Plugin {} is back, closing circuit", pluginId);
+            transition(State.CLOSED);
+        }
+    }
+
+    /**
+     * @return true, если эта ошибка разомкнула цепь
+     */
+    synchronized boolean onFailure(long ticket) {
+        if (ticket != generation) return false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            if (state == State.CLOSED) {
+                log.warn("Plugin {} failed {} times in a row, opening circuit", pluginId, consecutiveFailures);
+            }
+            transition(State.OPEN);
+            openedAt = clock.getAsLong();
+            return true;
+        }
+        return false;
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+        consecutiveFailures = 0;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
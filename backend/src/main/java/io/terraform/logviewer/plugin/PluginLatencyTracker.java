@@ -0,0 +1,63 @@
+package io.terraform.logviewer.plugin;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Скользящее окно задержек ответов одного плагина. Дедлайн вызова считается как заданный
+ * перцентиль окна, умноженный на запас, в пределах [min, max]. Пока замеров мало,
+ * используется максимальный (глобальный) дедлайн. Таймаут записывается как замер, равный
+ * дедлайну вызова: настоящая задержка не меньше, и дедлайн растёт вслед за замедлением плагина.
+ */
+final class PluginLatencyTracker {
+
+    private static final int WINDOW = 512;
+    private static final int MIN_SAMPLES = 32;
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final long[] samples = new long[WINDOW];
+    private final double percentile;
+    private final double multiplier;
+    private final long minNanos;
+
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private volatile long deadlineNanos = -1;
+
+    PluginLatencyTracker(double percentile, double multiplier, Duration min) {
+        this.percentile = Math.min(Math.max(percentile, 0.0), 1.0);
+        this.multiplier = multiplier;
+        this.minNanos = min.toNanos();
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % WINDOW;
+        if (count < WINDOW) count++;
+        if (count < MIN_SAMPLES) return;
+        if (count == MIN_SAMPLES || ++sinceRecompute >= RECOMPUTE_EVERY) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = Math.max((int) Math.ceil(percentile * count) - 1, 0);
+            deadlineNanos = Math.max((long) (sorted[index] * multiplier), minNanos);
+        }
+    }
+
+    /**
+     * Забывает замеры: до новых {@code MIN_SAMPLES} ответов снова действует максимальный дедлайн.
+     */
+    synchronized void reset() {
+        next = 0;
+        count = 0;
+        sinceRecompute = 0;
+        deadlineNanos = -1;
+    }
+
+    Duration deadline(Duration max) {
+        long adaptive = deadlineNanos;
+        if (adaptive < 0 || adaptive >= max.toNanos()) return max;
+        return Duration.ofNanos(adaptive);
+    }
+}
@@ -0,0 +1,62 @@
+package io.terraform.logviewer.repository;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Очередь аннотирования плагинами (tf_annotation_backlog): диапазоны id записей импорта,
+ * которые ещё ждут плагинов. Очередь переживает остановку сервиса.
+ */
+@Repository
+public class AnnotationBacklogRepository {
+
+    private static final RowMapper<Range> ROW = (rs, rowNum) -> new Range(
+            rs.getLong("id"),
+            rs.getString("import_id"),
+            rs.getLong("from_id"),
+            rs.getLong("to_id")
+    );
+
+    private final JdbcTemplate jdbc;
+
+    public AnnotationBacklogRepository(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public Range add(String importId, long fromId, long toId) {
+        KeyHolder key = new GeneratedKeyHolder();
+        jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "insert into tf_annotation_backlog (import_id, from_id, to_id) values (?, ?, ?)",
+                    new String[] {"id"});
+            ps.setString(1, importId);
+            ps.setLong(2, fromId);
+            ps.setLong(3, toId);
+            return ps;
+        }, key);
+        return new Range(key.getKey().longValue(), importId, fromId, toId);
+    }
+
+    /**
+     * Все пачки очереди в порядке постановки.
+     */
+    public List<Range> findAll() {
+        return jdbc.query("select id, import_id, from_id, to_id from tf_annotation_backlog order by id", ROW);
+    }
+
+    public void remove(long id) {
+        jdbc.update("delete from tf_annotation_backlog where id = ?", id);
+    }
+
+    /**
+     * Записи импорта с id в [{@code fromId}, {@code toId}].
+     */
+    public record Range(long id, String importId, long fromId, long toId) {
+    }
+}
@@ -0,0 +1,32 @@
+package io.terraform.logviewer.repository;
+
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * СУБД основного источника данных. Запросы с функциями и индексами PostgreSQL
+ * (оценки планировщика, hashtext, pg_trgm, tsvector) на других БД не выполняются.
+ */
+@Component
+public class DatabaseVendor {
+
+    private final JdbcTemplate jdbc;
+    private volatile Boolean postgres;
+
+    public DatabaseVendor(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public boolean isPostgres() {
+        Boolean known = postgres;
+        if (known == null) {
+            String product = jdbc.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            known = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = known;
+        }
+        return known;
+    }
+}
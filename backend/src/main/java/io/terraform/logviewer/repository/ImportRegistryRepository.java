@@ -0,0 +1,104 @@
+package io.terraform.logviewer.repository;
+
+import java.util.List;
+import java.util.Optional;
+import javax.sql.DataSource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Реестр импортов (tf_imports): отпечаток содержимого файла, состояние и итоговые счётчики.
+ * По отпечатку повторная загрузка того же файла находит прежний импорт.
+ */
+@Repository
+public class ImportRegistryRepository {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+
+    private static final RowMapper<ImportRecord> ROW = (rs, rowNum) -> new ImportRecord(
+            rs.getString("import_id"),
+            rs.getString("file_name"),
+            rs.getString("content_hash"),
+            rs.getString("status"),
+            rs.getLong("total"),
+            rs.getLong("saved"),
+            rs.getLong("failed")
+    );
+
+    private final JdbcTemplate jdbc;
+
+    public ImportRegistryRepository(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public Optional<ImportRecord> findByContentHash(String contentHash) {
+        List<ImportRecord> found = jdbc.query("""
+                select import_id, file_name, content_hash, status, total, saved, failed
+                from tf_imports where content_hash = ?""", ROW, contentHash);
+        return found.stream().findFirst();
+    }
+
+    /**
+     * Регистрирует новый импорт. Если файл с таким отпечатком уже регистрирует другой
+     * импорт, запись создаётся без отпечатка и возвращается {@code false}.
+     */
+    public boolean register(String importId, String fileName, String contentHash) {
+        try {
+            jdbc.update("insert into tf_imports (import_id, file_name, content_hash, status) values (?, ?, ?, ?)",
+                    importId, fileName, contentHash, RUNNING);
+            return true;
+        } catch (DuplicateKeyException e) {
+            jdbc.update("insert into tf_imports (import_id, file_name, status) values (?, ?, ?)",
+                    importId, fileName, RUNNING);
+            return false;
+        }
+    }
+
+    public void markRunning(String importId) {
+        jdbc.update("update tf_imports set status = ?, completed_at = null where import_id = ?", RUNNING, importId);
+    }
+
+    public void complete(String importId, long total, long saved, long failed) {
+        jdbc.update("""
+                update tf_imports set status = ?, total = ?, saved = ?, failed = ?, completed_at = current_timestamp
+                where import_id = ?""", COMPLETED, total, saved, failed, importId);
+    }
+
+    /**
+     * Запоминает отпечаток, посчитанный уже после импорта (для потоковых загрузок).
+     * Если тот же отпечаток уже у другого импорта, запись не меняется и возвращается {@code false}.
+     */
+    public boolean updateContentHash(String importId, String contentHash) {
+        try {
+            jdbc.update("update tf_imports set content_hash = ? where import_id = ?", contentHash, importId);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    public void delete(String importId) {
+        jdbc.update("delete from tf_imports where import_id = ?", importId);
+    }
+
+    public record ImportRecord(
+            String importId,
+            String fileName,
+            String contentHash,
+            String status,
+            long total,
+            long saved,
+            long failed
+    ) {
+        /**
+         * Файл прочитан до конца — повторять нечего. Строки, которые не удалось разобрать,
+         * при повторе не разберутся и подавно, поэтому {@code failed} здесь не учитывается.
+         */
+        public boolean isComplete() {
+            return COMPLETED.equals(status);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.terraform.logviewer.repository;
+
+import io.terraform.logviewer.entity.LogBodyEntity;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Потоковая загрузка записей лога через PostgreSQL COPY (текстовый формат).
+ * Работает на соединении текущей транзакции, идентификаторы записей должны быть
+ * выделены заранее ({@link LogEntryJdbcWriter#allocateIds(int)}).
+ */
+@Repository
+public class LogEntryCopyWriter {
+
+    private static final String ENTRY_COPY = """
+            copy tf_log_entries (id, ts, level, section, module, message, req_id, trans_id, rpc,
+                                 resource_type, data_source_type, http_op_type, status_code,
+                                 file_name, import_id, unread, raw_json, attrs_json, annotations_json,
+                                 line_hash)
+            from stdin""";
+    private static final String BODY_COPY = "copy tf_log_bodies (log_id, kind, body_json) from stdin";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter TS = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+    private final DataSource dataSource;
+    private final SQLExceptionTranslator exceptionTranslator = new SQLStateSQLExceptionTranslator();
+
+    public LogEntryCopyWriter(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void copyEntries(List<LogEntryEntity> entries) {
+        if (entries.isEmpty()) return;
+        copy(ENTRY_COPY, out -> {
+            for (LogEntryEntity entry : entries) {
+                field(out, Long.toString(entry.getId()), false);
+                field(out, entry.getTimestamp() != null ? TS.format(entry.getTimestamp()) : null, false);
+                field(out, entry.getLevel(), false);
+                field(out, entry.getSection(), false);
+                field(out, entry.getModule(), false);
+                field(out, entry.getMessage(), false);
+                field(out, entry.getReqId(), false);
+                field(out, entry.getTransactionId(), false);
+                field(out, entry.getRpc(), false);
+                field(out, entry.getResourceType(), false);
+                field(out, entry.getDataSourceType(), false);
+                field(out, entry.getHttpOperationType(), false);
+                field(out, entry.getStatusCode() != null ? entry.getStatusCode().toString() : null, false);
+                field(out, entry.getFileName(), false);
+                field(out, entry.getImportId(), false);
+                field(out, entry.isUnread() ? "t" : "f", false);
+                field(out, entry.getRawJson(), false);
+                field(out, entry.getAttrsJson(), false);
+                field(out, entry.getAnnotationsJson(), false);
+                field(out, entry.getLineHash() != null ? entry.getLineHash().toString() : null, true);
+            }
+        });
+    }
+
+    public void copyBodies(List<LogBodyEntity> bodies) {
+        if (bodies.isEmpty()) return;
+        copy(BODY_COPY, out -> {
+            for (LogBodyEntity body : bodies) {
+                field(out, Long.toString(body.getLogEntry().getId()), false);
+                field(out, body.getKind(), false);
+                field(out, body.getBodyJson(), true);
+            }
+        });
+    }
+
+    private void copy(String sql, RowWriter rows) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new PGCopyOutputStream(pgConnection, sql, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                rows.write(out);
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("COPY", sql, e);
+        } catch (IOException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw exceptionTranslator.translate("COPY", sql, sqlException);
+            }
+            throw new UncheckedIOException(e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static void field(Writer out, String value, boolean last) throws IOException {
+        if (value == null) {
+            out.write("\\N");
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                switch (ch) {
+                    case '\\' -> out.write("\\\\");
+                    case '\t' -> out.write("\\t");
+                    case '\n' -> out.write("\\n");
+                    case '\r' -> out.write("\\r");
+                    default -> out.write(ch);
+                }
+            }
+        }
+        out.write(last ? '\n' : '\t');
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(Writer out) throws IOException;
+    }
+}
@@ -0,0 +1,91 @@
+package io.terraform.logviewer.repository;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Дешёвые подсчёты по tf_log_entries: оценка планировщика и регистры HyperLogLog по req_id.
+ * Оба запроса используют функции PostgreSQL, на других БД их вызывать нельзя
+ * ({@link #supportsEstimates()}).
+ */
+@Repository
+public class LogEntryCountRepository {
+
+    // первый "Plan Rows" в EXPLAIN (FORMAT JSON) — оценка корневого узла плана
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\"\\s*:\\s*([0-9.eE+]+)");
+
+    private final JdbcTemplate jdbc;
+    private final DatabaseVendor vendor;
+
+    public LogEntryCountRepository(DataSource dataSource, DatabaseVendor vendor) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.vendor = vendor;
+    }
+
+    public boolean supportsEstimates() {
+        return vendor.isPostgres();
+    }
+
+    /**
+     * Сколько строк подходит под фильтр, по мнению планировщика. Запрос не выполняется.
+     */
+    public long estimate(Filter filter) {
+        String plan = jdbc.queryForObject(
+                "explain (format json) select 1 from tf_log_entries" + filter.whereClause(),
+                String.class, filter.args().toArray());
+        Matcher matcher = plan == null ? null : PLAN_ROWS.matcher(plan);
+        if (matcher == null || !matcher.find()) {
+            throw new IllegalStateException("No row estimate in plan: " + plan);
+        }
+        return (long) Double.parseDouble(matcher.group(1));
+    }
+
+    /**
+     * Регистры HyperLogLog по {@code coalesce(req_id, '')}: младшие {@code precision} бит хеша —
+     * номер регистра, в регистре — ранг первой единицы в оставшихся битах. БД возвращает по
+     * регистру минимум оставшихся бит, ранг из него — наибольший в регистре.
+     */
+    public int[] reqIdRegisters(Filter filter, int precision) {
+        int registers = 1 << precision;
+        int tailBits = Integer.SIZE - precision;
+        int[] ranks = new int[registers];
+        jdbc.query("""
+                        select h & ? as register, min((h::bigint & 4294967295) >> ?) as tail
+                        from (select hashtext(coalesce(req_id, '')) as h from tf_log_entries%s) hashed
+                        group by 1""".formatted(filter.whereClause()),
+                rs -> {
+                    long tail = rs.getLong("tail");
+                    ranks[rs.getInt("register")] = tailBits - (Long.SIZE - Long.numberOfLeadingZeros(tail)) + 1;
+                },
+                prepend(filter.args(), registers - 1, precision));
+        return ranks;
+    }
+
+    private static Object[] prepend(List<Object> args, Object... first) {
+        Object[] all = new Object[first.length + args.size()];
+        System.arraycopy(first, 0, all, 0, first.length);
+        for (int i = 0; i < args.size(); i++) {
+            all[first.length + i] = args.get(i);
+        }
+        return all;
+    }
+
+    /**
+     * Условие по tf_log_entries в SQL: {@code where} без ключевого слова (пусто — без условий)
+     * и значения его параметров по порядку. Равные фильтры дают равные объекты.
+     */
+    public record Filter(String where, List<Object> args) {
+
+        public Filter {
+            args = List.copyOf(args);
+        }
+
+        String whereClause() {
+            return where.isEmpty() ? "" : " where " + where;
+        }
+    }
+}
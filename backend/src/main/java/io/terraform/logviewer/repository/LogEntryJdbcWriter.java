@@ -0,0 +1,172 @@
+package io.terraform.logviewer.repository;
+
+import io.terraform.logviewer.entity.LogBodyEntity;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Пакетная запись записей лога в PostgreSQL многострочными INSERT-ами.
+ * Идентификаторы выделяются заранее из последовательности tf_log_entries,
+ * поэтому тела и аннотации можно связать с записью до вставки.
+ */
+@Repository
+public class LogEntryJdbcWriter {
+
+    private static final String ENTRY_INSERT_PREFIX = """
+            insert into tf_log_entries (id, ts, level, section, module, message, req_id, trans_id, rpc,
+                                        resource_type, data_source_type, http_op_type, status_code,
+                                        file_name, import_id, unread, raw_json, attrs_json, annotations_json,
+                                        line_hash)
+            values\s""";
+    private static final String ENTRY_ROW = "(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+    private static final int ENTRY_COLUMNS = 20;
+
+    private static final String BODY_INSERT_PREFIX = "insert into tf_log_bodies (log_id, kind, body_json) values ";
+    private static final String BODY_ROW = "(?,?,?)";
+    private static final int BODY_COLUMNS = 3;
+
+    // PostgreSQL ограничивает один запрос 32767 bind-параметрами
+    private static final int MAX_PARAMETERS = 32_767;
+
+    private final JdbcTemplate jdbc;
+
+    public LogEntryJdbcWriter(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public long[] allocateIds(int count) {
+        if (count <= 0) return new long[0];
+        List<Long> ids = jdbc.queryForList(
+                "select nextval(pg_get_serial_sequence('tf_log_entries', 'id')) from generate_series(1, ?)",
+                Long.class, count);
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    public void insertEntries(List<LogEntryEntity> entries) {
+        int rowsPerStatement = MAX_PARAMETERS / ENTRY_COLUMNS;
+        for (int from = 0; from < entries.size(); from += rowsPerStatement) {
+            List<LogEntryEntity> chunk = entries.subList(from, Math.min(entries.size(), from + rowsPerStatement));
+            jdbc.update(multiRowSql(ENTRY_INSERT_PREFIX, ENTRY_ROW, chunk.size()), ps -> {
+                int index = 1;
+                for (LogEntryEntity entry : chunk) {
+                    index = bindEntry(ps, index, entry);
+                }
+            });
+        }
+    }
+
+    public void insertBodies(List<LogBodyEntity> bodies) {
+        int rowsPerStatement = MAX_PARAMETERS / BODY_COLUMNS;
+        for (int from = 0; from < bodies.size(); from += rowsPerStatement) {
+            List<LogBodyEntity> chunk = bodies.subList(from, Math.min(bodies.size(), from + rowsPerStatement));
+            jdbc.update(multiRowSql(BODY_INSERT_PREFIX, BODY_ROW, chunk.size()), ps -> {
+                int index = 1;
+                for (LogBodyEntity body : chunk) {
+                    ps.setLong(index++, body.getLogEntry().getId());
+                    ps.setString(index++, body.getKind());
+                    ps.setString(index++, body.getBodyJson());
+                }
+            });
+        }
+    }
+
+    public void updateAnnotations(List<LogEntryEntity> entries) {
+        if (entries.isEmpty()) return;
+        jdbc.batchUpdate("update tf_log_entries set annotations_json = ? where id = ?", entries, entries.size(),
+                (ps, entry) -> {
+                    ps.setString(1, entry.getAnnotationsJson());
+                    ps.setLong(2, entry.getId());
+                });
+    }
+
+    /**
+     * Записи импорта с id в [{@code fromId}, {@code toId}] по возрастанию id — с теми полями,
+     * что уходят плагинам.
+     */
+    public List<LogEntryEntity> findForAnnotation(String importId, long fromId, long toId) {
+        return jdbc.query("""
+                select id, ts, level, section, message, attrs_json from tf_log_entries
+                where import_id = ? and id between ? and ? order by id""", (rs, rowNum) -> {
+            LogEntryEntity entry = new LogEntryEntity();
+            entry.setId(rs.getLong("id"));
+            entry.setTimestamp(rs.getObject("ts", OffsetDateTime.class));
+            entry.setLevel(rs.getString("level"));
+            entry.setSection(rs.getString("section"));
+            entry.setMessage(rs.getString("message"));
+            entry.setAttrsJson(rs.getString("attrs_json"));
+            entry.setImportId(importId);
+            return entry;
+        }, importId, fromId, toId);
+    }
+
+    /**
+     * Хэши уже сохранённых строк импорта, по возрастанию — для бинарного поиска.
+     */
+    public long[] findLineHashes(String importId) {
+        return jdbc.queryForList(
+                "select line_hash from tf_log_entries where import_id = ? and line_hash is not null order by line_hash",
+                Long.class, importId).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Хэши строк импорта с номерами больше {@code afterLine}.
+     */
+    public long[] findLineHashes(String importId, long afterLine) {
+        return jdbc.queryForList(
+                "select line_hash from tf_log_entries where import_id = ? and line_hash >= ? order by line_hash",
+                Long.class, importId, (afterLine + 1) << 32).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    public int deleteImport(String importId) {
+        return jdbc.update("delete from tf_log_entries where import_id = ?", importId);
+    }
+
+    private int bindEntry(PreparedStatement ps, int index, LogEntryEntity entry) throws SQLException {
+        ps.setLong(index++, entry.getId());
+        ps.setObject(index++, entry.getTimestamp());
+        ps.setString(index++, entry.getLevel());
+        ps.setString(index++, entry.getSection());
+        ps.setString(index++, entry.getModule());
+        ps.setString(index++, entry.getMessage());
+        ps.setString(index++, entry.getReqId());
+        ps.setString(index++, entry.getTransactionId());
+        ps.setString(index++, entry.getRpc());
+        ps.setString(index++, entry.getResourceType());
+        ps.setString(index++, entry.getDataSourceType());
+        ps.setString(index++, entry.getHttpOperationType());
+        if (entry.getStatusCode() != null) {
+            ps.setInt(index++, entry.getStatusCode());
+        } else {
+            ps.setNull(index++, Types.INTEGER);
+        }
+        ps.setString(index++, entry.getFileName());
+        ps.setString(index++, entry.getImportId());
+        ps.setBoolean(index++, entry.isUnread());
+        ps.setString(index++, entry.getRawJson());
+        ps.setString(index++, entry.getAttrsJson());
+        ps.setString(index++, entry.getAnnotationsJson());
+        if (entry.getLineHash() != null) {
+            ps.setLong(index++, entry.getLineHash());
+        } else {
+            ps.setNull(index++, Types.BIGINT);
+        }
+        return index;
+    }
+
+    private String multiRowSql(String prefix, String row, int rows) {
+        StringBuilder sql = new StringBuilder(prefix.length() + rows * (row.length() + 1));
+        sql.append(prefix);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sql.append(',');
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+}
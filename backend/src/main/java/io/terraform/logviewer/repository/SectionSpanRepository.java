@@ -0,0 +1,100 @@
+package io.terraform.logviewer.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Участки plan/apply импортов (tf_section_spans): первая и последняя строка каждого участка,
+ * чтобы UI переходил между ними без просмотра всех записей.
+ */
+@Repository
+public class SectionSpanRepository {
+
+    private static final RowMapper<Span> ROW = (rs, rowNum) -> new Span(
+            rs.getString("import_id"),
+            rs.getInt("span_no"),
+            rs.getString("section"),
+            rs.getLong("start_line"),
+            rs.getLong("end_line"),
+            rs.getObject("start_ts", OffsetDateTime.class),
+            rs.getObject("end_ts", OffsetDateTime.class),
+            nullableLong(rs, "start_entry_id"),
+            nullableLong(rs, "end_entry_id"),
+            rs.getBoolean("closed")
+    );
+
+    private static final String COLUMNS = """
+            import_id, span_no, section, start_line, end_line, start_ts, end_ts, start_entry_id, end_entry_id, closed""";
+
+    private final JdbcTemplate jdbc;
+
+    public SectionSpanRepository(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public List<Span> findByImport(String importId) {
+        return jdbc.query("select " + COLUMNS + " from tf_section_spans where import_id = ? order by span_no",
+                ROW, importId);
+    }
+
+    public Optional<Span> findLast(String importId) {
+        List<Span> found = jdbc.query("select " + COLUMNS
+                + " from tf_section_spans where import_id = ? order by span_no desc limit 1", ROW, importId);
+        return found.stream().findFirst();
+    }
+
+    /**
+     * Сохраняет участок; участки одного импорта пишет один поток, поэтому гонки между update и insert нет.
+     */
+    public void save(Span span) {
+        int updated = jdbc.update("""
+                update tf_section_spans
+                set section = ?, start_line = ?, end_line = ?, start_ts = ?, end_ts = ?,
+                    start_entry_id = ?, end_entry_id = ?, closed = ?
+                where import_id = ? and span_no = ?""",
+                span.section(), span.startLine(), span.endLine(), span.startTs(), span.endTs(),
+                span.startEntryId(), span.endEntryId(), span.closed(), span.importId(), span.number());
+        if (updated == 0) {
+            jdbc.update("insert into tf_section_spans (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    span.importId(), span.number(), span.section(), span.startLine(), span.endLine(),
+                    span.startTs(), span.endTs(), span.startEntryId(), span.endEntryId(), span.closed());
+        }
+    }
+
+    public int deleteImport(String importId) {
+        return jdbc.update("delete from tf_section_spans where import_id = ?", importId);
+    }
+
+    private static Long nullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * @param number    номер участка в импорте, с 1
+     * @param startLine номер первой строки участка в файле (как в хэше строки)
+     * @param endLine   номер последней строки участка, записанной к этому моменту
+     * @param closed    участок закончился (строкой «operation completed» или началом следующего),
+     *                  а не просто оборвался вместе с файлом
+     */
+    public record Span(
+            String importId,
+            int number,
+            String section,
+            long startLine,
+            long endLine,
+            OffsetDateTime startTs,
+            OffsetDateTime endTs,
+            Long startEntryId,
+            Long endEntryId,
+            boolean closed
+    ) {
+    }
+}
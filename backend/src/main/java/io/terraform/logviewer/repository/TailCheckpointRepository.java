@@ -0,0 +1,79 @@
+package io.terraform.logviewer.repository;
+
+import java.util.List;
+import java.util.Optional;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Контрольные точки чтения растущих файлов (tf_tail_checkpoints): до какого байта файл
+ * прочитан и записан и сколько строк в нём было. После рестарта чтение продолжается с этой точки.
+ */
+@Repository
+public class TailCheckpointRepository {
+
+    private static final RowMapper<Checkpoint> ROW = (rs, rowNum) -> new Checkpoint(
+            rs.getString("path"),
+            rs.getString("import_id"),
+            rs.getString("file_key"),
+            rs.getLong("byte_offset"),
+            rs.getLong("line_count"),
+            rs.getLong("saved"),
+            rs.getLong("failed")
+    );
+
+    private final JdbcTemplate jdbc;
+
+    public TailCheckpointRepository(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public Optional<Checkpoint> find(String path) {
+        List<Checkpoint> found = jdbc.query("""
+                select path, import_id, file_key, byte_offset, line_count, saved, failed
+                from tf_tail_checkpoints where path = ?""", ROW, path);
+        return found.stream().findFirst();
+    }
+
+    /**
+     * Сохраняет точку; файлы читает один поток, поэтому гонки между update и insert нет.
+     */
+    public void save(Checkpoint checkpoint) {
+        int updated = jdbc.update("""
+                update tf_tail_checkpoints
+                set import_id = ?, file_key = ?, byte_offset = ?, line_count = ?, saved = ?, failed = ?,
+                    updated_at = current_timestamp
+                where path = ?""",
+                checkpoint.importId(), checkpoint.fileKey(), checkpoint.offset(), checkpoint.lines(),
+                checkpoint.saved(), checkpoint.failed(), checkpoint.path());
+        if (updated == 0) {
+            jdbc.update("""
+                    insert into tf_tail_checkpoints (path, import_id, file_key, byte_offset, line_count, saved, failed)
+                    values (?, ?, ?, ?, ?, ?, ?)""",
+                    checkpoint.path(), checkpoint.importId(), checkpoint.fileKey(), checkpoint.offset(),
+                    checkpoint.lines(), checkpoint.saved(), checkpoint.failed());
+        }
+    }
+
+    public void delete(String path) {
+        jdbc.update("delete from tf_tail_checkpoints where path = ?", path);
+    }
+
+    /**
+     * @param fileKey идентификатор файла в ФС (inode), если ФС его даёт: по нему видна подмена файла
+     * @param offset  байт, следующий за последней целиком прочитанной строкой
+     * @param lines   сколько непустых строк прочитано до {@code offset}
+     */
+    public record Checkpoint(
+            String path,
+            String importId,
+            String fileKey,
+            long offset,
+            long lines,
+            long saved,
+            long failed
+    ) {
+    }
+}
@@ -0,0 +1,58 @@
+package io.terraform.logviewer.service;
+
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Потоковый отпечаток содержимого импортируемого файла (SHA-256, hex).
+ * Совпадение отпечатков означает, что загружается уже известный файл.
+ */
+public final class ContentHasher {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final MessageDigest digest;
+
+    public ContentHasher() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static String hash(InputStream input) throws IOException {
+        ContentHasher hasher = new ContentHasher();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            hasher.update(buffer, 0, read);
+        }
+        return hasher.hex();
+    }
+
+    public static String hash(ByteString content) {
+        ContentHasher hasher = new ContentHasher();
+        hasher.update(content);
+        return hasher.hex();
+    }
+
+    public void update(ByteString chunk) {
+        for (ByteBuffer buffer : chunk.asReadOnlyByteBufferList()) {
+            digest.update(buffer);
+        }
+    }
+
+    public void update(byte[] bytes, int offset, int count) {
+        digest.update(bytes, offset, count);
+    }
+
+    public String hex() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
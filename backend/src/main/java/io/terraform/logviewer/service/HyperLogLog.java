@@ -0,0 +1,55 @@
+package io.terraform.logviewer.service;
+
+/**
+ * Оценка числа различных значений по регистрам HyperLogLog над 32-битным хешем
+ * (Flajolet и др., 2007). Регистры заполняет БД
+ * ({@link io.terraform.logviewer.repository.LogEntryCountRepository#reqIdRegisters}) —
+ * та же раскладка, что у {@link #offer}.
+ */
+final class HyperLogLog {
+
+    /**
+     * 2^11 регистров: стандартная ошибка 1.04 / sqrt(2048) ≈ 2.3%.
+     */
+    static final int PRECISION = 11;
+
+    private static final double TWO_32 = 4294967296.0;
+
+    private HyperLogLog() {
+    }
+
+    /**
+     * Учитывает хеш в регистрах: младшие биты — номер регистра, ранг — позиция первой единицы
+     * в старших битах, считая от старшего.
+     */
+    static void offer(int[] ranks, int hash, int precision) {
+        int register = hash & ((1 << precision) - 1);
+        int tailBits = Integer.SIZE - precision;
+        int tail = hash >>> precision;
+        int rank = tailBits - (Integer.SIZE - Integer.numberOfLeadingZeros(tail)) + 1;
+        if (rank > ranks[register]) {
+            ranks[register] = rank;
+        }
+    }
+
+    static long estimate(int[] ranks) {
+        int m = ranks.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int rank : ranks) {
+            sum += Math.scalb(1.0, -rank);
+            if (rank == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // малые мощности: linear counting по пустым регистрам
+            estimate = m * Math.log((double) m / zeros);
+        } else if (estimate > TWO_32 / 30) {
+            // большие мощности: поправка на коллизии 32-битного хеша
+            estimate = -TWO_32 * Math.log(1 - estimate / TWO_32);
+        }
+        return Math.round(estimate);
+    }
+}
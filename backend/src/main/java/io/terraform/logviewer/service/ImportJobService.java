@@ -0,0 +1,307 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.service.LogImportService.ImportSession;
+import io.terraform.logviewer.service.dto.ImportJobProgress;
+import io.terraform.logviewer.service.dto.ImportJobProgress.State;
+import jakarta.annotation.PreDestroy;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Фоновые задания импорта: вызов загрузки возвращает {@code import_id} сразу, а сам файл
+ * разбирается и пишется в пуле {@code log-import-}. Прогресс можно запросить или получать
+ * периодически; отмена останавливает задание и удаляет уже записанные строки импорта.
+ */
+@Slf4j
+@Service
+public class ImportJobService {
+
+    private final LogImportService importService;
+    private final LogContentDecoder.Limits limits;
+    private final Duration progressInterval;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService ticker;
+    private final Map<String, Job> jobs;
+
+    public ImportJobService(LogImportService importService, IngestProperties properties) {
+        this.importService = importService;
+        this.limits = LogContentDecoder.Limits.of(properties.getArchive());
+        IngestProperties.Jobs settings = properties.getJobs();
+        this.progressInterval = settings.getProgressInterval();
+        this.executor = Executors.newFixedThreadPool(Math.max(settings.getWorkers(), 1),
+                Thread.ofPlatform().name("log-import-", 0).daemon(true).factory());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("log-import-progress").daemon(true).factory());
+        int retained = Math.max(settings.getRetained(), 1);
+        this.jobs = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+                // выполняющиеся задания не вытесняем, иначе их нельзя будет отменить
+                return size() > retained && eldest.getValue().state.isTerminal();
+            }
+        };
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ставит файл в очередь на импорт.
+     *
+     * @param sizeBytes размер файла, если известен (иначе -1): нужен для ETA и выбора COPY
+     * @param bulkLoad  явный выбор COPY-загрузки клиентом; {@code null} — решить по размеру
+     * @param contentHash отпечаток содержимого; уже импортированный файл не разбирается,
+     *                    задание сразу завершено с прежними {@code import_id} и счётчиками
+     * @return идентификатор импорта, он же идентификатор задания
+     */
+    public String submit(String fileName, long sizeBytes, Boolean bulkLoad, String contentHash, Content content) {
+        ImportSession session = importService.startSession(fileName, sizeBytes, bulkLoad, contentHash);
+        Job job = new Job(session, sizeBytes, content);
+        if (session.isDuplicate()) {
+            job.startedNanos = job.finishedNanos = System.nanoTime();
+            job.state = State.COMPLETED;
+            job.bytesRead.set(Math.max(sizeBytes, 0));
+            content.discard();
+        }
+        synchronized (jobs) {
+            jobs.put(session.getImportId(), job);
+        }
+        if (!session.isDuplicate()) {
+            executor.execute(() -> run(job));
+        }
+        return session.getImportId();
+    }
+
+    public Optional<ImportJobProgress> progress(String importId) {
+        return find(importId).map(Job::snapshot);
+    }
+
+    /**
+     * Просит задание остановиться. Задание в очереди отменяется сразу при старте, выполняющееся —
+     * на следующей строке; затем строки импорта удаляются.
+     *
+     * @return прогресс на момент запроса или пусто, если задание неизвестно
+     */
+    public Optional<ImportJobProgress> cancel(String importId) {
+        return find(importId).map(job -> {
+            job.cancelRequested = true;
+            return job.snapshot();
+        });
+    }
+
+    /**
+     * Отправляет прогресс задания сразу и затем каждые {@code progress-interval}, пока задание
+     * не завершится; последним всегда идёт итоговое состояние.
+     *
+     * @return дескриптор подписки: его {@code cancel} прекращает отправку
+     */
+    public Optional<ScheduledFuture<?>> watch(String importId, Consumer<ImportJobProgress> listener) {
+        Optional<Job> found = find(importId);
+        if (found.isEmpty()) return Optional.empty();
+        Job job = found.get();
+        AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+        ScheduledFuture<?> subscription = ticker.scheduleAtFixedRate(() -> {
+            ImportJobProgress snapshot = job.snapshot();
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                log.debug("Progress listener for import {} failed: {}", importId, e.getMessage());
+                cancelSubscription(self);
+                return;
+            }
+            if (snapshot.state().isTerminal()) {
+                cancelSubscription(self);
+            }
+        }, 0, Math.max(progressInterval.toMillis(), 1), TimeUnit.MILLISECONDS);
+        self.set(subscription);
+        return Optional.of(subscription);
+    }
+
+    private static void cancelSubscription(AtomicReference<ScheduledFuture<?>> self) {
+        ScheduledFuture<?> subscription = self.get();
+        if (subscription != null) {
+            subscription.cancel(false);
+        } else {
+            // первый запуск мог опередить сохранение дескриптора
+            throw new CancellationException();
+        }
+    }
+
+    private Optional<Job> find(String importId) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(importId));
+        }
+    }
+
+    private void run(Job job) {
+        ImportSession session = job.session;
+        job.startedNanos = System.nanoTime();
+        job.state = State.RUNNING;
+        // байты считаются до распаковки: с ними сравнивается размер загрузки
+        try (InputStream input = new CountingInputStream(job.content.open(), job.bytesRead)) {
+            LogContentDecoder.Decoded decoded = LogContentDecoder.open(input, limits);
+            if (decoded.isArchive()) {
+                throw new IOException("Archives are imported by the synchronous upload, one import per file");
+            }
+            LineSplitter.split(decoded.stream(), line -> {
+                if (job.cancelRequested) throw new CancellationException();
+                importService.ingestFileLine(session, line);
+            });
+            if (job.cancelRequested) throw new CancellationException();
+            importService.completeSession(session);
+            job.state = State.COMPLETED;
+        } catch (CancellationException e) {
+            discard(job);
+        } catch (Exception e) {
+            // как и синхронная загрузка: сохраняем прочитанное, но отмечаем ошибку
+            log.warn("Import {} of {} failed: {}", session.getImportId(), session.getFileName(), e.getMessage());
+            job.error = e.getMessage();
+            try {
+                importService.failSession(session);
+            } catch (RuntimeException flushError) {
+                log.warn("Failed to flush import {}: {}", session.getImportId(), flushError.getMessage());
+            }
+            job.state = State.FAILED;
+        } finally {
+            job.finishedNanos = System.nanoTime();
+            job.content.discard();
+        }
+    }
+
+    private void discard(Job job) {
+        try {
+            int deleted = importService.discardSession(job.session);
+            log.info("Import {} cancelled, removed {} entries", job.session.getImportId(), deleted);
+            job.state = State.CANCELLED;
+        } catch (RuntimeException e) {
+            log.warn("Failed to clean up cancelled import {}: {}", job.session.getImportId(), e.getMessage());
+            job.error = "cancelled, cleanup failed: " + e.getMessage();
+            job.state = State.FAILED;
+        }
+    }
+
+    /**
+     * Содержимое импортируемого файла. Открывается один раз в потоке задания.
+     */
+    public interface Content {
+
+        InputStream open() throws IOException;
+
+        /**
+         * Освободить ресурсы после завершения задания.
+         */
+        default void discard() {
+        }
+
+        /**
+         * Временный файл, который удаляется после импорта.
+         */
+        static Content temporaryFile(Path file) {
+            return new Content() {
+                @Override
+                public InputStream open() throws IOException {
+                    return Files.newInputStream(file);
+                }
+
+                @Override
+                public void discard() {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        log.warn("Failed to delete {}: {}", file, e.getMessage());
+                    }
+                }
+            };
+        }
+    }
+
+    private static final class Job {
+        private final ImportSession session;
+        private final long totalBytes;
+        private final Content content;
+        private final AtomicLong bytesRead = new AtomicLong();
+        private volatile State state = State.QUEUED;
+        private volatile boolean cancelRequested;
+        private volatile long startedNanos;
+        private volatile long finishedNanos;
+        private volatile String error;
+
+        private Job(ImportSession session, long totalBytes, Content content) {
+            this.session = session;
+            this.totalBytes = totalBytes;
+            this.content = content;
+        }
+
+        private ImportJobProgress snapshot() {
+            State current = state;
+            long read = bytesRead.get();
+            double rate = 0;
+            if (current != State.QUEUED) {
+                long end = current.isTerminal() && finishedNanos > 0 ? finishedNanos : System.nanoTime();
+                double seconds = (end - startedNanos) / 1e9;
+                rate = seconds > 0 ? read / seconds : 0;
+            }
+            long eta = -1;
+            if (current.isTerminal()) {
+                eta = 0;
+            } else if (totalBytes > 0 && rate > 0) {
+                eta = (long) Math.ceil(Math.max(totalBytes - read, 0) / rate);
+            }
+            return new ImportJobProgress(session.getImportId(), session.getFileName(), current,
+                    session.getTotal(), session.getParsed(), session.getSaved(), session.getFailed(),
+                    read, totalBytes, rate, eta, error);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final AtomicLong count;
+
+        private CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count.addAndGet(read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count.addAndGet(skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.terraform.logviewer.service;
+
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Инкрементально режет поток байтов UTF-8 на строки, не собирая файл целиком: в памяти
+ * держится только текущая незаконченная строка. Разделители — {@code \n}, {@code \r} и
+ * {@code \r\n}, как у {@link java.io.BufferedReader#readLine()}; байты 0x0A/0x0D не встречаются
+ * внутри многобайтовых последовательностей UTF-8, поэтому граница чанка может прийтись куда угодно.
+ */
+public final class LineSplitter {
+
+    private static final int INITIAL_LINE_CAPACITY = 8 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Consumer<String> lines;
+    private byte[] line = new byte[INITIAL_LINE_CAPACITY];
+    private int length;
+    private boolean afterCarriageReturn;
+
+    public LineSplitter(Consumer<String> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Прочитать поток до конца и отдать все строки, включая последнюю без перевода строки.
+     */
+    public static void split(InputStream input, Consumer<String> lines) throws IOException {
+        LineSplitter splitter = new LineSplitter(lines);
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            splitter.accept(buffer, 0, read);
+        }
+        splitter.finish();
+    }
+
+    public void accept(ByteString chunk) {
+        for (ByteBuffer buffer : chunk.asReadOnlyByteBufferList()) {
+            accept(buffer);
+        }
+    }
+
+    public void accept(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            accept(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        while (buffer.hasRemaining()) {
+            consume(buffer.get());
+        }
+    }
+
+    public void accept(byte[] bytes, int offset, int count) {
+        int end = offset + count;
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            if (b != '\n' && b != '\r') continue;
+            append(bytes, start, i - start);
+            endOfLine(b);
+            start = i + 1;
+        }
+        append(bytes, start, end - start);
+    }
+
+    /**
+     * Отдать хвост, если поток не закончился переводом строки.
+     */
+    public void finish() {
+        if (length > 0) {
+            emit();
+        }
+        afterCarriageReturn = false;
+    }
+
+    private void consume(byte b) {
+        if (b == '\n' || b == '\r') {
+            endOfLine(b);
+            return;
+        }
+        afterCarriageReturn = false;
+        if (length == line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[length++] = b;
+    }
+
+    private void endOfLine(byte terminator) {
+        if (terminator == '\n' && afterCarriageReturn && length == 0) {
+            // вторая половина \r\n
+            afterCarriageReturn = false;
+            return;
+        }
+        emit();
+        afterCarriageReturn = terminator == '\r';
+    }
+
+    private void append(byte[] bytes, int offset, int count) {
+        if (count <= 0) return;
+        afterCarriageReturn = false;
+        if (length + count > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+        }
+        System.arraycopy(bytes, offset, line, length, count);
+        length += count;
+    }
+
+    private void emit() {
+        String value = new String(line, 0, length, StandardCharsets.UTF_8);
+        length = 0;
+        if (line.length > INITIAL_LINE_CAPACITY * 16) {
+            // одна гигантская строка не должна держать буфер до конца импорта
+            line = new byte[INITIAL_LINE_CAPACITY];
+        }
+        lines.accept(value);
+    }
+}
@@ -0,0 +1,157 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Живая подписка на записи: импорт после коммита отдаёт сюда записанные строки, и каждая
+ * подходящая под фильтр подписки сразу уходит подписчику. У подписчика ограниченный буфер:
+ * если он не успевает читать, новые записи отбрасываются и подписчику сообщается, сколько
+ * пропущено. Импорт никогда не ждёт подписчиков; доставка идёт в пуле {@code log-live-}.
+ */
+@Slf4j
+@Service
+public class LiveTailService {
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor;
+    private final int bufferSize;
+
+    public LiveTailService(IngestProperties properties) {
+        IngestProperties.Live settings = properties.getLive();
+        this.bufferSize = Math.max(settings.getBufferSize(), 1);
+        this.executor = Executors.newFixedThreadPool(Math.max(settings.getWorkers(), 1),
+                Thread.ofPlatform().name("log-live-", 0).daemon(true).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscriptions.clear();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Подписывает на записи, подходящие под {@code parameters}. Доставка начинается, когда
+     * приёмник готов: вызывайте {@link Subscription#drain()} из его обработчика готовности.
+     */
+    public Subscription subscribe(QueryParameters parameters, Sink sink) {
+        Subscription subscription = new Subscription(LogEntryFilter.of(parameters), sink, bufferSize);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Отдаёт подписчикам записи, которые только что закоммичены.
+     */
+    public void publish(List<LogEntryEntity> committed) {
+        if (subscriptions.isEmpty()) return;
+        for (Subscription subscription : subscriptions) {
+            boolean offered = false;
+            for (LogEntryEntity entry : committed) {
+                offered |= subscription.offer(entry);
+            }
+            if (offered) {
+                subscription.drain();
+            }
+        }
+    }
+
+    /**
+     * Получатель подписки. Вызывается из одного потока за раз.
+     */
+    public interface Sink {
+
+        /**
+         * Можно ли отправить ещё одно сообщение, не накапливая его в транспорте.
+         */
+        boolean isReady();
+
+        void onEntry(LogEntryEntity entry);
+
+        /**
+         * Перед следующей записью: сколько записей пропущено из-за переполнения буфера.
+         */
+        void onLag(long dropped, long droppedTotal);
+    }
+
+    public final class Subscription {
+        private final LogEntryFilter filter;
+        private final Sink sink;
+        private final BlockingQueue<LogEntryEntity> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong droppedTotal = new AtomicLong();
+        private volatile boolean cancelled;
+
+        private Subscription(LogEntryFilter filter, Sink sink, int bufferSize) {
+            this.filter = filter;
+            this.sink = sink;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private boolean offer(LogEntryEntity entry) {
+            if (cancelled || !filter.test(entry)) return false;
+            if (!buffer.offer(entry)) {
+                dropped.incrementAndGet();
+                droppedTotal.incrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Отправить накопленное, пока приёмник готов.
+         */
+        public void drain() {
+            if (cancelled || !draining.compareAndSet(false, true)) return;
+            try {
+                executor.execute(this::deliver);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            buffer.clear();
+        }
+
+        private void deliver() {
+            do {
+                try {
+                    while (!cancelled && sink.isReady()) {
+                        LogEntryEntity entry = buffer.poll();
+                        if (entry == null) break;
+                        long lost = dropped.getAndSet(0);
+                        if (lost > 0) {
+                            sink.onLag(lost, droppedTotal.get());
+                        }
+                        sink.onEntry(entry);
+                    }
+                } catch (RuntimeException e) {
+                    log.debug("Live subscriber failed: {}", e.getMessage());
+                    cancel();
+                }
+                draining.set(false);
+            } while (!cancelled && !buffer.isEmpty() && sink.isReady() && draining.compareAndSet(false, true));
+        }
+    }
+}
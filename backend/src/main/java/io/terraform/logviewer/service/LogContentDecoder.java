@@ -0,0 +1,258 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.config.IngestProperties;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+
+/**
+ * Распознаёт сжатые загрузки по сигнатуре и распаковывает их потоком: gzip и zstd снимаются
+ * слоями (в том числе .tar.gz), zip и tar отдаются по файлам. Обычный текст проходит как есть.
+ * Распакованное ограничено {@link Limits}: превышение и испорченное сжатие — {@link IOException}.
+ */
+public final class LogContentDecoder {
+
+    // tar узнаётся по «ustar» на смещении 257 заголовка
+    private static final int PEEK_SIZE = 512;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LAYERS = 3;
+
+    private LogContentDecoder() {
+    }
+
+    public enum Format {
+        PLAIN,
+        GZIP,
+        ZSTD,
+        ZIP,
+        TAR;
+
+        public boolean isArchive() {
+            return this == ZIP || this == TAR;
+        }
+    }
+
+    public static Format detect(byte[] head, int length) {
+        if (length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B) {
+            return Format.GZIP;
+        }
+        if (length >= 4 && (head[0] & 0xFF) == 0x28 && (head[1] & 0xFF) == 0xB5
+                && (head[2] & 0xFF) == 0x2F && (head[3] & 0xFF) == 0xFD) {
+            return Format.ZSTD;
+        }
+        if (length >= 4 && head[0] == 'P' && head[1] == 'K' && head[2] == 3 && head[3] == 4) {
+            return Format.ZIP;
+        }
+        if (length >= 262 && new String(head, 257, 5, StandardCharsets.US_ASCII).equals("ustar")) {
+            return Format.TAR;
+        }
+        return Format.PLAIN;
+    }
+
+    /**
+     * Сколько может дать распаковка одной загрузки.
+     *
+     * @param maxTotalBytes всего, по всем файлам архива
+     * @param maxEntryBytes одного файла архива или одиночного сжатого лога
+     * @param maxEntries    файлов в архиве
+     */
+    public record Limits(long maxTotalBytes, long maxEntryBytes, int maxEntries) {
+
+        public static final Limits NONE = new Limits(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+        public static Limits of(IngestProperties.Archive archive) {
+            return new Limits(archive.getMaxTotalSize().toBytes(), archive.getMaxEntrySize().toBytes(),
+                    archive.getMaxEntries());
+        }
+    }
+
+    /**
+     * Распаковка превысила {@link Limits}.
+     */
+    public static class LimitExceededException extends IOException {
+
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Снимает слои сжатия и смотрит, что внутри.
+     */
+    public static Decoded open(InputStream raw, Limits limits) throws IOException {
+        Decoded decoded = unwrap(raw, limits);
+        if (decoded.compressed() && !decoded.isArchive()) {
+            return decoded.limited(Math.min(limits.maxEntryBytes(), limits.maxTotalBytes()), "Decompressed log");
+        }
+        return decoded;
+    }
+
+    private static Decoded unwrap(InputStream raw, Limits limits) throws IOException {
+        InputStream current = raw;
+        boolean compressed = false;
+        for (int layer = 0; layer <= MAX_LAYERS; layer++) {
+            BufferedInputStream buffered = current instanceof BufferedInputStream b
+                    ? b
+                    : new BufferedInputStream(current, BUFFER_SIZE);
+            Format format = peek(buffered);
+            switch (format) {
+                case GZIP -> current = new GZIPInputStream(buffered, BUFFER_SIZE);
+                case ZSTD -> current = new ZstdCompressorInputStream(buffered);
+                default -> {
+                    return new Decoded(format, compressed, buffered, limits);
+                }
+            }
+            compressed = true;
+        }
+        throw new IOException("Too many nested compression layers");
+    }
+
+    private static Format peek(BufferedInputStream in) throws IOException {
+        in.mark(PEEK_SIZE);
+        byte[] head = in.readNBytes(PEEK_SIZE);
+        in.reset();
+        return detect(head, head.length);
+    }
+
+    @FunctionalInterface
+    public interface EntryHandler {
+        void accept(String name, InputStream content) throws IOException;
+    }
+
+    /**
+     * Распакованное содержимое загрузки.
+     *
+     * @param format     {@link Format#PLAIN}, {@link Format#ZIP} или {@link Format#TAR}
+     * @param compressed было ли содержимое сжато gzip/zstd
+     */
+    public record Decoded(Format format, boolean compressed, InputStream stream, Limits limits) {
+
+        public boolean isArchive() {
+            return format.isArchive();
+        }
+
+        /**
+         * Отдаёт файлы архива по порядку; каталоги и служебные записи пропускаются,
+         * сжатые файлы внутри архива распаковываются. Поток файла закрывать не нужно.
+         */
+        public void forEachEntry(EntryHandler handler) throws IOException {
+            Budget budget = new Budget(limits);
+            switch (format) {
+                case ZIP -> {
+                    ZipInputStream zip = new ZipInputStream(stream, StandardCharsets.UTF_8);
+                    ZipEntry entry;
+                    while ((entry = zip.getNextEntry()) != null) {
+                        if (!entry.isDirectory()) {
+                            handleEntry(entry.getName(), zip, handler, budget);
+                        }
+                    }
+                }
+                case TAR -> {
+                    TarArchiveInputStream tar = new TarArchiveInputStream(stream);
+                    TarArchiveEntry entry;
+                    while ((entry = tar.getNextEntry()) != null) {
+                        if (entry.isFile()) {
+                            handleEntry(entry.getName(), tar, handler, budget);
+                        }
+                    }
+                }
+                default -> throw new IllegalStateException("Not an archive: " + format);
+            }
+        }
+
+        private void handleEntry(String name, InputStream archive, EntryHandler handler, Budget budget)
+                throws IOException {
+            if (++budget.entries > limits.maxEntries()) {
+                throw new LimitExceededException("Archive has more than " + limits.maxEntries() + " files");
+            }
+            Decoded entry = unwrap(new FilterInputStream(archive) {
+                @Override
+                public void close() {
+                    // поток архива закрывает владелец
+                }
+            }, limits);
+            if (entry.isArchive()) {
+                // архивы в архиве не разворачиваем: это уже не лог
+                return;
+            }
+            handler.accept(name, new LimitedInputStream(entry.stream(), name, limits.maxEntryBytes(), budget));
+        }
+
+        private Decoded limited(long maxBytes, String name) {
+            return new Decoded(format, compressed, new LimitedInputStream(stream, name, maxBytes, new Budget(limits)),
+                    limits);
+        }
+    }
+
+    private static final class Budget {
+        private final long maxTotalBytes;
+        private long totalBytes;
+        private int entries;
+
+        private Budget(Limits limits) {
+            this.maxTotalBytes = limits.maxTotalBytes();
+        }
+    }
+
+    /**
+     * Считает распакованные байты файла и всей загрузки и обрывает чтение на пределе.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final String name;
+        private final long maxBytes;
+        private final Budget budget;
+        private long read;
+
+        private LimitedInputStream(InputStream in, String name, long maxBytes, Budget budget) {
+            super(in);
+            this.name = name;
+            this.maxBytes = maxBytes;
+            this.budget = budget;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long n) throws LimitExceededException {
+            read += n;
+            budget.totalBytes += n;
+            if (read > maxBytes) {
+                throw new LimitExceededException(name + " decompresses to more than " + maxBytes + " bytes");
+            }
+            if (budget.totalBytes > budget.maxTotalBytes) {
+                throw new LimitExceededException("Upload decompresses to more than " + budget.maxTotalBytes + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.springframework.util.StringUtils;
+
+/**
+ * Фильтр {@link QueryParameters} в памяти — те же условия, что строит
+ * {@code LogQueryService.buildSpecification}, но для записей, которые только что записаны
+ * и ещё не запрашивались из БД. Пагинация и сортировка не учитываются.
+ */
+public final class LogEntryFilter implements Predicate<LogEntryEntity> {
+
+    private static final Map<String, Function<LogEntryEntity, Object>> FIELDS = Map.of(
+            "reqId", LogEntryEntity::getReqId,
+            "transactionId", LogEntryEntity::getTransactionId,
+            "rpc", LogEntryEntity::getRpc,
+            "resourceType", LogEntryEntity::getResourceType,
+            "dataSourceType", LogEntryEntity::getDataSourceType,
+            "httpOperationType", LogEntryEntity::getHttpOperationType,
+            "statusCode", LogEntryEntity::getStatusCode,
+            "importId", LogEntryEntity::getImportId
+    );
+
+    private final List<Predicate<LogEntryEntity>> conditions;
+
+    private LogEntryFilter(List<Predicate<LogEntryEntity>> conditions) {
+        this.conditions = conditions;
+    }
+
+    public static LogEntryFilter of(QueryParameters parameters) {
+        List<Predicate<LogEntryEntity>> conditions = new ArrayList<>();
+
+        parameters.from().ifPresent(from ->
+                conditions.add(entry -> entry.getTimestamp() != null && !entry.getTimestamp().isBefore(from)));
+        parameters.to().ifPresent(to ->
+                conditions.add(entry -> entry.getTimestamp() != null && !entry.getTimestamp().isAfter(to)));
+
+        parameters.level().filter(StringUtils::hasText).ifPresent(level -> {
+            String expected = level.toUpperCase(Locale.ROOT);
+            conditions.add(entry -> entry.getLevel() != null
+                    && entry.getLevel().toUpperCase(Locale.ROOT).equals(expected));
+        });
+
+        parameters.section().filter(StringUtils::hasText).ifPresent(section -> {
+            String expected = section.toLowerCase(Locale.ROOT);
+            conditions.add(entry -> expected.equals(entry.getSection()));
+        });
+
+        if (parameters.unreadOnly()) {
+            conditions.add(LogEntryEntity::isUnread);
+        }
+
+        parameters.query().filter(StringUtils::hasText).ifPresent(queryText -> {
+            Predicate<String> like = like("%" + queryText.toLowerCase(Locale.ROOT) + "%");
+            conditions.add(entry -> like.test(lower(entry.getMessage()))
+                    || like.test(lower(entry.getModule()))
+                    || like.test(lower(entry.getRawJson())));
+        });
+
+        parameters.filters().forEach((key, value) -> {
+            if (!StringUtils.hasText(value)) return;
+
+            String field = LogQueryService.FILTER_MAPPING.get(key);
+            if (field == null) return;
+            Function<LogEntryEntity, Object> getter = FIELDS.get(field);
+
+            if ("statusCode".equals(field)) {
+                try {
+                    Integer status = Integer.parseInt(value);
+                    conditions.add(entry -> status.equals(entry.getStatusCode()));
+                } catch (NumberFormatException ignored) {
+                    // как и в запросе: некорректный статус не фильтрует
+                }
+            } else {
+                String expected = value.toLowerCase(Locale.ROOT);
+                conditions.add(entry -> {
+                    Object actual = getter.apply(entry);
+                    return lower(actual != null ? actual.toString() : null).equals(expected);
+                });
+            }
+        });
+
+        return new LogEntryFilter(List.copyOf(conditions));
+    }
+
+    @Override
+    public boolean test(LogEntryEntity entry) {
+        for (Predicate<LogEntryEntity> condition : conditions) {
+            if (!condition.test(entry)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@code lower(coalesce(value, ''))}.
+     */
+    private static String lower(String value) {
+        return value != null ? value.toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * SQL {@code LIKE} с экранированием обратной косой чертой, как по умолчанию в PostgreSQL и H2:
+     * пользовательские {@code %} и {@code _} в строке поиска работают как шаблоны и здесь.
+     */
+    static Predicate<String> like(String pattern) {
+        if (pattern.length() >= 2 && pattern.startsWith("%") && pattern.endsWith("%")) {
+            String inner = pattern.substring(1, pattern.length() - 1);
+            if (inner.indexOf('%') < 0 && inner.indexOf('_') < 0 && inner.indexOf('\\') < 0) {
+                return value -> value.contains(inner);
+            }
+        }
+        StringBuilder regex = new StringBuilder(pattern.length() + 16);
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                regex.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+            } else if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        Pattern compiled = Pattern.compile(regex.toString(), Pattern.DOTALL);
+        return value -> compiled.matcher(value).matches();
+    }
+}
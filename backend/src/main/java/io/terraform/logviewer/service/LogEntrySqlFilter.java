@@ -0,0 +1,121 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.repository.LogEntryCountRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.springframework.util.StringUtils;
+
+/**
+ * Фильтр {@link QueryParameters} в SQL по tf_log_entries — те же условия, что строит
+ * {@code LogQueryService.buildSpecification}, для подсчётов через JDBC. Фильтр нормализован:
+ * значения приведены к регистру сравнения, атрибуты упорядочены по полю, время — в UTC,
+ * так что запросы, отличающиеся только записью, дают равные фильтры (ключ кеша подсчётов).
+ */
+final class LogEntrySqlFilter {
+
+    private static final Map<String, String> COLUMNS = Map.of(
+            "reqId", "req_id",
+            "transactionId", "trans_id",
+            "rpc", "rpc",
+            "resourceType", "resource_type",
+            "dataSourceType", "data_source_type",
+            "httpOperationType", "http_op_type",
+            "statusCode", "status_code",
+            "importId", "import_id"
+    );
+
+    private LogEntrySqlFilter() {
+    }
+
+    /**
+     * @param indexedText фильтр q через индексы PostgreSQL ({@link TextSearchPlanner})
+     */
+    static LogEntryCountRepository.Filter of(QueryParameters parameters, boolean indexedText) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+
+        parameters.from().ifPresent(from -> {
+            conditions.add("ts >= ?");
+            args.add(from.withOffsetSameInstant(ZoneOffset.UTC));
+        });
+        parameters.to().ifPresent(to -> {
+            conditions.add("ts <= ?");
+            args.add(to.withOffsetSameInstant(ZoneOffset.UTC));
+        });
+
+        parameters.level().filter(StringUtils::hasText).ifPresent(level -> {
+            conditions.add("level = ?");
+            args.add(level.toUpperCase(Locale.ROOT));
+        });
+
+        parameters.section().filter(StringUtils::hasText).ifPresent(section -> {
+            conditions.add("section = ?");
+            args.add(section.toLowerCase(Locale.ROOT));
+        });
+
+        if (parameters.unreadOnly()) {
+            conditions.add("unread");
+        }
+
+        parameters.query().filter(StringUtils::hasText).ifPresent(queryText -> {
+            TextSearchPlanner.Plan plan = TextSearchPlanner.plan(queryText, indexedText);
+            switch (plan.strategy()) {
+                case TRIGRAM -> {
+                    conditions.add("tf_log_search_text(message, module, raw_json) like ?");
+                    args.add(plan.pattern());
+                }
+                case FULL_TEXT -> {
+                    conditions.add("tf_log_search_matches(message, module, raw_json, ?)");
+                    args.add(plan.tsQuery());
+                }
+                case SCAN -> {
+                }
+            }
+            if (plan.strategy() == TextSearchPlanner.Strategy.SCAN || plan.recheck()) {
+                conditions.add("(lower(coalesce(message, '')) like ? or lower(coalesce(module, '')) like ?"
+                        + " or lower(coalesce(raw_json, '')) like ?)");
+                args.add(plan.pattern());
+                args.add(plan.pattern());
+                args.add(plan.pattern());
+            }
+        });
+
+        // по полю, а не по ключу запроса: tf_req_id=x и req_id=x — одно условие
+        Map<String, Set<String>> byField = new TreeMap<>();
+        parameters.filters().forEach((key, value) -> {
+            if (!StringUtils.hasText(value)) return;
+            String field = LogQueryService.FILTER_MAPPING.get(key);
+            if (field == null) return;
+            byField.computeIfAbsent(field, ignored -> new TreeSet<>()).add(value.toLowerCase(Locale.ROOT));
+        });
+        byField.forEach((field, values) -> {
+            String column = COLUMNS.get(field);
+            for (String value : values) {
+                if ("statusCode".equals(field)) {
+                    try {
+                        int status = Integer.parseInt(value);
+                        conditions.add(column + " = ?");
+                        args.add(status);
+                    } catch (NumberFormatException ignored) {
+                        // как и в запросе: некорректный статус не фильтрует
+                    }
+                } else if (LogQueryService.LOWER_CASE_FIELDS.contains(field)) {
+                    conditions.add(column + " = ?");
+                    args.add(value);
+                } else {
+                    conditions.add("lower(" + column + ") = ?");
+                    args.add(value);
+                }
+            }
+        });
+
+        return new LogEntryCountRepository.Filter(String.join(" and ", conditions), args);
+    }
+}
@@ -2,22 +2,47 @@ package io.terraform.logviewer.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.config.IngestProperties;
 import io.terraform.logviewer.entity.LogBodyEntity;
 import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.index.SegmentStore;
+import io.terraform.logviewer.index.SegmentWriter;
 import io.terraform.logviewer.parser.ParsedLogRecord;
+import io.terraform.logviewer.parser.SectionSpan;
 import io.terraform.logviewer.parser.TerraformLogParser;
 import io.terraform.logviewer.plugin.LogPluginGateway;
+import io.terraform.logviewer.repository.ImportRegistryRepository;
+import io.terraform.logviewer.repository.ImportRegistryRepository.ImportRecord;
 import io.terraform.logviewer.repository.LogBodyRepository;
+import io.terraform.logviewer.repository.LogEntryCopyWriter;
+import io.terraform.logviewer.repository.LogEntryJdbcWriter;
 import io.terraform.logviewer.repository.LogEntryRepository;
+import io.terraform.logviewer.repository.SectionSpanRepository;
+import jakarta.annotation.PreDestroy;
 import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
-import org.springframework.transaction.annotation.Transactional;
 
 @Slf4j
 @Service
@@ -25,47 +50,556 @@ public class LogImportService {
 
     private final LogEntryRepository entryRepository;
     private final LogBodyRepository bodyRepository;
+    private final LogEntryJdbcWriter jdbcWriter;
+    private final LogEntryCopyWriter copyWriter;
     private final TerraformLogParser parser;
     private final ObjectMapper objectMapper;
     private final LogPluginGateway pluginGateway;
+    private final IngestProperties properties;
+    private final PluginAnnotationService annotationService;
+    private final ImportRegistryRepository importRegistry;
+    private final LiveTailService liveTail;
+    private final SectionSpanRepository spanRepository;
+    private final SegmentStore segments;
+    private final SearchCountService counts;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService parseExecutor;
+    // импорты, которые пишутся прямо сейчас: их нельзя дозагружать параллельно
+    private final Set<String> activeImports = ConcurrentHashMap.newKeySet();
 
     public LogImportService(LogEntryRepository entryRepository,
                             LogBodyRepository bodyRepository,
+                            LogEntryJdbcWriter jdbcWriter,
+                            LogEntryCopyWriter copyWriter,
                             TerraformLogParser parser,
                             ObjectMapper objectMapper,
-                            LogPluginGateway pluginGateway) {
+                            LogPluginGateway pluginGateway,
+                            IngestProperties properties,
+                            PluginAnnotationService annotationService,
+                            ImportRegistryRepository importRegistry,
+                            LiveTailService liveTail,
+                            SectionSpanRepository spanRepository,
+                            SegmentStore segments,
+                            SearchCountService counts,
+                            PlatformTransactionManager transactionManager) {
         this.entryRepository = entryRepository;
         this.bodyRepository = bodyRepository;
+        this.jdbcWriter = jdbcWriter;
+        this.copyWriter = copyWriter;
         this.parser = parser;
         this.objectMapper = objectMapper;
         this.pluginGateway = pluginGateway;
+        this.properties = properties;
+        this.annotationService = annotationService;
+        this.importRegistry = importRegistry;
+        this.liveTail = liveTail;
+        this.spanRepository = spanRepository;
+        this.segments = segments;
+        this.counts = counts;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.parseExecutor = properties.getParseWorkers() > 1
+                ? Executors.newFixedThreadPool(properties.getParseWorkers(),
+                        Thread.ofPlatform().name("log-parse-", 0).daemon(true).factory())
+                : null;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (parseExecutor != null) {
+            parseExecutor.shutdownNow();
+        }
     }
 
     public ImportSession startSession(String fileName) {
-        return new ImportSession(UUID.randomUUID().toString(), fileName);
+        return startSession(fileName, -1, null);
+    }
+
+    public ImportSession startSession(String fileName, long expectedBytes, Boolean bulkLoad) {
+        return startSession(fileName, expectedBytes, bulkLoad, null);
+    }
+
+    /**
+     * Начинает импорт. Если файл с таким отпечатком уже импортирован целиком, возвращается
+     * сессия-дубликат с прежними {@code import_id} и счётчиками: строки в неё можно не передавать.
+     * Если прежний импорт не завершён (оборвался или упал), он дозагружается
+     * под тем же {@code import_id}: уже сохранённые строки пропускаются по хэшу строки.
+     *
+     * @param expectedBytes размер импортируемого файла, если известен (иначе -1)
+     * @param bulkLoad      явный выбор COPY-загрузки клиентом; {@code null} — решить по размеру
+     * @param contentHash   отпечаток содержимого ({@link ContentHasher}), если известен заранее
+     */
+    public ImportSession startSession(String fileName, long expectedBytes, Boolean bulkLoad, String contentHash) {
+        boolean bulk = useBulkLoad(expectedBytes, bulkLoad);
+        int batchSize = bulk ? properties.getBulk().getBatchSize() : properties.getBatchSize();
+        boolean parallelParse = parseExecutor != null && properties.getParseWorkers() > 1;
+        IngestProperties.Dedup dedup = properties.getDedup();
+        if (!dedup.isEnabled()) {
+            ImportSession session = new ImportSession(UUID.randomUUID().toString(), fileName, batchSize, bulk,
+                    parallelParse);
+            session.segment = segments.newWriter(session.importId);
+            return session;
+        }
+
+        String hash = StringUtils.hasText(contentHash) ? contentHash : null;
+        Optional<ImportRecord> existing = hash != null ? importRegistry.findByContentHash(hash) : Optional.empty();
+        if (existing.isPresent() && existing.get().isComplete()) {
+            return duplicateOf(existing.get());
+        }
+        if (existing.isPresent() && activeImports.add(existing.get().importId())) {
+            return resumeSession(existing.get(), fileName, batchSize, bulk, parallelParse);
+        }
+
+        // новый файл, или тот же файл прямо сейчас грузится другим запросом — тогда без отпечатка
+        String importId = UUID.randomUUID().toString();
+        ImportSession session = new ImportSession(importId, fileName, batchSize, bulk, parallelParse);
+        session.lineHashes = dedup.isLineHashes();
+        session.segment = segments.newWriter(importId);
+        importRegistry.register(importId, fileName, existing.isPresent() ? null : hash);
+        activeImports.add(importId);
+        return session;
+    }
+
+    private static ImportSession duplicateOf(ImportRecord record) {
+        ImportSession session = new ImportSession(record.importId(), record.fileName());
+        session.duplicate = true;
+        session.total = record.total();
+        session.saved = record.saved();
+        session.failed = record.failed();
+        return session;
+    }
+
+    /**
+     * Начинает или продолжает импорт растущего файла. Строки такого импорта всегда хранят хэш:
+     * строки, перечитанные после сбоя между записью и сохранением контрольной точки, пропускаются.
+     *
+     * @param importId импорт, который продолжается, или {@code null} для нового
+     * @param lines    сколько строк файла уже учтено (с контрольной точки)
+     */
+    public ImportSession openTailSession(String fileName, String importId, long lines, long saved, long failed) {
+        boolean parallelParse = parseExecutor != null && properties.getParseWorkers() > 1;
+        boolean registry = properties.getDedup().isEnabled();
+        if (importId == null) {
+            ImportSession session = new ImportSession(UUID.randomUUID().toString(), fileName,
+                    properties.getBatchSize(), false, parallelParse);
+            session.lineHashes = true;
+            session.segment = segments.newWriter(session.importId);
+            if (registry) {
+                importRegistry.register(session.importId, fileName, null);
+            }
+            activeImports.add(session.importId);
+            return session;
+        }
+        if (!activeImports.add(importId)) {
+            throw new IllegalStateException("Import " + importId + " is already running");
+        }
+        ImportSession session = new ImportSession(importId, fileName, properties.getBatchSize(), false, parallelParse);
+        session.lineHashes = true;
+        session.total = lines;
+        session.saved = saved;
+        session.failed = failed;
+        try {
+            // импорт растёт: сегмент прошлого завершения его уже не покрывает
+            segments.delete(importId);
+            session.storedLines = jdbcWriter.findLineHashes(importId, lines);
+            resumeSpans(session);
+            if (registry) {
+                importRegistry.markRunning(importId);
+            }
+        } catch (RuntimeException e) {
+            activeImports.remove(importId);
+            throw e;
+        }
+        return session;
+    }
+
+    private ImportSession resumeSession(ImportRecord record, String fileName, int batchSize, boolean bulk,
+                                        boolean parallelParse) {
+        ImportSession session = new ImportSession(record.importId(), fileName, batchSize, bulk, parallelParse);
+        session.lineHashes = properties.getDedup().isLineHashes();
+        // сегмент строится только по строкам, прошедшим через сессию, — дозагрузка его не получает
+        segments.delete(record.importId());
+        if (session.lineHashes) {
+            session.storedLines = jdbcWriter.findLineHashes(record.importId());
+        } else {
+            // без хэшей строк не понять, что уже сохранено, — загружаем заново
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcWriter.deleteImport(record.importId());
+                spanRepository.deleteImport(record.importId());
+            });
+        }
+        resumeSpans(session);
+        importRegistry.markRunning(record.importId());
+        log.info("Resuming import {} of {}, {} lines already stored", record.importId(), fileName,
+                session.storedLines != null ? session.storedLines.length : 0);
+        return session;
+    }
+
+    /**
+     * Нумерация участков plan/apply продолжается, а незакрытый участок — дописывается:
+     * строки после него получат его раздел без подсчёта эвристик.
+     */
+    private void resumeSpans(ImportSession session) {
+        spanRepository.findLast(session.importId).ifPresent(last -> {
+            SectionSpan open = last.closed() ? null : new SectionSpan(last.number(), last.section());
+            session.context.resumeSpans(last.number(), open);
+            if (open != null) {
+                session.spans.resume(last);
+            }
+        });
+    }
+
+    private boolean useBulkLoad(long expectedBytes, Boolean bulkLoad) {
+        IngestProperties.Bulk bulk = properties.getBulk();
+        if (!bulk.isEnabled()) return false;
+        if (bulkLoad != null) return bulkLoad;
+        return expectedBytes >= 0 && expectedBytes >= bulk.getThreshold().toBytes();
     }
 
-    @Transactional
     public void ingestLine(ImportSession session, String raw) {
-        session.total++;
+        if (session.duplicate) return;
+        long line = ++session.total;
+        Long lineHash = session.lineHashes ? lineHash(line, raw) : null;
+        if (lineHash != null && session.storedLines != null
+                && Arrays.binarySearch(session.storedLines, lineHash) >= 0) {
+            // строка сохранена прошлой попыткой импорта этого файла
+            session.saved++;
+            return;
+        }
+        if (session.parsing != null) {
+            session.parsing.add(new ParsingLine(
+                    CompletableFuture.supplyAsync(() -> parser.prepare(raw, session.getContext()), parseExecutor), line, lineHash));
+            drainParsed(session, Math.max(properties.getParseWindow(), 1));
+            return;
+        }
+        accept(session, () -> parser.parse(raw, session.getContext()), line, lineHash);
+    }
+
+    /**
+     * Номер строки в старших 32 битах и хэш текста в младших: у одного и того же файла
+     * строки совпадают по номеру, а хэш страхует от несовпадения содержимого.
+     */
+    static long lineHash(long lineNumber, String raw) {
+        return (lineNumber << 32) | (raw.hashCode() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Строка из файла как есть: пробелы по краям отбрасываются, пустые строки пропускаются.
+     */
+    public void ingestFileLine(ImportSession session, String line) {
+        String trimmed = line.trim();
+        if (StringUtils.hasText(trimmed)) {
+            ingestLine(session, trimmed);
+        }
+    }
+
+    /**
+     * Упорядоченная стадия параллельного разбора: строки, разобранные воркерами, дополняются
+     * контекстом импорта (последние timestamp/level) строго в порядке чтения. Ждёт голову
+     * очереди, только если в работе больше {@code keepInFlight} строк.
+     */
+    private void drainParsed(ImportSession session, int keepInFlight) {
+        Deque<ParsingLine> parsing = session.parsing;
+        while (!parsing.isEmpty() && (parsing.size() > keepInFlight || parsing.peekFirst().prepared().isDone())) {
+            ParsingLine head = parsing.pollFirst();
+            accept(session, () -> parser.complete(joinPrepared(head.prepared()), session.getContext()),
+                    head.line(), head.lineHash());
+        }
+    }
+
+    private static TerraformLogParser.PreparedLine joinPrepared(CompletableFuture<TerraformLogParser.PreparedLine> future) {
         try {
-            ParsedLogRecord record = parser.parse(raw, session.getContext());
-            LogEntryEntity entity = toEntity(record, session);
-            entryRepository.save(entity);
-            persistBodies(entity, record.bodies());
-
-            Map<String, String> pluginAnnotations = pluginGateway.process(record, entity);
-            if (!pluginAnnotations.isEmpty()) {
-                entity.setAnnotationsJson(writeJson(pluginAnnotations));
-                entryRepository.save(entity);
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private void accept(ImportSession session, Supplier<ParsedLogRecord> parse, long line, Long lineHash) {
+        ParsedLogRecord record;
+        LogEntryEntity entity;
+        try {
+            record = parse.get();
+            entity = toEntity(record, session);
+            entity.setLineHash(lineHash);
+            SectionSpan span = session.context.getLineSpan();
+            session.spans.track(span, span != null && span.equals(session.context.getOpenSpan()), line, entity);
+        } catch (Exception e) {
+            session.failed++;
+            log.warn("Failed to ingest line: {}", e.getMessage());
+            return;
+        }
+        session.parsed++;
+
+        if (session.batchSize <= 1 && !session.bulk) {
+            saveSingle(session, new PendingEntry(record, entity));
+            return;
+        }
+        session.pending.add(new PendingEntry(record, entity));
+        if (session.pending.size() >= session.batchSize) {
+            flush(session);
+        }
+    }
+
+    /**
+     * Дописывает накопленный хвост импорта. Вызывается один раз, когда строки закончились.
+     */
+    public void completeSession(ImportSession session) {
+        finishSession(session, true);
+    }
+
+    /**
+     * Файл прочитан не до конца (ошибка чтения): прочитанное дописывается, но импорт
+     * не считается завершённым, и повторная загрузка файла его дозагрузит.
+     */
+    public void failSession(ImportSession session) {
+        finishSession(session, false);
+    }
+
+    /**
+     * Записывает всё, что прочитано к этому моменту, не завершая импорт.
+     */
+    public void flushSession(ImportSession session) {
+        if (session.duplicate) return;
+        if (session.parsing != null) {
+            drainParsed(session, 0);
+        }
+        flush(session);
+        saveSpans(session);
+        if (annotateAsync()) {
+            submitAnnotations(session);
+        }
+    }
+
+    private void finishSession(ImportSession session, boolean complete) {
+        if (session.duplicate) return;
+        try {
+            flushSession(session);
+            if (annotateAsync()) {
+                annotationService.seal(session.importId);
+            }
+            if (complete && properties.getDedup().isEnabled()) {
+                importRegistry.complete(session.importId, session.total, session.saved, session.failed);
+            }
+            if (complete && session.segment != null) {
+                segments.commit(session.importId, session.segment);
+                session.segment = null;
             }
+        } finally {
+            discardSegment(session);
+            activeImports.remove(session.importId);
+        }
+    }
+
+    /**
+     * Импорт оборвался (клиент закрыл стрим с ошибкой): записанные строки остаются,
+     * и повторная загрузка того же файла дозагрузит недостающие.
+     */
+    public void abandonSession(ImportSession session) {
+        if (session.duplicate) return;
+        discardSegment(session);
+        activeImports.remove(session.importId);
+    }
+
+    /**
+     * Запоминает отпечаток файла, посчитанный по ходу потоковой загрузки, и возвращает импорт,
+     * который за этим файлом закреплён. Если тот же файл уже целиком импортирован другим
+     * импортом, строки этой сессии удаляются и возвращается сессия-дубликат прежнего импорта —
+     * как если бы отпечаток был известен заранее. Если другой импорт этого файла не завершён,
+     * отпечаток остаётся за ним, а эта сессия остаётся без отпечатка.
+     */
+    public ImportSession recordContentHash(ImportSession session, String contentHash) {
+        if (session.duplicate || !properties.getDedup().isEnabled() || !StringUtils.hasText(contentHash)) {
+            return session;
+        }
+        if (importRegistry.updateContentHash(session.importId, contentHash)) return session;
+        Optional<ImportRecord> existing = importRegistry.findByContentHash(contentHash);
+        if (existing.isEmpty() || !existing.get().isComplete()) return session;
+        log.info("Import {} of {} repeats import {}, discarding it", session.importId, session.fileName,
+                existing.get().importId());
+        discardSession(session);
+        return duplicateOf(existing.get());
+    }
+
+    /**
+     * Прерывает импорт: недописанный хвост отбрасывается, уже записанные строки импорта
+     * удаляются (тела — каскадом). Возвращает число удалённых записей.
+     */
+    public int discardSession(ImportSession session) {
+        // дубликат ссылается на чужой завершённый импорт — его строки не трогаем
+        if (session.duplicate) return 0;
+        if (session.parsing != null) {
+            session.parsing.forEach(line -> line.prepared().cancel(false));
+            session.parsing.clear();
+        }
+        session.pending.clear();
+        session.toAnnotate.clear();
+        discardSegment(session);
+        segments.delete(session.importId);
+        Integer deleted = transactionTemplate.execute(status -> {
+            spanRepository.deleteImport(session.importId);
+            return jdbcWriter.deleteImport(session.importId);
+        });
+        counts.invalidate();
+        if (annotateAsync()) {
+            annotationService.seal(session.importId);
+        }
+        if (properties.getDedup().isEnabled()) {
+            importRegistry.delete(session.importId);
+        }
+        activeImports.remove(session.importId);
+        return deleted != null ? deleted : 0;
+    }
+
+    private void flush(ImportSession session) {
+        if (session.pending.isEmpty()) return;
+        List<PendingEntry> batch = List.copyOf(session.pending);
+        session.pending.clear();
+        boolean async = annotateAsync();
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeBatch(batch, session.bulk, !async));
+            session.saved += batch.size();
+            if (async) queueAnnotations(session, batch);
+            counts.invalidate();
+            publish(batch);
+            addToSegment(session, batch);
+        } catch (Exception e) {
+            // одна «плохая» строка не должна уносить весь пакет: повторяем построчно
+            log.warn("Batch insert of {} lines failed, retrying line by line: {}", batch.size(), e.getMessage());
+            for (PendingEntry entry : batch) {
+                entry.entity().setId(null);
+                saveSingle(session, entry);
+            }
+        }
+        saveSpans(session);
+    }
+
+    private void saveSpans(ImportSession session) {
+        List<SectionSpanRepository.Span> spans = session.spans.changed();
+        if (spans.isEmpty()) return;
+        try {
+            transactionTemplate.executeWithoutResult(status -> spans.forEach(spanRepository::save));
+            session.spans.saved();
+        } catch (RuntimeException e) {
+            // участки — навигация поверх записей: их сбой не должен ронять импорт;
+            // они остаются в очереди и запишутся со следующим пакетом
+            log.warn("Failed to save section spans of import {}: {}", session.importId, e.getMessage());
+        }
+    }
+
+    private void writeBatch(List<PendingEntry> batch, boolean bulk, boolean inlineAnnotations) {
+        long[] ids = jdbcWriter.allocateIds(batch.size());
+        List<LogEntryEntity> entries = new ArrayList<>(batch.size());
+        List<LogBodyEntity> bodies = new ArrayList<>();
+        // сначала отправляем плагинам весь пакет, потом собираем ответы: один RTT на окно, а не на строку
+        for (int i = 0; i < batch.size(); i++) {
+            PendingEntry entry = batch.get(i);
+            entry.entity().setId(ids[i]);
+            if (inlineAnnotations && entry.annotations == null) {
+                entry.annotations = pluginGateway.processAsync(entry.record(), entry.entity());
+            }
+        }
+        for (PendingEntry entry : batch) {
+            LogEntryEntity entity = entry.entity();
+            if (inlineAnnotations) {
+                applyAnnotations(entity, entry.annotations.join());
+            }
+            entries.add(entity);
+            bodies.addAll(toBodies(entity, entry.record().bodies()));
+        }
+        if (bulk) {
+            copyWriter.copyEntries(entries);
+            copyWriter.copyBodies(bodies);
+        } else {
+            jdbcWriter.insertEntries(entries);
+            jdbcWriter.insertBodies(bodies);
+        }
+    }
+
+    private void saveSingle(ImportSession session, PendingEntry entry) {
+        boolean async = annotateAsync();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LogEntryEntity entity = entry.entity();
+                entryRepository.save(entity);
+                bodyRepository.saveAll(toBodies(entity, entry.record().bodies()));
+                if (!async && applyAnnotations(entity, annotations(entry))) {
+                    entryRepository.save(entity);
+                }
+            });
             session.saved++;
+            if (async) queueAnnotations(session, List.of(entry));
+            counts.invalidate();
+            publish(List.of(entry));
+            addToSegment(session, List.of(entry));
         } catch (Exception e) {
             session.failed++;
             log.warn("Failed to ingest line: {}", e.getMessage());
         }
     }
 
+    private void publish(List<PendingEntry> committed) {
+        if (!liveTail.hasSubscribers()) return;
+        try {
+            liveTail.publish(committed.stream().map(PendingEntry::entity).toList());
+        } catch (RuntimeException e) {
+            // строки уже закоммичены: сбой подписки не должен повторять запись
+            log.warn("Failed to publish {} entries to live subscribers: {}", committed.size(), e.getMessage());
+        }
+    }
+
+    private void addToSegment(ImportSession session, List<PendingEntry> committed) {
+        if (session.segment == null) return;
+        try {
+            for (PendingEntry entry : committed) {
+                SegmentSearchService.index(session.segment, entry.entity());
+            }
+        } catch (RuntimeException e) {
+            // строки уже закоммичены: без сегмента поиск по импорту пойдёт через БД
+            log.warn("Failed to index entries of import {}, dropping its segment: {}", session.importId, e.getMessage());
+            discardSegment(session);
+        }
+    }
+
+    private void discardSegment(ImportSession session) {
+        if (session.segment == null) return;
+        segments.discard(session.segment);
+        session.segment = null;
+    }
+
+    private boolean annotateAsync() {
+        return properties.getAnnotation().isAsync() && pluginGateway.isActive();
+    }
+
+    private void queueAnnotations(ImportSession session, List<PendingEntry> committed) {
+        for (PendingEntry entry : committed) {
+            session.toAnnotate.add(new PluginAnnotationService.Entry(entry.record(), entry.entity()));
+        }
+        if (session.toAnnotate.size() >= Math.max(properties.getAnnotation().getBatchSize(), 1)) {
+            submitAnnotations(session);
+        }
+    }
+
+    private void submitAnnotations(ImportSession session) {
+        if (session.toAnnotate.isEmpty()) return;
+        annotationService.submit(session.importId, List.copyOf(session.toAnnotate));
+        session.toAnnotate.clear();
+    }
+
+    /**
+     * Аннотации строки: если плагины уже вызывались для неё в упавшем пакете, берётся тот ответ.
+     */
+    private Map<String, String> annotations(PendingEntry entry) {
+        if (entry.annotations != null) return entry.annotations.join();
+        return pluginGateway.process(entry.record(), entry.entity());
+    }
+
+    private boolean applyAnnotations(LogEntryEntity entity, Map<String, String> pluginAnnotations) {
+        if (pluginAnnotations.isEmpty()) return false;
+        entity.setAnnotationsJson(writeJson(pluginAnnotations));
+        return true;
+    }
+
     private LogEntryEntity toEntity(ParsedLogRecord record, ImportSession session) {
         LogEntryEntity entity = new LogEntryEntity();
         entity.setTimestamp(defaultTimestamp(record.timestamp()));
@@ -88,15 +622,17 @@ public class LogImportService {
         return entity;
     }
 
-    private void persistBodies(LogEntryEntity entity, List<ParsedLogRecord.ParsedPayload> bodies) {
-        if (bodies == null || bodies.isEmpty()) return;
+    private List<LogBodyEntity> toBodies(LogEntryEntity entity, List<ParsedLogRecord.ParsedPayload> bodies) {
+        if (bodies == null || bodies.isEmpty()) return List.of();
+        List<LogBodyEntity> result = new ArrayList<>(bodies.size());
         for (ParsedLogRecord.ParsedPayload payload : bodies) {
             LogBodyEntity bodyEntity = new LogBodyEntity();
             bodyEntity.setLogEntry(entity);
             bodyEntity.setKind(payload.kind());
             bodyEntity.setBodyJson(payload.json());
-            bodyRepository.save(bodyEntity);
+            result.add(bodyEntity);
         }
+        return result;
     }
 
     private OffsetDateTime defaultTimestamp(OffsetDateTime timestamp) {
@@ -104,7 +640,7 @@ public class LogImportService {
     }
 
     private String normalize(String level) {
-        return StringUtils.hasText(level) ? level.toUpperCase() : null;
+        return StringUtils.hasText(level) ? level.toUpperCase(Locale.ROOT) : null;
     }
 
     private String writeJson(Object value) {
@@ -116,19 +652,77 @@ public class LogImportService {
         }
     }
 
+    private static final class PendingEntry {
+        private final ParsedLogRecord record;
+        private final LogEntryEntity entity;
+        // ответ плагинов, если запись уже отправлялась им в составе пакета
+        private CompletableFuture<Map<String, String>> annotations;
+
+        private PendingEntry(ParsedLogRecord record, LogEntryEntity entity) {
+            this.record = record;
+            this.entity = entity;
+        }
+
+        ParsedLogRecord record() {
+            return record;
+        }
+
+        LogEntryEntity entity() {
+            return entity;
+        }
+    }
+
+    private record ParsingLine(CompletableFuture<TerraformLogParser.PreparedLine> prepared, long line, Long lineHash) {
+    }
+
     @Getter
     public static class ImportSession {
         private final String importId;
         private final String fileName;
         private final TerraformLogParser.ImportContext context;
-        private long total;
-        private long saved;
-        private long failed;
+        // пишет один поток импорта, а читать прогресс могут другие
+        private volatile long total;
+        private volatile long parsed;
+        private volatile long saved;
+        private volatile long failed;
+        /**
+         * Файл уже импортирован целиком: сессия ничего не пишет, счётчики — от прежнего импорта.
+         */
+        private boolean duplicate;
+
+        @Getter(AccessLevel.NONE)
+        private final int batchSize;
+        private final boolean bulk;
+        @Getter(AccessLevel.NONE)
+        private final List<PendingEntry> pending = new ArrayList<>();
+        @Getter(AccessLevel.NONE)
+        private final Deque<ParsingLine> parsing;
+        @Getter(AccessLevel.NONE)
+        private final List<PluginAnnotationService.Entry> toAnnotate = new ArrayList<>();
+        @Getter(AccessLevel.NONE)
+        private boolean lineHashes;
+        @Getter(AccessLevel.NONE)
+        private long[] storedLines;
+        @Getter(AccessLevel.NONE)
+        private final SectionSpanRecorder spans;
+        /**
+         * Сегмент импорта (app.query.segments), если строки импорта проходят через сессию с начала.
+         */
+        @Getter(AccessLevel.NONE)
+        private SegmentWriter segment;
 
         public ImportSession(String importId, String fileName) {
+            this(importId, fileName, 1, false, false);
+        }
+
+        public ImportSession(String importId, String fileName, int batchSize, boolean bulk, boolean parallelParse) {
             this.importId = importId;
             this.fileName = fileName;
             this.context = new TerraformLogParser.ImportContext(null, null);
+            this.batchSize = batchSize;
+            this.bulk = bulk;
+            this.parsing = parallelParse ? new ArrayDeque<>() : null;
+            this.spans = new SectionSpanRecorder(importId);
         }
     }
 }
@@ -1,19 +1,26 @@
 package io.terraform.logviewer.service;
 
+import io.terraform.logviewer.config.QueryProperties;
 import io.terraform.logviewer.entity.LogBodyEntity;
 import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.repository.DatabaseVendor;
 import io.terraform.logviewer.repository.LogBodyRepository;
 import io.terraform.logviewer.repository.LogEntryRepository;
+import io.terraform.logviewer.repository.SectionSpanRepository;
+import io.terraform.logviewer.service.dto.CursorPage;
 import io.terraform.logviewer.service.dto.GroupQueryResult;
 import io.terraform.logviewer.service.dto.ImportSummary;
 import io.terraform.logviewer.service.dto.LogGroupResult;
 import io.terraform.logviewer.service.dto.QueryParameters;
+import io.terraform.logviewer.service.dto.SearchPage;
 import io.terraform.logviewer.service.dto.TimelinePoint;
+import io.terraform.logviewer.service.dto.TotalCount;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
 import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
@@ -25,14 +32,17 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
@@ -42,7 +52,7 @@ import org.springframework.util.StringUtils;
 @RequiredArgsConstructor
 public class LogQueryService {
 
-    private static final Map<String, String> FILTER_MAPPING = Map.of(
+    static final Map<String, String> FILTER_MAPPING = Map.of(
             "req_id", "reqId",
             "tf_req_id", "reqId",
             "trans_id", "transactionId",
@@ -72,9 +82,20 @@ public class LogQueryService {
             Map.entry("import_id", "importId")
     );
 
+    // значения, которые пишет только приложение и всегда в нижнем регистре (import_id — UUID)
+    static final Set<String> LOWER_CASE_FIELDS = Set.of("importId");
+
+    // колонки сортировки без NULL — seek по ним обходится без веток для NULL-ключа
+    private static final Set<String> NOT_NULL_SORT_FIELDS = Set.of("timestamp");
+
     private final LogEntryRepository entryRepository;
     private final LogBodyRepository bodyRepository;
     private final EntityManager entityManager;
+    private final SectionSpanRepository spanRepository;
+    private final SearchCountService counts;
+    private final SegmentSearchService segmentSearch;
+    private final QueryProperties queryProperties;
+    private final DatabaseVendor vendor;
 
     @Transactional(readOnly = true)
     public List<ImportSummary> listImports() {
@@ -89,34 +110,112 @@ public class LogQueryService {
                 .toList();
     }
 
+    /**
+     * Страница по номеру. Запрос по одному импорту с сегментом ({@link SegmentSearchService})
+     * считается по сегменту. Иначе total считается по стратегии app.query.count и только когда
+     * он не следует из самой страницы: неполная страница сама даёт точное число.
+     */
     @Transactional(readOnly = true)
-    public Page<LogEntryEntity> search(QueryParameters parameters) {
+    public SearchPage search(QueryParameters parameters) {
+        SortKey sortKey = resolveSortKey(parameters);
+        if ("timestamp".equals(sortKey.field())) {
+            Optional<SearchPage> indexed = segmentSearch.search(parameters, sortKey.desc());
+            if (indexed.isPresent()) {
+                return indexed.get();
+            }
+        }
+
+        Sort sort = resolveSort(parameters);
         Pageable pageable = PageRequest.of(
                 parameters.page(),
                 parameters.size(),
-                resolveSort(parameters)
+                sort
         );
         Specification<LogEntryEntity> specification = buildSpecification(parameters);
-        return entryRepository.findAll(specification, pageable);
+        HibernateCriteriaBuilder cb = (HibernateCriteriaBuilder) entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<LogEntryEntity> query = cb.createQuery(LogEntryEntity.class);
+        Root<LogEntryEntity> root = query.from(LogEntryEntity.class);
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(sortOrder(cb, root, sortKey));
+
+        List<LogEntryEntity> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        TotalCount[] counted = new TotalCount[1];
+        Page<LogEntryEntity> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            counted[0] = counts.entries(parameters, () -> countEntries(specification));
+            return counted[0].value();
+        });
+        return new SearchPage(page, counted[0] == null || counted[0].exact());
     }
 
+    /**
+     * Keyset-пагинация: страница начинается строго после записи из курсора, без OFFSET и без
+     * count(*). Порядок тот же, что у {@link #search}: поле сортировки, при равенстве — id по
+     * убыванию; NULL считается наибольшим значением (как по умолчанию в PostgreSQL). Сортировать
+     * можно только по полям с индексом (поле, id), см. {@link SearchCursor}: по убыванию условие
+     * {@code (поле, id) < (?, ?)} идёт по индексу целиком, по возрастанию индекс даёт диапазон
+     * поля, а равные значения досортировываются по id. Читается на одну запись больше страницы:
+     * если она есть, возвращается курсор следующей страницы.
+     *
+     * @throws IllegalArgumentException курсор повреждён, выдан для другой сортировки, или
+     *                                  по полю сортировки курсор не поддерживается
+     */
     @Transactional(readOnly = true)
-    public GroupQueryResult searchGroups(QueryParameters parameters) {
+    public CursorPage searchAfter(QueryParameters parameters) {
+        SortKey sortKey = resolveSortKey(parameters);
+        if (!SearchCursor.supports(sortKey.field())) {
+            throw new IllegalArgumentException("Cursor paging is not supported for sort by "
+                    + parameters.sortBy().orElse(sortKey.field()));
+        }
+        Optional<SearchCursor> after = parameters.cursor()
+                .filter(StringUtils::hasText)
+                .map(SearchCursor::decode);
+        after.ifPresent(cursor -> cursor.requireSort(sortKey.field(), sortKey.desc()));
+
         Specification<LogEntryEntity> specification = buildSpecification(parameters);
-        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        HibernateCriteriaBuilder cb = (HibernateCriteriaBuilder) entityManager.getCriteriaBuilder();
+        CriteriaQuery<LogEntryEntity> query = cb.createQuery(LogEntryEntity.class);
+        Root<LogEntryEntity> root = query.from(LogEntryEntity.class);
 
-        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
-        Root<LogEntryEntity> countRoot = countQuery.from(LogEntryEntity.class);
-        Predicate basePredicate = specification.toPredicate(countRoot, countQuery, cb);
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate basePredicate = specification.toPredicate(root, query, cb);
         if (basePredicate != null) {
-            countQuery.where(basePredicate);
+            predicates.add(basePredicate);
         }
-        Expression<String> countReqId = cb.coalesce(countRoot.get("reqId"), cb.literal(""));
-        countQuery.select(cb.countDistinct(countReqId));
-        long totalGroups = entityManager.createQuery(countQuery).getSingleResult();
+        after.ifPresent(cursor -> predicates.add(seekAfter(cb, root, cursor)));
+        if (!predicates.isEmpty()) {
+            query.where(cb.and(predicates.toArray(Predicate[]::new)));
+        }
+        query.orderBy(sortOrder(cb, root, sortKey));
+
+        int size = parameters.size();
+        List<LogEntryEntity> rows = entityManager.createQuery(query)
+                .setMaxResults(size + 1)
+                .getResultList();
+        if (rows.size() <= size) {
+            return new CursorPage(rows, Optional.empty());
+        }
+        List<LogEntryEntity> items = List.copyOf(rows.subList(0, size));
+        LogEntryEntity last = items.get(size - 1);
+        String next = SearchCursor.after(last, sortKey.field(), sortKey.desc()).encode();
+        return new CursorPage(items, Optional.of(next));
+    }
+
+    @Transactional(readOnly = true)
+    public GroupQueryResult searchGroups(QueryParameters parameters) {
+        Specification<LogEntryEntity> specification = buildSpecification(parameters);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
 
-        if (totalGroups == 0) {
-            return new GroupQueryResult(0, List.of());
+        TotalCount totalGroups = counts.groups(parameters, () -> countGroups(specification));
+        if (totalGroups.value() == 0) {
+            return new GroupQueryResult(0, true, List.of());
         }
 
         CriteriaQuery<Object[]> groupQuery = cb.createQuery(Object[].class);
@@ -142,7 +241,7 @@ public class LogQueryService {
 
         List<Object[]> rawGroups = typedGroupQuery.getResultList();
         if (rawGroups.isEmpty()) {
-            return new GroupQueryResult(totalGroups, List.of());
+            return new GroupQueryResult(totalGroups.value(), totalGroups.exact(), List.of());
         }
 
         List<String> nonNullReqIds = new ArrayList<>();
@@ -217,7 +316,32 @@ public class LogQueryService {
             ));
         }
 
-        return new GroupQueryResult(totalGroups, groups);
+        return new GroupQueryResult(totalGroups.value(), totalGroups.exact(), groups);
+    }
+
+    private long countEntries(Specification<LogEntryEntity> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<LogEntryEntity> countRoot = countQuery.from(LogEntryEntity.class);
+        Predicate predicate = specification.toPredicate(countRoot, countQuery, cb);
+        if (predicate != null) {
+            countQuery.where(predicate);
+        }
+        countQuery.select(cb.count(countRoot));
+        return entityManager.createQuery(countQuery).getSingleResult();
+    }
+
+    private long countGroups(Specification<LogEntryEntity> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<LogEntryEntity> countRoot = countQuery.from(LogEntryEntity.class);
+        Predicate basePredicate = specification.toPredicate(countRoot, countQuery, cb);
+        if (basePredicate != null) {
+            countQuery.where(basePredicate);
+        }
+        Expression<String> countReqId = cb.coalesce(countRoot.get("reqId"), cb.literal(""));
+        countQuery.select(cb.countDistinct(countReqId));
+        return entityManager.createQuery(countQuery).getSingleResult();
     }
 
     @Transactional(readOnly = true)
@@ -281,13 +405,17 @@ public class LogQueryService {
 
     @Transactional
     public int markRead(List<Long> ids, String reqId, boolean markRead) {
+        int updated = 0;
         if (!CollectionUtils.isEmpty(ids)) {
-            return entryRepository.updateUnreadStatus(ids, !markRead);
+            updated = entryRepository.updateUnreadStatus(ids, !markRead);
+        } else if (StringUtils.hasText(reqId)) {
+            updated = entryRepository.updateUnreadStatusByReqId(reqId, !markRead);
         }
-        if (StringUtils.hasText(reqId)) {
-            return entryRepository.updateUnreadStatusByReqId(reqId, !markRead);
+        if (updated > 0) {
+            // подсчёты с unread_only устарели
+            counts.invalidate();
         }
-        return 0;
+        return updated;
     }
 
     @Transactional(readOnly = true)
@@ -302,6 +430,11 @@ public class LogQueryService {
         }
     }
 
+    @Transactional(readOnly = true)
+    public List<SectionSpanRepository.Span> sectionSpans(String importId) {
+        return spanRepository.findByImport(importId);
+    }
+
     @Transactional(readOnly = true)
     public List<TimelinePoint> timeline(Optional<String> reqId,
                                         Optional<OffsetDateTime> from,
@@ -357,9 +490,10 @@ public class LogQueryService {
             parameters.to().ifPresent(to ->
                     predicates.add(cb.lessThanOrEqualTo(root.get("timestamp"), to)));
 
+            // level приводится к верхнему регистру при импорте: сравнение идёт по индексу level
             parameters.level().filter(StringUtils::hasText)
                     .ifPresent(level -> predicates.add(
-                            cb.equal(cb.upper(root.get("level")), level.toUpperCase(Locale.ROOT))
+                            cb.equal(root.get("level"), level.toUpperCase(Locale.ROOT))
                     ));
 
             parameters.section().filter(StringUtils::hasText)
@@ -371,13 +505,9 @@ public class LogQueryService {
                 predicates.add(cb.isTrue(root.get("unread")));
             }
 
-            parameters.query().filter(StringUtils::hasText).ifPresent(queryText -> {
-                String pattern = "%" + queryText.toLowerCase(Locale.ROOT) + "%";
-                Predicate messageMatch = containsIgnoreCase(cb, root.get("message"), pattern);
-                Predicate moduleMatch = containsIgnoreCase(cb, root.get("module"), pattern);
-                Predicate jsonMatch = containsIgnoreCase(cb, root.get("rawJson"), pattern);
-                predicates.add(cb.or(messageMatch, moduleMatch, jsonMatch));
-            });
+            parameters.query().filter(StringUtils::hasText).ifPresent(queryText -> predicates.add(
+                    textPredicate(cb, root, TextSearchPlanner.plan(queryText, indexedTextSearch()))
+            ));
 
             parameters.filters().forEach((key, value) -> {
                 if (!StringUtils.hasText(value)) return;
@@ -393,7 +523,7 @@ public class LogQueryService {
                         // игнорируем некорректный статус
                     }
                 } else {
-                    predicates.add(cb.equal(lowerIgnoreNull(cb, root.get(field)), value.toLowerCase(Locale.ROOT)));
+                    predicates.add(equalsIgnoreCase(cb, root.get(field), field, value.toLowerCase(Locale.ROOT)));
                 }
             });
 
@@ -401,6 +531,50 @@ public class LogQueryService {
         };
     }
 
+    /**
+     * Условие q по плану {@link TextSearchPlanner}: предфильтр по индексу (функции миграции
+     * db/vendor/postgresql/V7 — те же выражения, что в индексах) и, где он шире, исходное сравнение полей.
+     */
+    private Predicate textPredicate(CriteriaBuilder cb, Root<LogEntryEntity> root, TextSearchPlanner.Plan plan) {
+        String pattern = plan.pattern();
+        Predicate messageMatch = containsIgnoreCase(cb, root.get("message"), pattern);
+        Predicate moduleMatch = containsIgnoreCase(cb, root.get("module"), pattern);
+        Predicate jsonMatch = containsIgnoreCase(cb, root.get("rawJson"), pattern);
+        Predicate scan = cb.or(messageMatch, moduleMatch, jsonMatch);
+
+        Predicate indexed = switch (plan.strategy()) {
+            case SCAN -> null;
+            case TRIGRAM -> cb.like(
+                    cb.function("tf_log_search_text", String.class,
+                            root.get("message"), root.get("module"), root.get("rawJson")),
+                    pattern);
+            case FULL_TEXT -> cb.isTrue(
+                    cb.function("tf_log_search_matches", Boolean.class,
+                            root.get("message"), root.get("module"), root.get("rawJson"),
+                            cb.literal(plan.tsQuery())));
+        };
+        if (indexed == null) {
+            return scan;
+        }
+        return plan.recheck() ? cb.and(indexed, scan) : indexed;
+    }
+
+    private boolean indexedTextSearch() {
+        return queryProperties.getTextSearch().isIndexed() && vendor.isPostgres();
+    }
+
+    /**
+     * {@code lower(coalesce(field, '')) = value} для непустого значения в нижнем регистре без
+     * обёртки над колонкой: {@code lower(field) = value} идёт по индексу выражения
+     * (db/vendor/postgresql/V8), а поля, уже записанные в нижнем регистре, — по простому индексу.
+     */
+    private Predicate equalsIgnoreCase(CriteriaBuilder cb, Path<String> path, String field, String value) {
+        if (LOWER_CASE_FIELDS.contains(field)) {
+            return cb.equal(path, value);
+        }
+        return cb.equal(cb.lower(path), value);
+    }
+
     private Predicate containsIgnoreCase(CriteriaBuilder cb, Path<?> path, String pattern) {
         return cb.like(lowerIgnoreNull(cb, path), pattern);
     }
@@ -410,15 +584,56 @@ public class LogQueryService {
     }
 
     private Sort resolveSort(QueryParameters parameters) {
-        Optional<String> requested = parameters.sortBy()
-                .map(value -> value.toLowerCase(Locale.ROOT));
-        if (requested.isPresent()) {
-            String field = SORT_MAPPING.get(requested.get());
-            if (field != null) {
-                Sort.Direction direction = parameters.sortDesc() ? Sort.Direction.DESC : Sort.Direction.ASC;
-                return Sort.by(direction, field).and(Sort.by(Sort.Direction.DESC, "id"));
+        SortKey sortKey = resolveSortKey(parameters);
+        Sort.Direction direction = sortKey.desc() ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return Sort.by(direction, sortKey.field()).and(Sort.by(Sort.Direction.DESC, "id"));
+    }
+
+    private SortKey resolveSortKey(QueryParameters parameters) {
+        Optional<String> field = parameters.sortBy()
+                .map(value -> SORT_MAPPING.get(value.toLowerCase(Locale.ROOT)));
+        return field.map(value -> new SortKey(value, parameters.sortDesc()))
+                .orElse(new SortKey("timestamp", true));
+    }
+
+    /**
+     * Порядок Search в обоих режимах. NULLS FIRST для DESC и NULLS LAST для ASC — порядок индекса
+     * PostgreSQL по умолчанию, заданный явно, чтобы страницы по номеру и по курсору совпадали
+     * и на базах с другим умолчанием; при равенстве — id по убыванию, как в resolveSort.
+     */
+    private List<Order> sortOrder(HibernateCriteriaBuilder cb, Root<LogEntryEntity> root, SortKey sortKey) {
+        if (sortKey.desc()) {
+            return List.of(cb.desc(root.get(sortKey.field()), true), cb.desc(root.get("id")));
+        }
+        return List.of(cb.asc(root.get(sortKey.field()), false), cb.desc(root.get("id")));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate seekAfter(CriteriaBuilder cb, Root<LogEntryEntity> root, SearchCursor cursor) {
+        Expression field = root.get(cursor.field());
+        Path<Long> id = root.get("id");
+        Comparable key = (Comparable) cursor.key();
+        boolean nullable = !NOT_NULL_SORT_FIELDS.contains(cursor.field());
+
+        if (cursor.desc()) {
+            if (key == null) {
+                // NULL-ключи идут первыми: дальше оставшиеся NULL и все заполненные значения
+                return cb.or(cb.isNotNull(field), cb.and(cb.isNull(field), cb.lessThan(id, cursor.id())));
             }
+            // field <= key отсекает NULL и даёт индексу диапазон
+            return cb.and(
+                    cb.lessThanOrEqualTo(field, key),
+                    cb.or(cb.lessThan(field, key), cb.lessThan(id, cursor.id())));
+        }
+        if (key == null) {
+            return cb.and(cb.isNull(field), cb.lessThan(id, cursor.id()));
         }
-        return Sort.by(Sort.Direction.DESC, "timestamp", "id");
+        Predicate seek = cb.and(
+                cb.greaterThanOrEqualTo(field, key),
+                cb.or(cb.greaterThan(field, key), cb.lessThan(id, cursor.id())));
+        return nullable ? cb.or(seek, cb.isNull(field)) : seek;
+    }
+
+    private record SortKey(String field, boolean desc) {
     }
 }
@@ -0,0 +1,313 @@
+package io.terraform.logviewer.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.parser.ParsedLogRecord;
+import io.terraform.logviewer.plugin.LogPluginGateway;
+import io.terraform.logviewer.repository.AnnotationBacklogRepository;
+import io.terraform.logviewer.repository.AnnotationBacklogRepository.Range;
+import io.terraform.logviewer.repository.LogEntryJdbcWriter;
+import io.terraform.logviewer.service.dto.AnnotationProgress;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Асинхронная стадия аннотирования: записи уже закоммичены импортом, здесь они пачками
+ * прогоняются через плагины, а непустые аннотации дописываются пакетным UPDATE.
+ * <p>
+ * Импорт плагинов не ждёт: пачка сразу записывается в очередь в БД
+ * ({@link AnnotationBacklogRepository}) диапазоном id, а не самими записями. В памяти держится
+ * не больше {@code workers + queue-capacity} пачек; пачки сверх этого воркеры дочитывают из
+ * tf_log_entries, когда до них дойдёт очередь, а оставшиеся после остановки сервиса — при
+ * следующем запуске. Пропускаются (skipped) только пачки, которые не удалось дочитать:
+ * они остаются в очереди БД до следующего запуска.
+ */
+@Slf4j
+@Service
+public class PluginAnnotationService {
+
+    private static final int MAX_TRACKED_IMPORTS = 1000;
+
+    private static final TypeReference<Map<String, Object>> ATTRIBUTES = new TypeReference<>() {
+    };
+
+    private final LogPluginGateway pluginGateway;
+    private final LogEntryJdbcWriter jdbcWriter;
+    private final AnnotationBacklogRepository backlog;
+    private final ObjectMapper objectMapper;
+    private final boolean async;
+    private final int workers;
+    private final ExecutorService executor;
+    // пачки в порядке постановки; записи в памяти — только у тех, кому хватило места в cached
+    private final Queue<Batch> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore cached;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final Map<String, Progress> progress = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Progress> eldest) {
+            return size() > MAX_TRACKED_IMPORTS;
+        }
+    };
+
+    public PluginAnnotationService(LogPluginGateway pluginGateway,
+                                   LogEntryJdbcWriter jdbcWriter,
+                                   AnnotationBacklogRepository backlog,
+                                   ObjectMapper objectMapper,
+                                   IngestProperties properties) {
+        this.pluginGateway = pluginGateway;
+        this.jdbcWriter = jdbcWriter;
+        this.backlog = backlog;
+        this.objectMapper = objectMapper;
+        IngestProperties.Annotation settings = properties.getAnnotation();
+        this.async = settings.isAsync();
+        this.workers = Math.max(settings.getWorkers(), 1);
+        this.executor = Executors.newFixedThreadPool(workers,
+                Thread.ofPlatform().name("log-annotate-", 0).daemon(true).factory());
+        this.cached = new Semaphore(workers + Math.max(settings.getQueueCapacity(), 1));
+    }
+
+    /**
+     * Продолжает пачки, которые остались в очереди БД после прошлой остановки сервиса.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeBacklog() {
+        if (!async || !pluginGateway.isActive()) return;
+        List<Range> left = backlog.findAll();
+        if (left.isEmpty()) return;
+        log.info("Resuming plugin annotation of {} batches left by the previous run", left.size());
+        for (Range range : left) {
+            Progress current = progressFor(range.importId());
+            // импорт прошлого запуска новых записей уже не пришлёт
+            current.sealed = true;
+            current.restored.incrementAndGet();
+            queue.add(new Batch(current, range, null, -1, false));
+        }
+        schedule();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ставит в очередь пачку закоммиченных записей одного импорта и сразу возвращается:
+     * сколько бы пачек ни ждало плагинов, импорт не ждёт.
+     */
+    public void submit(String importId, List<Entry> entries) {
+        if (entries.isEmpty()) return;
+        Progress current = progressFor(importId);
+        current.submitted.addAndGet(entries.size());
+        Range range = null;
+        try {
+            LongSummaryStatistics ids = entries.stream().mapToLong(entry -> entry.entity().getId())
+                    .summaryStatistics();
+            range = backlog.add(importId, ids.getMin(), ids.getMax());
+        } catch (DataAccessException e) {
+            // пачка, не записанная в очередь БД, держится в памяти при любой её заполненности
+            log.warn("Failed to record annotation of {} entries of import {}, keeping them in memory: {}",
+                    entries.size(), importId, e.getMessage());
+        }
+        boolean inMemory = cached.tryAcquire();
+        queue.add(new Batch(current, range, inMemory || range == null ? entries : null, entries.size(), inMemory));
+        schedule();
+    }
+
+    /**
+     * Отмечает, что новых записей для импорта больше не будет.
+     */
+    public void seal(String importId) {
+        progressFor(importId).sealed = true;
+    }
+
+    public Optional<AnnotationProgress> progress(String importId) {
+        Progress current;
+        synchronized (progress) {
+            current = progress.get(importId);
+        }
+        return Optional.ofNullable(current).map(p -> p.snapshot(importId));
+    }
+
+    private Progress progressFor(String importId) {
+        synchronized (progress) {
+            return progress.computeIfAbsent(importId, id -> new Progress());
+        }
+    }
+
+    /**
+     * Запускает воркеры, пока их меньше {@code workers} и в очереди есть пачки.
+     */
+    private void schedule() {
+        int active;
+        while (!queue.isEmpty() && (active = activeWorkers.get()) < workers) {
+            if (!activeWorkers.compareAndSet(active, active + 1)) continue;
+            try {
+                executor.execute(this::work);
+            } catch (RejectedExecutionException e) {
+                // сервис остановлен: пачки остаются в очереди БД до следующего запуска
+                activeWorkers.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void work() {
+        try {
+            Batch batch;
+            while (!Thread.currentThread().isInterrupted() && (batch = queue.poll()) != null) {
+                process(batch);
+            }
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+        // пачка могла встать в очередь, пока этот воркер уже выходил
+        if (!queue.isEmpty()) schedule();
+    }
+
+    private void process(Batch batch) {
+        List<Entry> entries = batch.entries();
+        int size = batch.size();
+        try {
+            if (entries == null) {
+                try {
+                    entries = load(batch.range());
+                } catch (RuntimeException e) {
+                    if (size >= 0) {
+                        batch.progress().skipped.addAndGet(size);
+                    } else {
+                        batch.progress().restored.decrementAndGet();
+                    }
+                    log.warn("Failed to read back entries {}..{} of import {} for annotation: {}",
+                            batch.range().fromId(), batch.range().toId(), batch.range().importId(), e.getMessage());
+                    return;
+                }
+                if (size < 0) {
+                    size = entries.size();
+                    batch.progress().submitted.addAndGet(size);
+                    batch.progress().restored.decrementAndGet();
+                }
+            }
+            annotate(batch.progress(), entries, size);
+        } finally {
+            if (batch.inMemory()) cached.release();
+        }
+        if (batch.range() != null) {
+            try {
+                backlog.remove(batch.range().id());
+            } catch (DataAccessException e) {
+                // пачка аннотирована ещё раз при следующем запуске — UPDATE аннотаций идемпотентен
+                log.warn("Failed to remove annotated batch {} from the backlog: {}", batch.range().id(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Дочитывает пачку из БД; записи, удалённые с тех пор вместе с импортом, просто не находятся.
+     */
+    private List<Entry> load(Range range) {
+        List<Entry> entries = new ArrayList<>();
+        for (LogEntryEntity entity : jdbcWriter.findForAnnotation(range.importId(), range.fromId(), range.toId())) {
+            entries.add(new Entry(new ParsedLogRecord(entity.getTimestamp(), false, entity.getLevel(), false,
+                    entity.getSection(), null, entity.getMessage(), null, null, null, null, null, null, null,
+                    readAttributes(entity.getAttrsJson()), List.of(), null), entity));
+        }
+        return entries;
+    }
+
+    private Map<String, Object> readAttributes(String json) {
+        if (json == null || json.isEmpty()) return Map.of();
+        try {
+            return objectMapper.readValue(json, ATTRIBUTES);
+        } catch (JsonProcessingException e) {
+            return Map.of();
+        }
+    }
+
+    /**
+     * @param size сколько записей пачки учтено в submitted
+     */
+    private void annotate(Progress current, List<Entry> entries, int size) {
+        try {
+            List<CompletableFuture<Map<String, String>>> results = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                results.add(pluginGateway.processAsync(entry.record(), entry.entity()));
+            }
+            List<LogEntryEntity> annotated = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                Map<String, String> annotations = results.get(i).join();
+                if (annotations.isEmpty()) continue;
+                LogEntryEntity entity = entries.get(i).entity();
+                entity.setAnnotationsJson(writeJson(annotations));
+                annotated.add(entity);
+            }
+            jdbcWriter.updateAnnotations(annotated);
+            current.annotated.addAndGet(size);
+            current.updated.addAndGet(annotated.size());
+        } catch (Exception e) {
+            current.failed.addAndGet(size);
+            log.warn("Failed to annotate {} entries: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    private String writeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return value.toString();
+        }
+    }
+
+    public record Entry(ParsedLogRecord record, LogEntryEntity entity) {
+    }
+
+    /**
+     * Пачка очереди.
+     *
+     * @param range    её строка в очереди БД, или null, если записать её туда не удалось
+     * @param entries  записи, если пачка держится в памяти; иначе они дочитываются по range
+     * @param size     сколько записей учтено в submitted; -1 — пачка прошлого запуска, ещё не учтена
+     * @param inMemory пачка занимает место в {@code cached}
+     */
+    private record Batch(Progress progress, Range range, List<Entry> entries, int size, boolean inMemory) {
+    }
+
+    private static final class Progress {
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong annotated = new AtomicLong();
+        private final AtomicLong updated = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        // пачки прошлого запуска, ещё не дочитанные из БД: их записи пока не учтены в submitted
+        private final AtomicLong restored = new AtomicLong();
+        private volatile boolean sealed;
+
+        private AnnotationProgress snapshot(String importId) {
+            long done = annotated.get() + skipped.get() + failed.get();
+            return new AnnotationProgress(importId, submitted.get(), annotated.get(), updated.get(),
+                    skipped.get(), failed.get(), sealed && restored.get() == 0 && done >= submitted.get());
+        }
+    }
+}
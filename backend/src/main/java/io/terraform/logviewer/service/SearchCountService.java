@@ -0,0 +1,105 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.config.QueryProperties;
+import io.terraform.logviewer.config.QueryProperties.CountStrategy;
+import io.terraform.logviewer.config.QueryProperties.GroupCountStrategy;
+import io.terraform.logviewer.repository.LogEntryCountRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import io.terraform.logviewer.service.dto.TotalCount;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Подсчёт total для Search и SearchGroups по стратегии из app.query.count: точно, оценкой
+ * планировщика или HyperLogLog. Результат кешируется на короткое время по нормализованному
+ * фильтру ({@link LogEntrySqlFilter}) — листание страниц одной выборки считает её один раз —
+ * и сбрасывается при каждой записи или удалении строк ({@link #invalidate()}).
+ * Точный подсчёт делает вызывающий: он строит запрос тем же способом, что и страницу.
+ */
+@Service
+public class SearchCountService {
+
+    private enum Kind { ENTRIES, GROUPS }
+
+    private record Key(Kind kind, LogEntryCountRepository.Filter filter) {
+    }
+
+    private record Cached(TotalCount count, long expiresAt, long generation) {
+    }
+
+    private final QueryProperties.Count properties;
+    private final QueryProperties.TextSearch textSearch;
+    private final LogEntryCountRepository countRepository;
+    private final ConcurrentHashMap<Key, Cached> cache = new ConcurrentHashMap<>();
+    // растёт при каждом сбросе: подсчёт, начатый до сброса, в кеш уже не попадёт
+    private final AtomicLong generation = new AtomicLong();
+
+    public SearchCountService(QueryProperties properties, LogEntryCountRepository countRepository) {
+        this.properties = properties.getCount();
+        this.textSearch = properties.getTextSearch();
+        this.countRepository = countRepository;
+    }
+
+    public TotalCount entries(QueryParameters parameters, LongSupplier exact) {
+        LogEntryCountRepository.Filter filter = sqlFilter(parameters);
+        return cached(new Key(Kind.ENTRIES, filter), () -> {
+            if (properties.getStrategy() == CountStrategy.ESTIMATE && countRepository.supportsEstimates()) {
+                long estimate = countRepository.estimate(filter);
+                if (estimate >= properties.getEstimateThreshold()) {
+                    return new TotalCount(estimate, false);
+                }
+            }
+            return new TotalCount(exact.getAsLong(), true);
+        });
+    }
+
+    public TotalCount groups(QueryParameters parameters, LongSupplier exact) {
+        LogEntryCountRepository.Filter filter = sqlFilter(parameters);
+        return cached(new Key(Kind.GROUPS, filter), () -> {
+            if (properties.getGroups() == GroupCountStrategy.APPROXIMATE && countRepository.supportsEstimates()) {
+                int[] ranks = countRepository.reqIdRegisters(filter, HyperLogLog.PRECISION);
+                return new TotalCount(HyperLogLog.estimate(ranks), false);
+            }
+            return new TotalCount(exact.getAsLong(), true);
+        });
+    }
+
+    private LogEntryCountRepository.Filter sqlFilter(QueryParameters parameters) {
+        return LogEntrySqlFilter.of(parameters, textSearch.isIndexed() && countRepository.supportsEstimates());
+    }
+
+    /**
+     * Сбрасывает кеш: записи изменились так, что прежние подсчёты неверны (импорт дописал или
+     * удалил строки, сменились отметки прочтения).
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    private TotalCount cached(Key key, Supplier<TotalCount> count) {
+        long ttl = properties.getCacheTtl().toNanos();
+        if (ttl <= 0) {
+            return count.get();
+        }
+        long now = System.nanoTime();
+        long current = generation.get();
+        Cached hit = cache.get(key);
+        if (hit != null && hit.expiresAt() - now > 0 && hit.generation() == current) {
+            return hit.count();
+        }
+
+        TotalCount counted = count.get();
+        if (cache.size() >= properties.getCacheSize()) {
+            cache.values().removeIf(entry -> entry.expiresAt() - now <= 0 || entry.generation() != current);
+        }
+        // кеш полон живыми записями — этот подсчёт не запоминаем
+        if (cache.size() < properties.getCacheSize()) {
+            cache.put(key, new Cached(counted, now + ttl, current));
+        }
+        return counted;
+    }
+}
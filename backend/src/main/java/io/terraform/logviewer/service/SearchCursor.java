@@ -0,0 +1,111 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.entity.LogEntryEntity;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Курсор keyset-пагинации {@code LogQuery.Search}: поле и направление сортировки, значение
+ * этого поля у последней отданной записи и её id. Клиенту уходит непрозрачной строкой
+ * (base64url), следующая страница начинается строго после этой записи.
+ *
+ * @param key значение поля сортировки, {@code null} если у записи оно не заполнено
+ */
+record SearchCursor(String field, boolean desc, Object key, long id) {
+
+    private static final String VERSION = "1";
+    private static final char SEPARATOR = '|';
+    private static final char NULL_KEY = '-';
+    private static final char VALUE_KEY = '=';
+
+    // только поля с индексом (поле, id), V6 и V9: по остальным seek свёлся бы к сортировке всей выборки
+    private static final Map<String, Function<LogEntryEntity, Object>> KEYS = Map.of(
+            "timestamp", LogEntryEntity::getTimestamp,
+            "level", LogEntryEntity::getLevel,
+            "section", LogEntryEntity::getSection,
+            "reqId", LogEntryEntity::getReqId,
+            "importId", LogEntryEntity::getImportId
+    );
+
+    static boolean supports(String field) {
+        return KEYS.containsKey(field);
+    }
+
+    static SearchCursor after(LogEntryEntity entry, String field, boolean desc) {
+        Function<LogEntryEntity, Object> getter = KEYS.get(field);
+        if (getter == null) {
+            throw new IllegalStateException("No cursor key for field " + field);
+        }
+        return new SearchCursor(field, desc, getter.apply(entry), entry.getId());
+    }
+
+    /**
+     * @throws IllegalArgumentException строка не является курсором этого сервиса
+     */
+    static SearchCursor decode(String token) {
+        String text;
+        try {
+            text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        // значение последним: в нём может встретиться разделитель
+        String[] parts = text.split("\\" + SEPARATOR, 5);
+        if (parts.length != 5 || !VERSION.equals(parts[0]) || !KEYS.containsKey(parts[1])
+                || parts[4].isEmpty()) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        String field = parts[1];
+        boolean desc = switch (parts[2]) {
+            case "d" -> true;
+            case "a" -> false;
+            default -> throw new IllegalArgumentException("Malformed cursor");
+        };
+        try {
+            long id = Long.parseLong(parts[3]);
+            Object key = switch (parts[4].charAt(0)) {
+                case NULL_KEY -> null;
+                case VALUE_KEY -> parseKey(field, parts[4].substring(1));
+                default -> throw new IllegalArgumentException("Malformed cursor");
+            };
+            return new SearchCursor(field, desc, key, id);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    String encode() {
+        StringBuilder text = new StringBuilder()
+                .append(VERSION).append(SEPARATOR)
+                .append(field).append(SEPARATOR)
+                .append(desc ? 'd' : 'a').append(SEPARATOR)
+                .append(id).append(SEPARATOR);
+        if (key == null) {
+            text.append(NULL_KEY);
+        } else {
+            text.append(VALUE_KEY).append(key);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Курсор действителен только для той сортировки, по которой он выдан.
+     */
+    void requireSort(String expectedField, boolean expectedDesc) {
+        if (!field.equals(expectedField) || desc != expectedDesc) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort order");
+        }
+    }
+
+    private static Object parseKey(String field, String value) {
+        return switch (field) {
+            case "timestamp" -> OffsetDateTime.parse(value);
+            default -> value;
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.parser.SectionSpan;
+import io.terraform.logviewer.repository.SectionSpanRepository.Span;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Границы участков plan/apply одного импорта. По разметке строк из
+ * {@link io.terraform.logviewer.parser.TerraformLogParser.ImportContext} запоминает первую и
+ * последнюю строку каждого участка; изменённые участки забираются на запись после того,
+ * как их строки записаны и получили id.
+ */
+final class SectionSpanRecorder {
+
+    private final String importId;
+    private final List<Progress> changed = new ArrayList<>();
+    private Progress current;
+
+    SectionSpanRecorder(String importId) {
+        this.importId = importId;
+    }
+
+    /**
+     * Продолжает незакрытый участок прежней попытки того же импорта.
+     */
+    void resume(Span span) {
+        current = new Progress(span.number(), span.section(), span.startLine(), span.startTs(), span.startEntryId());
+        current.endLine = span.endLine();
+        current.endTs = span.endTs();
+        current.endEntryId = span.endEntryId();
+    }
+
+    /**
+     * @param lineSpan участок, к которому парсер отнёс строку, или {@code null}
+     * @param open     участок продолжается и после этой строки
+     */
+    void track(SectionSpan lineSpan, boolean open, long line, LogEntryEntity entity) {
+        if (current != null && (lineSpan == null || lineSpan.number() != current.number)) {
+            current.closed = true;
+            markChanged(current);
+            current = null;
+        }
+        if (lineSpan == null) return;
+
+        if (current == null) {
+            current = new Progress(lineSpan.number(), lineSpan.section(), line, entity.getTimestamp(), null);
+            current.startEntity = entity;
+        }
+        current.endLine = line;
+        current.endTs = entity.getTimestamp();
+        current.endEntity = entity;
+        markChanged(current);
+        if (!open) {
+            current.closed = true;
+            current = null;
+        }
+    }
+
+    /**
+     * Участки, изменённые с прошлой удачной записи. Вызывать, когда их строки уже записаны;
+     * очередь очищает только {@link #saved()}, так что при сбое записи участки уйдут со следующей.
+     */
+    List<Span> changed() {
+        if (changed.isEmpty()) return List.of();
+        List<Span> spans = new ArrayList<>(changed.size());
+        for (Progress progress : changed) {
+            spans.add(progress.toSpan(importId));
+        }
+        return spans;
+    }
+
+    /**
+     * Участки из последнего {@link #changed()} записаны.
+     */
+    void saved() {
+        for (Progress progress : changed) {
+            progress.queued = false;
+            progress.settle();
+        }
+        changed.clear();
+    }
+
+    private void markChanged(Progress progress) {
+        if (!progress.queued) {
+            progress.queued = true;
+            changed.add(progress);
+        }
+    }
+
+    private static final class Progress {
+        private final int number;
+        private final String section;
+        private final long startLine;
+        private final OffsetDateTime startTs;
+        private Long startEntryId;
+        private LogEntryEntity startEntity;
+        private long endLine;
+        private OffsetDateTime endTs;
+        private Long endEntryId;
+        private LogEntryEntity endEntity;
+        private boolean closed;
+        private boolean queued;
+
+        private Progress(int number, String section, long startLine, OffsetDateTime startTs, Long startEntryId) {
+            this.number = number;
+            this.section = section;
+            this.startLine = startLine;
+            this.startTs = startTs;
+            this.startEntryId = startEntryId;
+            this.endLine = startLine;
+        }
+
+        private Span toSpan(String importId) {
+            return new Span(importId, number, section, startLine, endLine, startTs, endTs,
+                    idOf(startEntity, startEntryId), idOf(endEntity, endEntryId), closed);
+        }
+
+        private void settle() {
+            startEntryId = idOf(startEntity, startEntryId);
+            endEntryId = idOf(endEntity, endEntryId);
+            if (startEntryId != null) startEntity = null;
+        }
+
+        // id появляется у записи только при записи пакета
+        private static Long idOf(LogEntryEntity entity, Long known) {
+            return entity != null && entity.getId() != null ? entity.getId() : known;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.index.LogSegment;
+import io.terraform.logviewer.index.SegmentQuery;
+import io.terraform.logviewer.index.SegmentStore;
+import io.terraform.logviewer.index.SegmentWriter;
+import io.terraform.logviewer.repository.LogEntryRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import io.terraform.logviewer.service.dto.SearchPage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * Search по сегменту импорта ({@link SegmentStore}): фильтры, q и страница считаются в памяти
+ * процесса, из БД читаются только строки страницы по id. Берётся, когда запрос ограничен
+ * одним import_id, у импорта есть сегмент и все условия есть в сегменте: без unread_only
+ * (отметки прочтения меняются после импорта), с сортировкой по ts, а q и значения фильтров,
+ * которые сравниваются через {@code lower()}, — в ASCII ({@link SegmentWriter#fold}).
+ * Остальное — через БД.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SegmentSearchService {
+
+    // поля фильтров (значения LogQueryService.FILTER_MAPPING) — термы сегмента
+    private static final Map<String, Function<LogEntryEntity, Object>> TERM_FIELDS = Map.of(
+            "reqId", LogEntryEntity::getReqId,
+            "transactionId", LogEntryEntity::getTransactionId,
+            "rpc", LogEntryEntity::getRpc,
+            "resourceType", LogEntryEntity::getResourceType,
+            "dataSourceType", LogEntryEntity::getDataSourceType,
+            "httpOperationType", LogEntryEntity::getHttpOperationType,
+            "statusCode", LogEntryEntity::getStatusCode
+    );
+
+    private final SegmentStore store;
+    private final LogEntryRepository entryRepository;
+
+    /**
+     * Добавляет записанную строку в сегмент импорта.
+     */
+    static void index(SegmentWriter writer, LogEntryEntity entry) {
+        List<String> terms = new ArrayList<>(TERM_FIELDS.size() + 2);
+        if (entry.getLevel() != null) {
+            terms.add(SegmentWriter.term("level", entry.getLevel().toUpperCase(Locale.ROOT)));
+        }
+        if (entry.getSection() != null) {
+            terms.add(SegmentWriter.term("section", entry.getSection()));
+        }
+        TERM_FIELDS.forEach((field, getter) -> {
+            Object value = getter.apply(entry);
+            if (value == null) return;
+            String text = value instanceof Integer ? value.toString() : SegmentWriter.fold(value.toString());
+            terms.add(SegmentWriter.term(field, text));
+        });
+        writer.add(entry.getId(), entry.getTimestamp(), entry.getMessage(), entry.getModule(), entry.getRawJson(),
+                terms);
+    }
+
+    /**
+     * Страница по сегменту с точным total или пусто, если запрос идёт через БД.
+     *
+     * @param desc сортировка по ts по убыванию (иначе по возрастанию; при равном ts — id по убыванию)
+     */
+    public Optional<SearchPage> search(QueryParameters parameters, boolean desc) {
+        if (!store.isEnabled() || parameters.unreadOnly()) return Optional.empty();
+        String importId = parameters.filters().get("import_id");
+        if (!StringUtils.hasText(importId)) return Optional.empty();
+        Optional<LogSegment> found = store.find(importId.toLowerCase(Locale.ROOT));
+        if (found.isEmpty()) return Optional.empty();
+        LogSegment segment = found.get();
+        Optional<SegmentQuery> query = toQuery(parameters);
+        if (query.isEmpty()) return Optional.empty();
+
+        int[] docs = segment.search(query.get());
+        PageRequest pageable = PageRequest.of(parameters.page(), parameters.size());
+        long[] ids = pageIds(segment, docs, pageable.getOffset(), parameters.size(), desc);
+
+        List<LogEntryEntity> content = fetch(ids);
+        if (content.size() != ids.length) {
+            // строки импорта удалены или заменены после записи сегмента
+            log.warn("Segment of import {} is stale, dropping it", importId);
+            store.delete(importId.toLowerCase(Locale.ROOT));
+            return Optional.empty();
+        }
+        return Optional.of(new SearchPage(new PageImpl<>(content, pageable, docs.length), true));
+    }
+
+    /**
+     * Условия запроса для сегмента или пусто, если значение вне ASCII: его {@code lower()}
+     * базы может свернуть иначе, чем Java.
+     */
+    private static Optional<SegmentQuery> toQuery(QueryParameters parameters) {
+        List<String> terms = new ArrayList<>();
+        parameters.level().filter(StringUtils::hasText).ifPresent(level ->
+                terms.add(SegmentWriter.term("level", level.toUpperCase(Locale.ROOT))));
+        parameters.section().filter(StringUtils::hasText).ifPresent(section ->
+                terms.add(SegmentWriter.term("section", section.toLowerCase(Locale.ROOT))));
+
+        for (Map.Entry<String, String> filter : parameters.filters().entrySet()) {
+            String value = filter.getValue();
+            if (!StringUtils.hasText(value)) continue;
+            String field = LogQueryService.FILTER_MAPPING.get(filter.getKey());
+            if (field == null || "importId".equals(field)) continue;
+            if ("statusCode".equals(field)) {
+                try {
+                    terms.add(SegmentWriter.term(field, Integer.toString(Integer.parseInt(value))));
+                } catch (NumberFormatException ignored) {
+                    // как и в запросе: некорректный статус не фильтрует
+                }
+            } else if (SegmentWriter.isAscii(value)) {
+                terms.add(SegmentWriter.term(field, SegmentWriter.fold(value)));
+            } else {
+                return Optional.empty();
+            }
+        }
+
+        Optional<String> text = parameters.query().filter(StringUtils::hasText);
+        if (text.isPresent() && !SegmentWriter.isAscii(text.get())) return Optional.empty();
+        String pattern = text.map(query -> "%" + SegmentWriter.fold(query) + "%").orElse(null);
+        return Optional.of(new SegmentQuery(
+                parameters.from().map(SegmentWriter::micros).orElse(Long.MIN_VALUE),
+                parameters.to().map(SegmentWriter::micros).orElse(Long.MAX_VALUE),
+                terms,
+                pattern,
+                pattern != null ? LogEntryFilter.like(pattern) : null));
+    }
+
+    /**
+     * id записей страницы. Документы сегмента идут по (ts, id): по убыванию — это обратный порядок,
+     * по возрастанию ts записи с равным ts переставляются в порядок id по убыванию, как в БД.
+     */
+    private static long[] pageIds(LogSegment segment, int[] docs, long offset, int size, boolean desc) {
+        if (offset >= docs.length) return new long[0];
+        int count = (int) Math.min(size, docs.length - offset);
+        long[] ids = new long[count];
+        if (desc) {
+            for (int i = 0; i < count; i++) {
+                ids[i] = segment.id(docs[docs.length - 1 - (int) offset - i]);
+            }
+            return ids;
+        }
+        int position = 0;
+        int filled = 0;
+        for (int start = 0; start < docs.length && filled < count; ) {
+            long micros = segment.micros(docs[start]);
+            int end = start + 1;
+            while (end < docs.length && segment.micros(docs[end]) == micros) end++;
+            for (int i = end - 1; i >= start && filled < count; i--, position++) {
+                if (position >= offset) {
+                    ids[filled++] = segment.id(docs[i]);
+                }
+            }
+            start = end;
+        }
+        return ids;
+    }
+
+    private List<LogEntryEntity> fetch(long[] ids) {
+        if (ids.length == 0) return List.of();
+        Map<Long, LogEntryEntity> byId = new HashMap<>(ids.length * 2);
+        entryRepository.findAllById(Arrays.stream(ids).boxed().toList())
+                .forEach(entry -> byId.put(entry.getId(), entry));
+        List<LogEntryEntity> ordered = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            LogEntryEntity entry = byId.get(id);
+            if (entry != null) ordered.add(entry);
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,331 @@
+package io.terraform.logviewer.service;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.repository.TailCheckpointRepository;
+import io.terraform.logviewer.repository.TailCheckpointRepository.Checkpoint;
+import io.terraform.logviewer.service.LogImportService.ImportSession;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * Импорт логов, которые ещё пишутся (TF_LOG_PATH долгого apply): каталог
+ * {@code app.ingest.tail.directory} отслеживается через {@link WatchService}, новые строки
+ * каждого файла читаются по мере роста и пишутся под одним {@code import_id} на файл.
+ * <p>
+ * После каждой записи сохраняется контрольная точка — байт после последней целой строки
+ * и число строк. После рестарта чтение продолжается с неё; строки, записанные, но не
+ * попавшие в точку, узнаются по хэшу строки и не дублируются. Все файлы читает один поток
+ * {@code log-tail}.
+ */
+@Slf4j
+@Service
+public class TailIngestService {
+
+    // через столько прочитанных байт сохраняется точка, даже если файл ещё не дочитан
+    private static final long CHECKPOINT_BYTES = 64L * 1024 * 1024;
+
+    private final LogImportService importService;
+    private final TailCheckpointRepository checkpoints;
+    private final IngestProperties.Tail settings;
+    // только поток log-tail
+    private final Map<Path, TailedFile> files = new HashMap<>();
+    private ByteBuffer buffer;
+    private Path directory;
+    private PathMatcher matcher;
+    private WatchService watcher;
+    private Thread thread;
+    private volatile boolean running;
+
+    public TailIngestService(LogImportService importService, TailCheckpointRepository checkpoints,
+                             IngestProperties properties) {
+        this.importService = importService;
+        this.checkpoints = checkpoints;
+        this.settings = properties.getTail();
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!settings.isEnabled()) return;
+        if (!StringUtils.hasText(settings.getDirectory())) {
+            throw new IllegalStateException("app.ingest.tail.directory is not set");
+        }
+        directory = Path.of(settings.getDirectory()).toAbsolutePath().normalize();
+        Files.createDirectories(directory);
+        matcher = directory.getFileSystem().getPathMatcher("glob:" + settings.getGlob());
+        buffer = ByteBuffer.allocate((int) Math.max(settings.getReadBuffer().toBytes(), 4096));
+        watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        running = true;
+        thread = Thread.ofPlatform().name("log-tail").daemon(true).start(this::run);
+        log.info("Tailing {} in {}", settings.getGlob(), directory);
+    }
+
+    @PreDestroy
+    void stop() throws IOException, InterruptedException {
+        if (thread == null) return;
+        running = false;
+        // poll бросит ClosedWatchServiceException; запись в БД не прерываем
+        watcher.close();
+        thread.join(settings.getPollInterval().toMillis() + TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private void run() {
+        try {
+            scan();
+            long pollMillis = Math.max(settings.getPollInterval().toMillis(), 1);
+            while (running) {
+                WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    handleEvents(key);
+                    key.reset();
+                }
+                // по таймеру проверяются все файлы: не всякая ФС сообщает о дозаписи сразу
+                long now = System.nanoTime();
+                for (TailedFile file : List.copyOf(files.values())) {
+                    poll(file, now);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // остановка сервиса
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.error("Tailing {} stopped: {}", directory, e.getMessage(), e);
+        } finally {
+            files.values().forEach(this::suspend);
+            files.clear();
+        }
+    }
+
+    private void scan() throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(Files::isRegularFile).forEach(this::track);
+        }
+    }
+
+    private void handleEvents(WatchKey key) throws IOException {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                scan();
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_DELETE) {
+                TailedFile file = files.get(path);
+                if (file != null) remove(file);
+            } else if (Files.isRegularFile(path)) {
+                track(path);
+            }
+        }
+    }
+
+    private void track(Path path) {
+        if (matcher.matches(path.getFileName())) {
+            files.computeIfAbsent(path, TailedFile::new);
+        }
+    }
+
+    private void poll(TailedFile file, long now) {
+        try {
+            tail(file, now);
+        } catch (IOException | RuntimeException e) {
+            // прочитанное после контрольной точки перечитается: состояние берём заново из БД
+            log.warn("Failed to tail {}: {}", file.path, e.getMessage());
+            suspend(file);
+            file.loaded = false;
+        }
+    }
+
+    private void tail(TailedFile file, long now) throws IOException {
+        if (!file.loaded) {
+            file.load(checkpoints.find(file.key).orElse(null));
+            file.lastGrowth = now;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file.path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            remove(file);
+            return;
+        }
+        String fileKey = attributes.fileKey() != null ? attributes.fileKey().toString() : null;
+        long size = attributes.size();
+        boolean replaced = size < file.offset
+                || (file.fileKey != null && fileKey != null && !file.fileKey.equals(fileKey));
+        if (replaced) {
+            log.info("{} was truncated or replaced, starting a new import", file.path);
+            finish(file);
+            file.load(null);
+        }
+        file.fileKey = fileKey;
+
+        if (size > file.offset) {
+            if (read(file, size)) {
+                file.lastGrowth = now;
+            }
+        } else if (file.session != null && now - file.lastGrowth >= settings.getIdleTimeout().toNanos()) {
+            log.info("{} has not grown for {}, completing import {}", file.path, settings.getIdleTimeout(), file.importId);
+            finish(file);
+        }
+    }
+
+    /**
+     * Дочитывает файл до {@code size} и сохраняет точку после каждого куска.
+     *
+     * @return прочитана ли хоть одна целая строка
+     */
+    private boolean read(TailedFile file, long size) throws IOException {
+        if (file.session == null) {
+            file.session = importService.openTailSession(file.path.getFileName().toString(), file.importId,
+                    file.lines, file.saved, file.failed);
+            file.importId = file.session.getImportId();
+        }
+        ImportSession session = file.session;
+        Consumer<String> lines = line -> importService.ingestFileLine(session, line);
+        boolean progressed = false;
+        try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+            while (running && file.offset < size) {
+                long to = Math.min(size, file.offset + CHECKPOINT_BYTES);
+                long end = readLines(channel, file.offset, to, buffer, lines);
+                if (end == file.offset && to < size) {
+                    // строка длиннее куска: читаем до конца файла
+                    end = readLines(channel, file.offset, size, buffer, lines);
+                }
+                if (end == file.offset) break;
+
+                importService.flushSession(session);
+                Checkpoint checkpoint = new Checkpoint(file.key, file.importId, file.fileKey, end,
+                        session.getTotal(), session.getSaved(), session.getFailed());
+                checkpoints.save(checkpoint);
+                file.apply(checkpoint);
+                progressed = true;
+            }
+        }
+        return progressed;
+    }
+
+    /**
+     * Читает байты {@code [from, to)} и отдаёт целые строки; незаконченная последняя строка
+     * остаётся в файле до следующего чтения.
+     *
+     * @return позиция после последнего перевода строки или {@code from}, если его не было
+     */
+    static long readLines(FileChannel channel, long from, long to, ByteBuffer buffer, Consumer<String> lines)
+            throws IOException {
+        LineSplitter splitter = new LineSplitter(lines);
+        long position = from;
+        long end = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            byte[] bytes = buffer.array();
+            int offset = buffer.arrayOffset();
+            for (int i = read - 1; i >= 0; i--) {
+                byte b = bytes[offset + i];
+                if (b == '\n' || b == '\r') {
+                    end = position + i + 1;
+                    break;
+                }
+            }
+            splitter.accept(bytes, offset, read);
+            position += read;
+        }
+        return end;
+    }
+
+    private void finish(TailedFile file) {
+        if (file.session == null) return;
+        ImportSession session = file.session;
+        file.session = null;
+        importService.completeSession(session);
+        checkpoints.save(new Checkpoint(file.key, file.importId, file.fileKey, file.offset,
+                session.getTotal(), session.getSaved(), session.getFailed()));
+    }
+
+    private void suspend(TailedFile file) {
+        if (file.session == null) return;
+        // всё прочитанное уже записано и отмечено в точке: импорт продолжится после рестарта
+        importService.abandonSession(file.session);
+        file.session = null;
+    }
+
+    private void remove(TailedFile file) {
+        files.remove(file.path);
+        try {
+            finish(file);
+            checkpoints.delete(file.key);
+            log.info("{} was deleted, import {} stays", file.path, file.importId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to complete import of deleted {}: {}", file.path, e.getMessage());
+            suspend(file);
+        }
+    }
+
+    private static final class TailedFile {
+        private final Path path;
+        private final String key;
+        private boolean loaded;
+        private String importId;
+        private String fileKey;
+        private long offset;
+        private long lines;
+        private long saved;
+        private long failed;
+        private ImportSession session;
+        private long lastGrowth;
+
+        private TailedFile(Path path) {
+            this.path = path;
+            this.key = path.toString();
+        }
+
+        private void load(Checkpoint checkpoint) {
+            loaded = true;
+            if (checkpoint == null) {
+                importId = null;
+                fileKey = null;
+                offset = lines = saved = failed = 0;
+                return;
+            }
+            importId = checkpoint.importId();
+            fileKey = checkpoint.fileKey();
+            apply(checkpoint);
+        }
+
+        private void apply(Checkpoint checkpoint) {
+            offset = checkpoint.offset();
+            lines = checkpoint.lines();
+            saved = checkpoint.saved();
+            failed = checkpoint.failed();
+        }
+    }
+}
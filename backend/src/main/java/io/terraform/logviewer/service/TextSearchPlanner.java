@@ -0,0 +1,130 @@
+package io.terraform.logviewer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Выбор индекса для фильтра q по виду строки. Смысл фильтра не меняется: запись подходит, если
+ * {@code lower(q)} — подстрока (шаблон LIKE) message, module или raw_json. Индексы PostgreSQL
+ * (миграция db/vendor/postgresql/V7) служат предфильтром, а где он шире точного условия, исходное
+ * условие проверяется поверх него.
+ *
+ * <ul>
+ *     <li>{@link Strategy#FULL_TEXT} — в q есть слово, с обеих сторон ограниченное не буквой и не
+ *     цифрой (ASCII): в любом подходящем тексте оно тоже стоит отдельным словом, и запись находится
+ *     по tsvector. Слова текста — цепочки букв и цифр, остальное при индексации заменяется пробелом. Выбирается, когда такое слово не короче самой длинной цепочки букв и цифр q.</li>
+ *     <li>{@link Strategy#TRIGRAM} — в q есть цепочка из трёх и более букв и цифр: pg_trgm отбирает
+ *     записи по триграммам. Без шаблонов LIKE в q совпадение с текстом поиска уже точное.</li>
+ *     <li>{@link Strategy#FULL_TEXT} по любому ограниченному слову, если длинной цепочки нет.</li>
+ *     <li>{@link Strategy#SCAN} — прежнее условие без индекса.</li>
+ * </ul>
+ */
+final class TextSearchPlanner {
+
+    enum Strategy { SCAN, TRIGRAM, FULL_TEXT }
+
+    /**
+     * @param pattern шаблон LIKE для нижнего регистра: {@code %q%}
+     * @param tsQuery запрос tsquery для {@link Strategy#FULL_TEXT}, иначе {@code null}
+     * @param recheck предфильтр шире исходного условия — проверить и его
+     */
+    record Plan(Strategy strategy, String pattern, String tsQuery, boolean recheck) {
+    }
+
+    // разделитель полей в tf_log_search_text
+    static final char FIELD_SEPARATOR = '\u001f';
+    // лексема tf_log_search_tsv у текста длиннее проиндексированной части
+    static final String TRUNCATED_LEXEME = "_truncated_";
+
+    // pg_trgm извлекает триграммы из цепочек букв и цифр
+    private static final int MIN_TRIGRAM_RUN = 3;
+    // PostgreSQL не индексирует слова длиннее 2047 байт
+    private static final int MAX_LEXEME = 2047;
+
+    private TextSearchPlanner() {
+    }
+
+    static Plan plan(String query, boolean indexed) {
+        String text = query.toLowerCase(Locale.ROOT);
+        String pattern = "%" + text + "%";
+        if (!indexed) {
+            return new Plan(Strategy.SCAN, pattern, null, false);
+        }
+
+        List<String> words = new ArrayList<>();
+        int longestRun = 0;
+        int longestWord = 0;
+        int i = 0;
+        while (i < text.length()) {
+            if (!isAsciiAlnum(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && isAsciiAlnum(text.charAt(i))) {
+                i++;
+            }
+            int length = i - start;
+            longestRun = Math.max(longestRun, length);
+            if (start > 0 && i < text.length() && isBoundary(text.charAt(start - 1)) && isBoundary(text.charAt(i))
+                    && length <= MAX_LEXEME && isSingleToken(text, start, i)) {
+                String word = text.substring(start, i);
+                if (!words.contains(word)) words.add(word);
+                longestWord = Math.max(longestWord, length);
+            }
+        }
+
+        if (!words.isEmpty() && (longestWord >= longestRun || longestRun < MIN_TRIGRAM_RUN)) {
+            return new Plan(Strategy.FULL_TEXT, pattern, toTsQuery(words), true);
+        }
+        if (longestRun >= MIN_TRIGRAM_RUN) {
+            return new Plan(Strategy.TRIGRAM, pattern, null, !isLiteral(text));
+        }
+        return new Plan(Strategy.SCAN, pattern, null, false);
+    }
+
+    private static String toTsQuery(List<String> words) {
+        StringBuilder query = new StringBuilder("'").append(TRUNCATED_LEXEME).append("' | (");
+        for (int i = 0; i < words.size(); i++) {
+            if (i > 0) query.append(" & ");
+            query.append('\'').append(words.get(i)).append('\'');
+        }
+        return query.append(')').toString();
+    }
+
+    /**
+     * Строка совпадает сама с собой в LIKE и не захватывает разделитель полей.
+     */
+    private static boolean isLiteral(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' || c == '_' || c == '\\' || c == FIELD_SEPARATOR) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Символ, который и в q, и в тексте — не буква и не цифра для PostgreSQL: ASCII, не шаблон
+     * LIKE и не экранирование.
+     */
+    private static boolean isBoundary(char c) {
+        return c < 128 && !isAsciiAlnum(c) && c != '%' && c != '_' && c != '\\';
+    }
+
+    /**
+     * Парсер PostgreSQL оставляет цепочку одним словом, если она начинается с буквы или состоит
+     * из цифр; цепочку вроде {@code 1e5x} он может разобрать как число и слово.
+     */
+    private static boolean isSingleToken(String text, int start, int end) {
+        if (text.charAt(start) >= 'a') return true;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) >= 'a') return false;
+        }
+        return true;
+    }
+
+    private static boolean isAsciiAlnum(char c) {
+        return c >= 'a' && c <= 'z' || c >= '0' && c <= '9';
+    }
+}
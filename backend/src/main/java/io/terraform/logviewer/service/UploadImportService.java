@@ -0,0 +1,291 @@
+package io.terraform.logviewer.service;
+
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.service.LogImportService.ImportSession;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Импорт загруженного файла, который может быть сжат (gzip, zstd) или быть архивом (zip, tar,
+ * в том числе .tar.gz). Сжатый лог распаковывается потоком прямо в разбор строк. Каждый файл
+ * архива становится отдельным импортом: файлы по очереди распаковываются во временные
+ * и разбираются параллельно в пуле {@code log-archive-}.
+ * <p>
+ * {@link IOException} значит, что загрузку нельзя прочитать (испорченное сжатие, превышены
+ * {@code app.ingest.archive.max-*}); сбои на стороне сервера — {@link RuntimeException}.
+ */
+@Slf4j
+@Service
+public class UploadImportService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final LogImportService importService;
+    private final LogContentDecoder.Limits limits;
+    private final ExecutorService executor;
+    private final ExecutorService readers;
+    private final int workers;
+
+    public UploadImportService(LogImportService importService, IngestProperties properties) {
+        this.importService = importService;
+        this.limits = LogContentDecoder.Limits.of(properties.getArchive());
+        this.workers = Math.max(properties.getArchive().getWorkers(), 1);
+        this.executor = Executors.newFixedThreadPool(workers,
+                Thread.ofPlatform().name("log-archive-", 0).daemon(true).factory());
+        // читатель потоковой загрузки ждёт данных от клиента — отдельно от пула разбора архивов
+        this.readers = Executors.newCachedThreadPool(
+                Thread.ofPlatform().name("log-upload-", 0).daemon(true).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        readers.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Импортирует загрузку и ждёт окончания.
+     *
+     * @param sizeBytes   размер загрузки (сжатой), если известен, иначе -1
+     * @param contentHash отпечаток загрузки; для файлов архива считается свой
+     */
+    public UploadResult importUpload(String fileName, long sizeBytes, Boolean bulkLoad, String contentHash,
+                                     InputStream raw) throws IOException {
+        LogContentDecoder.Decoded decoded = LogContentDecoder.open(raw, limits);
+        if (!decoded.isArchive()) {
+            ImportSession session = importService.startSession(fileName, sizeBytes, bulkLoad, contentHash);
+            if (!session.isDuplicate()) {
+                importLines(session, decoded.stream());
+                importService.completeSession(session);
+            }
+            return new UploadResult(fileName, false, List.of(EntryResult.imported(fileName, session)));
+        }
+        return new UploadResult(fileName, true, importArchive(decoded, bulkLoad));
+    }
+
+    /**
+     * То же в отдельном потоке: для источника, который наполняется по мере прихода данных
+     * и поэтому не может читаться в потоке, который его наполняет.
+     */
+    public CompletableFuture<UploadResult> importUploadAsync(String fileName, long sizeBytes, Boolean bulkLoad,
+                                                             String contentHash, InputStream raw) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream in = raw) {
+                return importUpload(fileName, sizeBytes, bulkLoad, contentHash, in);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, readers);
+    }
+
+    private void importLines(ImportSession session, InputStream content) throws IOException {
+        try {
+            LineSplitter.split(content, line -> importService.ingestFileLine(session, line));
+        } catch (IOException | RuntimeException e) {
+            importService.failSession(session);
+            throw e;
+        }
+    }
+
+    /**
+     * Испорченный архив или превышенный предел обрывают всю загрузку: ещё не начатые импорты
+     * файлов не запускаются, а завершённые удаляются. Сбой импорта одного файла остальные
+     * не трогает — он попадает в его результат.
+     */
+    private List<EntryResult> importArchive(LogContentDecoder.Decoded archive, Boolean bulkLoad) throws IOException {
+        // распакованные, но ещё не разобранные файлы лежат на диске — держим их не больше, чем нужно пулу
+        Semaphore spooled = new Semaphore(workers * 2);
+        List<CompletableFuture<EntryResult>> imports = new ArrayList<>();
+        AtomicBoolean rejected = new AtomicBoolean();
+        try {
+            archive.forEachEntry((name, content) -> {
+                acquire(spooled);
+                Path file;
+                String entryHash;
+                try {
+                    file = createTempFile();
+                    entryHash = spool(content, file);
+                } catch (IOException | RuntimeException e) {
+                    spooled.release();
+                    throw e;
+                }
+                imports.add(CompletableFuture.supplyAsync(
+                                () -> rejected.get() ? rejectEntry(name, file) : importEntry(name, file, bulkLoad, entryHash),
+                                executor)
+                        .whenComplete((result, error) -> spooled.release()));
+            });
+        } catch (IOException | RuntimeException e) {
+            rejected.set(true);
+            discardImported(imports);
+            throw e;
+        }
+
+        List<EntryResult> entries = new ArrayList<>(imports.size());
+        for (CompletableFuture<EntryResult> future : imports) {
+            entries.add(future.join());
+        }
+        return entries;
+    }
+
+    /**
+     * Дожидается запущенных импортов отвергнутой загрузки и удаляет импортированное.
+     */
+    private void discardImported(List<CompletableFuture<EntryResult>> imports) {
+        for (CompletableFuture<EntryResult> future : imports) {
+            EntryResult entry = future.join();
+            if (entry.isFailed()) continue;
+            try {
+                importService.discardSession(entry.session());
+            } catch (RuntimeException e) {
+                log.warn("Failed to discard import {} of a rejected upload: {}", entry.session().getImportId(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    private EntryResult rejectEntry(String name, Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+        return EntryResult.failed(name, "Upload rejected");
+    }
+
+    private EntryResult importEntry(String name, Path file, Boolean bulkLoad, String contentHash) {
+        try {
+            ImportSession session = importService.startSession(name, Files.size(file), bulkLoad, contentHash);
+            if (!session.isDuplicate()) {
+                try (InputStream content = Files.newInputStream(file)) {
+                    importLines(session, content);
+                }
+                importService.completeSession(session);
+            }
+            return EntryResult.imported(name, session);
+        } catch (IOException | RuntimeException e) {
+            // один сбойный файл не должен ронять остальные файлы архива
+            log.warn("Failed to import archive entry {}: {}", name, e.getMessage());
+            return EntryResult.failed(name, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private static Path createTempFile() {
+        try {
+            return Files.createTempFile("logviewer-entry-", ".log");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create a temporary file", e);
+        }
+    }
+
+    /**
+     * Распаковывает файл архива на диск. Ошибка чтения — это загрузка, ошибка записи — сервер.
+     */
+    private static String spool(InputStream content, Path file) throws IOException {
+        ContentHasher hasher = new ContentHasher();
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                hasher.update(buffer, 0, read);
+                try {
+                    out.write(buffer, 0, read);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to write " + file, e);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return hasher.hex();
+    }
+
+    private static void acquire(Semaphore semaphore) throws InterruptedIOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Archive import interrupted");
+        }
+    }
+
+    /**
+     * Результат одного файла загрузки: импорт или ошибка, из-за которой файл не импортирован.
+     */
+    public record EntryResult(String fileName, ImportSession session, String error) {
+
+        static EntryResult imported(String fileName, ImportSession session) {
+            return new EntryResult(fileName, session, null);
+        }
+
+        static EntryResult failed(String fileName, String error) {
+            return new EntryResult(fileName, null, error);
+        }
+
+        public boolean isFailed() {
+            return session == null;
+        }
+    }
+
+    /**
+     * @param archive загрузка была архивом; тогда в {@code entries} по результату на файл
+     * @param entries результаты в порядке файлов, включая файлы, которые импортировать не удалось
+     */
+    public record UploadResult(String fileName, boolean archive, List<EntryResult> entries) {
+
+        /**
+         * Импорты файлов, которые удалось импортировать.
+         */
+        public List<ImportSession> sessions() {
+            return entries.stream().filter(entry -> !entry.isFailed()).map(EntryResult::session).toList();
+        }
+
+        public long total() {
+            return sessions().stream().mapToLong(ImportSession::getTotal).sum();
+        }
+
+        public long saved() {
+            return sessions().stream().mapToLong(ImportSession::getSaved).sum();
+        }
+
+        public long failed() {
+            return sessions().stream().mapToLong(ImportSession::getFailed).sum();
+        }
+
+        public boolean duplicate() {
+            List<ImportSession> sessions = sessions();
+            return !sessions.isEmpty() && sessions.size() == entries.size()
+                    && sessions.stream().allMatch(ImportSession::isDuplicate);
+        }
+
+        /**
+         * Импорт, на который указывает сводный ответ: единственный или первый импортированный файл архива.
+         */
+        public String importId() {
+            List<ImportSession> sessions = sessions();
+            return sessions.isEmpty() ? "" : sessions.get(0).getImportId();
+        }
+    }
+}
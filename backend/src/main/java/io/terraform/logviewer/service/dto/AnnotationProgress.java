@@ -0,0 +1,12 @@
+package io.terraform.logviewer.service.dto;
+
+public record AnnotationProgress(
+        String importId,
+        long submitted,
+        long annotated,
+        long updated,
+        long skipped,
+        long failed,
+        boolean done
+) {
+}
@@ -0,0 +1,8 @@
+package io.terraform.logviewer.service.dto;
+
+import io.terraform.logviewer.entity.LogEntryEntity;
+import java.util.List;
+import java.util.Optional;
+
+public record CursorPage(List<LogEntryEntity> items, Optional<String> nextCursor) {
+}
@@ -2,5 +2,5 @@ package io.terraform.logviewer.service.dto;
 
 import java.util.List;
 
-public record GroupQueryResult(long totalGroups, List<LogGroupResult> groups) {
+public record GroupQueryResult(long totalGroups, boolean totalExact, List<LogGroupResult> groups) {
 }
@@ -0,0 +1,29 @@
+package io.terraform.logviewer.service.dto;
+
+public record ImportJobProgress(
+        String importId,
+        String fileName,
+        State state,
+        long linesRead,
+        long parsed,
+        long saved,
+        long failed,
+        long bytesRead,
+        long totalBytes,
+        double bytesPerSecond,
+        long etaSeconds,
+        String error
+) {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED;
+
+        public boolean isTerminal() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+}
@@ -16,5 +16,6 @@ public record QueryParameters(
         Map<String, String> filters,
         Optional<String> sortBy,
         boolean sortDesc,
-        boolean groupByReqId) {
+        boolean groupByReqId,
+        Optional<String> cursor) {
 }
@@ -0,0 +1,10 @@
+package io.terraform.logviewer.service.dto;
+
+import io.terraform.logviewer.entity.LogEntryEntity;
+import org.springframework.data.domain.Page;
+
+/**
+ * Страница Search; {@code totalExact = false} — {@code page.getTotalElements()} оценка.
+ */
+public record SearchPage(Page<LogEntryEntity> page, boolean totalExact) {
+}
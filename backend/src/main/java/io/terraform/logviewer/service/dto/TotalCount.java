@@ -0,0 +1,7 @@
+package io.terraform.logviewer.service.dto;
+
+/**
+ * Число записей или групп; {@code exact = false} — оценка.
+ */
+public record TotalCount(long value, boolean exact) {
+}
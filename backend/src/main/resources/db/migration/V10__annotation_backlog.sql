@@ -0,0 +1,9 @@
+-- Пачки записей, которые ещё не прогнаны через плагины: по строке на пачку, диапазоном id
+-- одного импорта. Строка удаляется, когда пачка аннотирована; оставшиеся после остановки
+-- сервиса дочитываются при следующем запуске.
+CREATE TABLE IF NOT EXISTS tf_annotation_backlog (
+    id BIGSERIAL PRIMARY KEY,
+    import_id VARCHAR(64) NOT NULL,
+    from_id BIGINT NOT NULL,
+    to_id BIGINT NOT NULL
+);
@@ -0,0 +1 @@
+CREATE INDEX IF NOT EXISTS idx_tf_log_entries_import_id ON tf_log_entries (import_id);
@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS tf_imports (
+    import_id VARCHAR(64) PRIMARY KEY,
+    file_name VARCHAR(512),
+    content_hash VARCHAR(64),
+    status VARCHAR(16) NOT NULL,
+    total BIGINT NOT NULL DEFAULT 0,
+    saved BIGINT NOT NULL DEFAULT 0,
+    failed BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMPTZ
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_tf_imports_content_hash ON tf_imports (content_hash);
+
+ALTER TABLE tf_log_entries ADD COLUMN IF NOT EXISTS line_hash BIGINT;
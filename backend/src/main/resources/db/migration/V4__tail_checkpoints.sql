@@ -0,0 +1,10 @@
+CREATE TABLE IF NOT EXISTS tf_tail_checkpoints (
+    path VARCHAR(1024) PRIMARY KEY,
+    import_id VARCHAR(64) NOT NULL,
+    file_key VARCHAR(256),
+    byte_offset BIGINT NOT NULL DEFAULT 0,
+    line_count BIGINT NOT NULL DEFAULT 0,
+    saved BIGINT NOT NULL DEFAULT 0,
+    failed BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
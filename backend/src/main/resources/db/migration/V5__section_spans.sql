@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS tf_section_spans (
+    import_id VARCHAR(64) NOT NULL,
+    span_no INTEGER NOT NULL,
+    section VARCHAR(16) NOT NULL,
+    start_line BIGINT NOT NULL,
+    end_line BIGINT NOT NULL,
+    start_ts TIMESTAMPTZ,
+    end_ts TIMESTAMPTZ,
+    start_entry_id BIGINT,
+    end_entry_id BIGINT,
+    closed BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (import_id, span_no)
+);
@@ -0,0 +1,4 @@
+-- Keyset-пагинация Search: (ts, id) < (?, ?) и ORDER BY ts, id читаются одним индексом
+-- в обе стороны; одиночный индекс по ts им поглощается.
+CREATE INDEX IF NOT EXISTS idx_tf_log_entries_ts_id ON tf_log_entries (ts DESC, id DESC);
+DROP INDEX IF EXISTS idx_tf_log_entries_ts;
@@ -0,0 +1,10 @@
+-- Keyset-пагинация Search по level, section, req_id и import_id: (поле, id) вместо одиночных
+-- индексов по тем же колонкам, число индексов на запись не растёт.
+CREATE INDEX IF NOT EXISTS idx_tf_log_entries_level_id ON tf_log_entries (level, id);
+DROP INDEX IF EXISTS idx_tf_log_entries_level;
+CREATE INDEX IF NOT EXISTS idx_tf_log_entries_section_id ON tf_log_entries (section, id);
+DROP INDEX IF EXISTS idx_tf_log_entries_section;
+CREATE INDEX IF NOT EXISTS idx_tf_log_entries_req_id_id ON tf_log_entries (req_id, id);
+DROP INDEX IF EXISTS idx_tf_log_entries_req_id;
+CREATE INDEX IF NOT EXISTS idx_tf_log_entries_import_id_id ON tf_log_entries (import_id, id);
+DROP INDEX IF EXISTS idx_tf_log_entries_import_id;
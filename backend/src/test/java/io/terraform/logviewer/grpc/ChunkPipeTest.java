@@ -0,0 +1,74 @@
+package io.terraform.logviewer.grpc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ChunkPipeTest {
+
+    @Test
+    void chunksAreReadAsOneStream() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(2);
+        CompletableFuture<String> read = CompletableFuture.supplyAsync(() -> readAll(pipe));
+
+        for (String part : new String[] {"{\"@mess", "", "age\":", "\"one\"}\n"}) {
+            pipe.write(ByteString.copyFromUtf8(part));
+        }
+        pipe.finish();
+
+        assertThat(read.get(5, TimeUnit.SECONDS)).isEqualTo("{\"@message\":\"one\"}\n");
+    }
+
+    @Test
+    void failWakesBlockedWriterAndReaderSeesError() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(1);
+        pipe.write(ByteString.copyFromUtf8("first"));
+        // очередь полна: второй чанк ждёт места, пока его не разбудит отмена стрима
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> pipe.write(ByteString.copyFromUtf8("second")));
+        Thread.sleep(50);
+        assertThat(writer).isNotDone();
+
+        pipe.fail(Status.CANCELLED.withDescription("client went away").asRuntimeException());
+
+        writer.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> pipe.read(new byte[16], 0, 16))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("client went away");
+        // после отмены чанки молча отбрасываются
+        pipe.write(ByteString.copyFromUtf8("late"));
+        pipe.finish();
+    }
+
+    @Test
+    void readerCloseWakesBlockedWriter() throws Exception {
+        ChunkPipe pipe = new ChunkPipe(1);
+        pipe.write(ByteString.copyFromUtf8("first"));
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            pipe.write(ByteString.copyFromUtf8("second"));
+            pipe.write(ByteString.copyFromUtf8("third"));
+            pipe.finish();
+        });
+        Thread.sleep(50);
+        assertThat(writer).isNotDone();
+
+        // распаковщик сдался на испорченных данных и закрыл трубу
+        pipe.close();
+
+        writer.get(5, TimeUnit.SECONDS);
+    }
+
+    private static String readAll(ChunkPipe pipe) {
+        try {
+            return new String(pipe.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
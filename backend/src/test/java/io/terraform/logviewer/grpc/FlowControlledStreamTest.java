@@ -0,0 +1,113 @@
+package io.terraform.logviewer.grpc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FlowControlledStreamTest {
+
+    private final Responses responses = new Responses();
+
+    @Test
+    void failedMessageAbortsStreamOnce() {
+        RecordingStream stream = new RecordingStream(value -> {
+            if (value.equals("bad")) throw new IllegalStateException("cannot store " + value);
+        });
+
+        stream.onNext("good");
+        stream.onNext("bad");
+        stream.onNext("after");
+        stream.onCompleted();
+
+        assertThat(stream.handled).containsExactly("good", "bad");
+        assertThat(stream.aborted).hasSize(1);
+        assertThat(stream.completed).isFalse();
+        assertThat(Status.fromThrowable(responses.error).getCode()).isEqualTo(Status.Code.INTERNAL);
+    }
+
+    @Test
+    void failedCompletionAbortsStream() {
+        RecordingStream stream = new RecordingStream(value -> {
+        });
+        stream.failOnComplete = true;
+
+        stream.onNext("line");
+        stream.onCompleted();
+
+        assertThat(stream.aborted).hasSize(1);
+        assertThat(responses.error).isNotNull();
+    }
+
+    @Test
+    void clientErrorAbortsButLateErrorAfterCompletionDoesNot() {
+        RecordingStream broken = new RecordingStream(value -> {
+        });
+        broken.onNext("line");
+        broken.onError(Status.CANCELLED.asRuntimeException());
+        assertThat(broken.aborted).hasSize(1);
+
+        RecordingStream done = new RecordingStream(value -> {
+        });
+        done.onNext("line");
+        done.onCompleted();
+        done.onError(Status.CANCELLED.asRuntimeException());
+        assertThat(done.completed).isTrue();
+        assertThat(done.aborted).isEmpty();
+    }
+
+    private final class RecordingStream extends FlowControlledStream<String> {
+        private final Handler handler;
+        private final List<String> handled = new ArrayList<>();
+        private final List<Throwable> aborted = new ArrayList<>();
+        private boolean completed;
+        private boolean failOnComplete;
+
+        RecordingStream(Handler handler) {
+            super(responses, Runnable::run, 4);
+            this.handler = handler;
+        }
+
+        @Override
+        protected void handle(String value) {
+            handled.add(value);
+            handler.accept(value);
+        }
+
+        @Override
+        protected void complete() {
+            if (failOnComplete) throw new IllegalStateException("commit failed");
+            completed = true;
+        }
+
+        @Override
+        protected void abort(Throwable t) {
+            aborted.add(t);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void accept(String value);
+    }
+
+    private static final class Responses implements StreamObserver<Object> {
+        private Throwable error;
+
+        @Override
+        public void onNext(Object value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
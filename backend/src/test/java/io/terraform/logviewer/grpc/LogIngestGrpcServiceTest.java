@@ -0,0 +1,262 @@
+package io.terraform.logviewer.grpc;
+
+import static io.terraform.logviewer.service.TestArchives.gzip;
+import static io.terraform.logviewer.service.TestArchives.tar;
+import static io.terraform.logviewer.service.TestArchives.utf8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.service.ContentHasher;
+import io.terraform.logviewer.service.ImportJobService;
+import io.terraform.logviewer.service.LogImportService;
+import io.terraform.logviewer.service.LogImportService.ImportSession;
+import io.terraform.logviewer.service.PluginAnnotationService;
+import io.terraform.logviewer.service.UploadImportService;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+class LogIngestGrpcServiceTest {
+
+    private static final List<String> LINES = List.of(
+            "  {\"@message\":\"padded\"}  ",
+            "",
+            "{\"@message\":\"crlf\"}\r",
+            "\t",
+            "{\"@message\":\"plain\"}");
+
+    private final LogImportService importService = mock(LogImportService.class);
+    private final List<String> ingested = new CopyOnWriteArrayList<>();
+    private LogIngestGrpcService service;
+
+    @BeforeEach
+    void setUp() {
+        when(importService.startSession(anyString())).thenReturn(new ImportSession("import", "grpc"));
+        doCallRealMethod().when(importService).ingestFileLine(any(), any());
+        doAnswer(invocation -> ingested.add(invocation.getArgument(1)))
+                .when(importService).ingestLine(any(), any());
+        when(importService.recordContentHash(any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+        service = new LogIngestGrpcService(importService, mock(PluginAnnotationService.class),
+                mock(ImportJobService.class), mock(UploadImportService.class), new IngestProperties());
+    }
+
+    @Test
+    void envelopeVariantsIngestTheSameLines() {
+        send(LINES.stream()
+                .map(line -> ImportEnvelope.newBuilder().setLine(LogLine.newBuilder().setRawJson(line)).build())
+                .toList());
+        List<String> single = List.copyOf(ingested);
+
+        ingested.clear();
+        send(List.of(ImportEnvelope.newBuilder().setBatch(LogLineBatch.newBuilder().addAllRawJson(LINES)).build()));
+        List<String> batch = List.copyOf(ingested);
+
+        ingested.clear();
+        send(List.of(ImportEnvelope.newBuilder()
+                .setBlock(ByteString.copyFrom(String.join("\n", LINES) + "\n", StandardCharsets.UTF_8))
+                .build()));
+        List<String> block = List.copyOf(ingested);
+
+        assertThat(single).containsExactly("{\"@message\":\"padded\"}", "{\"@message\":\"crlf\"}",
+                "{\"@message\":\"plain\"}");
+        assertThat(batch).isEqualTo(single);
+        assertThat(block).isEqualTo(single);
+    }
+
+    @Test
+    void repeatedMetaIsInvalidArgumentAndAbandonsTheImport() {
+        ImportSession first = new ImportSession("import", "plan.json");
+        when(importService.startSession(anyString(), anyLong(), any(), any())).thenReturn(first);
+        ImportEnvelope meta = ImportEnvelope.newBuilder()
+                .setMeta(ImportMeta.newBuilder().setFileName("plan.json"))
+                .build();
+        ImportEnvelope line = ImportEnvelope.newBuilder()
+                .setLine(LogLine.newBuilder().setRawJson("{\"@message\":\"one\"}"))
+                .build();
+
+        Recorder recorder = new Recorder();
+        StreamObserver<ImportEnvelope> requests = service.ingest(recorder);
+        requests.onNext(meta);
+        requests.onNext(line);
+        requests.onNext(meta);
+        requests.onNext(line);
+        requests.onCompleted();
+
+        assertThat(Status.fromThrowable(recorder.error).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+        assertThat(ingested).containsExactly("{\"@message\":\"one\"}");
+        verify(importService, times(1)).startSession(anyString(), anyLong(), any(), any());
+        verify(importService).abandonSession(first);
+        verify(importService, never()).completeSession(any());
+    }
+
+    @Test
+    void declaredHashIsCheckedAgainstReceivedBytes() {
+        ImportSession session = new ImportSession("import", "apply.json");
+        when(importService.startSession(anyString(), anyLong(), any(), any())).thenReturn(session);
+        byte[] content = utf8("{\"@message\":\"one\"}\n".repeat(100));
+
+        Recorder rejected = new Recorder();
+        sendChunks(withUploads(), meta("apply.json").setContentSha256("00".repeat(32)).build(), content, rejected);
+
+        assertThat(Status.fromThrowable(rejected.error).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+        verify(importService).discardSession(session);
+        verify(importService, never()).completeSession(any());
+
+        // верный отпечаток, но этот файл уже загружен другим импортом: ответ — тот импорт
+        when(importService.recordContentHash(any(), any())).thenReturn(new ImportSession("earlier", "apply.json"));
+        Recorder accepted = new Recorder();
+        sendChunks(withUploads(), meta("apply.json").setContentSha256(ContentHasher.hash(ByteString.copyFrom(content)))
+                .build(), content, accepted);
+
+        assertThat(accepted.error).isNull();
+        assertThat(accepted.value.getImportId()).isEqualTo("earlier");
+        verify(importService).completeSession(session);
+    }
+
+    @Test
+    void unreadableUploadIsInvalidArgumentAndServerFailureInternal() {
+        LogIngestGrpcService uploads = withUploads();
+        when(importService.startSession(anyString(), anyLong(), any(), any()))
+                .thenReturn(new ImportSession("import", "apply.json.gz"));
+        byte[] compressed = gzip(utf8("{\"@message\":\"one\"}\n".repeat(1000)));
+        ImportFile corrupt = ImportFile.newBuilder()
+                .setFileName("apply.json.gz")
+                .setContent(ByteString.copyFrom(Arrays.copyOf(compressed, compressed.length / 2)))
+                .build();
+
+        Recorder rejected = new Recorder();
+        uploads.ingestFile(corrupt, rejected);
+        assertThat(Status.fromThrowable(rejected.error).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+        verify(importService).failSession(any());
+
+        when(importService.startSession(anyString(), anyLong(), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+        Recorder failed = new Recorder();
+        uploads.ingestFile(ImportFile.newBuilder()
+                .setFileName("apply.json.gz")
+                .setContent(ByteString.copyFrom(compressed))
+                .build(), failed);
+        assertThat(Status.fromThrowable(failed.error).getCode()).isEqualTo(Status.Code.INTERNAL);
+        assertThat(failed.error.getMessage()).contains("connection lost");
+    }
+
+    @Test
+    void chunkedArchiveReportsFailedEntryAndCorruptStreamIsInvalidArgument() {
+        LogIngestGrpcService uploads = withUploads();
+        when(importService.startSession(anyString(), anyLong(), any(), any()))
+                .thenAnswer(invocation -> new ImportSession("id-" + invocation.getArgument(0),
+                        invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            ImportSession session = invocation.getArgument(0);
+            if (session.getFileName().startsWith("broken")) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+            return ingested.add(invocation.getArgument(1));
+        }).when(importService).ingestLine(any(), any());
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("plan.json", utf8("{\"@message\":\"plan\"}\n"));
+        files.put("broken.json", utf8("{\"@message\":\"lost\"}\n"));
+        files.put("apply.json", utf8("{\"@message\":\"apply\"}\n"));
+
+        Recorder archive = new Recorder();
+        sendChunks(uploads, "run.tar.gz", gzip(tar(files)), archive);
+
+        assertThat(archive.error).isNull();
+        assertThat(archive.value.getEntriesList()).extracting(ImportResult::getFileName)
+                .containsExactly("plan.json", "broken.json", "apply.json");
+        assertThat(archive.value.getEntries(0).getError()).isEmpty();
+        assertThat(archive.value.getEntries(1).getError()).contains("connection lost");
+        assertThat(archive.value.getEntries(1).getImportId()).isEmpty();
+        assertThat(archive.value.getImportId()).isEqualTo("id-plan.json");
+        assertThat(ingested).containsExactly("{\"@message\":\"plan\"}", "{\"@message\":\"apply\"}");
+
+        byte[] compressed = gzip(utf8("{\"@message\":\"one\"}\n".repeat(1000)));
+        Recorder corrupt = new Recorder();
+        sendChunks(uploads, "apply.json.gz", Arrays.copyOf(compressed, compressed.length / 2), corrupt);
+        assertThat(Status.fromThrowable(corrupt.error).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+    }
+
+    private LogIngestGrpcService withUploads() {
+        IngestProperties properties = new IngestProperties();
+        return new LogIngestGrpcService(importService, mock(PluginAnnotationService.class),
+                mock(ImportJobService.class), new UploadImportService(importService, properties), properties);
+    }
+
+    private static void sendChunks(LogIngestGrpcService service, String fileName, byte[] content, Recorder recorder) {
+        sendChunks(service, meta(fileName).build(), content, recorder);
+    }
+
+    private static ImportMeta.Builder meta(String fileName) {
+        return ImportMeta.newBuilder().setFileName(fileName);
+    }
+
+    private static void sendChunks(LogIngestGrpcService service, ImportMeta meta, byte[] content, Recorder recorder) {
+        StreamObserver<FileChunk> chunks = service.ingestChunks(recorder);
+        chunks.onNext(FileChunk.newBuilder().setMeta(meta).build());
+        // мелкие чанки: сигнатура и заголовки архива приходят по частям
+        for (int offset = 0; offset < content.length; offset += 7) {
+            chunks.onNext(FileChunk.newBuilder()
+                    .setData(ByteString.copyFrom(content, offset, Math.min(7, content.length - offset)))
+                    .build());
+        }
+        chunks.onCompleted();
+    }
+
+    private static final class Recorder implements StreamObserver<ImportResult> {
+        private ImportResult value;
+        private Throwable error;
+
+        @Override
+        public void onNext(ImportResult value) {
+            this.value = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    private void send(List<ImportEnvelope> envelopes) {
+        StreamObserver<ImportEnvelope> requests = service.ingest(new StreamObserver<>() {
+            @Override
+            public void onNext(ImportResult value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new AssertionError(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+        envelopes.forEach(requests::onNext);
+        requests.onCompleted();
+    }
+}
@@ -0,0 +1,74 @@
+package io.terraform.logviewer.grpc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.service.LiveTailService;
+import io.terraform.logviewer.service.LogQueryService;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class LogQueryGrpcServiceTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void subscribeSendsLagBeforeEntriesOfSlowClient() throws InterruptedException {
+        IngestProperties properties = new IngestProperties();
+        properties.getLive().setBufferSize(2);
+        LiveTailService liveTail = new LiveTailService(properties);
+        LogQueryGrpcService service = new LogQueryGrpcService(mock(LogQueryService.class), new GrpcMapper(),
+                new QueryRequestMapper(), liveTail);
+        ServerCallStreamObserver<SubscriptionEvent> call = mock(ServerCallStreamObserver.class);
+        AtomicBoolean ready = new AtomicBoolean();
+        when(call.isReady()).thenAnswer(invocation -> ready.get());
+        List<SubscriptionEvent> sent = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> sent.add(invocation.getArgument(0))).when(call).onNext(any());
+
+        service.subscribe(QueryRequest.newBuilder().setLevel("info").build(), call);
+        ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Runnable> onCancel = ArgumentCaptor.forClass(Runnable.class);
+        verify(call).setOnReadyHandler(onReady.capture());
+        verify(call).setOnCancelHandler(onCancel.capture());
+
+        // клиент не читает: транспорт не готов, в буфер входят две записи из пяти
+        liveTail.publish(entries(5));
+        ready.set(true);
+        onReady.getValue().run();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (sent.size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sent).hasSize(3);
+        assertThat(sent.get(0).getLag()).isEqualTo(SubscriptionLag.newBuilder().setDropped(3).setDroppedTotal(3).build());
+        assertThat(sent.subList(1, 3)).extracting(event -> event.getRecord().getMessage())
+                .containsExactly("line 1", "line 2");
+
+        onCancel.getValue().run();
+        assertThat(liveTail.hasSubscribers()).isFalse();
+    }
+
+    private static List<LogEntryEntity> entries(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(i -> {
+            LogEntryEntity entry = new LogEntryEntity();
+            entry.setId((long) i);
+            entry.setTimestamp(OffsetDateTime.parse("2025-01-01T00:00:00Z").plusSeconds(i));
+            entry.setLevel("INFO");
+            entry.setMessage("line " + i);
+            return entry;
+        }).toList();
+    }
+}
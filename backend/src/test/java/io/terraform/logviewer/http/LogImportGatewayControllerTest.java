@@ -0,0 +1,187 @@
+package io.terraform.logviewer.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.grpc.FileChunk;
+import io.terraform.logviewer.grpc.ImportJob;
+import io.terraform.logviewer.grpc.LogIngestGrpc;
+import io.terraform.logviewer.grpc.LogIngestGrpcService;
+import io.terraform.logviewer.service.ContentHasher;
+import io.terraform.logviewer.service.ImportJobService;
+import io.terraform.logviewer.service.LogImportService;
+import io.terraform.logviewer.service.LogQueryService;
+import io.terraform.logviewer.service.PluginAnnotationService;
+import io.terraform.logviewer.service.UploadImportService;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+class LogImportGatewayControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void decodesBase64BodyToFileInAnyFieldOrder() throws IOException {
+        byte[] content = "{\"@message\":\"one\"}\n{\"@message\":\"two\"}\n".repeat(5000).getBytes(StandardCharsets.UTF_8);
+        String body = "{\"contentBase64\":\"" + Base64.getEncoder().encodeToString(content)
+                + "\",\"extra\":{\"nested\":[1,2]},\"bulkLoad\":true,\"fileName\":\"apply.json\"}";
+        Path target = dir.resolve("upload.log");
+
+        LogImportGatewayController.JsonUpload upload = LogImportGatewayController.readJsonUpload(objectMapper,
+                stream(body), target);
+
+        assertThat(upload.fileName()).isEqualTo("apply.json");
+        assertThat(upload.bulkLoad()).isTrue();
+        assertThat(Files.readAllBytes(target)).isEqualTo(content);
+        assertThat(upload.contentHash()).isEqualTo(ContentHasher.hash(new ByteArrayInputStream(content)));
+    }
+
+    @Test
+    void missingContentIsAnEmptyFile() throws IOException {
+        Path target = Files.createFile(dir.resolve("empty.log"));
+
+        LogImportGatewayController.JsonUpload upload = LogImportGatewayController.readJsonUpload(objectMapper,
+                stream("{\"fileName\":null,\"contentBase64\":null}"), target);
+
+        assertThat(upload.fileName()).isNull();
+        assertThat(upload.bulkLoad()).isNull();
+        assertThat(target).isEmptyFile();
+    }
+
+    @Test
+    void rejectsMalformedBody() {
+        Path target = dir.resolve("bad.log");
+
+        assertThatThrownBy(() -> LogImportGatewayController.readJsonUpload(objectMapper,
+                stream("[\"not an object\"]"), target)).isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> LogImportGatewayController.readJsonUpload(objectMapper,
+                stream("{\"contentBase64\":\"%%%\"}"), target)).isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void startJobStreamsFileInChunksToSpooledJob() throws Exception {
+        ImportJobService jobService = mock(ImportJobService.class);
+        AtomicReference<byte[]> received = new AtomicReference<>();
+        AtomicReference<String> receivedHash = new AtomicReference<>();
+        when(jobService.submit(eq("apply.json"), anyLong(), eq(true), anyString(), any())).thenAnswer(invocation -> {
+            ImportJobService.Content content = invocation.getArgument(4);
+            try (InputStream in = content.open()) {
+                received.set(in.readAllBytes());
+            }
+            content.discard();
+            receivedHash.set(invocation.getArgument(3));
+            return "job-1";
+        });
+        byte[] content = "{\"@message\":\"line\"}\n".repeat(100_000).getBytes(StandardCharsets.UTF_8);
+        LogIngestGrpcService grpcService = new LogIngestGrpcService(mock(LogImportService.class),
+                mock(PluginAnnotationService.class), jobService, mock(UploadImportService.class),
+                new IngestProperties());
+        LogIngestGrpc.LogIngestStub stub = mock(LogIngestGrpc.LogIngestStub.class);
+        List<FileChunk> sent = new ArrayList<>();
+        when(stub.startImportChunks(any())).thenAnswer(invocation -> {
+            ClientResponseObserver<FileChunk, ImportJob> client = invocation.getArgument(0);
+            return new DirectCall<>(client, grpcService.startImportChunks(client), sent);
+        });
+        LogImportGatewayController controller = new LogImportGatewayController(mock(LogQueryService.class),
+                objectMapper);
+        ReflectionTestUtils.setField(controller, "ingestAsyncStub", stub);
+
+        LogImportGatewayController.ImportJobResponse job = controller.startJob(
+                new MockMultipartFile("file", "apply.json", "application/json", content), true);
+
+        assertThat(job.importId()).isEqualTo("job-1");
+        assertThat(job.fileName()).isEqualTo("apply.json");
+        assertThat(sent).filteredOn(FileChunk::hasData).hasSizeGreaterThan(1)
+                .allMatch(chunk -> chunk.getData().size() <= 256 * 1024);
+        assertThat(received.get()).isEqualTo(content);
+        assertThat(receivedHash.get()).isEqualTo(ContentHasher.hash(new ByteArrayInputStream(content)));
+    }
+
+    /**
+     * Клиентский стрим, который передаёт сообщения прямо в серверный приёмник:
+     * без транспорта сервер обрабатывает их синхронно.
+     */
+    private static final class DirectCall<R> extends ClientCallStreamObserver<FileChunk> {
+        private final StreamObserver<FileChunk> server;
+        private final List<FileChunk> sent;
+
+        private DirectCall(ClientResponseObserver<FileChunk, R> client, StreamObserver<FileChunk> server,
+                           List<FileChunk> sent) {
+            this.server = server;
+            this.sent = sent;
+            client.beforeStart(this);
+        }
+
+        @Override
+        public void onNext(FileChunk value) {
+            sent.add(value);
+            server.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            server.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            server.onCompleted();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
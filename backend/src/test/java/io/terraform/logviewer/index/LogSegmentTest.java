@@ -0,0 +1,176 @@
+package io.terraform.logviewer.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LogSegmentTest {
+
+    private static final OffsetDateTime BASE = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void ordersDocumentsByTimeAndId() throws IOException {
+        LogSegment segment = build(writer -> {
+            writer.add(30, BASE.plusSeconds(2), "late", null, null, List.of());
+            writer.add(20, BASE.plusSeconds(1), "tie", null, null, List.of());
+            writer.add(10, BASE.plusSeconds(1), "tie", null, null, List.of());
+        });
+
+        int[] all = segment.search(query(List.of(), null));
+        assertThat(Arrays.stream(all).mapToLong(segment::id)).containsExactly(10L, 20L, 30L);
+
+        int[] first = segment.search(new SegmentQuery(Long.MIN_VALUE, SegmentWriter.micros(BASE.plusSeconds(1)),
+                List.of(), null, null));
+        assertThat(Arrays.stream(first).mapToLong(segment::id)).as("upper bound is inclusive")
+                .containsExactly(10L, 20L);
+    }
+
+    @Test
+    void matchesSubstringsAcrossFieldsButNotBetweenThem() throws IOException {
+        LogSegment segment = build(writer -> {
+            writer.add(1, BASE, "Error creating S3 Bucket", "provider.aws", "{\"id\":1}", List.of());
+            writer.add(2, BASE, "refreshing", "provider.google", "{\"msg\":\"ERROR\"}", List.of());
+            writer.add(3, BASE, "abc", "def", null, List.of());
+        });
+
+        assertThat(ids(segment, query(List.of(), "%s3 bucket%"))).containsExactly(1L);
+        assertThat(ids(segment, query(List.of(), "%error%"))).containsExactly(1L, 2L);
+        assertThat(ids(segment, query(List.of(), "%provider.%"))).containsExactly(1L, 2L);
+        assertThat(ids(segment, query(List.of(), "%cde%"))).as("fields are matched one by one").isEmpty();
+        assertThat(ids(segment, query(List.of(), "%ab%"))).as("shorter than a trigram").containsExactly(3L);
+    }
+
+    @Test
+    void appliesLikeWildcardsAndTerms() throws IOException {
+        String error = SegmentWriter.term("level", "ERROR");
+        LogSegment segment = build(writer -> {
+            writer.add(1, BASE, "status 503", null, null, List.of(error));
+            writer.add(2, BASE, "status 504", null, null, List.of());
+            writer.add(3, BASE, "status_503", null, null, List.of(error));
+        });
+
+        assertThat(ids(segment, query(List.of(), "%status_50%"))).containsExactly(1L, 2L, 3L);
+        assertThat(ids(segment, query(List.of(), "%status\\_503%"))).containsExactly(3L);
+        assertThat(ids(segment, query(List.of(error), "%503%"))).containsExactly(1L, 3L);
+        assertThat(ids(segment, query(List.of(SegmentWriter.term("level", "WARN")), null))).isEmpty();
+    }
+
+    @Test
+    void abandonsImportsAboveTheLimit() throws IOException {
+        SegmentWriter writer = new SegmentWriter(directory.resolve("big.spool"), 2, new MemoryBudget(Long.MAX_VALUE));
+        for (int i = 0; i < 3; i++) {
+            writer.add(i, BASE, "line", null, null, List.of());
+        }
+        assertThat(writer.isAbandoned()).isTrue();
+        assertThat(writer.write(directory.resolve("big.seg"))).isFalse();
+        assertThat(directory.resolve("big.spool")).doesNotExist();
+    }
+
+    @Test
+    void abandonsImportsOverTheSharedMemoryLimit() throws IOException {
+        // память занимается кусками по 1 МБ: второму импорту второго куска уже не хватает
+        MemoryBudget budget = new MemoryBudget(3 << 19);
+        SegmentWriter first = new SegmentWriter(directory.resolve("first.spool"), 1000, budget);
+        SegmentWriter second = new SegmentWriter(directory.resolve("second.spool"), 1000, budget);
+
+        first.add(1, BASE, "line", null, null, List.of());
+        second.add(1, BASE, "line", null, null, List.of());
+        assertThat(second.isAbandoned()).isTrue();
+        assertThat(budget.used()).isEqualTo(1 << 20);
+
+        for (int i = 2; i <= 1000; i++) {
+            first.add(i, BASE, "line " + i, null, null, List.of());
+        }
+        assertThat(first.isAbandoned()).isFalse();
+        assertThat(first.write(directory.resolve("first.seg"))).isTrue();
+        first.close();
+        second.close();
+        assertThat(budget.used()).as("closed writers release their memory").isZero();
+    }
+
+    @Test
+    void lowercasesAsciiOnlyLikePostgres() throws IOException {
+        LogSegment segment = build(writer -> {
+            writer.add(1, BASE, "Ошибка В Provider", null, null, List.of());
+            writer.add(2, BASE, "ÉTAT", null, null, List.of());
+        });
+
+        assertThat(ids(segment, query(List.of(), "%в provider%"))).as("non-ASCII case is kept").isEmpty();
+        assertThat(ids(segment, query(List.of(), "%В provider%"))).containsExactly(1L);
+        assertThat(ids(segment, query(List.of(), "%Éta%"))).containsExactly(2L);
+        assertThat(SegmentWriter.fold("ÉTAT Ok")).isEqualTo("État ok");
+    }
+
+    @Test
+    void abandonsTextThatLowerFoldsIntoAscii() throws IOException {
+        for (String text : new String[] {"İstanbul", "5 \u212A"}) {
+            SegmentWriter writer = new SegmentWriter(directory.resolve("folds.spool"), 10,
+                    new MemoryBudget(Long.MAX_VALUE));
+            writer.add(1, BASE, "ok", null, null, List.of());
+            writer.add(2, BASE, null, null, "{\"msg\":\"" + text + "\"}", List.of());
+            assertThat(writer.isAbandoned()).as(text).isTrue();
+            writer.close();
+        }
+    }
+
+    private LogSegment build(WriterAction action) throws IOException {
+        Path file = directory.resolve("import.seg");
+        try (SegmentWriter writer = new SegmentWriter(directory.resolve("import.spool"), 1000,
+                new MemoryBudget(Long.MAX_VALUE))) {
+            action.accept(writer);
+            assertThat(writer.write(file)).isTrue();
+        }
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            assertThat(leftovers).containsExactly(file);
+        }
+        return LogSegment.open(file);
+    }
+
+    private static SegmentQuery query(List<String> terms, String pattern) {
+        return new SegmentQuery(Long.MIN_VALUE, Long.MAX_VALUE, terms, pattern,
+                pattern != null ? like(pattern) : null);
+    }
+
+    private static List<Long> ids(LogSegment segment, SegmentQuery query) {
+        return Arrays.stream(segment.search(query)).mapToObj(segment::id).sorted().toList();
+    }
+
+    /**
+     * LIKE с экранированием обратной косой чертой (как LogEntryFilter.like).
+     */
+    private static Predicate<String> like(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                regex.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+            } else if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        Pattern compiled = Pattern.compile(regex.toString(), Pattern.DOTALL);
+        return value -> compiled.matcher(value).matches();
+    }
+
+    @FunctionalInterface
+    private interface WriterAction {
+        void accept(SegmentWriter writer) throws IOException;
+    }
+}
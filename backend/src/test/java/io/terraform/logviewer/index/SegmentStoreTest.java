@@ -0,0 +1,97 @@
+package io.terraform.logviewer.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.terraform.logviewer.config.QueryProperties;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+class SegmentStoreTest {
+
+    private static final OffsetDateTime BASE = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    private final QueryProperties properties = new QueryProperties();
+    private SegmentStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties.getSegments().setEnabled(true);
+        properties.getSegments().setDirectory(directory.toString());
+        Files.writeString(directory.resolve("crashed.spool"), "left by a previous run");
+        store = new SegmentStore(properties);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedSegments() {
+        commit("a");
+        commit("b");
+        commit("c");
+        long size = store.find("a").orElseThrow().bytes();
+        // помещаются два сегмента из трёх
+        properties.getSegments().setMaxMapped(DataSize.ofBytes(2 * size));
+
+        LogSegment a = store.find("a").orElseThrow();
+        LogSegment b = store.find("b").orElseThrow();
+        assertThat(store.find("a")).containsSame(a);
+        store.find("c").orElseThrow();
+
+        assertThat(store.find("a")).as("used recently").containsSame(a);
+        assertThat(store.find("b").orElseThrow()).as("evicted and mapped again").isNotSameAs(b);
+    }
+
+    @Test
+    void replacedAndDeletedSegmentsAreForgotten() {
+        commit("a");
+        LogSegment first = store.find("a").orElseThrow();
+
+        commit("a", "line", "another line");
+        assertThat(store.find("a").orElseThrow()).isNotSameAs(first).extracting(LogSegment::size).isEqualTo(2);
+
+        store.delete("a");
+        assertThat(store.find("a")).isEmpty();
+        assertThat(directory.resolve("a.seg")).doesNotExist();
+    }
+
+    @Test
+    void discardedWriterLeavesNothingBehind() {
+        SegmentWriter writer = store.newWriter("a");
+        writer.add(1, BASE, "line", null, null, List.of());
+        assertThat(store.bufferedBytes()).isPositive();
+
+        store.discard(writer);
+
+        assertThat(store.bufferedBytes()).isZero();
+        // и недописанный файл прошлого запуска убран при старте
+        assertThat(directory).isEmptyDirectory();
+        assertThat(store.find("a")).isEmpty();
+    }
+
+    @Test
+    void unreadableSegmentIsDropped() throws IOException {
+        Files.writeString(directory.resolve("a.seg"), "not a segment");
+
+        assertThat(store.find("a")).isEmpty();
+        assertThat(directory.resolve("a.seg")).doesNotExist();
+        assertThat(store.find("../a")).as("import id is not a path").isEmpty();
+    }
+
+    private void commit(String importId, String... messages) {
+        SegmentWriter writer = store.newWriter(importId);
+        String[] lines = messages.length > 0 ? messages : new String[] {"line"};
+        for (int i = 0; i < lines.length; i++) {
+            writer.add(i + 1, BASE, lines[i], null, null, List.of());
+        }
+        store.commit(importId, writer);
+        assertThat(store.bufferedBytes()).isZero();
+    }
+}
@@ -0,0 +1,81 @@
+package io.terraform.logviewer.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class SectionScorerTest {
+
+    private static final Path SAMPLES = Path.of("..", "Terraform Logs");
+
+    @Test
+    void automatonFindsOverlappingLiterals() {
+        LiteralMatcher matcher = new LiteralMatcher(List.of(
+                LiteralMatcher.Rule.literal("plan"),
+                LiteralMatcher.Rule.literal("planned"),
+                LiteralMatcher.Rule.literal("anne"),
+                new LiteralMatcher.Rule("apply", Pattern.compile("\\bapply\\b"))));
+
+        assertThat(matcher.match("the planned change")).isEqualTo(0b00111L);
+        assertThat(matcher.match("applying")).as("literal found, pattern rejects").isZero();
+        assertThat(matcher.match("план apply")).isEqualTo(0b01000L);
+    }
+
+    @Test
+    void matchesEveryPatternOnItsOwn() throws IOException {
+        List<String> texts = new ArrayList<>(List.of(
+                "backend/local: starting apply operation",
+                "cli args: []string{\"terraform\", \"plan\", \"-out=tfplan\"}",
+                "cli command args: apply -auto-approve",
+                "apply calling apply",
+                "building and walking apply graph for normalapply operation",
+                "aws_s3_bucket.logs: creating...",
+                "terraform-plan summary: refreshing state",
+                "vertex \"aws_instance.web\" planresourcechange",
+                "planned actions: plan output ready",
+                "dry-run of apply started"));
+        if (Files.isDirectory(SAMPLES)) {
+            try (Stream<Path> files = Files.list(SAMPLES)) {
+                for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                        texts.add(line.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+        }
+        assumeTrue(!texts.isEmpty());
+
+        for (String text : texts) {
+            assertThat(SectionScorer.MATCHER.match(text)).as(text)
+                    .isEqualTo(SectionScorer.MATCHER.matchEach(text));
+        }
+    }
+
+    @Test
+    void scoresHardSignalsAndNoise() {
+        assertThat(resolve("backend/local: starting apply operation")).isEqualTo("apply");
+        assertThat(resolve("Backend/local: Starting plan operation")).isEqualTo("plan");
+        assertThat(resolve("tf_rpc=PlanResourceChange starting plan")).as("noise is ignored").isNull();
+        assertThat(SectionScorer.boundary("cli args: apply, then plan operation completed"))
+                .isEqualTo(SectionScorer.Boundary.APPLY_START);
+        assertThat(SectionScorer.boundary("backend/local: plan operation completed"))
+                .isEqualTo(SectionScorer.Boundary.PLAN_END);
+        assertThat(SectionScorer.boundary("plan")).isNull();
+    }
+
+    private static String resolve(String text) {
+        SectionScorer.Score score = new SectionScorer.Score();
+        SectionScorer.score(text, score, 3);
+        return score.resolve();
+    }
+}
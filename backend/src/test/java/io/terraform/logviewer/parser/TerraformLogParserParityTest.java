@@ -0,0 +1,223 @@
+package io.terraform.logviewer.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Потоковый разбор JSON-строк должен давать ровно то же, что разбор через дерево.
+ */
+class TerraformLogParserParityTest {
+
+    private static final Path SAMPLES = Path.of("..", "Terraform Logs");
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final TerraformLogParser streaming = new TerraformLogParser(new ObjectMapper(), true);
+    private final TerraformLogParser tree = new TerraformLogParser(new ObjectMapper(), false);
+
+    @Test
+    void matchesTreeParserOnEdgeCases() {
+        List<String> lines = List.of(
+                """
+                {"@level":"debug","@message":"provider: plugin process exited","@module":"provider","@timestamp":"2024-05-10T12:00:00.123456+03:00","tf_req_id":"r-1","tf_rpc":"ApplyResourceChange","tf_resource_type":"aws_s3_bucket"}""",
+                """
+                {"timestamp":1715342400,"level":"info","message":"status=404 method=get req_id=abc","status":"404"}""",
+                """
+                {"timestamp":1715342400123,"msg":"big numbers","count":12345678901,"huge":123456789012345678901234567890,"ratio":0.25,"flag":true,"none":null}""",
+                """
+                {"message":"Terraform apply complete","http_request":{"path":"/apply","body":"{}"},"http_response":{"status":200}}""",
+                """
+                {"message":"nested module","context":{"module":"module.vpc","status_code":201}}""",
+                """
+                {"message":"first","message":"duplicate key wins last"}""",
+                """
+                {"level":"warn","section":"unknown-phase","command":"terraform apply -auto-approve"}""",
+                """
+                {"message":"cli args: [plan -out=tfplan]","phase":"PLAN","terraform":{"cli_args":["plan"]}}""",
+                """
+                {"message":"\\u0441\\u0442\\u0430\\u0440\\u0442 \\"quoted\\"","response_body":"{\\"id\\":\\"bucket\\"}"}""",
+                """
+                {"message":"payload","request_payload":"%s"}""".formatted("x".repeat(120)),
+                """
+                {"message":"short payload","response_content":"{\\"a\\":1}"}""",
+                "{}",
+                "[1,2,3]",
+                "\"just a string\"",
+                "{\"message\":\"broken\"",
+                "{\"message\":\"trailing\"} garbage",
+                "2024-05-10T12:00:00Z [ERROR] plain line module.vpc status=500");
+
+        for (String line : lines) {
+            assertParity(line);
+        }
+    }
+
+    @Test
+    void matchesTreeParserOnSampleLogs() throws IOException {
+        assumeTrue(Files.isDirectory(SAMPLES), "sample logs are not available");
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(SAMPLES)) {
+            files = stream.filter(file -> file.toString().endsWith(".json")).sorted().toList();
+        }
+        List<String> lines = new ArrayList<>();
+        for (Path file : files) {
+            lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+        assumeTrue(!lines.isEmpty(), "sample logs are empty");
+
+        for (String line : lines) {
+            assertParity(line);
+        }
+    }
+
+    /**
+     * Эталон — вывод исходного парсера, ещё до потокового разбора, по тем же файлам; одна строка
+     * эталона на непустую строку файла, контекст импорта общий на файл. Раздел (plan/apply) в эталон
+     * не входит: его определяет отслеживание участков, и проверяется он отдельно.
+     */
+    @Test
+    void bothPathsMatchGoldenOutputOnSampleLogs() throws IOException {
+        assumeTrue(Files.isDirectory(SAMPLES), "sample logs are not available");
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(SAMPLES)) {
+            files = stream.filter(file -> file.toString().endsWith(".json")).sorted().toList();
+        }
+        assertThat(files).isNotEmpty();
+        for (Path file : files) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.isBlank())
+                    .map(String::trim)
+                    .toList();
+            List<JsonNode> golden = golden(file.getFileName() + ".jsonl.gz");
+            assertThat(golden).as(file.toString()).hasSize(lines.size());
+
+            for (TerraformLogParser parser : List.of(streaming, tree)) {
+                TerraformLogParser.ImportContext context =
+                        new TerraformLogParser.ImportContext(OffsetDateTime.parse("2024-05-10T00:00:00Z"), "INFO");
+                for (int i = 0; i < lines.size(); i++) {
+                    ParsedLogRecord record = parser.parse(lines.get(i), context);
+                    assertThat(record.rawJson()).isEqualTo(lines.get(i));
+                    assertThat(golden(record)).as("%s:%d %s", file.getFileName(), i + 1, lines.get(i))
+                            .isEqualTo(golden.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Разделы по файлам примеров — подряд идущие строки одного участка свёрнуты в «раздел#номер×строк».
+     * До отслеживания участков раздел считался по каждой строке отдельно, и почти все строки
+     * (7580 из 7634) были unknown; теперь участок тянется от «CLI args» до «operation completed»
+     * или до следующего «CLI args», а unknown остаются только строки до первого участка и после последнего.
+     */
+    @Test
+    void sectionSpansOnSampleLogs() throws IOException {
+        assumeTrue(Files.isDirectory(SAMPLES), "sample logs are not available");
+        Map<String, String> expected = Map.of(
+                "1. plan_test-k801vip_tflog.json", "unknown×6 plan#1×1118 unknown×4",
+                "2. apply_test-k801vip_tflog.json", "unknown×6 plan#1×1118 unknown×4",
+                "3. apply_tflog.json", "unknown×6 apply#1×1551",
+                "4. tflog.json", "unknown×6 apply#1×1803 plan#2×1602 unknown×4",
+                "5. tflog.json", "unknown×6 plan#1×400");
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(SAMPLES)) {
+            files = stream.filter(file -> file.toString().endsWith(".json")).sorted().toList();
+        }
+        assertThat(files).extracting(file -> file.getFileName().toString())
+                .containsExactlyInAnyOrderElementsOf(expected.keySet());
+        for (Path file : files) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.isBlank())
+                    .map(String::trim)
+                    .toList();
+            for (TerraformLogParser parser : List.of(streaming, tree)) {
+                assertThat(sectionRuns(parser, lines)).as(file.toString())
+                        .isEqualTo(expected.get(file.getFileName().toString()));
+            }
+        }
+    }
+
+    private static String sectionRuns(TerraformLogParser parser, List<String> lines) {
+        TerraformLogParser.ImportContext context =
+                new TerraformLogParser.ImportContext(OffsetDateTime.parse("2024-05-10T00:00:00Z"), "INFO");
+        List<String> runs = new ArrayList<>();
+        String current = null;
+        int length = 0;
+        for (String line : lines) {
+            ParsedLogRecord record = parser.parse(line, context);
+            SectionSpan span = context.getLineSpan();
+            String label = span != null ? record.section() + "#" + span.number() : record.section();
+            if (!label.equals(current)) {
+                if (current != null) runs.add(current + "×" + length);
+                current = label;
+                length = 0;
+            }
+            length++;
+        }
+        if (current != null) runs.add(current + "×" + length);
+        return String.join(" ", runs);
+    }
+
+    private static List<JsonNode> golden(String name) throws IOException {
+        try (InputStream resource = TerraformLogParserParityTest.class.getResourceAsStream("/parser/golden/" + name)) {
+            assertThat(resource).as(name).isNotNull();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new GZIPInputStream(resource), StandardCharsets.UTF_8));
+            List<JsonNode> records = new ArrayList<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                records.add(JSON.readTree(line));
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Запись в виде эталона; через текст, чтобы числа в атрибутах сравнивались по значению, а не по типу.
+     */
+    private static JsonNode golden(ParsedLogRecord record) throws IOException {
+        ObjectNode node = JSON.createObjectNode();
+        node.put("timestamp", record.timestamp().toString());
+        node.put("timestampGuessed", record.timestampGuessed());
+        node.put("level", record.level());
+        node.put("levelGuessed", record.levelGuessed());
+        node.put("module", record.module());
+        node.put("message", record.message());
+        node.put("reqId", record.reqId());
+        node.put("transactionId", record.transactionId());
+        node.put("rpc", record.rpc());
+        node.put("resourceType", record.resourceType());
+        node.put("dataSourceType", record.dataSourceType());
+        node.put("httpOperationType", record.httpOperationType());
+        node.putPOJO("statusCode", record.statusCode());
+        node.set("attributes", JSON.valueToTree(record.attributes()));
+        node.set("bodies", JSON.valueToTree(record.bodies()));
+        return JSON.readTree(JSON.writeValueAsString(node));
+    }
+
+    private void assertParity(String line) {
+        OffsetDateTime last = OffsetDateTime.parse("2024-05-10T00:00:00Z");
+        ParsedLogRecord expected = tree.parse(line, new TerraformLogParser.ImportContext(last, "INFO"));
+        ParsedLogRecord actual = streaming.parse(line, new TerraformLogParser.ImportContext(last, "INFO"));
+        assertThat(actual).as(line).isEqualTo(expected);
+    }
+}
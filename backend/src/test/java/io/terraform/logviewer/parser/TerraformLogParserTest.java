@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.OffsetDateTime;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -52,6 +53,63 @@ class TerraformLogParserTest {
                 .anySatisfy(body -> assertThat(body).contains("ok"));
     }
 
+    @Test
+    void tflogFieldsWinOverSameNamedProviderFields() {
+        // hclog провайдера кладёт рядом с @level свой числовой level, а @timestamp дублирует timestamp
+        String json = """
+                {"@level":"debug","@message":"created provider logger","@timestamp":"2025-09-09T15:31:32.814708+03:00","level":1,"timestamp":"2025-09-09T12:31:32Z"}
+                """;
+
+        ParsedLogRecord record = parser.parse(json, new TerraformLogParser.ImportContext(null, null));
+
+        assertThat(record.level()).isEqualTo("DEBUG");
+        assertThat(record.timestamp()).isEqualTo(OffsetDateTime.parse("2025-09-09T15:31:32.814708+03:00"));
+        assertThat(record.message()).isEqualTo("created provider logger");
+    }
+
+    @Test
+    void labelsLinesInsideAPhaseSpanWithoutScoring() {
+        TerraformLogParser.ImportContext context = new TerraformLogParser.ImportContext(null, null);
+
+        ParsedLogRecord start = parser.parse("""
+                {"@message":"CLI args: []string{\"terraform\", \"apply\"}","@timestamp":"2024-05-10T12:00:00Z"}""", context);
+        SectionSpan span = context.getLineSpan();
+        ParsedLogRecord inside = parser.parse("""
+                {"@message":"provider: plugin process exited","@timestamp":"2024-05-10T12:00:01Z"}""", context);
+        ParsedLogRecord explicit = parser.parse("""
+                {"@message":"provider: plugin started","section":"plan"}""", context);
+        ParsedLogRecord end = parser.parse("""
+                {"@message":"backend/local: apply operation completed"}""", context);
+        assertThat(context.getOpenSpan()).isNull();
+        ParsedLogRecord after = parser.parse("""
+                {"@message":"provider: plugin process exited"}""", context);
+
+        assertThat(span).isEqualTo(new SectionSpan(1, "apply"));
+        assertThat(start.section()).isEqualTo("apply");
+        assertThat(inside.section()).isEqualTo("apply");
+        assertThat(explicit.section()).isEqualTo("plan");
+        assertThat(end.section()).isEqualTo("apply");
+        assertThat(after.section()).isEqualTo("unknown");
+        assertThat(context.getLineSpan()).isNull();
+    }
+
+    @Test
+    void sharesRepeatedFieldValuesWithinAnImport() {
+        String line = """
+                {"@level":"debug","@message":"calling provider","@module":"provider.terraform-provider-aws","tf_rpc":"ApplyResourceChange","tf_resource_type":"aws_s3_bucket"}""";
+        TerraformLogParser.ImportContext context = new TerraformLogParser.ImportContext(null, null);
+
+        ParsedLogRecord first = parser.parse(new String(line), context);
+        ParsedLogRecord second = parser.parse(new String(line), context);
+        ParsedLogRecord otherImport = parser.parse(line, new TerraformLogParser.ImportContext(null, null));
+
+        assertThat(second.level()).isEqualTo("DEBUG").isSameAs(first.level());
+        assertThat(second.module()).isSameAs(first.module());
+        assertThat(second.rpc()).isEqualTo("ApplyResourceChange").isSameAs(first.rpc());
+        assertThat(second.resourceType()).isSameAs(first.resourceType());
+        assertThat(otherImport.level()).isNotSameAs(first.level());
+    }
+
     @Test
     void fallsBackToContextWhenTimestampAndLevelMissing() {
         OffsetDateTime lastTs = OffsetDateTime.parse("2024-05-12T08:00:00Z");
@@ -197,4 +255,30 @@ class TerraformLogParserTest {
         assertThat(record.bodies())
                 .noneMatch(payload -> payload.json().contains("req-should-not-appear"));
     }
+
+    @Test
+    void preparedLinesCompletedInOrderMatchSequentialParse() {
+        List<String> lines = List.of(
+                "{\"@timestamp\":\"2024-05-20T10:00:00.123456+03:00\",\"@level\":\"debug\",\"@message\":\"CLI args: [terraform plan]\"}",
+                "{\"@message\":\"no timestamp, no level\",\"tf_req_id\":\"req-1\"}",
+                "plain line without timestamp status=404",
+                "2024-05-20T10:00:05Z [warn] plain line with its own timestamp",
+                "",
+                "{\"@level\":\"error\",\"@message\":\"level only\"}");
+        OffsetDateTime start = OffsetDateTime.parse("2024-05-20T09:59:59Z");
+        TerraformLogParser.ImportContext sequential = new TerraformLogParser.ImportContext(start, "INFO");
+        TerraformLogParser.ImportContext ordered = new TerraformLogParser.ImportContext(start, "INFO");
+
+        List<TerraformLogParser.PreparedLine> prepared = lines.parallelStream()
+                .map(line -> parser.prepare(line, ordered))
+                .toList();
+
+        for (int i = 0; i < lines.size(); i++) {
+            ParsedLogRecord expected = parser.parse(lines.get(i), sequential);
+            ParsedLogRecord actual = parser.complete(prepared.get(i), ordered);
+            assertThat(actual).isEqualTo(expected);
+        }
+        assertThat(ordered.getLastTimestamp()).isEqualTo(sequential.getLastTimestamp());
+        assertThat(ordered.getLastLevel()).isEqualTo("ERROR");
+    }
 }
@@ -0,0 +1,88 @@
+package io.terraform.logviewer.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TimestampParserTest {
+
+    private static final List<String> CASES = List.of(
+            "2025-09-09T10:55:44.205291+03:00",
+            "2025-09-09T10:55:44Z",
+            "2025-09-09T10:55:44.1Z",
+            "2025-09-09T10:55:44.123456789-05:30",
+            "2025-09-09T10:55:44.1234567891Z",
+            "2025-09-09T10:55:44.Z",
+            "2025-09-09t10:55:44z",
+            "2025-09-09T10:55:44+0300",
+            "2025-09-09T10:55:44+03:00:30",
+            "2025-09-09T10:55:44+18:00",
+            "2025-09-09T10:55:44+18:30",
+            "2025-09-09T10:55:44-00:00",
+            "2025-09-09T10:55Z",
+            "2025-09-09T23:59:60Z",
+            "2025-09-09T24:00:00Z",
+            "2024-02-29T00:00:00Z",
+            "2025-02-29T00:00:00Z",
+            "2025-13-01T00:00:00Z",
+            "2025-09-09 10:55:44",
+            "2025-09-09 10:55:44.205+03:00",
+            "2025/09/09 10:55:44.205",
+            "2025-09-09T10:55:44.205291+03:00 [INFO] provider: started",
+            "2025-09-09T10:55:44+0300 [INFO] provider: started",
+            "2025-09-09T10:55:44.205291+03:00:30 trailing",
+            "2025-09-09 10:55:44Z [WARN] space separated",
+            "[INFO] no timestamp",
+            "");
+
+    @Test
+    void matchesFormattersOnKnownShapes() {
+        TimestampParser parser = new TimestampParser();
+        for (String text : CASES) {
+            assertThat(parser.parse(text)).as(text).isEqualTo(TimestampParser.parseEach(text));
+        }
+    }
+
+    @Test
+    void remembersFormatterWithoutChangingResults() {
+        TimestampParser parser = new TimestampParser();
+        assertThat(parser.parse("2025-09-09 10:55:44.205"))
+                .contains(OffsetDateTime.parse("2025-09-09T10:55:44.205Z"));
+        for (String text : CASES) {
+            assertThat(parser.parse(text)).as(text).isEqualTo(TimestampParser.parseEach(text));
+        }
+    }
+
+    @Test
+    void readsLinePrefixLikeTheRegex() {
+        for (String text : CASES) {
+            if (text.contains(" [") || text.contains(" trailing")) {
+                // no formatter accepts these, so parseEach ends with the prefix regex
+                assertThat(TimestampParser.parsePrefix(text)).as(text).isEqualTo(TimestampParser.parseEach(text));
+            }
+        }
+    }
+
+    @Test
+    void matchesFormattersOnRandomIsoText() {
+        Random random = new Random(42);
+        TimestampParser parser = new TimestampParser();
+        String alphabet = "0123456789:.-+TZ ";
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder text = new StringBuilder("2025-09-09T10:55:44");
+            int tail = random.nextInt(12);
+            for (int j = 0; j < tail; j++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (random.nextBoolean()) {
+                // break one of the fixed positions
+                text.setCharAt(random.nextInt(19), alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String value = text.toString();
+            assertThat(parser.parse(value)).as(value).isEqualTo(TimestampParser.parseEach(value));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.terraform.logviewer.plugin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.stub.StreamObserver;
+import io.terraform.logviewer.config.PluginProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.grpc.PluginEvent;
+import io.terraform.logviewer.grpc.PluginResult;
+import io.terraform.logviewer.parser.ParsedLogRecord;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Шлюз против плагина в памяти: стрим {@code Process} подменён через {@link LogPluginGateway.PluginTransport}.
+ * Плагин отвечает строго по порядку событий аннотацией {@code for=<message>}; задержку и эхо id задаёт тест.
+ */
+class LogPluginGatewayTest {
+
+    private final AtomicLong ids = new AtomicLong();
+    private final FakePlugin plugin = new FakePlugin();
+    private LogPluginGateway gateway;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        plugin.release.countDown();
+        if (gateway != null) gateway.shutdown();
+        plugin.answers.shutdownNow();
+        plugin.answers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void idlessAnswerAfterTimeoutDoesNotCompleteTheNextEvent() {
+        plugin.echoIds = false;
+        start(properties(Duration.ofMillis(250), 16));
+
+        CompletableFuture<Map<String, String>> slow = gateway.processAsync(record(), entity("slow"));
+        assertThat(slow.join()).as("timed out").isEmpty();
+        CompletableFuture<Map<String, String>> next = gateway.processAsync(record(), entity("next"));
+
+        // опоздавший ответ на slow приходит первым, пока next ещё ждёт: по порядку он достался бы next
+        assertThat(next.join()).doesNotContainEntry("for", "slow").isEmpty();
+    }
+
+    @Test
+    void fullWindowDoesNotBlockTheCaller() {
+        plugin.release = new CountDownLatch(1);
+        start(properties(Duration.ofSeconds(2), 1));
+
+        long started = System.nanoTime();
+        List<CompletableFuture<Map<String, String>>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(gateway.processAsync(record(), entity("event-" + i)));
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(500));
+        assertThat(results).noneMatch(CompletableFuture::isDone);
+
+        plugin.release.countDown();
+        for (int i = 0; i < 3; i++) {
+            assertThat(results.get(i).join()).containsEntry("for", "event-" + i);
+        }
+    }
+
+    @Test
+    void recoversWhenPluginSlowsDown() {
+        PluginProperties properties = properties(Duration.ofSeconds(2), 64);
+        properties.getAdaptiveDeadline().setEnabled(true);
+        properties.getAdaptiveDeadline().setMin(Duration.ofMillis(10));
+        properties.getBreaker().setOpenDuration(Duration.ofMillis(100));
+        start(properties);
+
+        plugin.delay = Duration.ofMillis(10);
+        assertThat(round(64)).as("answered at 10ms").isEqualTo(64);
+
+        // дедлайн по ответам за 10 мс — 30 мс: первые ответы за 300 мс опаздывают, цепь размыкается
+        plugin.delay = Duration.ofMillis(300);
+        assertThat(round(16)).as("answered right after the slowdown").isLessThan(16);
+
+        long started = System.nanoTime();
+        while (round(16) < 16) {
+            assertThat(Duration.ofNanos(System.nanoTime() - started)).as("recovered").isLessThan(Duration.ofSeconds(15));
+        }
+    }
+
+    /**
+     * Отправляет {@code events} событий разом и считает, сколько получили аннотации.
+     */
+    private int round(int events) {
+        List<CompletableFuture<Map<String, String>>> results = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            results.add(gateway.processAsync(record(), entity("event-" + i)));
+        }
+        return (int) results.stream().filter(result -> !result.join().isEmpty()).count();
+    }
+
+    private void start(PluginProperties properties) {
+        gateway = new LogPluginGateway(properties, plugin);
+        gateway.init();
+    }
+
+    private static PluginProperties properties(Duration deadline, int maxInFlight) {
+        PluginProperties properties = new PluginProperties();
+        properties.setEnabled(true);
+        properties.setDeadline(deadline);
+        properties.setMaxInFlight(maxInFlight);
+        properties.getAdaptiveDeadline().setEnabled(false);
+        PluginProperties.PluginConfig config = new PluginProperties.PluginConfig();
+        config.setId("fake");
+        properties.getPlugins().add(config);
+        return properties;
+    }
+
+    private LogEntryEntity entity(String message) {
+        LogEntryEntity entity = new LogEntryEntity();
+        entity.setId(ids.incrementAndGet());
+        entity.setMessage(message);
+        return entity;
+    }
+
+    private static ParsedLogRecord record() {
+        return new ParsedLogRecord(null, false, null, false, null, null, null, null, null, null, null, null, null,
+                null, Map.of(), List.of(), null);
+    }
+
+    private static final class FakePlugin implements LogPluginGateway.PluginTransport {
+        // один поток: ответы уходят в порядке событий
+        final ExecutorService answers = Executors.newSingleThreadExecutor();
+        volatile boolean echoIds = true;
+        volatile Duration delay = Duration.ZERO;
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        public StreamObserver<PluginEvent> process(PluginProperties.PluginConfig plugin,
+                                                   StreamObserver<PluginResult> responses) {
+            return new StreamObserver<>() {
+                @Override
+                public void onNext(PluginEvent event) {
+                    Duration answerIn = event.getMessage().equals("slow") ? Duration.ofMillis(300) : delay;
+                    long answerAt = System.nanoTime() + answerIn.toNanos();
+                    answers.execute(() -> {
+                        try {
+                            release.await();
+                            // задержка считается от получения события: ответы идут по порядку, но не по очереди
+                            TimeUnit.NANOSECONDS.sleep(answerAt - System.nanoTime());
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        PluginResult.Builder result = PluginResult.newBuilder()
+                                .putAnnotations("for", event.getMessage());
+                        if (echoIds) result.setId(event.getId());
+                        responses.onNext(result.build());
+                    });
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    responses.onCompleted();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.terraform.logviewer.plugin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PluginCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private PluginCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        breaker = new PluginCircuitBreaker("demo", 3, Duration.ofSeconds(10), now::get);
+    }
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        long ticket = breaker.tryAcquire();
+        breaker.onFailure(ticket);
+        breaker.onFailure(ticket);
+        breaker.onSuccess(ticket);
+        breaker.onFailure(ticket);
+        breaker.onFailure(ticket);
+        assertThat(breaker.tryAcquire()).isEqualTo(ticket);
+
+        breaker.onFailure(ticket);
+
+        assertThat(breaker.state()).isEqualTo(PluginCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isNegative();
+    }
+
+    @Test
+    void letsSingleProbeThroughAfterOpenDuration() {
+        tripBreaker();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        long probe = breaker.tryAcquire();
+        assertThat(probe).isNotNegative();
+        assertThat(breaker.tryAcquire()).isNegative();
+
+        breaker.onSuccess(probe);
+
+        assertThat(breaker.state()).isEqualTo(PluginCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isNotNegative();
+    }
+
+    @Test
+    void failedProbeReopensCircuit() {
+        tripBreaker();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        long probe = breaker.tryAcquire();
+        assertThat(probe).isNotNegative();
+
+        breaker.onFailure(probe);
+
+        assertThat(breaker.state()).isEqualTo(PluginCircuitBreaker.State.OPEN);
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertThat(breaker.tryAcquire()).isNegative();
+    }
+
+    @Test
+    void ignoresLateOutcomesOfCallsStartedBeforeStateChange() {
+        long slowCall = breaker.tryAcquire();
+        tripBreaker();
+
+        // ответ на вызов, начатый до размыкания, приходит, пока цепь открыта
+        breaker.onSuccess(slowCall);
+        assertThat(breaker.state()).isEqualTo(PluginCircuitBreaker.State.OPEN);
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        long probe = breaker.tryAcquire();
+        breaker.onFailure(slowCall);
+        assertThat(breaker.state()).as("stale failure does not decide the probe")
+                .isEqualTo(PluginCircuitBreaker.State.HALF_OPEN);
+
+        breaker.onSuccess(probe);
+        long fresh = breaker.tryAcquire();
+        breaker.onFailure(fresh);
+        breaker.onFailure(fresh);
+        breaker.onFailure(probe);
+        assertThat(breaker.state()).as("failures of the probe generation are not counted after closing")
+                .isEqualTo(PluginCircuitBreaker.State.CLOSED);
+    }
+
+    private void tripBreaker() {
+        long ticket = breaker.tryAcquire();
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(ticket);
+        }
+        assertThat(breaker.state()).isEqualTo(PluginCircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,66 @@
+package io.terraform.logviewer.plugin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class PluginLatencyTrackerTest {
+
+    private static final Duration MAX = Duration.ofSeconds(5);
+
+    @Test
+    void usesMaximumUntilEnoughSamples() {
+        PluginLatencyTracker tracker = new PluginLatencyTracker(0.99, 2.0, Duration.ofMillis(10));
+        record(tracker, 31, Duration.ofMillis(20));
+
+        assertThat(tracker.deadline(MAX)).isEqualTo(MAX);
+
+        record(tracker, 1, Duration.ofMillis(20));
+        assertThat(tracker.deadline(MAX)).isEqualTo(Duration.ofMillis(40));
+    }
+
+    @Test
+    void takesPercentileTimesMultiplierWithinBounds() {
+        PluginLatencyTracker tracker = new PluginLatencyTracker(0.5, 3.0, Duration.ofMillis(100));
+        for (int i = 1; i <= 32; i++) {
+            tracker.record(Duration.ofMillis(i).toNanos());
+        }
+        // медиана 16 мс * 3 ниже минимума
+        assertThat(tracker.deadline(MAX)).isEqualTo(Duration.ofMillis(100));
+
+        PluginLatencyTracker slow = new PluginLatencyTracker(0.5, 3.0, Duration.ofMillis(100));
+        record(slow, 32, Duration.ofSeconds(4));
+        assertThat(slow.deadline(MAX)).as("never above the configured deadline").isEqualTo(MAX);
+    }
+
+    @Test
+    void recomputesAsLatencyChanges() {
+        PluginLatencyTracker tracker = new PluginLatencyTracker(0.9, 1.0, Duration.ofMillis(1));
+        record(tracker, 32, Duration.ofMillis(10));
+        assertThat(tracker.deadline(MAX)).isEqualTo(Duration.ofMillis(10));
+
+        // окно — 512 последних ответов, пересчёт раз в 64
+        record(tracker, 512, Duration.ofMillis(200));
+        assertThat(tracker.deadline(MAX)).isEqualTo(Duration.ofMillis(200));
+    }
+
+    @Test
+    void resetFallsBackToMaximum() {
+        PluginLatencyTracker tracker = new PluginLatencyTracker(0.99, 3.0, Duration.ofMillis(10));
+        record(tracker, 32, Duration.ofMillis(10));
+        assertThat(tracker.deadline(MAX)).isEqualTo(Duration.ofMillis(30));
+
+        tracker.reset();
+        assertThat(tracker.deadline(MAX)).isEqualTo(MAX);
+
+        record(tracker, 32, Duration.ofMillis(300));
+        assertThat(tracker.deadline(MAX)).isEqualTo(Duration.ofMillis(900));
+    }
+
+    private static void record(PluginLatencyTracker tracker, int times, Duration latency) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(latency.toNanos());
+        }
+    }
+}
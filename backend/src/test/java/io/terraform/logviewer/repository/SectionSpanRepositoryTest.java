@@ -0,0 +1,62 @@
+package io.terraform.logviewer.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.terraform.logviewer.repository.SectionSpanRepository.Span;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Участки на H2 в режиме PostgreSQL, таблица — из миграции.
+ */
+class SectionSpanRepositoryTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+
+    private final DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:spans;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+    private final SectionSpanRepository repository = new SectionSpanRepository(dataSource);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute(new ClassPathResource("db/migration/V5__section_spans.sql")
+                .getContentAsString(StandardCharsets.UTF_8)
+                .replace("TIMESTAMPTZ", "TIMESTAMP WITH TIME ZONE"));
+        jdbc.update("delete from tf_section_spans");
+    }
+
+    @Test
+    void saveInsertsThenUpdatesSameSpan() {
+        Span open = new Span("a", 1, "apply", 10, 12, T0, T0.plusSeconds(2), null, null, false);
+        repository.save(open);
+        Span grown = new Span("a", 1, "apply", 10, 20, T0, T0.plusSeconds(10), 100L, 110L, true);
+        repository.save(grown);
+
+        assertThat(repository.findByImport("a")).containsExactly(grown);
+    }
+
+    @Test
+    void findsSpansOfOneImportInOrderAndDeletesThem() {
+        Span plan = new Span("a", 1, "plan", 1, 5, T0, T0.plusSeconds(5), 1L, 5L, true);
+        Span apply = new Span("a", 2, "apply", 6, 9, T0.plusSeconds(6), null, 6L, null, false);
+        Span other = new Span("b", 1, "plan", 1, 1, null, null, null, null, true);
+        repository.save(apply);
+        repository.save(other);
+        repository.save(plan);
+
+        assertThat(repository.findByImport("a")).containsExactly(plan, apply);
+        assertThat(repository.findLast("a")).contains(apply);
+        assertThat(repository.findLast("missing")).isEmpty();
+
+        assertThat(repository.deleteImport("a")).isEqualTo(2);
+        assertThat(repository.findByImport("a")).isEmpty();
+        assertThat(repository.findByImport("b")).containsExactly(other);
+    }
+}
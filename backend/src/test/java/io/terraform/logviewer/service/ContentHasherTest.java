@@ -0,0 +1,37 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class ContentHasherTest {
+
+    @Test
+    void hashesLikeSha256Hex() throws IOException {
+        assertThat(ContentHasher.hash(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8))))
+                .isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+        assertThat(ContentHasher.hash(ByteString.EMPTY))
+                .isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+    }
+
+    @Test
+    void chunkBoundariesDoNotChangeHash() throws IOException {
+        byte[] content = "{\"@message\":\"строка\"}\n".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+        String whole = ContentHasher.hash(new ByteArrayInputStream(content));
+
+        ContentHasher chunked = new ContentHasher();
+        for (int offset = 0; offset < content.length; offset += 777) {
+            chunked.update(content, offset, Math.min(777, content.length - offset));
+        }
+        // ByteString из нескольких кусков хэшируется по всем своим буферам
+        ByteString rope = ByteString.copyFrom(content, 0, 1000)
+                .concat(ByteString.copyFrom(content, 1000, content.length - 1000));
+
+        assertThat(chunked.hex()).isEqualTo(whole);
+        assertThat(ContentHasher.hash(rope)).isEqualTo(whole);
+    }
+}
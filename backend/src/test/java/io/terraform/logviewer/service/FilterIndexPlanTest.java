@@ -0,0 +1,139 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.terraform.logviewer.repository.LogEntryCountRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Каждый ключ filters и level сравниваются по индексу. Условие Search берётся из SQL, который
+ * Hibernate отправил в БД ({@link StatementInspector}), условие подсчётов — из {@link LogEntrySqlFilter};
+ * EXPLAIN обоих при запрещённом последовательном чтении называет индекс и не содержит Seq Scan.
+ * В каждом случае одно условие, поэтому значения параметров у обоих запросов одни — аргументы
+ * {@link LogEntrySqlFilter}. Нужен PostgreSQL из профиля pg:
+ * {@code mvn test -Dtest=FilterIndexPlanTest -Dpg=true}.
+ */
+@SpringBootTest(properties = {
+        "app.plugins.enabled=false",
+        "app.clickhouse.enabled=false",
+        "grpc.server.port=-1"
+})
+@ActiveProfiles("pg")
+@EnabledIfSystemProperty(named = "pg", matches = "true")
+class FilterIndexPlanTest {
+
+    // SQL, который Hibernate отправил в БД
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+    private static final Pattern SEARCH_PAGE = Pattern.compile(" from (tf_log_entries \\w+) where (.+) order by ");
+
+    @Autowired
+    private LogQueryService queryService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void clearStatements() {
+        STATEMENTS.clear();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "req_id, idx_tf_log_entries_req_id_lower",
+            "tf_req_id, idx_tf_log_entries_req_id_lower",
+            "trans_id, idx_tf_log_entries_trans_id_lower",
+            "rpc, idx_tf_log_entries_rpc_lower",
+            "resource_type, idx_tf_log_entries_resource_type_lower",
+            "tf_resource_type, idx_tf_log_entries_resource_type_lower",
+            "data_source_type, idx_tf_log_entries_data_source_type_lower",
+            "http_op_type, idx_tf_log_entries_http_op_type_lower",
+            "status_code, idx_tf_log_entries_status_code",
+            "import_id, idx_tf_log_entries_import_id_id"
+    })
+    void filterKeyUsesIndex(String key, String index) {
+        String value = "status_code".equals(key) ? "404" : "Some-Value";
+        QueryParameters parameters = parameters(Optional.empty(), Map.of(key, value));
+
+        assertUsesIndex(parameters, index);
+    }
+
+    @Test
+    void levelUsesIndex() {
+        assertUsesIndex(parameters(Optional.of("error"), Map.of()), "idx_tf_log_entries_level_id");
+    }
+
+    private void assertUsesIndex(QueryParameters parameters, String index) {
+        queryService.search(parameters);
+        String search = searchCondition();
+        LogEntryCountRepository.Filter count = LogEntrySqlFilter.of(parameters, false);
+
+        assertThat(search.chars().filter(c -> c == '?').count()).as(search).isEqualTo(count.args().size());
+        assertThat(explain("select * from " + search, count.args())).as(search)
+                .contains("\"Index Name\": \"" + index + "\"").doesNotContain("Seq Scan");
+        assertThat(explain("select * from tf_log_entries where " + count.where(), count.args())).as(count.where())
+                .contains("\"Index Name\": \"" + index + "\"").doesNotContain("Seq Scan");
+    }
+
+    /**
+     * Таблица с псевдонимом и условие запроса страницы Search — без сортировки и границ страницы.
+     */
+    private static String searchCondition() {
+        Matcher page = STATEMENTS.stream()
+                .map(SEARCH_PAGE::matcher)
+                .filter(Matcher::find)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Search did not query tf_log_entries: " + STATEMENTS));
+        return page.group(1) + " where " + page.group(2);
+    }
+
+    private String explain(String sql, List<Object> args) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            // на пустой или маленькой таблице планировщик и так выбрал бы Seq Scan
+            jdbc.execute("set local enable_seqscan = off");
+            return jdbc.queryForObject("explain (format json) " + sql, String.class, args.toArray());
+        });
+    }
+
+    private static QueryParameters parameters(Optional<String> level, Map<String, String> filters) {
+        return new QueryParameters(0, 50, Optional.empty(), Optional.empty(), level, Optional.empty(), false,
+                Optional.empty(), filters, Optional.empty(), false, false, Optional.empty());
+    }
+
+    @TestConfiguration
+    static class CaptureStatements {
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspector() {
+            StatementInspector inspector = sql -> {
+                STATEMENTS.add(sql);
+                return sql;
+            };
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+        }
+    }
+}
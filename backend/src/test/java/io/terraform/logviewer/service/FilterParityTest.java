@@ -0,0 +1,139 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.repository.LogEntryCountRepository;
+import io.terraform.logviewer.repository.LogEntryRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Одни и те же параметры фильтра строятся трижды: запросом Search ({@code buildSpecification}),
+ * SQL для подсчётов ({@link LogEntrySqlFilter}) и в памяти для живых подписок ({@link LogEntryFilter}).
+ * На H2 все три должны выбирать одни и те же записи; новое условие, добавленное не во все три,
+ * здесь расходится.
+ */
+@SpringBootTest(properties = {
+        "app.plugins.enabled=false",
+        "app.clickhouse.enabled=false",
+        "app.ingest.annotation.async=false",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "grpc.server.port=-1"
+})
+@ActiveProfiles("h2")
+class FilterParityTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+
+    @Autowired
+    private LogQueryService queryService;
+
+    @Autowired
+    private LogEntryRepository entryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seed() {
+        entryRepository.deleteAll();
+        // значения в том виде, в каком их пишет импорт: level в верхнем регистре, section и import_id — в нижнем
+        List<LogEntryEntity> entries = new ArrayList<>();
+        entries.add(entry(0, "ERROR", "apply", "Request Timeout", "Req-A", "ApplyResourceChange", 504, "imp-1"));
+        entries.add(entry(1, "INFO", "plan", "plan 50% done", "req-a", "PlanResourceChange", 200, "imp-1"));
+        entries.add(entry(2, "WARN", null, "retry_after header", null, null, null, "imp-2"));
+        entries.add(entry(3, "ERROR", "apply", "timeout while waiting", "REQ-B", "applyresourcechange", 404, "imp-2"));
+        entries.add(entry(4, null, "unknown", null, "req-b", "ReadResource", null, "imp-1"));
+        entries.get(3).setModule("provider.Timeouts");
+        entries.get(2).setRawJson("{\"@message\":\"retry_after header\",\"http_op_type\":\"GET\"}");
+        entries.get(2).setHttpOperationType("GET");
+        entries.get(1).setUnread(false);
+        entries.get(4).setTransactionId("Tx-1");
+        entryRepository.saveAll(entries);
+    }
+
+    @Test
+    void searchCountAndLiveFiltersSelectTheSameEntries() {
+        List<QueryParameters> cases = List.of(
+                parameters(null, null, null, null, false, null, Map.of()),
+                parameters(T0.plusSeconds(1).withOffsetSameInstant(ZoneOffset.ofHours(3)),
+                        T0.plusSeconds(3), null, null, false, null, Map.of()),
+                parameters(null, null, "error", null, false, null, Map.of()),
+                parameters(null, null, null, "APPLY", false, null, Map.of()),
+                parameters(null, null, null, null, true, null, Map.of()),
+                parameters(null, null, null, null, false, "TIMEOUT", Map.of()),
+                parameters(null, null, null, null, false, "50%", Map.of()),
+                parameters(null, null, null, null, false, "retry_after", Map.of()),
+                parameters(null, null, null, null, false, "http_op", Map.of()),
+                parameters(null, null, null, null, false, null, Map.of("req_id", "REQ-A")),
+                parameters(null, null, null, null, false, null, Map.of("tf_req_id", "req-b", "rpc", "applyResourceChange")),
+                parameters(null, null, null, null, false, null, Map.of("status_code", "404")),
+                parameters(null, null, null, null, false, null, Map.of("status_code", "not-a-number")),
+                parameters(null, null, null, null, false, null, Map.of("http_op_type", "get", "trans_id", "")),
+                parameters(null, null, null, null, false, null, Map.of("trans_id", "TX-1")),
+                parameters(null, null, null, null, false, null, Map.of("import_id", "imp-2", "unknown_key", "x")),
+                parameters(null, null, "ERROR", "apply", false, "time", Map.of("import_id", "imp-2")));
+
+        List<LogEntryEntity> all = entryRepository.findAll();
+        for (QueryParameters parameters : cases) {
+            List<Long> search = queryService.search(parameters).page().getContent().stream()
+                    .map(LogEntryEntity::getId).sorted().toList();
+            LogEntryCountRepository.Filter filter = LogEntrySqlFilter.of(parameters, false);
+            List<Long> sql = jdbc.queryForList("select id from tf_log_entries"
+                    + (filter.where().isEmpty() ? "" : " where " + filter.where()) + " order by id",
+                    Long.class, filter.args().toArray());
+            LogEntryFilter live = LogEntryFilter.of(parameters);
+            List<Long> memory = all.stream().filter(live).map(LogEntryEntity::getId).sorted().toList();
+
+            assertThat(sql).as("LogEntrySqlFilter vs Search for %s", parameters).isEqualTo(search);
+            assertThat(memory).as("LogEntryFilter vs Search for %s", parameters).isEqualTo(search);
+        }
+        assertThat(queryService.search(cases.get(0)).page().getContent()).hasSize(5);
+    }
+
+    private static LogEntryEntity entry(int second, String level, String section, String message, String reqId,
+                                        String rpc, Integer statusCode, String importId) {
+        LogEntryEntity entry = new LogEntryEntity();
+        entry.setTimestamp(T0.plusSeconds(second));
+        entry.setLevel(level);
+        entry.setSection(section);
+        entry.setMessage(message);
+        entry.setReqId(reqId);
+        entry.setRpc(rpc);
+        entry.setStatusCode(statusCode);
+        entry.setImportId(importId);
+        return entry;
+    }
+
+    private static QueryParameters parameters(OffsetDateTime from, OffsetDateTime to, String level, String section,
+                                              boolean unreadOnly, String query, Map<String, String> filters) {
+        return new QueryParameters(0, 100, Optional.ofNullable(from), Optional.ofNullable(to),
+                Optional.ofNullable(level), Optional.ofNullable(section), unreadOnly, Optional.ofNullable(query),
+                filters, Optional.empty(), false, false, Optional.empty());
+    }
+
+    @TestConfiguration
+    static class JacksonFallback {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesDistinctCountsWithinAFewPercent() {
+        for (int distinct : new int[]{0, 1, 100, 5_000, 200_000}) {
+            int[] ranks = new int[1 << HyperLogLog.PRECISION];
+            for (int repeat = 0; repeat < 3; repeat++) {
+                for (int i = 0; i < distinct; i++) {
+                    HyperLogLog.offer(ranks, mix(i), HyperLogLog.PRECISION);
+                }
+            }
+            assertThat((double) HyperLogLog.estimate(ranks))
+                    .as("%d distinct values, each seen three times", distinct)
+                    .isCloseTo(distinct, within(Math.max(1, distinct * 0.05)));
+        }
+    }
+
+    // finalizer of MurmurHash3: a well-spread 32-bit hash, like hashtext() in PostgreSQL
+    private static int mix(int value) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
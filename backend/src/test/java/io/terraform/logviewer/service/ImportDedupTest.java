@@ -0,0 +1,238 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.repository.ImportRegistryRepository;
+import io.terraform.logviewer.repository.ImportRegistryRepository.ImportRecord;
+import io.terraform.logviewer.repository.SectionSpanRepository;
+import io.terraform.logviewer.repository.SectionSpanRepository.Span;
+import io.terraform.logviewer.service.LogImportService.ImportSession;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Повторная загрузка и дозагрузка файла по отпечатку содержимого на H2. Таблицы сущностей
+ * создаёт Hibernate, реестр импортов и участки — миграции.
+ */
+@SpringBootTest(properties = {
+        "app.plugins.enabled=false",
+        "app.clickhouse.enabled=false",
+        "app.ingest.annotation.async=false",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "grpc.server.port=-1"
+})
+@ActiveProfiles("h2")
+class ImportDedupTest {
+
+    private static final String LINE =
+            "{\"@level\":\"info\",\"@message\":\"line %d\",\"@timestamp\":\"2025-01-01T00:00:%02dZ\"}";
+
+    @Autowired
+    private LogImportService importService;
+
+    @Autowired
+    private ImportRegistryRepository importRegistry;
+
+    @Autowired
+    private SectionSpanRepository spanRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void clean() throws IOException {
+        migrate("V3__import_registry.sql", "V5__section_spans.sql");
+        jdbc.update("delete from tf_log_entries");
+        jdbc.update("delete from tf_section_spans");
+        jdbc.update("delete from tf_imports");
+    }
+
+    @Test
+    void sameContentTwiceReturnsFirstImport() throws IOException {
+        List<String> lines = lines(10);
+        String hash = hash(lines);
+
+        ImportSession first = importAll("apply.json", hash, lines);
+        ImportSession second = importService.startSession("copy.json", -1, null, hash);
+
+        assertThat(second.isDuplicate()).isTrue();
+        assertThat(second.getImportId()).isEqualTo(first.getImportId());
+        assertThat(second.getFileName()).isEqualTo("apply.json");
+        assertThat(second.getTotal()).isEqualTo(10);
+        assertThat(second.getSaved()).isEqualTo(10);
+        lines.forEach(line -> importService.ingestFileLine(second, line));
+        importService.completeSession(second);
+        assertThat(rows(first.getImportId())).isEqualTo(10);
+        assertThat(jdbc.queryForObject("select count(*) from tf_imports", Long.class)).isEqualTo(1);
+    }
+
+    @Test
+    void interruptedImportResumesWithoutDuplicateRows() throws IOException {
+        List<String> lines = lines(12);
+        String hash = hash(lines);
+
+        // первая попытка успела записать половину файла и оборвалась
+        ImportSession crashed = importService.startSession("apply.json", -1, null, hash);
+        lines.subList(0, 6).forEach(line -> importService.ingestFileLine(crashed, line));
+        importService.flushSession(crashed);
+        importService.abandonSession(crashed);
+        assertThat(importRegistry.findByContentHash(hash)).map(ImportRecord::status)
+                .contains(ImportRegistryRepository.RUNNING);
+        List<Long> stored = ids(crashed.getImportId());
+
+        ImportSession resumed = importAll("apply.json", hash, lines);
+
+        assertThat(resumed.isDuplicate()).isFalse();
+        assertThat(resumed.getImportId()).isEqualTo(crashed.getImportId());
+        assertThat(resumed.getTotal()).isEqualTo(12);
+        assertThat(resumed.getSaved()).isEqualTo(12);
+        assertThat(rows(resumed.getImportId())).isEqualTo(12);
+        // записанное первой попыткой не перезаписывается, а пропускается по хэшу строки
+        assertThat(ids(resumed.getImportId())).hasSize(12).startsWith(stored.toArray(Long[]::new));
+        assertThat(jdbc.queryForList("select message from tf_log_entries where import_id = ? order by line_hash",
+                String.class, resumed.getImportId()))
+                .containsExactlyElementsOf(IntStream.rangeClosed(1, 12).mapToObj(i -> "line " + i).toList());
+        assertThat(importRegistry.findByContentHash(hash)).map(ImportRecord::status)
+                .contains(ImportRegistryRepository.COMPLETED);
+        assertThat(importService.startSession("apply.json", -1, null, hash).isDuplicate()).isTrue();
+    }
+
+    @Test
+    void hashRecordedAfterStreamingFindsEarlierImport() throws IOException {
+        List<String> lines = lines(10);
+        String hash = hash(lines);
+        ImportSession first = importAll("apply.json", hash, lines);
+
+        // потоковая загрузка без заявленного отпечатка узнаёт его только в конце
+        ImportSession streamed = importAll("copy.json", null, lines);
+        ImportSession recorded = importService.recordContentHash(streamed, hash);
+
+        assertThat(recorded.isDuplicate()).isTrue();
+        assertThat(recorded.getImportId()).isEqualTo(first.getImportId());
+        assertThat(recorded.getSaved()).isEqualTo(10);
+        assertThat(rows(streamed.getImportId())).isZero();
+        assertThat(rows(first.getImportId())).isEqualTo(10);
+        assertThat(jdbc.queryForObject("select count(*) from tf_imports", Long.class)).isEqualTo(1);
+
+        ImportSession other = importAll("other.json", null, lines(3));
+        assertThat(importService.recordContentHash(other, hash(lines(3)))).isSameAs(other);
+        assertThat(importRegistry.findByContentHash(hash(lines(3)))).map(ImportRecord::importId)
+                .contains(other.getImportId());
+    }
+
+    @Test
+    void completedImportWithFailedLinesIsNotReloaded() throws IOException {
+        List<String> lines = lines(3);
+        String hash = hash(lines);
+        ImportSession first = importAll("apply.json", hash, lines);
+        importRegistry.complete(first.getImportId(), 4, 3, 1);
+
+        ImportSession second = importService.startSession("apply.json", -1, null, hash);
+
+        assertThat(second.isDuplicate()).isTrue();
+        assertThat(second.getFailed()).isEqualTo(1);
+        assertThat(rows(first.getImportId())).isEqualTo(3);
+    }
+
+    @Test
+    void resumedImportContinuesOpenSpan() throws IOException {
+        List<String> lines = new ArrayList<>(lines(10));
+        lines.set(0, cli("plan", 1));
+        lines.set(4, "{\"@message\":\"backend/local: plan operation completed\"}");
+        lines.set(5, cli("apply", 6));
+        String hash = hash(lines);
+
+        // первая попытка оборвалась посреди участка apply
+        ImportSession crashed = importService.startSession("run.json", -1, null, hash);
+        lines.subList(0, 8).forEach(line -> importService.ingestFileLine(crashed, line));
+        importService.flushSession(crashed);
+        importService.abandonSession(crashed);
+        List<Long> stored = ids(crashed.getImportId());
+        assertThat(spanRepository.findLast(crashed.getImportId())).map(Span::endLine).contains(8L);
+
+        ImportSession resumed = importAll("run.json", hash, lines);
+
+        assertThat(resumed.getImportId()).isEqualTo(crashed.getImportId());
+        List<Long> ids = ids(resumed.getImportId());
+        // участок apply продолжен, а не начат заново: начало — строка первой попытки
+        assertThat(spanRepository.findByImport(resumed.getImportId())).containsExactly(
+                span(resumed, 1, "plan", 1, 5, stored.get(0), stored.get(4), true),
+                span(resumed, 2, "apply", 6, 10, stored.get(5), ids.get(9), false));
+        assertThat(jdbc.queryForList("select section from tf_log_entries where import_id = ? order by line_hash",
+                String.class, resumed.getImportId()).subList(8, 10)).containsOnly("apply");
+    }
+
+    private Span span(ImportSession session, int number, String section, long startLine, long endLine,
+                      long startEntryId, long endEntryId, boolean closed) {
+        return new Span(session.getImportId(), number, section, startLine, endLine,
+                timestamp(startEntryId), timestamp(endEntryId), startEntryId, endEntryId, closed);
+    }
+
+    private OffsetDateTime timestamp(long id) {
+        return jdbc.queryForObject("select ts from tf_log_entries where id = ?", OffsetDateTime.class, id);
+    }
+
+    private static String cli(String command, int second) {
+        return ("{\"@level\":\"info\",\"@message\":\"CLI args: []string{\\\"terraform\\\", \\\"%s\\\"}\","
+                + "\"@timestamp\":\"2025-01-01T00:00:%02dZ\"}").formatted(command, second);
+    }
+
+    private ImportSession importAll(String fileName, String hash, List<String> lines) {
+        ImportSession session = importService.startSession(fileName, -1, null, hash);
+        lines.forEach(line -> importService.ingestFileLine(session, line));
+        importService.completeSession(session);
+        return session;
+    }
+
+    private long rows(String importId) {
+        return jdbc.queryForObject("select count(*) from tf_log_entries where import_id = ?", Long.class, importId);
+    }
+
+    private List<Long> ids(String importId) {
+        return jdbc.queryForList("select id from tf_log_entries where import_id = ? order by line_hash", Long.class,
+                importId);
+    }
+
+    private void migrate(String... scripts) throws IOException {
+        for (String script : scripts) {
+            String sql = new ClassPathResource("db/migration/" + script).getContentAsString(StandardCharsets.UTF_8)
+                    .replace("TIMESTAMPTZ", "TIMESTAMP WITH TIME ZONE");
+            for (String statement : sql.split(";")) {
+                if (!statement.isBlank()) jdbc.execute(statement);
+            }
+        }
+    }
+
+    private static List<String> lines(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(i -> LINE.formatted(i, i)).toList();
+    }
+
+    private static String hash(List<String> lines) throws IOException {
+        return ContentHasher.hash(new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @TestConfiguration
+    static class JacksonFallback {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+}
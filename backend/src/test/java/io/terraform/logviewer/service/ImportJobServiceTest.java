@@ -0,0 +1,210 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.service.LogImportService.ImportSession;
+import io.terraform.logviewer.service.dto.ImportJobProgress;
+import io.terraform.logviewer.service.dto.ImportJobProgress.State;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImportJobServiceTest {
+
+    private static final String CONTENT = "{\"@message\":\"one\"}\n  {\"@message\":\"two\"}  \n\n{\"@message\":\"three\"}";
+
+    private final LogImportService importService = mock(LogImportService.class);
+    private final List<String> ingested = new CopyOnWriteArrayList<>();
+    private ImportJobService service;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        IngestProperties properties = new IngestProperties();
+        properties.getJobs().setWorkers(1);
+        properties.getJobs().setProgressInterval(Duration.ofMillis(10));
+        service = new ImportJobService(importService, properties);
+        doAnswer(invocation -> ingested.add(invocation.getArgument(1)))
+                .when(importService).ingestFileLine(any(), anyString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void importsFileInBackgroundAndDeletesIt() throws Exception {
+        ImportSession session = session("job-1");
+        Path file = Files.writeString(dir.resolve("apply.json"), CONTENT);
+
+        String importId = service.submit("apply.json", Files.size(file), null, "hash",
+                ImportJobService.Content.temporaryFile(file));
+
+        ImportJobProgress progress = awaitTerminal(importId);
+        assertThat(importId).isEqualTo("job-1");
+        assertThat(progress.state()).isEqualTo(State.COMPLETED);
+        assertThat(progress.bytesRead()).isEqualTo(progress.totalBytes()).isEqualTo(CONTENT.length());
+        assertThat(progress.etaSeconds()).isZero();
+        assertThat(progress.error()).isNull();
+        // пробелы и пустые строки отбрасывает ingestFileLine
+        assertThat(ingested).containsExactly("{\"@message\":\"one\"}", "  {\"@message\":\"two\"}  ", "",
+                "{\"@message\":\"three\"}");
+        verify(importService).completeSession(session);
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void duplicateCompletesWithoutReadingContent() throws Exception {
+        ImportSession session = spy(new ImportSession("job-1", "apply.json"));
+        when(session.isDuplicate()).thenReturn(true);
+        when(importService.startSession(anyString(), anyLong(), any(), any())).thenReturn(session);
+        Path file = Files.writeString(dir.resolve("apply.json"), CONTENT);
+
+        service.submit("apply.json", Files.size(file), null, "hash", ImportJobService.Content.temporaryFile(file));
+
+        ImportJobProgress progress = service.progress("job-1").orElseThrow();
+        assertThat(progress.state()).isEqualTo(State.COMPLETED);
+        assertThat(progress.bytesRead()).isEqualTo(CONTENT.length());
+        assertThat(file).doesNotExist();
+        verify(importService, never()).ingestFileLine(any(), anyString());
+        verify(importService, never()).completeSession(any());
+    }
+
+    @Test
+    void cancelStopsRunningJobAndDiscardsImport() throws Exception {
+        ImportSession session = session("job-1");
+        CountDownLatch firstLine = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstLine.countDown();
+            cancelled.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(importService).ingestFileLine(any(), anyString());
+        when(importService.discardSession(session)).thenReturn(1);
+
+        String importId = service.submit("apply.json", -1, null, null, () -> stream(CONTENT));
+        assertThat(firstLine.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.cancel(importId)).isPresent();
+        cancelled.countDown();
+
+        ImportJobProgress progress = awaitTerminal(importId);
+        assertThat(progress.state()).isEqualTo(State.CANCELLED);
+        assertThat(progress.totalBytes()).isEqualTo(-1);
+        verify(importService).discardSession(session);
+        verify(importService, never()).completeSession(any());
+    }
+
+    @Test
+    void failedLineKeepsWhatWasReadAndReportsError() throws Exception {
+        ImportSession session = session("job-1");
+        doThrow(new IllegalStateException("database is down"))
+                .when(importService).ingestFileLine(eq(session), anyString());
+
+        String importId = service.submit("apply.json", CONTENT.length(), null, null, () -> stream(CONTENT));
+
+        ImportJobProgress progress = awaitTerminal(importId);
+        assertThat(progress.state()).isEqualTo(State.FAILED);
+        assertThat(progress.error()).isEqualTo("database is down");
+        verify(importService).failSession(session);
+        verify(importService, never()).discardSession(any());
+    }
+
+    @Test
+    void rejectsArchives() throws Exception {
+        session("job-1");
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry("apply.json"));
+            out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String importId = service.submit("logs.zip", zip.size(), null, null,
+                () -> new ByteArrayInputStream(zip.toByteArray()));
+
+        ImportJobProgress progress = awaitTerminal(importId);
+        assertThat(progress.state()).isEqualTo(State.FAILED);
+        assertThat(progress.error()).contains("Archives");
+        assertThat(ingested).isEmpty();
+    }
+
+    @Test
+    void watchSendsProgressUntilTerminalState() throws Exception {
+        session("job-1");
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS))
+                .when(importService).ingestFileLine(any(), anyString());
+        String importId = service.submit("apply.json", -1, null, null, () -> stream(CONTENT));
+        List<ImportJobProgress> seen = new CopyOnWriteArrayList<>();
+        CountDownLatch terminal = new CountDownLatch(1);
+
+        assertThat(service.watch(importId, progress -> {
+            seen.add(progress);
+            if (progress.state().isTerminal()) terminal.countDown();
+        })).isPresent();
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThat(terminal.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(50);
+        assertThat(seen.size()).isGreaterThan(1);
+        assertThat(seen.get(0).state().isTerminal()).isFalse();
+        assertThat(seen.get(seen.size() - 1).state()).isEqualTo(State.COMPLETED);
+        assertThat(seen.stream().filter(progress -> progress.state().isTerminal())).hasSize(1);
+    }
+
+    @Test
+    void unknownJob() {
+        assertThat(service.progress("missing")).isEmpty();
+        assertThat(service.cancel("missing")).isEmpty();
+        assertThat(service.watch("missing", progress -> { })).isEmpty();
+    }
+
+    private ImportSession session(String importId) {
+        ImportSession session = new ImportSession(importId, "apply.json");
+        when(importService.startSession(anyString(), anyLong(), any(), any())).thenReturn(session);
+        return session;
+    }
+
+    private ImportJobProgress awaitTerminal(String importId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (System.nanoTime() < deadline) {
+            ImportJobProgress progress = service.progress(importId).orElseThrow();
+            if (progress.state().isTerminal()) return progress;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("import job did not finish");
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
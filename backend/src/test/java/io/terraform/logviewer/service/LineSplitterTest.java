@@ -0,0 +1,51 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LineSplitterTest {
+
+    private static final String TEXT = "{\"@message\":\"привет\"}\r\n"
+            + "second line\n"
+            + "\n"
+            + "third\rfourth\r\n"
+            + "tail without newline ✓";
+
+    @Test
+    void splitsLikeBufferedReaderAtEveryChunkBoundary() throws IOException {
+        List<String> expected = new BufferedReader(new StringReader(TEXT)).lines().toList();
+        byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+
+        for (int chunk = 1; chunk <= bytes.length; chunk++) {
+            List<String> actual = new ArrayList<>();
+            LineSplitter splitter = new LineSplitter(actual::add);
+            for (int from = 0; from < bytes.length; from += chunk) {
+                splitter.accept(bytes, from, Math.min(chunk, bytes.length - from));
+            }
+            splitter.finish();
+
+            assertThat(actual).as("chunk size %d", chunk).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void splitsInputStream() throws IOException {
+        byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)).lines().toList();
+        List<String> actual = new ArrayList<>();
+
+        LineSplitter.split(new ByteArrayInputStream(bytes), actual::add);
+
+        assertThat(actual).isEqualTo(expected);
+    }
+}
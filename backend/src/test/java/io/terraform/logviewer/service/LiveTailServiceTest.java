@@ -0,0 +1,133 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LiveTailServiceTest {
+
+    private LiveTailService service;
+
+    @BeforeEach
+    void setUp() {
+        IngestProperties properties = new IngestProperties();
+        properties.getLive().setBufferSize(3);
+        service = new LiveTailService(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void slowSubscriberLosesOverflowAndIsToldHowMuch() throws InterruptedException {
+        RecordingSink slow = new RecordingSink();
+        RecordingSink errorsOnly = new RecordingSink();
+        errorsOnly.ready = true;
+        LiveTailService.Subscription subscription = service.subscribe(parameters(Optional.empty()), slow);
+        service.subscribe(parameters(Optional.of("error")), errorsOnly);
+
+        // подписчик не читает: в буфер входят три записи, остальные семь отбрасываются
+        service.publish(entries(1, 10));
+        awaitEvents(errorsOnly, events -> events.size() == 3);
+        assertThat(slow.events).isEmpty();
+        // записи, не прошедшие фильтр, потерей не считаются
+        assertThat(errorsOnly.events).containsExactly("line 3", "line 6", "line 9");
+
+        slow.ready = true;
+        subscription.drain();
+        awaitEvents(slow, events -> events.size() == 4);
+        assertThat(slow.events).containsExactly("lag 7/7", "line 1", "line 2", "line 3");
+
+        // буфер снова свободен; следующая потеря сообщается отдельно, итог растёт
+        slow.ready = false;
+        service.publish(entries(11, 15));
+        slow.ready = true;
+        subscription.drain();
+        awaitEvents(slow, events -> events.size() == 8);
+        assertThat(slow.events.subList(4, 8)).containsExactly("lag 2/9", "line 11", "line 12", "line 13");
+        awaitEvents(errorsOnly, events -> events.size() == 5);
+        assertThat(errorsOnly.events).containsExactly("line 3", "line 6", "line 9", "line 12", "line 15");
+    }
+
+    @Test
+    void cancelledOrFailingSubscriberIsRemoved() throws InterruptedException {
+        RecordingSink failing = new RecordingSink();
+        failing.ready = true;
+        failing.failOnEntry = true;
+        service.subscribe(parameters(Optional.empty()), failing);
+        RecordingSink cancelled = new RecordingSink();
+        service.subscribe(parameters(Optional.empty()), cancelled).cancel();
+
+        service.publish(entries(1, 1));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (service.hasSubscribers() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(service.hasSubscribers()).isFalse();
+        assertThat(cancelled.events).isEmpty();
+    }
+
+    private static void awaitEvents(RecordingSink sink, Predicate<List<String>> done) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!done.test(sink.events) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // доставка асинхронная: лишнее, если оно есть, успевает прийти
+        Thread.sleep(50);
+        assertThat(done.test(sink.events)).as("events %s", sink.events).isTrue();
+    }
+
+    private static QueryParameters parameters(Optional<String> level) {
+        return new QueryParameters(0, 50, Optional.empty(), Optional.empty(), level, Optional.empty(), false,
+                Optional.empty(), Map.of(), Optional.empty(), false, false, Optional.empty());
+    }
+
+    private static List<LogEntryEntity> entries(int from, int to) {
+        return IntStream.rangeClosed(from, to).mapToObj(i -> {
+            LogEntryEntity entry = new LogEntryEntity();
+            entry.setId((long) i);
+            entry.setTimestamp(OffsetDateTime.parse("2025-01-01T00:00:00Z").plusSeconds(i));
+            entry.setLevel(i % 3 == 0 ? "ERROR" : "INFO");
+            entry.setMessage("line " + i);
+            return entry;
+        }).toList();
+    }
+
+    private static final class RecordingSink implements LiveTailService.Sink {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private volatile boolean ready;
+        private volatile boolean failOnEntry;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void onEntry(LogEntryEntity entry) {
+            if (failOnEntry) throw new IllegalStateException("stream closed");
+            events.add(entry.getMessage());
+        }
+
+        @Override
+        public void onLag(long dropped, long droppedTotal) {
+            events.add("lag " + dropped + "/" + droppedTotal);
+        }
+    }
+}
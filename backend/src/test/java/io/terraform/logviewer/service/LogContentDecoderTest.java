@@ -0,0 +1,166 @@
+package io.terraform.logviewer.service;
+
+import static io.terraform.logviewer.service.TestArchives.gzip;
+import static io.terraform.logviewer.service.TestArchives.tar;
+import static io.terraform.logviewer.service.TestArchives.utf8;
+import static io.terraform.logviewer.service.TestArchives.zip;
+import static io.terraform.logviewer.service.TestArchives.zstd;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.terraform.logviewer.service.LogContentDecoder.Decoded;
+import io.terraform.logviewer.service.LogContentDecoder.Format;
+import io.terraform.logviewer.service.LogContentDecoder.LimitExceededException;
+import io.terraform.logviewer.service.LogContentDecoder.Limits;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class LogContentDecoderTest {
+
+    private static final String LOG = "{\"@message\":\"one\"}\n{\"@message\":\"two\"}\n";
+
+    @Test
+    void detectsFormatBySignature() {
+        assertThat(detect(utf8(LOG))).isEqualTo(Format.PLAIN);
+        assertThat(detect(gzip(utf8(LOG)))).isEqualTo(Format.GZIP);
+        assertThat(detect(zstd(utf8(LOG)))).isEqualTo(Format.ZSTD);
+        assertThat(detect(zip(Map.of("apply.json", utf8(LOG))))).isEqualTo(Format.ZIP);
+        assertThat(detect(tar(Map.of("apply.json", utf8(LOG))))).isEqualTo(Format.TAR);
+        assertThat(detect(new byte[0])).isEqualTo(Format.PLAIN);
+    }
+
+    @Test
+    void plainTextPassesThrough() throws IOException {
+        Decoded decoded = LogContentDecoder.open(stream(utf8(LOG)), Limits.NONE);
+
+        assertThat(decoded.format()).isEqualTo(Format.PLAIN);
+        assertThat(decoded.compressed()).isFalse();
+        assertThat(text(decoded)).isEqualTo(LOG);
+    }
+
+    @Test
+    void unwrapsNestedCompressionLayers() throws IOException {
+        Decoded decoded = LogContentDecoder.open(stream(gzip(zstd(gzip(utf8(LOG))))), Limits.NONE);
+
+        assertThat(decoded.format()).isEqualTo(Format.PLAIN);
+        assertThat(decoded.compressed()).isTrue();
+        assertThat(text(decoded)).isEqualTo(LOG);
+    }
+
+    @Test
+    void rejectsTooManyLayers() {
+        byte[] content = utf8(LOG);
+        for (int i = 0; i < 5; i++) {
+            content = gzip(content);
+        }
+        byte[] nested = content;
+
+        assertThatThrownBy(() -> LogContentDecoder.open(stream(nested), Limits.NONE))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("nested");
+    }
+
+    @Test
+    void tarGzEntriesAreDecodedAndNestedArchivesSkipped() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("logs/", new byte[0]);
+        files.put("logs/plan.json", utf8("plan\n"));
+        files.put("logs/apply.json.gz", gzip(utf8("apply\n")));
+        files.put("logs/inner.zip", zip(Map.of("hidden.json", utf8("hidden\n"))));
+        files.put("logs/destroy.json.zst", zstd(utf8("destroy\n")));
+
+        Decoded decoded = LogContentDecoder.open(stream(gzip(tar(files))), Limits.NONE);
+
+        assertThat(decoded.format()).isEqualTo(Format.TAR);
+        assertThat(decoded.compressed()).isTrue();
+        assertThat(entries(decoded)).containsExactly(
+                Map.entry("logs/plan.json", "plan\n"),
+                Map.entry("logs/apply.json.gz", "apply\n"),
+                Map.entry("logs/destroy.json.zst", "destroy\n"));
+    }
+
+    @Test
+    void zipEntriesSkipDirectories() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("run/", new byte[0]);
+        files.put("run/apply.json", utf8(LOG));
+        files.put("run/plan.json.gz", gzip(utf8("plan\n")));
+
+        Decoded decoded = LogContentDecoder.open(stream(zip(files)), Limits.NONE);
+
+        assertThat(decoded.format()).isEqualTo(Format.ZIP);
+        assertThat(decoded.compressed()).isFalse();
+        assertThat(entries(decoded)).containsExactly(
+                Map.entry("run/apply.json", LOG),
+                Map.entry("run/plan.json.gz", "plan\n"));
+    }
+
+    @Test
+    void corruptCompressionFailsOnRead() throws IOException {
+        byte[] compressed = gzip(utf8(LOG.repeat(1000)));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+        Decoded decoded = LogContentDecoder.open(stream(truncated), Limits.NONE);
+
+        assertThatThrownBy(() -> text(decoded)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void limitsDecompressedSizeOfSingleLog() throws IOException {
+        // 1 МБ нулей жмётся в килобайт — типичная бомба в миниатюре
+        byte[] bomb = gzip(new byte[1024 * 1024]);
+        Limits limits = new Limits(Long.MAX_VALUE, 64 * 1024, Integer.MAX_VALUE);
+
+        Decoded decoded = LogContentDecoder.open(stream(bomb), limits);
+
+        assertThatThrownBy(() -> text(decoded)).isInstanceOf(LimitExceededException.class);
+        assertThat(text(LogContentDecoder.open(stream(gzip(utf8(LOG))), limits))).isEqualTo(LOG);
+        // несжатое не распаковывается, и предел его не касается
+        assertThat(text(LogContentDecoder.open(stream(new byte[128 * 1024]), limits))).hasSize(128 * 1024);
+    }
+
+    @Test
+    void limitsEntrySizeTotalSizeAndEntryCount() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            files.put("part-" + i + ".json", new byte[40 * 1024]);
+        }
+        byte[] archive = gzip(tar(files));
+
+        assertThat(entries(LogContentDecoder.open(stream(archive), new Limits(160 * 1024, 40 * 1024, 4))))
+                .hasSize(4);
+        assertThatThrownBy(() -> entries(LogContentDecoder.open(stream(archive), new Limits(1 << 30, 32 * 1024, 4))))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessageContaining("part-0.json");
+        assertThatThrownBy(() -> entries(LogContentDecoder.open(stream(archive), new Limits(100 * 1024, 1 << 30, 4))))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessageContaining("Upload");
+        assertThatThrownBy(() -> entries(LogContentDecoder.open(stream(archive), new Limits(1 << 30, 1 << 30, 3))))
+                .isInstanceOf(LimitExceededException.class)
+                .hasMessageContaining("3 files");
+    }
+
+    private static Format detect(byte[] content) {
+        return LogContentDecoder.detect(content, content.length);
+    }
+
+    private static Map<String, String> entries(Decoded decoded) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        decoded.forEachEntry((name, content) -> entries.put(name,
+                new String(content.readAllBytes(), StandardCharsets.UTF_8)));
+        return entries;
+    }
+
+    private static String text(Decoded decoded) throws IOException {
+        return new String(decoded.stream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static ByteArrayInputStream stream(byte[] content) {
+        return new ByteArrayInputStream(content);
+    }
+}
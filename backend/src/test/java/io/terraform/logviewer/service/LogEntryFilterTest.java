@@ -0,0 +1,70 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class LogEntryFilterTest {
+
+    private static final OffsetDateTime TS = OffsetDateTime.parse("2024-08-01T12:00:00Z");
+
+    @Test
+    void matchesLikeSearchSpecification() {
+        LogEntryEntity entry = entry();
+
+        assertThat(filter(Optional.empty(), Optional.of("error"), Optional.of("APPLY"), Optional.empty(), Map.of()).test(entry))
+                .as("level ignores case, section is compared lower-cased").isTrue();
+        assertThat(filter(Optional.empty(), Optional.empty(), Optional.of("plan"), Optional.empty(), Map.of()).test(entry))
+                .isFalse();
+        assertThat(filter(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("BUCKET"), Map.of()).test(entry))
+                .as("q searches message, module and raw_json").isTrue();
+        assertThat(filter(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("s3_b_cket"), Map.of()).test(entry))
+                .as("_ is a LIKE wildcard").isTrue();
+        assertThat(filter(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("s3_b\\_cket"), Map.of()).test(entry))
+                .as("escaped _ is literal").isFalse();
+    }
+
+    @Test
+    void appliesAttributeFiltersAndTimeRange() {
+        LogEntryEntity entry = entry();
+
+        assertThat(filter(Optional.of(TS), Optional.empty(), Optional.empty(), Optional.empty(),
+                Map.of("tf_resource_type", "AWS_S3_BUCKET", "status_code", "404", "unknown", "x")).test(entry))
+                .isTrue();
+        assertThat(filter(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+                Map.of("status_code", "not-a-number")).test(entry))
+                .as("invalid status does not filter").isTrue();
+        assertThat(filter(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+                Map.of("req_id", "other")).test(entry))
+                .isFalse();
+        assertThat(filter(Optional.of(TS.plusSeconds(1)), Optional.empty(), Optional.empty(), Optional.empty(), Map.of())
+                .test(entry))
+                .isFalse();
+    }
+
+    private static LogEntryFilter filter(Optional<OffsetDateTime> from, Optional<String> level, Optional<String> section,
+                                         Optional<String> query, Map<String, String> filters) {
+        return LogEntryFilter.of(new QueryParameters(0, 50, from, Optional.empty(), level, section, true, query,
+                filters, Optional.empty(), false, false, Optional.empty()));
+    }
+
+    private static LogEntryEntity entry() {
+        LogEntryEntity entry = new LogEntryEntity();
+        entry.setTimestamp(TS);
+        entry.setLevel("ERROR");
+        entry.setSection("apply");
+        entry.setModule("provider.terraform-provider-aws");
+        entry.setMessage("Error creating bucket");
+        entry.setRawJson("{\"tf_resource_type\":\"aws_s3_bucket\"}");
+        entry.setReqId("abc");
+        entry.setResourceType("aws_s3_bucket");
+        entry.setStatusCode(404);
+        entry.setUnread(true);
+        return entry;
+    }
+}
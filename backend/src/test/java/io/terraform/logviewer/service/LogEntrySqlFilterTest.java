@@ -0,0 +1,53 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.terraform.logviewer.repository.LogEntryCountRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class LogEntrySqlFilterTest {
+
+    @Test
+    void equalFiltersWrittenDifferentlyGiveTheSameKey() {
+        LogEntryCountRepository.Filter first = LogEntrySqlFilter.of(parameters(
+                Optional.of(OffsetDateTime.parse("2024-08-01T15:00:00+03:00")), Optional.of("error"),
+                Optional.of("Bucket"), Map.of("tf_req_id", "ABC", "status_code", "404")), false);
+        LogEntryCountRepository.Filter second = LogEntrySqlFilter.of(parameters(
+                Optional.of(OffsetDateTime.parse("2024-08-01T12:00:00Z")), Optional.of("ERROR"),
+                Optional.of("bucket"), Map.of("status_code", "404", "req_id", "abc")), false);
+
+        assertThat(first).isEqualTo(second);
+        assertThat(first.where()).isEqualTo("ts >= ? and level = ?"
+                + " and (lower(coalesce(message, '')) like ? or lower(coalesce(module, '')) like ?"
+                + " or lower(coalesce(raw_json, '')) like ?)"
+                + " and lower(req_id) = ? and status_code = ?");
+    }
+
+    @Test
+    void keepsConflictingAliasesAndSkipsInvalidStatus() {
+        LogEntryCountRepository.Filter filter = LogEntrySqlFilter.of(parameters(Optional.empty(), Optional.empty(),
+                Optional.empty(), Map.of("tf_req_id", "a", "req_id", "b", "status_code", "x", "unknown", "y")), false);
+
+        assertThat(filter.where()).isEqualTo("lower(req_id) = ? and lower(req_id) = ?");
+        assertThat(filter.args()).containsExactly("a", "b");
+    }
+
+    @Test
+    void leavesEqualityColumnsBareForIndexes() {
+        LogEntryCountRepository.Filter filter = LogEntrySqlFilter.of(parameters(Optional.empty(), Optional.empty(),
+                Optional.empty(), Map.of("import_id", "6F1C-AB", "rpc", "ApplyResourceChange")), false);
+
+        assertThat(filter.where()).isEqualTo("import_id = ? and lower(rpc) = ?");
+        assertThat(filter.args()).containsExactly("6f1c-ab", "applyresourcechange");
+    }
+
+    private static QueryParameters parameters(Optional<OffsetDateTime> from, Optional<String> level,
+                                              Optional<String> query, Map<String, String> filters) {
+        return new QueryParameters(0, 50, from, Optional.empty(), level, Optional.empty(), false, query,
+                filters, Optional.empty(), false, false, Optional.empty());
+    }
+}
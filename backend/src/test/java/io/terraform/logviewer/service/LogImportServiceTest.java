@@ -0,0 +1,128 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.index.SegmentStore;
+import io.terraform.logviewer.parser.TerraformLogParser;
+import io.terraform.logviewer.plugin.LogPluginGateway;
+import io.terraform.logviewer.repository.ImportRegistryRepository;
+import io.terraform.logviewer.repository.LogBodyRepository;
+import io.terraform.logviewer.repository.LogEntryCopyWriter;
+import io.terraform.logviewer.repository.LogEntryJdbcWriter;
+import io.terraform.logviewer.repository.LogEntryRepository;
+import io.terraform.logviewer.repository.SectionSpanRepository;
+import io.terraform.logviewer.repository.SectionSpanRepository.Span;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class LogImportServiceTest {
+
+    private static final String LINE =
+            "{\"@level\":\"info\",\"@message\":\"line %d\",\"@timestamp\":\"2025-01-01T00:00:0%dZ\"}";
+
+    private final LogEntryRepository entryRepository = mock(LogEntryRepository.class);
+    private final LogEntryJdbcWriter jdbcWriter = mock(LogEntryJdbcWriter.class);
+    private final LogPluginGateway pluginGateway = mock(LogPluginGateway.class);
+    private final SectionSpanRepository spanRepository = mock(SectionSpanRepository.class);
+    private final IngestProperties properties = new IngestProperties();
+    private LogImportService service;
+
+    @BeforeEach
+    void setUp() {
+        properties.setBatchSize(2);
+        properties.getAnnotation().setAsync(false);
+        properties.getDedup().setEnabled(false);
+        service = new LogImportService(entryRepository, mock(LogBodyRepository.class), jdbcWriter,
+                mock(LogEntryCopyWriter.class), new TerraformLogParser(new ObjectMapper()), new ObjectMapper(),
+                pluginGateway, properties, mock(PluginAnnotationService.class),
+                mock(ImportRegistryRepository.class), mock(LiveTailService.class),
+                spanRepository, mock(SegmentStore.class), mock(SearchCountService.class),
+                mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void lineByLineRetryReusesPluginAnswersOfFailedBatch() {
+        when(pluginGateway.isActive()).thenReturn(true);
+        when(pluginGateway.processAsync(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("owner", "team-a")));
+        when(jdbcWriter.allocateIds(anyInt())).thenReturn(new long[]{1, 2});
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(jdbcWriter).insertEntries(anyList());
+        List<LogEntryEntity> saved = new ArrayList<>();
+        when(entryRepository.save(any())).thenAnswer(invocation -> {
+            saved.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+
+        LogImportService.ImportSession session = service.startSession("apply.json");
+        service.ingestLine(session, LINE.formatted(1, 1));
+        service.ingestLine(session, LINE.formatted(2, 2));
+        service.completeSession(session);
+
+        assertThat(session.getSaved()).isEqualTo(2);
+        assertThat(session.getFailed()).isZero();
+        verify(pluginGateway, times(2)).processAsync(any(), any());
+        verify(pluginGateway, never()).process(any(), any());
+        assertThat(saved).extracting(LogEntryEntity::getAnnotationsJson)
+                .containsOnly("{\"owner\":\"team-a\"}");
+    }
+
+    @Test
+    void spansFailedToSaveAreWrittenWithNextBatch() {
+        when(pluginGateway.processAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(Map.of()));
+        when(jdbcWriter.allocateIds(anyInt())).thenReturn(new long[]{11, 12}, new long[]{13, 14});
+        List<Span> spans = new ArrayList<>();
+        doThrow(new DataIntegrityViolationException("connection reset"))
+                .doAnswer(invocation -> spans.add(invocation.getArgument(0)))
+                .when(spanRepository).save(any());
+
+        LogImportService.ImportSession session = service.startSession("apply.json");
+        service.ingestLine(session, "{\"@message\":\"CLI args: []string{\\\"terraform\\\", \\\"apply\\\"}\"}");
+        service.ingestLine(session, LINE.formatted(2, 2));
+        // первый пакет записан, а его участок — нет
+        assertThat(session.getSaved()).isEqualTo(2);
+        assertThat(spans).isEmpty();
+        service.ingestLine(session, LINE.formatted(3, 3));
+        service.ingestLine(session, "{\"@message\":\"backend/local: apply operation completed\"}");
+        service.completeSession(session);
+
+        assertThat(spans).hasSize(1);
+        assertThat(spans.get(0)).extracting(Span::number, Span::section, Span::startLine, Span::endLine,
+                        Span::startEntryId, Span::endEntryId, Span::closed)
+                .containsExactly(1, "apply", 1L, 4L, 11L, 14L, true);
+    }
+
+    @Test
+    void lineHashPacksLineNumberAboveTextHash() {
+        String raw = LINE.formatted(1, 1);
+        long hash = LogImportService.lineHash(7, raw);
+
+        assertThat(hash >>> 32).isEqualTo(7);
+        assertThat(hash & 0xFFFFFFFFL).isEqualTo(raw.hashCode() & 0xFFFFFFFFL);
+        // отрицательный hashCode не затирает номер строки
+        String negative = "polygenelubricants";
+        assertThat(negative.hashCode()).isNegative();
+        assertThat(LogImportService.lineHash(3, negative) >>> 32).isEqualTo(3);
+        // хэши упорядочены по номеру строки: на этом держатся бинарный поиск и findLineHashes(afterLine)
+        assertThat(LogImportService.lineHash(2, negative)).isLessThan(LogImportService.lineHash(3, raw));
+        assertThat(LogImportService.lineHash(3, raw)).isGreaterThanOrEqualTo(3L << 32)
+                .isLessThan(4L << 32);
+    }
+}
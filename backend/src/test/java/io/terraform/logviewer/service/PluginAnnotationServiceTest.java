@@ -0,0 +1,129 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.plugin.LogPluginGateway;
+import io.terraform.logviewer.repository.AnnotationBacklogRepository;
+import io.terraform.logviewer.repository.AnnotationBacklogRepository.Range;
+import io.terraform.logviewer.repository.LogEntryJdbcWriter;
+import io.terraform.logviewer.service.dto.AnnotationProgress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PluginAnnotationServiceTest {
+
+    private final LogPluginGateway pluginGateway = mock(LogPluginGateway.class);
+    private final LogEntryJdbcWriter jdbcWriter = mock(LogEntryJdbcWriter.class);
+    private final AnnotationBacklogRepository backlog = mock(AnnotationBacklogRepository.class);
+    private final AtomicLong rangeIds = new AtomicLong();
+    private PluginAnnotationService service;
+
+    @BeforeEach
+    void setUp() {
+        when(backlog.add(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> new Range(
+                rangeIds.incrementAndGet(), invocation.getArgument(0), invocation.getArgument(1),
+                invocation.getArgument(2)));
+        when(pluginGateway.isActive()).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void fullQueueDoesNotMakeImportWait() {
+        service = service(1, 1);
+        CompletableFuture<Map<String, String>> slowPlugin = new CompletableFuture<>();
+        when(pluginGateway.processAsync(any(), any())).thenReturn(slowPlugin);
+        when(jdbcWriter.findForAnnotation("import", 3, 3)).thenReturn(List.of(entity(3)));
+
+        // первая пачка у воркера, вторая в памяти, третья только в очереди БД — и submit не ждёт ни одну
+        long started = System.nanoTime();
+        for (long id = 1; id <= 3; id++) {
+            service.submit("import", List.of(entry(id)));
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(500));
+        service.seal("import");
+        verify(jdbcWriter, never()).findForAnnotation(anyString(), anyLong(), anyLong());
+
+        slowPlugin.complete(Map.of("owner", "team-a"));
+
+        AnnotationProgress progress = awaitDone("import");
+        assertThat(progress.submitted()).isEqualTo(3);
+        assertThat(progress.annotated()).isEqualTo(3);
+        assertThat(progress.skipped()).isZero();
+        verify(jdbcWriter).findForAnnotation("import", 3, 3);
+        for (long id = 1; id <= 3; id++) {
+            verify(backlog, timeout(5000)).remove(id);
+        }
+    }
+
+    @Test
+    void batchesLeftByThePreviousRunAreResumed() {
+        service = service(1, 1);
+        when(pluginGateway.processAsync(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("owner", "team-a")));
+        when(backlog.findAll()).thenReturn(List.of(new Range(7, "import", 10, 11)));
+        when(jdbcWriter.findForAnnotation("import", 10, 11)).thenReturn(List.of(entity(10), entity(11)));
+
+        service.resumeBacklog();
+
+        AnnotationProgress progress = awaitDone("import");
+        assertThat(progress.submitted()).isEqualTo(2);
+        assertThat(progress.annotated()).isEqualTo(2);
+        assertThat(progress.updated()).isEqualTo(2);
+        verify(backlog, timeout(5000)).remove(7);
+        verify(jdbcWriter).updateAnnotations(argThat(entries -> entries.stream()
+                .map(LogEntryEntity::getAnnotationsJson).allMatch("{\"owner\":\"team-a\"}"::equals)));
+    }
+
+    private PluginAnnotationService service(int workers, int queueCapacity) {
+        IngestProperties properties = new IngestProperties();
+        properties.getAnnotation().setWorkers(workers);
+        properties.getAnnotation().setQueueCapacity(queueCapacity);
+        return new PluginAnnotationService(pluginGateway, jdbcWriter, backlog, new ObjectMapper(), properties);
+    }
+
+    private AnnotationProgress awaitDone(String importId) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (System.nanoTime() < deadline) {
+            AnnotationProgress progress = service.progress(importId).orElseThrow();
+            if (progress.done()) return progress;
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        throw new AssertionError("annotation stage did not finish");
+    }
+
+    private static PluginAnnotationService.Entry entry(long id) {
+        return new PluginAnnotationService.Entry(null, entity(id));
+    }
+
+    private static LogEntryEntity entity(long id) {
+        LogEntryEntity entity = new LogEntryEntity();
+        entity.setId(id);
+        return entity;
+    }
+}
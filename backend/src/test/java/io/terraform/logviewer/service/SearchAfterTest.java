@@ -0,0 +1,130 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.repository.LogEntryRepository;
+import io.terraform.logviewer.service.dto.CursorPage;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Keyset-пагинация Search на H2: постраничный обход по полю с NULL и повторами отдаёт каждую
+ * запись ровно один раз и в том же порядке, что и страницы по номеру.
+ */
+@SpringBootTest(properties = {
+        "app.plugins.enabled=false",
+        "app.clickhouse.enabled=false",
+        "app.ingest.annotation.async=false",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "grpc.server.port=-1"
+})
+@ActiveProfiles("h2")
+class SearchAfterTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+
+    @Autowired
+    private LogQueryService queryService;
+
+    @Autowired
+    private LogEntryRepository entryRepository;
+
+    private List<LogEntryEntity> entries;
+
+    @BeforeEach
+    void seed() {
+        entryRepository.deleteAll();
+        // NULL и повторы вперемешку, в том числе на границах страниц по три записи
+        String[] levels = {null, "INFO", "ERROR", null, "INFO", "INFO", null, "WARN", "ERROR", "INFO", null, null};
+        entries = new ArrayList<>();
+        for (int i = 0; i < levels.length; i++) {
+            LogEntryEntity entry = new LogEntryEntity();
+            entry.setTimestamp(T0.plusSeconds(i % 4));
+            entry.setLevel(levels[i]);
+            entry.setMessage("line " + i);
+            entry.setImportId("imp");
+            entries.add(entry);
+        }
+        entries = entryRepository.saveAll(entries);
+    }
+
+    @Test
+    void pagesThroughNullKeysInBothDirections() {
+        for (boolean desc : new boolean[] {true, false}) {
+            Comparator<String> levels = Comparator.nullsLast(Comparator.<String>naturalOrder());
+            Comparator<LogEntryEntity> order = Comparator.comparing(LogEntryEntity::getLevel,
+                    desc ? levels.reversed() : levels);
+            List<Long> expected = entries.stream()
+                    .sorted(order.thenComparing(LogEntryEntity::getId, Comparator.reverseOrder()))
+                    .map(LogEntryEntity::getId)
+                    .toList();
+
+            assertThat(pageAll("level", desc)).as("desc=%s", desc).containsExactlyElementsOf(expected);
+            assertThat(queryService.search(parameters(0, 100, "level", desc, Optional.empty())).page().getContent())
+                    .as("offset mode, desc=%s", desc)
+                    .extracting(LogEntryEntity::getId)
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void timestampTiesFollowOffsetOrder() {
+        for (boolean desc : new boolean[] {true, false}) {
+            List<Long> offset = queryService.search(parameters(0, 100, "ts", desc, Optional.empty())).page()
+                    .getContent().stream().map(LogEntryEntity::getId).toList();
+
+            assertThat(pageAll("ts", desc)).as("desc=%s", desc).containsExactlyElementsOf(offset).hasSize(12);
+        }
+    }
+
+    @Test
+    void sortWithoutKeysetIndexIsRejected() {
+        assertThatThrownBy(() -> queryService.searchAfter(parameters(0, 3, "message", true, Optional.of(""))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("message");
+    }
+
+    private List<Long> pageAll(String sortBy, boolean desc) {
+        List<Long> ids = new ArrayList<>();
+        Optional<String> cursor = Optional.of("");
+        for (int pages = 0; cursor.isPresent(); pages++) {
+            assertThat(pages).as("pages").isLessThan(10);
+            CursorPage page = queryService.searchAfter(parameters(0, 3, sortBy, desc, cursor));
+            page.items().forEach(entry -> ids.add(entry.getId()));
+            cursor = page.nextCursor();
+        }
+        return ids;
+    }
+
+    private static QueryParameters parameters(int page, int size, String sortBy, boolean desc,
+                                              Optional<String> cursor) {
+        return new QueryParameters(page, size, Optional.empty(), Optional.empty(), Optional.empty(),
+                Optional.empty(), false, Optional.empty(), Map.of(), Optional.of(sortBy), desc, false, cursor);
+    }
+
+    @TestConfiguration
+    static class JacksonFallback {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+}
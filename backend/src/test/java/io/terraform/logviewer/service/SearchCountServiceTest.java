@@ -0,0 +1,98 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.terraform.logviewer.config.QueryProperties;
+import io.terraform.logviewer.config.QueryProperties.CountStrategy;
+import io.terraform.logviewer.repository.LogEntryCountRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import io.terraform.logviewer.service.dto.TotalCount;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SearchCountServiceTest {
+
+    private final QueryProperties properties = new QueryProperties();
+    private final LogEntryCountRepository countRepository = mock(LogEntryCountRepository.class);
+    private final AtomicLong exactCalls = new AtomicLong();
+    private SearchCountService service;
+
+    @BeforeEach
+    void setUp() {
+        properties.getCount().setCacheTtl(Duration.ofMinutes(1));
+        when(countRepository.supportsEstimates()).thenReturn(true);
+        service = new SearchCountService(properties, countRepository);
+    }
+
+    @Test
+    void smallEstimateIsRecountedExactly() {
+        properties.getCount().setStrategy(CountStrategy.ESTIMATE);
+        properties.getCount().setEstimateThreshold(1000);
+        when(countRepository.estimate(any())).thenReturn(999L, 250_000L);
+
+        assertThat(service.entries(parameters("error"), this::exact)).isEqualTo(new TotalCount(42, true));
+        assertThat(service.entries(parameters("warn"), this::exact)).isEqualTo(new TotalCount(250_000, false));
+        assertThat(exactCalls).hasValue(1);
+    }
+
+    @Test
+    void cachedCountExpires() throws InterruptedException {
+        properties.getCount().setCacheTtl(Duration.ofMillis(300));
+
+        service.entries(parameters("error"), this::exact);
+        service.entries(parameters("ERROR"), this::exact);
+        assertThat(exactCalls).as("the filter is normalized").hasValue(1);
+
+        Thread.sleep(400);
+        service.entries(parameters("error"), this::exact);
+        assertThat(exactCalls).hasValue(2);
+    }
+
+    @Test
+    void fullCacheDoesNotRememberNewFilters() {
+        properties.getCount().setCacheSize(2);
+
+        service.entries(parameters("error"), this::exact);
+        service.entries(parameters("warn"), this::exact);
+        service.entries(parameters("info"), this::exact);
+        service.entries(parameters("info"), this::exact);
+        assertThat(exactCalls).hasValue(4);
+
+        service.entries(parameters("error"), this::exact);
+        service.entries(parameters("warn"), this::exact);
+        assertThat(exactCalls).as("earlier filters stay cached").hasValue(4);
+    }
+
+    @Test
+    void invalidateDropsCachedAndInFlightCounts() {
+        service.entries(parameters("error"), this::exact);
+        service.invalidate();
+        service.entries(parameters("error"), this::exact);
+        assertThat(exactCalls).hasValue(2);
+
+        // запись строк закончилась, пока шёл подсчёт: его результат уже устарел и не кешируется
+        service.entries(parameters("warn"), () -> {
+            service.invalidate();
+            return exact();
+        });
+        service.entries(parameters("warn"), this::exact);
+        assertThat(exactCalls).hasValue(4);
+    }
+
+    private long exact() {
+        exactCalls.incrementAndGet();
+        return 42;
+    }
+
+    private static QueryParameters parameters(String level) {
+        return new QueryParameters(0, 50, Optional.empty(), Optional.empty(), Optional.of(level), Optional.empty(),
+                false, Optional.empty(), Map.of(), Optional.empty(), false, false, Optional.empty());
+    }
+}
@@ -0,0 +1,43 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.terraform.logviewer.entity.LogEntryEntity;
+import java.time.OffsetDateTime;
+import org.junit.jupiter.api.Test;
+
+class SearchCursorTest {
+
+    @Test
+    void roundTripsTypedKeys() {
+        LogEntryEntity entry = new LogEntryEntity();
+        entry.setId(42L);
+        entry.setTimestamp(OffsetDateTime.parse("2025-09-09T10:55:44.205291+03:00"));
+        entry.setLevel("a|b = c");
+
+        SearchCursor byTimestamp = SearchCursor.decode(SearchCursor.after(entry, "timestamp", true).encode());
+        assertThat(byTimestamp).isEqualTo(new SearchCursor("timestamp", true, entry.getTimestamp(), 42L));
+
+        assertThat(SearchCursor.decode(SearchCursor.after(entry, "level", false).encode()).key())
+                .as("the separator may occur in the key").isEqualTo("a|b = c");
+        assertThat(SearchCursor.decode(SearchCursor.after(entry, "reqId", false).encode()).key())
+                .as("a NULL key stays NULL, not an empty string").isNull();
+    }
+
+    @Test
+    void rejectsForeignAndMismatchedCursors() {
+        assertThatThrownBy(() -> SearchCursor.decode("not a cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchCursor.decode("MXxub3BlfGR8MXw9eA"))
+                .as("unknown field").isInstanceOf(IllegalArgumentException.class);
+
+        SearchCursor cursor = new SearchCursor("timestamp", true, OffsetDateTime.parse("2024-08-01T12:00:00Z"), 1L);
+        cursor.requireSort("timestamp", true);
+        assertThat(SearchCursor.supports("message")).as("no (message, id) index").isFalse();
+        assertThatThrownBy(() -> cursor.requireSort("timestamp", false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> cursor.requireSort("level", true))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,75 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.parser.SectionSpan;
+import io.terraform.logviewer.repository.SectionSpanRepository.Span;
+import java.time.OffsetDateTime;
+import org.junit.jupiter.api.Test;
+
+class SectionSpanRecorderTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+
+    private final SectionSpanRecorder recorder = new SectionSpanRecorder("imp");
+
+    @Test
+    void spanClosesOnNextSpanOrUnlabelledLine() {
+        SectionSpan plan = new SectionSpan(1, "plan");
+        SectionSpan apply = new SectionSpan(2, "apply");
+
+        recorder.track(plan, true, 1, entry(1));
+        recorder.track(plan, true, 2, entry(2));
+        recorder.track(apply, true, 3, entry(3));
+        recorder.track(null, false, 4, entry(4));
+
+        assertThat(recorder.changed()).containsExactly(
+                new Span("imp", 1, "plan", 1, 2, T0.plusSeconds(1), T0.plusSeconds(2), 1L, 2L, true),
+                new Span("imp", 2, "apply", 3, 3, T0.plusSeconds(3), T0.plusSeconds(3), 3L, 3L, true));
+    }
+
+    @Test
+    void unsavedSpansStayQueuedUntilSaved() {
+        SectionSpan apply = new SectionSpan(1, "apply");
+        LogEntryEntity first = entry(null);
+        recorder.track(apply, true, 1, first);
+
+        // строка ещё не записана: id нет, но участок уже есть
+        assertThat(recorder.changed()).extracting(Span::startEntryId).containsExactly((Long) null);
+        first.setId(10L);
+        // запись участков не удалась — saved() не вызывали, и участок уходит со следующей
+        assertThat(recorder.changed()).extracting(Span::startEntryId, Span::endEntryId)
+                .containsExactly(tuple(10L, 10L));
+        recorder.saved();
+        assertThat(recorder.changed()).isEmpty();
+
+        recorder.track(apply, false, 2, entry(11L));
+        assertThat(recorder.changed()).containsExactly(
+                new Span("imp", 1, "apply", 1, 2, T0, T0.plusSeconds(11), 10L, 11L, true));
+    }
+
+    @Test
+    void resumedSpanKeepsItsStart() {
+        recorder.resume(new Span("imp", 3, "apply", 40, 45, T0, T0.plusSeconds(5), 400L, 450L, false));
+
+        recorder.track(new SectionSpan(3, "apply"), true, 46, entry(460L));
+        recorder.track(new SectionSpan(4, "plan"), true, 47, entry(470L));
+
+        assertThat(recorder.changed()).containsExactly(
+                new Span("imp", 3, "apply", 40, 46, T0, T0.plusSeconds(460), 400L, 460L, true),
+                new Span("imp", 4, "plan", 47, 47, T0.plusSeconds(470), T0.plusSeconds(470), 470L, 470L, false));
+    }
+
+    private static LogEntryEntity entry(Long id) {
+        LogEntryEntity entity = new LogEntryEntity();
+        entity.setId(id);
+        entity.setTimestamp(T0.plusSeconds(id != null ? id : 0));
+        return entity;
+    }
+
+    private static LogEntryEntity entry(int id) {
+        return entry((long) id);
+    }
+}
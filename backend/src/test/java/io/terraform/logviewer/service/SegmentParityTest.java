@@ -0,0 +1,247 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.config.QueryProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.repository.ImportRegistryRepository;
+import io.terraform.logviewer.service.LogImportService.ImportSession;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import io.terraform.logviewer.service.dto.SearchPage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Сегменты импортов на H2: импорт через {@link LogImportService} записывает сегмент, а Search
+ * по нему отвечает так же, как БД, — те же строки страниц и total, в том числе при равных ts.
+ * Прерванный, удалённый и дозагруженный импорт сегмента не оставляет.
+ */
+@SpringBootTest(properties = {
+        "app.plugins.enabled=false",
+        "app.clickhouse.enabled=false",
+        "app.ingest.annotation.async=false",
+        "app.query.segments.enabled=true",
+        "app.query.segments.directory=" + SegmentParityTest.DIRECTORY,
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "grpc.server.port=-1"
+})
+@ActiveProfiles("h2")
+class SegmentParityTest {
+
+    static final String DIRECTORY = "target/segment-parity-test";
+
+    private static final String[] LEVELS = {"info", "error", "warn", "info", "debug"};
+    private static final String[] MESSAGES = {"Creating S3 Bucket", "Error: timeout while waiting", "retry_after 5",
+            "50% done", "Reading data source"};
+
+    @Autowired
+    private LogImportService importService;
+
+    @Autowired
+    private LogQueryService queryService;
+
+    @Autowired
+    private QueryProperties queryProperties;
+
+    @Autowired
+    private ImportRegistryRepository importRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void clean() throws IOException {
+        migrate("V3__import_registry.sql", "V5__section_spans.sql");
+        jdbc.update("delete from tf_log_entries");
+        jdbc.update("delete from tf_section_spans");
+        jdbc.update("delete from tf_imports");
+    }
+
+    @AfterEach
+    void enableSegments() {
+        queryProperties.getSegments().setEnabled(true);
+    }
+
+    @Test
+    void segmentAnswersLikeDatabase() {
+        ImportSession session = importAll(lines(40), null);
+        String importId = session.getImportId();
+        assertThat(segment(importId)).exists();
+
+        List<QueryParameters> cases = new ArrayList<>();
+        for (boolean desc : new boolean[] {true, false}) {
+            for (int page = 0; page < 9; page++) {
+                // страницы по 5 при 4 строках на секунду: границы страниц режут группы равных ts
+                cases.add(parameters(importId, page, 5, desc, null, null, Map.of()));
+            }
+            cases.add(parameters(importId, 0, 50, desc, "ERROR", null, Map.of()));
+            cases.add(parameters(importId, 0, 50, desc, null, "TIMEOUT", Map.of()));
+            cases.add(parameters(importId, 1, 3, desc, null, "50%", Map.of()));
+            cases.add(parameters(importId, 0, 50, desc, null, "retry_after", Map.of()));
+            cases.add(parameters(importId, 0, 50, desc, null, "provider.aws", Map.of()));
+            cases.add(parameters(importId, 0, 50, desc, null, "no such text", Map.of()));
+            cases.add(parameters(importId, 0, 50, desc, "warn", "retry", Map.of("req_id", "REQ-2")));
+        }
+        cases.add(new QueryParameters(0, 50, Optional.of(OffsetDateTime.parse("2025-01-01T00:00:03Z")),
+                Optional.of(OffsetDateTime.parse("2025-01-01T00:00:05Z")), Optional.empty(), Optional.empty(), false,
+                Optional.empty(), Map.of("import_id", importId), Optional.of("ts"), false, false, Optional.empty()));
+
+        for (QueryParameters parameters : cases) {
+            queryProperties.getSegments().setEnabled(true);
+            SearchPage fromSegment = queryService.search(parameters);
+            queryProperties.getSegments().setEnabled(false);
+            SearchPage fromDatabase = queryService.search(parameters);
+
+            assertThat(ids(fromSegment)).as("%s", parameters).isEqualTo(ids(fromDatabase));
+            assertThat(fromSegment.page().getTotalElements()).as("total of %s", parameters)
+                    .isEqualTo(fromDatabase.page().getTotalElements());
+            assertThat(fromSegment.totalExact()).isTrue();
+        }
+        assertThat(segment(importId)).as("the segment was not dropped as stale").exists();
+    }
+
+    @Test
+    void segmentWithDeletedRowsFallsBackToDatabase() {
+        String importId = importAll(lines(8), null).getImportId();
+        jdbc.update("delete from tf_log_entries where import_id = ? and message like 'Error%'", importId);
+
+        SearchPage page = queryService.search(parameters(importId, 0, 50, true, null, null, Map.of()));
+
+        assertThat(page.page().getTotalElements()).isEqualTo(6);
+        assertThat(segment(importId)).doesNotExist();
+    }
+
+    @Test
+    void abandonedAndDiscardedImportsLeaveNoSegment() {
+        ImportSession abandoned = importService.startSession("abandoned.json", -1, null, null);
+        lines(8).forEach(line -> importService.ingestFileLine(abandoned, line));
+        importService.flushSession(abandoned);
+        importService.abandonSession(abandoned);
+
+        ImportSession discarded = importService.startSession("discarded.json", -1, null, null);
+        lines(8).forEach(line -> importService.ingestFileLine(discarded, line));
+        importService.flushSession(discarded);
+        importService.discardSession(discarded);
+
+        assertThat(segment(abandoned.getImportId())).doesNotExist();
+        assertThat(segment(discarded.getImportId())).doesNotExist();
+        assertThat(leftovers()).isEmpty();
+    }
+
+    @Test
+    void resumedImportDropsItsSegment() throws IOException {
+        List<String> lines = lines(8);
+        String hash = ContentHasher.hash(new ByteArrayInputStream(
+                String.join("\n", lines).getBytes(StandardCharsets.UTF_8)));
+        String importId = importAll(lines, hash).getImportId();
+        assertThat(segment(importId)).exists();
+
+        // импорт снова считается незавершённым: повторная загрузка дозагружает его
+        importRegistry.markRunning(importId);
+        ImportSession resumed = importAll(lines, hash);
+
+        assertThat(resumed.getImportId()).isEqualTo(importId);
+        assertThat(segment(importId)).doesNotExist();
+        assertThat(leftovers()).isEmpty();
+    }
+
+    @Test
+    void reopenedTailImportDropsItsSegment() {
+        ImportSession first = importService.openTailSession("tail.json", null, 0, 0, 0);
+        lines(8).forEach(line -> importService.ingestFileLine(first, line));
+        importService.completeSession(first);
+        assertThat(segment(first.getImportId())).exists();
+
+        ImportSession reopened = importService.openTailSession("tail.json", first.getImportId(), 8, 8, 0);
+
+        assertThat(segment(first.getImportId())).doesNotExist();
+        importService.abandonSession(reopened);
+    }
+
+    private ImportSession importAll(List<String> lines, String hash) {
+        ImportSession session = importService.startSession("apply.json", -1, null, hash);
+        lines.forEach(line -> importService.ingestFileLine(session, line));
+        importService.completeSession(session);
+        return session;
+    }
+
+    /**
+     * По четыре строки на секунду; уровни, текст и req_id чередуются.
+     */
+    private static List<String> lines(int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(("{\"@level\":\"%s\",\"@message\":\"%s\",\"@module\":\"provider.%s\","
+                    + "\"@timestamp\":\"2025-01-01T00:00:%02dZ\",\"tf_req_id\":\"req-%d\"}").formatted(
+                    LEVELS[i % LEVELS.length], MESSAGES[i % MESSAGES.length], i % 3 == 0 ? "aws" : "google",
+                    i / 4, i % 3));
+        }
+        return lines;
+    }
+
+    private static QueryParameters parameters(String importId, int page, int size, boolean desc, String level,
+                                              String query, Map<String, String> filters) {
+        Map<String, String> withImport = new HashMap<>(filters);
+        withImport.put("import_id", importId);
+        return new QueryParameters(page, size, Optional.empty(), Optional.empty(), Optional.ofNullable(level),
+                Optional.empty(), false, Optional.ofNullable(query), withImport, Optional.of("ts"), desc, false,
+                Optional.empty());
+    }
+
+    private static List<Long> ids(SearchPage page) {
+        return page.page().getContent().stream().map(LogEntryEntity::getId).toList();
+    }
+
+    private static Path segment(String importId) {
+        return Path.of(DIRECTORY, importId + ".seg");
+    }
+
+    private static List<Path> leftovers() {
+        try (Stream<Path> files = Files.list(Path.of(DIRECTORY))) {
+            return files.filter(file -> !file.getFileName().toString().endsWith(".seg")).toList();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void migrate(String... scripts) throws IOException {
+        for (String script : scripts) {
+            String sql = new ClassPathResource("db/migration/" + script).getContentAsString(StandardCharsets.UTF_8)
+                    .replace("TIMESTAMPTZ", "TIMESTAMP WITH TIME ZONE");
+            for (String statement : sql.split(";")) {
+                if (!statement.isBlank()) jdbc.execute(statement);
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class JacksonFallback {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.terraform.logviewer.config.QueryProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.index.SegmentStore;
+import io.terraform.logviewer.index.SegmentWriter;
+import io.terraform.logviewer.repository.LogEntryRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import io.terraform.logviewer.service.dto.SearchPage;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentSearchServiceTest {
+
+    private static final OffsetDateTime T0 = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+    private static final String IMPORT_ID = "imp-1";
+
+    @TempDir
+    Path directory;
+
+    private final LogEntryRepository entryRepository = mock(LogEntryRepository.class);
+    private final Map<Long, LogEntryEntity> stored = new HashMap<>();
+    private SegmentStore store;
+    private SegmentSearchService service;
+
+    @BeforeEach
+    void setUp() {
+        QueryProperties properties = new QueryProperties();
+        properties.getSegments().setEnabled(true);
+        properties.getSegments().setDirectory(directory.toString());
+        store = new SegmentStore(properties);
+        service = new SegmentSearchService(store, entryRepository);
+
+        // id записываются по порядку строк, а ts повторяются: (1, 2) в t0, (3, 4, 5) в t1, 6 в t2
+        int[] seconds = {0, 0, 1, 1, 1, 2};
+        SegmentWriter writer = store.newWriter(IMPORT_ID);
+        for (int i = 0; i < seconds.length; i++) {
+            LogEntryEntity entry = new LogEntryEntity();
+            entry.setId(i + 1L);
+            entry.setTimestamp(T0.plusSeconds(seconds[i]));
+            entry.setLevel(i % 2 == 0 ? "ERROR" : "INFO");
+            entry.setMessage("Line " + (i + 1));
+            entry.setReqId(i < 3 ? "Req-A" : "req-b");
+            entry.setImportId(IMPORT_ID);
+            stored.put(entry.getId(), entry);
+            SegmentSearchService.index(writer, entry);
+        }
+        store.commit(IMPORT_ID, writer);
+
+        when(entryRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            List<LogEntryEntity> found = new ArrayList<>(StreamSupport.stream(ids.spliterator(), false)
+                    .map(stored::get).filter(entry -> entry != null).toList());
+            // порядок строк из БД не гарантирован
+            Collections.reverse(found);
+            return found;
+        });
+    }
+
+    @Test
+    void pagesFollowDatabaseOrderOnEqualTimestamps() {
+        // по убыванию — (ts, id) по убыванию; по возрастанию ts, а при равном ts id всё равно по убыванию
+        assertThat(pages(true)).containsExactly(List.of(6L, 5L), List.of(4L, 3L), List.of(2L, 1L));
+        assertThat(pages(false)).containsExactly(List.of(2L, 1L), List.of(5L, 4L), List.of(3L, 6L));
+
+        SearchPage outOfRange = service.search(parameters(3, 2, Optional.empty(), Map.of()), false).orElseThrow();
+        assertThat(outOfRange.page().getContent()).isEmpty();
+        assertThat(outOfRange.page().getTotalElements()).isEqualTo(6);
+    }
+
+    @Test
+    void filtersAndTextAreAnsweredFromTheSegment() {
+        SearchPage page = service.search(new QueryParameters(0, 10, Optional.of(T0.plusSeconds(1)), Optional.empty(),
+                Optional.of("error"), Optional.empty(), false, Optional.of("LINE"),
+                Map.of("import_id", IMPORT_ID, "req_id", "REQ-B"), Optional.empty(), true, false, Optional.empty()),
+                true).orElseThrow();
+
+        assertThat(page.page().getContent()).extracting(LogEntryEntity::getId).containsExactly(5L);
+        assertThat(page.page().getTotalElements()).isEqualTo(1);
+        assertThat(page.totalExact()).isTrue();
+    }
+
+    @Test
+    void staleSegmentIsDroppedAndSearchGoesToDatabase() {
+        stored.remove(5L);
+
+        assertThat(service.search(parameters(0, 6, Optional.empty(), Map.of()), true)).isEmpty();
+        assertThat(directory.resolve(IMPORT_ID + ".seg")).doesNotExist();
+        assertThat(service.search(parameters(0, 6, Optional.empty(), Map.of()), true)).isEmpty();
+    }
+
+    @Test
+    void searchesTheSegmentCannotAnswerGoToDatabase() {
+        assertThat(service.search(parameters(0, 6, Optional.of("line"), Map.of()), true)).isPresent();
+        assertThat(service.search(parameters(0, 6, Optional.of("строка"), Map.of()), true))
+                .as("lower() of non-ASCII text is up to the database").isEmpty();
+        assertThat(service.search(parameters(0, 6, Optional.empty(), Map.of("rpc", "Чтение")), true)).isEmpty();
+        assertThat(service.search(new QueryParameters(0, 6, Optional.empty(), Optional.empty(), Optional.empty(),
+                Optional.empty(), true, Optional.empty(), Map.of("import_id", IMPORT_ID), Optional.empty(), true,
+                false, Optional.empty()), true)).as("unread_only").isEmpty();
+        assertThat(service.search(new QueryParameters(0, 6, Optional.empty(), Optional.empty(), Optional.empty(),
+                Optional.empty(), false, Optional.empty(), Map.of("import_id", "imp-2"), Optional.empty(), true,
+                false, Optional.empty()), true)).as("no segment").isEmpty();
+    }
+
+    private List<List<Long>> pages(boolean desc) {
+        List<List<Long>> pages = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            SearchPage result = service.search(parameters(page, 2, Optional.empty(), Map.of()), desc).orElseThrow();
+            assertThat(result.page().getTotalElements()).isEqualTo(6);
+            pages.add(result.page().getContent().stream().map(LogEntryEntity::getId).toList());
+        }
+        return pages;
+    }
+
+    private static QueryParameters parameters(int page, int size, Optional<String> query, Map<String, String> filters) {
+        Map<String, String> withImport = new HashMap<>(filters);
+        withImport.put("import_id", IMPORT_ID);
+        return new QueryParameters(page, size, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+                false, query, withImport, Optional.empty(), true, false, Optional.empty());
+    }
+}
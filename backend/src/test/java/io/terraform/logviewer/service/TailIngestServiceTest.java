@@ -0,0 +1,66 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TailIngestServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsOnlyCompleteLinesAndResumesFromOffset() throws IOException {
+        Path file = dir.resolve("apply.log");
+        append(file, "first\nsecond\r\npart");
+        List<String> lines = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+
+        long offset = read(file, 0, buffer, lines);
+        assertThat(lines).containsExactly("first", "second");
+        assertThat(offset).isEqualTo("first\nsecond\r\n".length());
+
+        append(file, "ial ✓\nnext");
+        offset = read(file, offset, buffer, lines);
+        assertThat(lines).containsExactly("first", "second", "partial ✓");
+
+        // без новых целых строк позиция не двигается
+        assertThat(read(file, offset, buffer, lines)).isEqualTo(offset);
+        assertThat(lines).hasSize(3);
+    }
+
+    @Test
+    void restartAfterCarriageReturnDoesNotEmitExtraLine() throws IOException {
+        Path file = dir.resolve("crlf.log");
+        append(file, "one\r");
+        List<String> lines = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        long offset = read(file, 0, buffer, lines);
+        append(file, "\ntwo\n");
+        read(file, offset, buffer, lines);
+
+        // пустая строка от половинки \r\n отбрасывается при импорте, как и в файловой загрузке
+        assertThat(lines.stream().filter(line -> !line.isBlank())).containsExactly("one", "two");
+    }
+
+    private static long read(Path file, long from, ByteBuffer buffer, List<String> lines) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return TailIngestService.readLines(channel, from, channel.size(), buffer, lines::add);
+        }
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,174 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.repository.LogEntryJdbcWriter;
+import io.terraform.logviewer.repository.TailCheckpointRepository;
+import io.terraform.logviewer.repository.TailCheckpointRepository.Checkpoint;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Чтение растущего файла с рестартами на H2: незаконченная строка ждёт следующего чтения,
+ * а строки, записанные после последней контрольной точки, при рестарте не дублируются.
+ */
+@SpringBootTest(properties = {
+        "app.plugins.enabled=false",
+        "app.clickhouse.enabled=false",
+        "app.ingest.annotation.async=false",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "grpc.server.port=-1"
+})
+@ActiveProfiles("h2")
+class TailResumeTest {
+
+    private static final String LINE =
+            "{\"@level\":\"info\",\"@message\":\"line %d\",\"@timestamp\":\"2025-01-01T00:00:%02dZ\"}\n";
+
+    @Autowired
+    private LogImportService importService;
+
+    @Autowired
+    private TailCheckpointRepository checkpoints;
+
+    @Autowired
+    private LogEntryJdbcWriter jdbcWriter;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void clean() throws IOException {
+        migrate("V3__import_registry.sql", "V4__tail_checkpoints.sql", "V5__section_spans.sql");
+        jdbc.update("delete from tf_log_entries");
+        jdbc.update("delete from tf_section_spans");
+        jdbc.update("delete from tf_tail_checkpoints");
+        jdbc.update("delete from tf_imports");
+    }
+
+    @Test
+    void restartWithPartialLineAndLostCheckpointStoresEveryLineOnce() throws Exception {
+        Path file = dir.toAbsolutePath().normalize().resolve("apply.log");
+        String key = file.toString();
+        String line5 = LINE.formatted(5, 5);
+        String line6 = LINE.formatted(6, 6);
+        String line7 = LINE.formatted(7, 7);
+
+        // первый запуск: четыре строки и начало пятой
+        append(file, lines(1, 4) + line5.substring(0, 20));
+        Checkpoint first = tailUntil(key, checkpoint -> checkpoint.lines() == 4);
+        assertThat(first.offset()).isEqualTo(utf8Length(lines(1, 4)));
+        String importId = first.importId();
+        assertThat(messages(importId)).containsExactlyElementsOf(expected(4));
+
+        // второй запуск дописал пятую и шестую строки, но его точка потерялась — как при падении
+        // между записью строк и сохранением точки
+        append(file, line5.substring(20) + line6 + line7.substring(0, 10));
+        Checkpoint second = tailUntil(key, checkpoint -> checkpoint.lines() == 6);
+        assertThat(second.importId()).isEqualTo(importId);
+        checkpoints.save(first);
+        assertThat(jdbcWriter.findLineHashes(importId, first.lines()))
+                .containsExactly(LogImportService.lineHash(5, line5.trim()), LogImportService.lineHash(6, line6.trim()));
+
+        // третий запуск начинает с первой точки: пятая и шестая узнаются по хэшу
+        append(file, line7.substring(10) + LINE.formatted(8, 8));
+        Checkpoint last = tailUntil(key, checkpoint -> checkpoint.lines() == 8);
+
+        assertThat(last.importId()).isEqualTo(importId);
+        assertThat(last.offset()).isEqualTo(Files.size(file));
+        assertThat(last.saved()).isEqualTo(8);
+        assertThat(messages(importId)).containsExactlyElementsOf(expected(8));
+        assertThat(jdbcWriter.findLineHashes(importId, 6)).hasSize(2);
+        assertThat(jdbcWriter.findLineHashes(importId, 8)).isEmpty();
+        assertThat(jdbc.queryForObject("select count(distinct import_id) from tf_log_entries", Long.class))
+                .isEqualTo(1);
+    }
+
+    /**
+     * Запускает чтение каталога, ждёт нужной точки и останавливает — как рестарт сервиса.
+     */
+    private Checkpoint tailUntil(String key, Predicate<Checkpoint> reached) throws Exception {
+        IngestProperties properties = new IngestProperties();
+        properties.getTail().setEnabled(true);
+        properties.getTail().setDirectory(dir.toString());
+        properties.getTail().setPollInterval(Duration.ofMillis(20));
+        TailIngestService tail = new TailIngestService(importService, checkpoints, properties);
+        tail.start();
+        try {
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (System.nanoTime() < deadline) {
+                Checkpoint checkpoint = checkpoints.find(key).orElse(null);
+                if (checkpoint != null && reached.test(checkpoint)) return checkpoint;
+                Thread.sleep(20);
+            }
+            throw new AssertionError("tail did not reach the expected checkpoint: " + checkpoints.find(key));
+        } finally {
+            tail.stop();
+        }
+    }
+
+    private List<String> messages(String importId) {
+        return jdbc.queryForList("select message from tf_log_entries where import_id = ? order by line_hash",
+                String.class, importId);
+    }
+
+    private void migrate(String... scripts) throws IOException {
+        for (String script : scripts) {
+            String sql = new ClassPathResource("db/migration/" + script).getContentAsString(StandardCharsets.UTF_8)
+                    .replace("TIMESTAMPTZ", "TIMESTAMP WITH TIME ZONE");
+            for (String statement : sql.split(";")) {
+                if (!statement.isBlank()) jdbc.execute(statement);
+            }
+        }
+    }
+
+    private static String lines(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        IntStream.rangeClosed(from, to).forEach(i -> text.append(LINE.formatted(i, i)));
+        return text.toString();
+    }
+
+    private static List<String> expected(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(i -> "line " + i).toList();
+    }
+
+    private static long utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @TestConfiguration
+    static class JacksonFallback {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.terraform.logviewer.config.QueryProperties;
+import io.terraform.logviewer.entity.LogEntryEntity;
+import io.terraform.logviewer.repository.LogEntryCountRepository;
+import io.terraform.logviewer.service.dto.QueryParameters;
+import io.terraform.logviewer.service.dto.SearchPage;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Фильтр q через индексы pg_trgm и tsvector на небольшом импорте: страница и total те же, что при
+ * сравнении полей, а план запроса идёт по индексу своей стратегии. Нужен PostgreSQL из профиля pg:
+ * {@code mvn test -Dtest=TextSearchIndexTest -Dpg=true}. Время — в TextSearchBenchmark (src/jmh).
+ */
+@SpringBootTest(properties = {
+        "app.plugins.enabled=false",
+        "app.clickhouse.enabled=false",
+        "app.query.count.strategy=exact",
+        "app.query.count.cache-ttl=0",
+        "grpc.server.port=-1"
+})
+@ActiveProfiles("pg")
+@EnabledIfSystemProperty(named = "pg", matches = "true")
+class TextSearchIndexTest {
+
+    private static final String IMPORT_ID = "text-search-index-test";
+
+    @Autowired
+    private LogQueryService queryService;
+
+    @Autowired
+    private QueryProperties properties;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void seed() {
+        TextSearchSamples.seed(jdbc, IMPORT_ID, 5_000);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        properties.getTextSearch().setIndexed(true);
+        jdbc.update("delete from tf_log_entries where import_id = ?", IMPORT_ID);
+    }
+
+    @Test
+    void indexedSearchMatchesScan() {
+        for (String query : TextSearchSamples.QUERIES) {
+            QueryParameters parameters = parameters(query, Map.of("import_id", IMPORT_ID));
+
+            properties.getTextSearch().setIndexed(false);
+            SearchPage scan = queryService.search(parameters);
+            properties.getTextSearch().setIndexed(true);
+            SearchPage indexed = queryService.search(parameters);
+
+            assertThat(indexed.page().getTotalElements()).as(query).isEqualTo(scan.page().getTotalElements());
+            assertThat(ids(indexed)).as(query).isEqualTo(ids(scan));
+        }
+        assertThat(queryService.search(parameters("bucket", Map.of("import_id", IMPORT_ID))).page()
+                .getTotalElements()).isPositive();
+    }
+
+    @Test
+    void indexedStrategiesUseTheirIndex() {
+        Set<TextSearchPlanner.Strategy> seen = EnumSet.noneOf(TextSearchPlanner.Strategy.class);
+        for (String query : TextSearchSamples.QUERIES) {
+            TextSearchPlanner.Strategy strategy = TextSearchPlanner.plan(query, true).strategy();
+            seen.add(strategy);
+            // без import_id: иначе планировщик вправе пойти по индексу импорта
+            String plan = explain(LogEntrySqlFilter.of(parameters(query, Map.of()), true));
+            switch (strategy) {
+                case TRIGRAM -> assertThat(plan).as(query).contains("idx_tf_log_entries_search_trgm");
+                case FULL_TEXT -> assertThat(plan).as(query).contains("idx_tf_log_entries_search_tsv");
+                case SCAN -> assertThat(plan).as(query).doesNotContain("idx_tf_log_entries_search");
+            }
+        }
+        assertThat(seen).containsExactlyInAnyOrder(TextSearchPlanner.Strategy.values());
+    }
+
+    private String explain(LogEntryCountRepository.Filter filter) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            // на маленькой таблице планировщик и так выбрал бы Seq Scan
+            jdbc.execute("set local enable_seqscan = off");
+            return jdbc.queryForObject("explain (format json) select id from tf_log_entries where " + filter.where(),
+                    String.class, filter.args().toArray());
+        });
+    }
+
+    private static List<Long> ids(SearchPage page) {
+        return page.page().getContent().stream().map(LogEntryEntity::getId).toList();
+    }
+
+    private static QueryParameters parameters(String query, Map<String, String> filters) {
+        return new QueryParameters(0, 50, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(),
+                false, Optional.of(query), filters, Optional.empty(), false, false, Optional.empty());
+    }
+}
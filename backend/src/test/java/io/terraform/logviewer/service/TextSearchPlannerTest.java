@@ -0,0 +1,49 @@
+package io.terraform.logviewer.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.terraform.logviewer.service.TextSearchPlanner.Plan;
+import io.terraform.logviewer.service.TextSearchPlanner.Strategy;
+import org.junit.jupiter.api.Test;
+
+class TextSearchPlannerTest {
+
+    @Test
+    void scansWithoutIndexesOrTrigrams() {
+        assertThat(TextSearchPlanner.plan("Bucket", false))
+                .isEqualTo(new Plan(Strategy.SCAN, "%bucket%", null, false));
+        assertThat(TextSearchPlanner.plan("ab", true).strategy()).isEqualTo(Strategy.SCAN);
+        assertThat(TextSearchPlanner.plan(": {", true).strategy()).isEqualTo(Strategy.SCAN);
+    }
+
+    @Test
+    void usesTrigramsForSubstrings() {
+        assertThat(TextSearchPlanner.plan("Bucket", true))
+                .as("a literal query matches the search text exactly")
+                .isEqualTo(new Plan(Strategy.TRIGRAM, "%bucket%", null, false));
+        assertThat(TextSearchPlanner.plan("s3_b\\_cket", true))
+                .as("LIKE wildcards may span fields in the search text")
+                .isEqualTo(new Plan(Strategy.TRIGRAM, "%s3_b\\_cket%", null, true));
+        assertThat(TextSearchPlanner.plan("failed to create", true).strategy())
+                .as("the only whole word is shorter than the longest run")
+                .isEqualTo(Strategy.TRIGRAM);
+        assertThat(TextSearchPlanner.plan(".1e5x.", true).strategy())
+                .as("PostgreSQL may split a run that starts with a digit")
+                .isEqualTo(Strategy.TRIGRAM);
+    }
+
+    @Test
+    void usesFullTextForBoundedWords() {
+        assertThat(TextSearchPlanner.plan("\"Status\": 404,", true))
+                .isEqualTo(new Plan(Strategy.FULL_TEXT, "%\"status\": 404,%",
+                        "'_truncated_' | ('status' & '404')", true));
+        assertThat(TextSearchPlanner.plan("error creating bucket", true).tsQuery())
+                .isEqualTo("'_truncated_' | ('creating')");
+        assertThat(TextSearchPlanner.plan(" \"id\": 42,", true).strategy())
+                .as("short whole words, no trigram-sized run")
+                .isEqualTo(Strategy.FULL_TEXT);
+        assertThat(TextSearchPlanner.plan("%id%", true).strategy())
+                .as("a word next to a wildcard is not bounded")
+                .isEqualTo(Strategy.SCAN);
+    }
+}
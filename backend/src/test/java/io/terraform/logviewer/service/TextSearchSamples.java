@@ -0,0 +1,59 @@
+package io.terraform.logviewer.service;
+
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Синтетический импорт для фильтра q на PostgreSQL: сообщения, модули и raw_json с повторами,
+ * как в логах провайдеров. Общий для {@link TextSearchIndexTest} и бенчмарка в src/jmh.
+ */
+final class TextSearchSamples {
+
+    /**
+     * Строки q: слова и фразы (tsvector), подстроки внутри слов и JSON (pg_trgm), шаблоны LIKE
+     * и слишком короткая строка, которая читается без индекса. Те же строки — в @Param TextSearchBenchmark.
+     */
+    static final List<String> QUERIES = List.of(
+            "bucket",
+            "Error creating",
+            "failed to create",
+            "\"status\": 503",
+            " \"id\": 42,",
+            "s3_b\\_cket",
+            "ab",
+            "no such text anywhere"
+    );
+
+    private TextSearchSamples() {
+    }
+
+    /**
+     * Заполняет импорт {@code importId} ровно {@code rows} строками; если столько уже есть, ничего не делает.
+     */
+    static void seed(JdbcTemplate jdbc, String importId, long rows) {
+        Long present = jdbc.queryForObject(
+                "select count(*) from tf_log_entries where import_id = ?", Long.class, importId);
+        if (present != null && present == rows) return;
+
+        jdbc.update("delete from tf_log_entries where import_id = ?", importId);
+        jdbc.update("""
+                insert into tf_log_entries (ts, level, section, module, message, req_id, resource_type,
+                                            status_code, file_name, import_id, unread, raw_json)
+                select timestamptz '2025-01-01 00:00:00+00' + g * interval '10 milliseconds',
+                       (array['TRACE', 'DEBUG', 'INFO', 'WARN', 'ERROR'])[1 + g % 5],
+                       (array['plan', 'apply'])[1 + g % 2],
+                       'provider.terraform-provider-' || (array['aws', 'google', 'azurerm', 'kubernetes'])[1 + g % 4],
+                       (array['Error creating S3 bucket', 'Refreshing state', 'Creating...', 'Reading...',
+                              'HTTP Request Sent', 'HTTP Response Received', 'failed to create resource',
+                              'Still creating... [10s elapsed]'])[1 + (g * 7919) % 8] || ' #' || g,
+                       'req-' || (g / 50),
+                       'aws_s3_bucket_' || (g % 1000),
+                       (array[200, 201, 404, 409, 503])[1 + g % 5],
+                       'benchmark.json', ?, true,
+                       json_build_object('@level', 'info', '@message', 'message ' || g, 'id', g % 100,
+                                         'tf_resource_type', 'aws_s3_bucket_' || (g % 1000),
+                                         'status', (array[200, 201, 404, 409, 503])[1 + g % 5])::text
+                from generate_series(1, ?) g""", importId, rows);
+        jdbc.execute("analyze tf_log_entries");
+    }
+}
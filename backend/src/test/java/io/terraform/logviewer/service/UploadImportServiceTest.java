@@ -0,0 +1,148 @@
+package io.terraform.logviewer.service;
+
+import static io.terraform.logviewer.service.TestArchives.gzip;
+import static io.terraform.logviewer.service.TestArchives.tar;
+import static io.terraform.logviewer.service.TestArchives.utf8;
+import static io.terraform.logviewer.service.TestArchives.zip;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.terraform.logviewer.config.IngestProperties;
+import io.terraform.logviewer.service.LogImportService.ImportSession;
+import io.terraform.logviewer.service.UploadImportService.EntryResult;
+import io.terraform.logviewer.service.UploadImportService.UploadResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.util.unit.DataSize;
+
+class UploadImportServiceTest {
+
+    private static final String LOG = "{\"@message\":\"one\"}\n{\"@message\":\"two\"}\n";
+
+    private final LogImportService importService = mock(LogImportService.class);
+    private final IngestProperties properties = new IngestProperties();
+    private final Map<String, List<String>> lines = new ConcurrentHashMap<>();
+    private UploadImportService service;
+
+    @BeforeEach
+    void setUp() {
+        properties.getArchive().setWorkers(2);
+        when(importService.startSession(anyString(), anyLong(), any(), any())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            lines.put(name, new CopyOnWriteArrayList<>());
+            return new ImportSession("id-" + name, name);
+        });
+        doAnswer(invocation -> {
+            ImportSession session = invocation.getArgument(0);
+            String line = invocation.getArgument(1);
+            if (session.getFileName().startsWith("broken")) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+            if (!line.isBlank()) {
+                lines.get(session.getFileName()).add(line);
+            }
+            return null;
+        }).when(importService).ingestFileLine(any(), anyString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void compressedLogIsOneImport() throws IOException {
+        service = new UploadImportService(importService, properties);
+
+        UploadResult result = service.importUpload("apply.json.gz", -1, null, "hash", stream(gzip(utf8(LOG))));
+
+        assertThat(result.archive()).isFalse();
+        assertThat(result.importId()).isEqualTo("id-apply.json.gz");
+        assertThat(lines.get("apply.json.gz")).containsExactly("{\"@message\":\"one\"}", "{\"@message\":\"two\"}");
+        verify(importService).completeSession(result.sessions().get(0));
+    }
+
+    @Test
+    void archiveFileFailureIsReportedAndOthersImported() throws IOException {
+        service = new UploadImportService(importService, properties);
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("plan.json", utf8(LOG));
+        files.put("broken.json", utf8(LOG));
+        files.put("apply.json.gz", gzip(utf8(LOG)));
+
+        UploadResult result = service.importUpload("run.tar.gz", -1, null, "hash", stream(gzip(tar(files))));
+
+        assertThat(result.archive()).isTrue();
+        assertThat(result.entries()).extracting(EntryResult::fileName)
+                .containsExactly("plan.json", "broken.json", "apply.json.gz");
+        assertThat(result.entries()).extracting(EntryResult::isFailed).containsExactly(false, true, false);
+        assertThat(result.entries().get(1).error()).contains("connection lost");
+        assertThat(result.sessions()).extracting(ImportSession::getImportId)
+                .containsExactly("id-plan.json", "id-apply.json.gz");
+        assertThat(result.importId()).isEqualTo("id-plan.json");
+        assertThat(result.duplicate()).isFalse();
+        assertThat(lines.get("plan.json")).hasSize(2);
+        assertThat(lines.get("apply.json.gz")).hasSize(2);
+        verify(importService).failSession(any());
+    }
+
+    @Test
+    void corruptArchiveRejectsUpload() {
+        service = new UploadImportService(importService, properties);
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            files.put("part-" + i + ".json", utf8(LOG.repeat(200 + i)));
+        }
+        byte[] archive = gzip(zip(files));
+        byte[] truncated = Arrays.copyOf(archive, archive.length / 3);
+
+        assertThatThrownBy(() -> service.importUpload("run.zip.gz", -1, null, "hash", stream(truncated)))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void decompressionLimitsRejectUploadAndDiscardStartedImports() {
+        properties.getArchive().setMaxEntries(2);
+        properties.getArchive().setMaxEntrySize(DataSize.ofKilobytes(64));
+        service = new UploadImportService(importService, properties);
+        List<ImportSession> completed = new CopyOnWriteArrayList<>();
+        List<ImportSession> discarded = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> completed.add(invocation.getArgument(0))).when(importService).completeSession(any());
+        doAnswer(invocation -> discarded.add(invocation.getArgument(0)) ? 1 : 0)
+                .when(importService).discardSession(any());
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("a.json", utf8(LOG));
+        files.put("b.json", utf8(LOG));
+        files.put("c.json", utf8(LOG));
+
+        assertThatThrownBy(() -> service.importUpload("run.tar", -1, null, "hash", stream(tar(files))))
+                .isInstanceOf(LogContentDecoder.LimitExceededException.class);
+        assertThatThrownBy(() -> service.importUpload("bomb.gz", -1, null, "hash",
+                stream(gzip(new byte[1024 * 1024]))))
+                .isInstanceOf(LogContentDecoder.LimitExceededException.class);
+        // файлы, успевшие импортироваться до третьего, удаляются, остальные не начинаются
+        assertThat(discarded).containsExactlyInAnyOrderElementsOf(completed);
+        verify(importService).failSession(any());
+    }
+
+    private static ByteArrayInputStream stream(byte[] content) {
+        return new ByteArrayInputStream(content);
+    }
+}